@@ -0,0 +1,74 @@
+#!/usr/bin/env bash
+# Offline load test against the stub converter library.
+#
+#   loadgen/run-suite.sh jvm      # runs target/test-graalvm-*.jar   (mvn package first)
+#   loadgen/run-suite.sh native   # runs target/test-graalvm-optimized (mvn -Pnative native:compile first)
+#
+# Stub behaviour and load shape are taken from the environment:
+#   MATHTYPE_STUB_LATENCY_US, MATHTYPE_STUB_OUTPUT_BYTES, MATHTYPE_STUB_PARALLELISM, MATHTYPE_STUB_ERROR_EVERY
+#   SCENARIOS (default status,convert,convert-batch,demo-create,demo-list), RATE (200), DURATION (30s), WARMUP (10s)
+#   PORT (18080), RESULTS_DIR (loadgen/results)
+#   ACCEPT (e.g. application/cbor, application/x-jackson-smile), ACCEPT_ENCODING (e.g. gzip), LABEL (defaults to MODE)
+set -euo pipefail
+
+MODE=${1:-jvm}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+PORT=${PORT:-18080}
+RESULTS_DIR=${RESULTS_DIR:-$ROOT/loadgen/results}
+WORK_DIR=$(mktemp -d)
+
+make -C "$ROOT/native/stub" >/dev/null
+STUB_LIB="$ROOT/native/stub/build/libmathtype2latex_stub.so"
+
+LOADGEN_JAR="$ROOT/loadgen/target/test-graalvm-loadgen.jar"
+if [ ! -f "$LOADGEN_JAR" ]; then
+  (cd "$ROOT/loadgen" && mvn -B -q package)
+fi
+
+APP_ARGS=(
+  "-Dmathtype.lib.path=$STUB_LIB"
+  "--server.port=$PORT"
+  "--spring.datasource.url=jdbc:sqlite:$WORK_DIR/loadtest.db"
+  "--mathtype.jobs.spool-dir=$WORK_DIR/job-spool"
+  # 负载为随机字节，关闭预检才会走到本地库
+  "--mathtype.validation.enabled=false"
+)
+
+case "$MODE" in
+  jvm)
+    APP_JAR=$(ls "$ROOT"/target/test-graalvm-*.jar | grep -v plain | head -1)
+    java --enable-native-access=ALL-UNNAMED "${APP_ARGS[0]}" -jar "$APP_JAR" "${APP_ARGS[@]:1}" \
+      > "$WORK_DIR/app.log" 2>&1 &
+    ;;
+  native)
+    "$ROOT/target/test-graalvm-optimized" "${APP_ARGS[@]}" > "$WORK_DIR/app.log" 2>&1 &
+    ;;
+  *)
+    echo "usage: $0 jvm|native" >&2
+    exit 2
+    ;;
+esac
+APP_PID=$!
+trap 'kill $APP_PID 2>/dev/null || true; wait $APP_PID 2>/dev/null || true; rm -rf "$WORK_DIR"' EXIT
+
+for _ in $(seq 120); do
+  if curl -fs "http://localhost:$PORT/api/mathtype/status" >/dev/null; then
+    break
+  fi
+  if ! kill -0 $APP_PID 2>/dev/null; then
+    cat "$WORK_DIR/app.log" >&2
+    exit 1
+  fi
+  sleep 0.5
+done
+
+java -jar "$LOADGEN_JAR" \
+  --base-url "http://localhost:$PORT" \
+  --scenarios "${SCENARIOS:-status,convert,convert-batch,demo-create,demo-list}" \
+  --rate "${RATE:-200}" \
+  --duration "${DURATION:-30s}" \
+  --warmup "${WARMUP:-10s}" \
+  --label "${LABEL:-$MODE}" \
+  --hgrm-dir "$RESULTS_DIR" \
+  ${ACCEPT:+--accept "$ACCEPT"} \
+  ${ACCEPT_ENCODING:+--accept-encoding "$ACCEPT_ENCODING"}
@@ -0,0 +1,161 @@
+#!/usr/bin/env bash
+# Long-running native-memory soak test against the stub converter library.
+#
+#   loadgen/soak-suite.sh jvm      # runs target/test-graalvm-*.jar with -XX:NativeMemoryTracking=summary
+#   loadgen/soak-suite.sh native   # runs target/test-graalvm-optimized
+#
+# Drives convert-batch at RATE req/s x BATCH_SIZE files (default 200 x 50 = 10k conversions/s) for DURATION,
+# sampling GET /api/mathtype/native-memory every SAMPLE into RESULTS_DIR/soak-LABEL.csv.
+# The first WARMUP of load is excluded; the baseline is taken right after it. Fails (exit 1) when
+#   - RSS grew by more than MAX_RSS_GROWTH_MB (default 64) over the baseline,
+#   - NMT committed grew by more than MAX_NMT_GROWTH_MB (default 32; jvm only),
+#   - C strings, argument bytes or upcall stubs are still outstanding once the load has stopped,
+#   - any FreeCStr call failed.
+# Every conversion goes to the native library: validation, the Java fast path and the result store are off.
+# Environment: RATE (200), BATCH_SIZE (50), DURATION (30m), SAMPLE (60s), WARMUP (60s), PORT (18080),
+#   RESULTS_DIR (loadgen/results), LABEL (defaults to soak-MODE), plus the MATHTYPE_STUB_* knobs of run-suite.sh
+set -euo pipefail
+
+MODE=${1:-jvm}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+PORT=${PORT:-18080}
+RESULTS_DIR=${RESULTS_DIR:-$ROOT/loadgen/results}
+LABEL=${LABEL:-soak-$MODE}
+RATE=${RATE:-200}
+BATCH_SIZE=${BATCH_SIZE:-50}
+DURATION=${DURATION:-30m}
+SAMPLE=${SAMPLE:-60s}
+WARMUP=${WARMUP:-60s}
+MAX_RSS_GROWTH_MB=${MAX_RSS_GROWTH_MB:-64}
+MAX_NMT_GROWTH_MB=${MAX_NMT_GROWTH_MB:-32}
+WORK_DIR=$(mktemp -d)
+
+make -C "$ROOT/native/stub" >/dev/null
+STUB_LIB="$ROOT/native/stub/build/libmathtype2latex_stub.so"
+
+LOADGEN_JAR="$ROOT/loadgen/target/test-graalvm-loadgen.jar"
+if [ ! -f "$LOADGEN_JAR" ]; then
+  (cd "$ROOT/loadgen" && mvn -B -q package)
+fi
+
+APP_ARGS=(
+  "-Dmathtype.lib.path=$STUB_LIB"
+  "--server.port=$PORT"
+  "--spring.datasource.url=jdbc:sqlite:$WORK_DIR/soak.db"
+  "--mathtype.jobs.spool-dir=$WORK_DIR/job-spool"
+  "--mathtype.validation.enabled=false"
+  "--mathtype.fast-path.enabled=false"
+  "--mathtype.result-store.enabled=false"
+)
+
+case "$MODE" in
+  jvm)
+    APP_JAR=$(ls "$ROOT"/target/test-graalvm-*.jar | grep -v plain | head -1)
+    java -XX:NativeMemoryTracking=summary --enable-native-access=ALL-UNNAMED "${APP_ARGS[0]}" \
+      -jar "$APP_JAR" "${APP_ARGS[@]:1}" > "$WORK_DIR/app.log" 2>&1 &
+    ;;
+  native)
+    "$ROOT/target/test-graalvm-optimized" "${APP_ARGS[@]}" > "$WORK_DIR/app.log" 2>&1 &
+    ;;
+  *)
+    echo "usage: $0 jvm|native" >&2
+    exit 2
+    ;;
+esac
+APP_PID=$!
+trap 'kill $APP_PID 2>/dev/null || true; wait $APP_PID 2>/dev/null || true; rm -rf "$WORK_DIR"' EXIT
+
+for _ in $(seq 120); do
+  if curl -fs "http://localhost:$PORT/api/mathtype/status" >/dev/null; then
+    break
+  fi
+  if ! kill -0 $APP_PID 2>/dev/null; then
+    cat "$WORK_DIR/app.log" >&2
+    exit 1
+  fi
+  sleep 0.5
+done
+
+seconds() {
+  case "$1" in
+    *m) echo $(( ${1%m} * 60 )) ;;
+    *s) echo "${1%s}" ;;
+    *) echo "$1" ;;
+  esac
+}
+
+# 取本地内存快照中的一个数值字段
+field() {
+  grep -o "\"$1\":-\?[0-9]*" <<< "$2" | cut -d: -f2
+}
+
+snapshot() {
+  curl -fs "http://localhost:$PORT/api/mathtype/native-memory"
+}
+
+load() {
+  java -jar "$LOADGEN_JAR" \
+    --base-url "http://localhost:$PORT" \
+    --scenarios convert-batch \
+    --batch-size "$BATCH_SIZE" \
+    --rate "$RATE" \
+    --duration "$1" \
+    --warmup 0s \
+    --label "$LABEL" > "$WORK_DIR/loadgen.log"
+  grep "^$LABEL " "$WORK_DIR/loadgen.log" | awk '{ print $3, $4 }'
+}
+
+mkdir -p "$RESULTS_DIR"
+CSV="$RESULTS_DIR/$LABEL.csv"
+echo "elapsed_s,requests,errors,rss_mb,nmt_committed_mb,c_strings_received,c_strings_outstanding,c_strings_free_failed,argument_bytes_outstanding" > "$CSV"
+
+echo "[$LABEL] warming up for $WARMUP at $RATE req/s x $BATCH_SIZE files"
+load "$WARMUP" > /dev/null
+sleep 2
+BASE=$(snapshot)
+BASE_RSS=$(field rssBytes "$BASE")
+BASE_NMT=$(field nmtCommittedBytes "$BASE")
+
+TOTAL=$(seconds "$DURATION")
+STEP=$(seconds "$SAMPLE")
+ELAPSED=0
+REQUESTS=0
+ERRORS=0
+while [ "$ELAPSED" -lt "$TOTAL" ]; do
+  SEGMENT=$(( TOTAL - ELAPSED < STEP ? TOTAL - ELAPSED : STEP ))
+  read -r segment_requests segment_errors <<< "$(load "${SEGMENT}s")"
+  ELAPSED=$(( ELAPSED + SEGMENT ))
+  REQUESTS=$(( REQUESTS + segment_requests ))
+  ERRORS=$(( ERRORS + segment_errors ))
+  NOW=$(snapshot)
+  rss=$(field rssBytes "$NOW")
+  nmt=$(field nmtCommittedBytes "$NOW")
+  echo "$ELAPSED,$REQUESTS,$ERRORS,$(( rss / 1048576 )),$(( nmt < 0 ? -1 : nmt / 1048576 )),$(field cStringsReceived "$NOW"),$(field cStringsOutstanding "$NOW"),$(field cStringsFreeFailed "$NOW"),$(field argumentBytesOutstanding "$NOW")" >> "$CSV"
+  printf '[%s] %5ss  %d requests (%d errors)  rss %d MB (%+d MB)\n' "$LABEL" "$ELAPSED" "$REQUESTS" "$ERRORS" \
+    $(( rss / 1048576 )) $(( (rss - BASE_RSS) / 1048576 ))
+done
+
+# 负载停止后等进行中的调用结束，再判定未释放数
+sleep 2
+END=$(snapshot)
+FAILED=0
+check() {
+  if [ "$2" -gt "$3" ]; then
+    echo "FAIL $1: $2 > $3"
+    FAILED=1
+  else
+    echo "ok   $1: $2 <= $3"
+  fi
+}
+
+echo
+echo "[$LABEL] $REQUESTS requests, $(( REQUESTS * BATCH_SIZE )) conversions, $ERRORS errors; samples in $CSV"
+check "rss growth (MB)" $(( ($(field rssBytes "$END") - BASE_RSS) / 1048576 )) "$MAX_RSS_GROWTH_MB"
+if [ "$BASE_NMT" -ge 0 ]; then
+  check "nmt committed growth (MB)" $(( ($(field nmtCommittedBytes "$END") - BASE_NMT) / 1048576 )) "$MAX_NMT_GROWTH_MB"
+fi
+check "c strings outstanding" "$(field cStringsOutstanding "$END")" 0
+check "argument bytes outstanding" "$(field argumentBytesOutstanding "$END")" 0
+check "upcall stubs outstanding" $(( $(field upcallStubsCreated "$END") - $(field upcallStubsFreed "$END") )) 0
+check "FreeCStr failures" "$(field cStringsFreeFailed "$END")" 0
+exit $FAILED
@@ -0,0 +1,101 @@
+package org.example.testgraalvm.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开环（固定到达率）压测
+ * <p>
+ * 第 n 个请求的计划发送时间固定为 start + n / rate，延迟从计划时间开始计算，
+ * 服务端变慢导致发送推迟时，排队时间也计入延迟（避免 coordinated omission）。
+ */
+final class FixedRateRunner {
+
+    /**
+     * 一轮压测的结果
+     *
+     * @param histogram 延迟直方图（微秒）
+     * @param requests  完成的请求数
+     * @param errors    非 2xx 响应或请求异常的数量
+     * @param bytes     响应体的传输字节数（HttpClient 不解压，即压缩后的大小）
+     * @param elapsed   实际耗时
+     */
+    record Result(Histogram histogram, long requests, long errors, long bytes, Duration elapsed) {
+
+        double achievedRate() {
+            return requests / Math.max(1e-9, elapsed.toNanos() / 1e9);
+        }
+
+        double bytesPerRequest() {
+            return requests == 0 ? 0 : (double) bytes / requests;
+        }
+    }
+
+    private final HttpClient client;
+    private final int maxInFlight;
+
+    FixedRateRunner(HttpClient client, int maxInFlight) {
+        this.client = client;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 按固定速率发送请求，直到持续时间结束并且所有请求完成
+     *
+     * @param scenario 场景
+     * @param rate     每秒请求数
+     * @param duration 持续时间
+     */
+    Result run(Scenario scenario, double rate, Duration duration) throws InterruptedException {
+        Recorder recorder = new Recorder(3);
+        LongAdder completed = new LongAdder();
+        LongAdder errors = new LongAdder();
+        LongAdder bytes = new LongAdder();
+        HttpResponse.BodyHandler<Void> countingBody = HttpResponse.BodyHandlers.ofByteArrayConsumer(
+                chunk -> chunk.ifPresent(b -> bytes.add(b.length)));
+        Semaphore inFlight = new Semaphore(maxInFlight);
+
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+
+        for (long seq = 0; ; seq++) {
+            long intended = start + seq * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            HttpRequest request = scenario.request(seq);
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // 并发已满时在这里阻塞，等待时间同样从计划发送时间算起
+            inFlight.acquire();
+            client.sendAsync(request, countingBody)
+                    .whenComplete((response, failure) -> {
+                        recorder.recordValue(Math.max(0, (System.nanoTime() - intended) / 1000));
+                        completed.increment();
+                        if (failure != null || response.statusCode() / 100 != 2) {
+                            errors.increment();
+                        }
+                        inFlight.release();
+                    });
+        }
+
+        // 等待剩余请求完成
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        return new Result(recorder.getIntervalHistogram(), completed.sum(), errors.sum(), bytes.sum(), elapsed);
+    }
+}
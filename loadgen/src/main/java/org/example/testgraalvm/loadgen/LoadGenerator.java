@@ -0,0 +1,145 @@
+package org.example.testgraalvm.loadgen;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * test-graalvm HTTP 接口的固定到达率压测工具
+ * <p>
+ * 用法：
+ * <pre>
+ * java -jar target/test-graalvm-loadgen.jar \
+ *     --base-url http://localhost:8080 \
+ *     --scenarios status,convert,convert-batch,demo-list \
+ *     --rate 200 --duration 30s --warmup 5s \
+ *     --label jvm --hgrm-dir results/
+ * </pre>
+ * --accept application/cbor|application/x-jackson-smile 请求二进制响应格式，--accept-encoding gzip 请求压缩响应；
+ * 结果中的 KB/req 为每个响应的传输字节数。
+ * 每个场景先以相同速率预热（不计入结果），再测量；结果按场景输出延迟百分位，
+ * 指定 --hgrm-dir 时另外写出 HdrHistogram 百分位分布文件（label-scenario.hgrm），可用于对比 JVM 与 native 构建。
+ */
+public final class LoadGenerator {
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+
+        String baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        List<String> scenarios = List.of(options.getOrDefault("scenarios", "status").split(","));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "100"));
+        Duration duration = parseDuration(options.getOrDefault("duration", "30s"));
+        Duration warmup = parseDuration(options.getOrDefault("warmup", "5s"));
+        Duration timeout = parseDuration(options.getOrDefault("timeout", "30s"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "512"));
+        String label = options.getOrDefault("label", "run");
+        String hgrmDir = options.get("hgrm-dir");
+
+        Scenario.Settings settings = new Scenario.Settings(
+                baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl,
+                timeout,
+                Integer.parseInt(options.getOrDefault("batch-size", "20")),
+                Integer.parseInt(options.getOrDefault("payload-bytes", "1024")),
+                options.containsKey("repeat-payload"),
+                options.get("accept"),
+                options.get("accept-encoding"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+        FixedRateRunner runner = new FixedRateRunner(client, maxInFlight);
+
+        List<String> report = new ArrayList<>();
+        for (String name : scenarios) {
+            Scenario scenario = Scenario.of(name.trim(), settings);
+            if (!warmup.isZero()) {
+                System.out.printf(Locale.ROOT, "[%s] warming up %s for %ss at %.0f req/s%n",
+                        label, scenario.name(), warmup.toSeconds(), rate);
+                runner.run(scenario, rate, warmup);
+            }
+            System.out.printf(Locale.ROOT, "[%s] measuring %s for %ss at %.0f req/s%n",
+                    label, scenario.name(), duration.toSeconds(), rate);
+            FixedRateRunner.Result result = runner.run(scenario, rate, duration);
+            report.add(summary(label, scenario.name(), result));
+
+            if (hgrmDir != null) {
+                Path dir = Files.createDirectories(Path.of(hgrmDir));
+                Path file = dir.resolve(label + "-" + scenario.name() + ".hgrm");
+                try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                    // 直方图单位为微秒，输出为毫秒
+                    result.histogram().outputPercentileDistribution(out, 1000.0);
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-8s %-18s %9s %7s %9s %9s %9s %9s %9s %9s %9s%n",
+                "label", "scenario", "requests", "errors", "req/s", "KB/req", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+        report.forEach(System.out::println);
+    }
+
+    private static String summary(String label, String scenario, FixedRateRunner.Result result) {
+        Histogram h = result.histogram();
+        return String.format(Locale.ROOT, "%-8s %-18s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f",
+                label, scenario, result.requests(), result.errors(), result.achievedRate(),
+                result.bytesPerRequest() / 1024,
+                h.getValueAtPercentile(50) / 1000.0,
+                h.getValueAtPercentile(90) / 1000.0,
+                h.getValueAtPercentile(99) / 1000.0,
+                h.getValueAtPercentile(99.9) / 1000.0,
+                h.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * 解析 --name value 形式的参数；不带值的参数视为开关
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                options.put(name, "true");
+            }
+        }
+        return options;
+    }
+
+    /**
+     * 解析 500ms / 30s / 2m 形式的时长
+     */
+    static Duration parseDuration(String value) {
+        String v = value.trim().toLowerCase(Locale.ROOT);
+        try {
+            if (v.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+            }
+            if (v.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(v.substring(0, v.length() - 1)));
+            }
+            if (v.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(v.substring(0, v.length() - 1)));
+            }
+            return Duration.ofSeconds(Long.parseLong(v));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid duration: " + value, e);
+        }
+    }
+}
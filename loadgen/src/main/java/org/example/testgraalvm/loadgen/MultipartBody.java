@@ -0,0 +1,36 @@
+package org.example.testgraalvm.loadgen;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * 构造 multipart/form-data 请求体
+ */
+final class MultipartBody {
+
+    private final String boundary = "loadgen-" + UUID.randomUUID();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    MultipartBody addFile(String field, String filename, byte[] content) {
+        write("--" + boundary + "\r\n");
+        write("Content-Disposition: form-data; name=\"" + field + "\"; filename=\"" + filename + "\"\r\n");
+        write("Content-Type: application/octet-stream\r\n\r\n");
+        out.writeBytes(content);
+        write("\r\n");
+        return this;
+    }
+
+    String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    byte[] build() {
+        write("--" + boundary + "--\r\n");
+        return out.toByteArray();
+    }
+
+    private void write(String s) {
+        out.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.testgraalvm.loadgen;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Random;
+import java.util.function.LongFunction;
+
+/**
+ * 压测场景：按序号生成第 n 个请求
+ */
+interface Scenario {
+
+    String name();
+
+    HttpRequest request(long seq);
+
+    /**
+     * 场景共享的参数
+     *
+     * @param baseUrl        服务地址，例如 http://localhost:8080
+     * @param timeout        单个请求的超时时间
+     * @param batchSize      批量接口每个请求的文件数
+     * @param payloadBytes   每个 .bin 文件的大小
+     * @param repeatPayload  所有请求使用相同内容（命中结果缓存），否则每个文件内容不同
+     * @param accept         Accept 请求头，例如 application/cbor；null 表示不发送
+     * @param acceptEncoding Accept-Encoding 请求头，例如 gzip；null 表示不发送（响应不压缩）
+     */
+    record Settings(String baseUrl, Duration timeout, int batchSize, int payloadBytes, boolean repeatPayload,
+                    String accept, String acceptEncoding) {
+    }
+
+    static Scenario of(String name, Settings settings) {
+        return switch (name) {
+            case "status" -> simple(name, seq -> get(settings, "/api/mathtype/status"));
+            case "convert" -> simple(name, seq -> multipart(settings, "/api/mathtype/convert", "file", seq, 1));
+            case "convert-batch" -> simple(name,
+                    seq -> multipart(settings, "/api/mathtype/convert-batch", "files", seq, settings.batchSize()));
+            case "convert-batch-raw" -> simple(name,
+                    seq -> multipart(settings, "/api/mathtype/convert-batch-raw", "files", seq, settings.batchSize()));
+            case "convert-stream" -> simple(name,
+                    seq -> multipart(settings, "/api/mathtype/convert-stream", "files", seq, settings.batchSize()));
+            case "demo-create" -> simple(name, seq -> builder(settings, "/api/demo")
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"loadgen-" + seq + "\"}"))
+                    .build());
+            case "demo-list" -> simple(name, seq -> get(settings, "/api/demo"));
+            case "demo-search" -> simple(name, seq -> get(settings, "/api/demo/search?name=loadgen-" + (seq % 100)));
+            default -> throw new IllegalArgumentException("Unknown scenario: " + name
+                    + " (status, convert, convert-batch, convert-batch-raw, convert-stream,"
+                    + " demo-create, demo-list, demo-search)");
+        };
+    }
+
+    private static Scenario simple(String name, LongFunction<HttpRequest> factory) {
+        return new Scenario() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public HttpRequest request(long seq) {
+                return factory.apply(seq);
+            }
+        };
+    }
+
+    private static HttpRequest.Builder builder(Settings settings, String path) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(settings.baseUrl() + path))
+                .timeout(settings.timeout());
+        if (settings.accept() != null) {
+            builder.header("Accept", settings.accept());
+        }
+        if (settings.acceptEncoding() != null) {
+            builder.header("Accept-Encoding", settings.acceptEncoding());
+        }
+        return builder;
+    }
+
+    private static HttpRequest get(Settings settings, String path) {
+        return builder(settings, path).GET().build();
+    }
+
+    private static HttpRequest multipart(Settings settings, String path, String field, long seq, int files) {
+        MultipartBody body = new MultipartBody();
+        for (int i = 0; i < files; i++) {
+            body.addFile(field, "loadgen-" + seq + "-" + i + ".bin", payload(settings, seq * files + i));
+        }
+        return builder(settings, path)
+                .header("Content-Type", body.contentType())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.build()))
+                .build();
+    }
+
+    /**
+     * 文件内容：前 8 字节写入序号保证内容不同，其余为固定伪随机字节
+     */
+    private static byte[] payload(Settings settings, long id) {
+        byte[] content = new byte[Math.max(8, settings.payloadBytes())];
+        new Random(42).nextBytes(content);
+        if (!settings.repeatPayload()) {
+            ByteBuffer.wrap(content).putLong(id);
+        }
+        return content;
+    }
+}
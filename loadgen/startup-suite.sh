@@ -0,0 +1,107 @@
+#!/usr/bin/env bash
+# Startup and time-to-first-conversion: plain JVM vs JVM + AOT cache vs native image.
+#
+#   mvn -Paot-cache package                  # target/aot/*.jar + target/aot/app.aot
+#   mvn -Pnative native:compile              # target/test-graalvm-optimized (optional)
+#   loadgen/startup-suite.sh [jvm] [jvm-aot] [native]
+#
+# Each mode is started RUNS times (default 5) against the stub converter library. Reported per mode (median):
+#   ready_ms   process start -> first 200 from /api/mathtype/status
+#   first_ms   process start -> first successful POST /api/mathtype/convert
+#   spring_ms  "Started TestGraalvmApplication in X seconds" from the log
+#   rss_mb     resident set size after the first conversion
+set -euo pipefail
+
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+PORT=${PORT:-18080}
+RUNS=${RUNS:-5}
+MODES=("$@")
+[ ${#MODES[@]} -eq 0 ] && MODES=(jvm jvm-aot native)
+WORK_DIR=$(mktemp -d)
+trap 'rm -rf "$WORK_DIR"' EXIT
+
+make -C "$ROOT/native/stub" >/dev/null
+STUB_LIB="$ROOT/native/stub/build/libmathtype2latex_stub.so"
+APP_JAR=$(ls "$ROOT"/target/aot/test-graalvm-*.jar 2>/dev/null | head -1 || true)
+head -c 2048 /dev/urandom > "$WORK_DIR/sample.bin"
+
+now_ms() {
+  echo $(( $(date +%s%N) / 1000000 ))
+}
+
+median() {
+  sort -n | awk '{ v[NR] = $1 } END { if (NR == 0) print "-"; else print v[int((NR + 1) / 2)] }'
+}
+
+run_once() {
+  local mode=$1 run=$2
+  local db="$WORK_DIR/$mode-$run.db" log="$WORK_DIR/$mode-$run.log"
+  local app_args=("--server.port=$PORT" "--spring.datasource.url=jdbc:sqlite:$db"
+                  "--mathtype.jobs.spool-dir=$WORK_DIR/spool-$mode-$run" "--mathtype.validation.enabled=false")
+  local start pid
+  start=$(now_ms)
+  case "$mode" in
+    jvm)
+      java --enable-native-access=ALL-UNNAMED "-Dmathtype.lib.path=$STUB_LIB" -jar "$APP_JAR" "${app_args[@]}" > "$log" 2>&1 &
+      ;;
+    jvm-aot)
+      java -XX:AOTCache="$ROOT/target/aot/app.aot" --enable-native-access=ALL-UNNAMED "-Dmathtype.lib.path=$STUB_LIB" \
+        -jar "$APP_JAR" "${app_args[@]}" > "$log" 2>&1 &
+      ;;
+    native)
+      "$ROOT/target/test-graalvm-optimized" "-Dmathtype.lib.path=$STUB_LIB" "${app_args[@]}" > "$log" 2>&1 &
+      ;;
+  esac
+  pid=$!
+
+  local ready="" first=""
+  for _ in $(seq 3000); do
+    if curl -fs -o /dev/null "http://localhost:$PORT/api/mathtype/status"; then
+      ready=$(( $(now_ms) - start ))
+      break
+    fi
+    kill -0 $pid 2>/dev/null || break
+    sleep 0.01
+  done
+  if [ -n "$ready" ] && curl -fs -o /dev/null -F "file=@$WORK_DIR/sample.bin" "http://localhost:$PORT/api/mathtype/convert"; then
+    first=$(( $(now_ms) - start ))
+  fi
+  local rss spring
+  rss=$(awk '/VmRSS/ { printf "%d", $2 / 1024 }' /proc/$pid/status 2>/dev/null || echo "-")
+  spring=$(sed -n 's/.*Started TestGraalvmApplication in \([0-9.]*\) seconds.*/\1/p' "$log" | awk '{ printf "%d", $1 * 1000 }')
+
+  kill $pid 2>/dev/null || true
+  wait $pid 2>/dev/null || true
+  if [ -z "$first" ]; then
+    echo "$mode run $run failed, log:" >&2
+    tail -20 "$log" >&2
+    return 1
+  fi
+  echo "$ready $first ${spring:--} $rss"
+}
+
+printf "%-8s %10s %10s %10s %8s\n" mode ready_ms first_ms spring_ms rss_mb
+for mode in "${MODES[@]}"; do
+  case "$mode" in
+    jvm|jvm-aot)
+      if [ -z "$APP_JAR" ]; then echo "$mode: target/aot missing, run mvn -Paot-cache package" >&2; continue; fi
+      if [ "$mode" = jvm-aot ] && [ ! -f "$ROOT/target/aot/app.aot" ]; then echo "$mode: target/aot/app.aot missing" >&2; continue; fi
+      ;;
+    native)
+      if [ ! -x "$ROOT/target/test-graalvm-optimized" ]; then echo "native: target/test-graalvm-optimized missing" >&2; continue; fi
+      ;;
+    *)
+      echo "usage: $0 [jvm] [jvm-aot] [native]" >&2
+      exit 2
+      ;;
+  esac
+  : > "$WORK_DIR/$mode.txt"
+  for run in $(seq "$RUNS"); do
+    run_once "$mode" "$run" >> "$WORK_DIR/$mode.txt"
+  done
+  printf "%-8s %10s %10s %10s %8s\n" "$mode" \
+    "$(cut -d' ' -f1 "$WORK_DIR/$mode.txt" | median)" \
+    "$(cut -d' ' -f2 "$WORK_DIR/$mode.txt" | median)" \
+    "$(cut -d' ' -f3 "$WORK_DIR/$mode.txt" | grep -v -- - | median)" \
+    "$(cut -d' ' -f4 "$WORK_DIR/$mode.txt" | median)"
+done
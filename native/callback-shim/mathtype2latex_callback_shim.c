@@ -0,0 +1,313 @@
+/*
+ * Per-item completion callbacks on top of the MathType2Latex library.
+ *
+ * The converter library only offers ConvertList/ConvertListAsync, which return
+ * the whole result array at once. This shim takes the library's own Convert
+ * and FreeCStr entry points, converts the files on a small thread pool and
+ * invokes a callback as soon as each file is done:
+ *
+ *   int32_t ConvertListCallbackVia(convert, free_cstr, file_path_list, on_item, parallelism)
+ *   void on_item(int32_t index, int32_t code, const char *latex)
+ *
+ * file_path_list is the same JSON array of paths that ConvertList accepts.
+ * latex is only valid for the duration of the callback, and on_item may be
+ * called concurrently from several threads. Returns the number of items, or
+ * -1 when the path list cannot be parsed.
+ */
+#include <pthread.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+
+#define SHIM_EXPORT __attribute__((visibility("default")))
+#define MAX_PARALLELISM 64
+
+typedef char *(*convert_fn)(const char *file_path);
+typedef void (*free_fn)(char *cstr);
+typedef void (*item_callback)(int32_t index, int32_t code, const char *latex);
+
+struct batch {
+    convert_fn convert;
+    free_fn free_cstr;
+    item_callback on_item;
+    char **paths;
+    int32_t count;
+    int32_t next;
+};
+
+static const char *skip_ws(const char *p) {
+    while (*p == ' ' || *p == '\t' || *p == '\r' || *p == '\n') {
+        p++;
+    }
+    return p;
+}
+
+static int hex4(const char *p, unsigned *out) {
+    unsigned value = 0;
+    for (int i = 0; i < 4; i++) {
+        char c = p[i];
+        value <<= 4;
+        if (c >= '0' && c <= '9') {
+            value |= (unsigned) (c - '0');
+        } else if (c >= 'a' && c <= 'f') {
+            value |= (unsigned) (c - 'a' + 10);
+        } else if (c >= 'A' && c <= 'F') {
+            value |= (unsigned) (c - 'A' + 10);
+        } else {
+            return 0;
+        }
+    }
+    *out = value;
+    return 1;
+}
+
+static char *put_utf8(char *out, unsigned cp) {
+    if (cp < 0x80) {
+        *out++ = (char) cp;
+    } else if (cp < 0x800) {
+        *out++ = (char) (0xC0 | (cp >> 6));
+        *out++ = (char) (0x80 | (cp & 0x3F));
+    } else if (cp < 0x10000) {
+        *out++ = (char) (0xE0 | (cp >> 12));
+        *out++ = (char) (0x80 | ((cp >> 6) & 0x3F));
+        *out++ = (char) (0x80 | (cp & 0x3F));
+    } else {
+        *out++ = (char) (0xF0 | (cp >> 18));
+        *out++ = (char) (0x80 | ((cp >> 12) & 0x3F));
+        *out++ = (char) (0x80 | ((cp >> 6) & 0x3F));
+        *out++ = (char) (0x80 | (cp & 0x3F));
+    }
+    return out;
+}
+
+/*
+ * Decodes the JSON string starting at *cursor (which must point at the opening
+ * quote) into a newly allocated UTF-8 buffer and advances *cursor past it.
+ */
+static char *json_string(const char **cursor) {
+    const char *p = *cursor;
+    if (*p != '"') {
+        return NULL;
+    }
+    p++;
+    const char *end = p;
+    while (*end != '\0' && *end != '"') {
+        end += (*end == '\\' && end[1] != '\0') ? 2 : 1;
+    }
+    if (*end != '"') {
+        return NULL;
+    }
+    /* escapes never expand, so the raw length bounds the decoded length */
+    char *result = malloc((size_t) (end - p) + 1);
+    if (result == NULL) {
+        return NULL;
+    }
+    char *out = result;
+    while (p < end) {
+        if (*p != '\\') {
+            *out++ = *p++;
+            continue;
+        }
+        p++;
+        switch (*p) {
+            case 'b': *out++ = '\b'; p++; break;
+            case 'f': *out++ = '\f'; p++; break;
+            case 'n': *out++ = '\n'; p++; break;
+            case 'r': *out++ = '\r'; p++; break;
+            case 't': *out++ = '\t'; p++; break;
+            case 'u': {
+                unsigned cp;
+                if (end - p < 5 || !hex4(p + 1, &cp)) {
+                    free(result);
+                    return NULL;
+                }
+                p += 5;
+                unsigned low;
+                if (cp >= 0xD800 && cp <= 0xDBFF && end - p >= 6 && p[0] == '\\' && p[1] == 'u'
+                        && hex4(p + 2, &low) && low >= 0xDC00 && low <= 0xDFFF) {
+                    cp = 0x10000 + ((cp - 0xD800) << 10) + (low - 0xDC00);
+                    p += 6;
+                }
+                out = put_utf8(out, cp);
+                break;
+            }
+            default: *out++ = *p++; break; /* \" \\ \/ */
+        }
+    }
+    *out = '\0';
+    *cursor = end + 1;
+    return result;
+}
+
+/* Skips one JSON value of any type. */
+static const char *skip_value(const char *p) {
+    p = skip_ws(p);
+    int depth = 0;
+    do {
+        if (*p == '\0') {
+            return p;
+        }
+        if (*p == '"') {
+            p++;
+            while (*p != '\0' && *p != '"') {
+                p += (*p == '\\' && p[1] != '\0') ? 2 : 1;
+            }
+            if (*p == '"') {
+                p++;
+            }
+        } else if (*p == '{' || *p == '[') {
+            depth++;
+            p++;
+        } else if (*p == '}' || *p == ']') {
+            depth--;
+            p++;
+        } else if (depth == 0) {
+            while (*p != '\0' && *p != ',' && *p != '}' && *p != ']') {
+                p++;
+            }
+            return p;
+        } else {
+            p++;
+        }
+    } while (depth > 0);
+    return p;
+}
+
+/* Extracts code and resLatex from {"code":200,"resLatex":"..."}. */
+static int parse_result(const char *json, int32_t *code, char **latex) {
+    *code = 500;
+    *latex = NULL;
+    const char *p = skip_ws(json);
+    if (*p != '{') {
+        return 0;
+    }
+    p = skip_ws(p + 1);
+    while (*p == '"') {
+        char *key = json_string(&p);
+        if (key == NULL) {
+            return 0;
+        }
+        p = skip_ws(p);
+        if (*p != ':') {
+            free(key);
+            return 0;
+        }
+        p = skip_ws(p + 1);
+        if (strcmp(key, "code") == 0) {
+            *code = (int32_t) strtol(p, (char **) &p, 10);
+        } else if (strcmp(key, "resLatex") == 0 && *p == '"') {
+            free(*latex);
+            *latex = json_string(&p);
+        } else {
+            p = skip_value(p);
+        }
+        free(key);
+        p = skip_ws(p);
+        if (*p == ',') {
+            p = skip_ws(p + 1);
+        }
+    }
+    return 1;
+}
+
+static int32_t parse_paths(const char *json, char ***paths_out) {
+    const char *p = skip_ws(json);
+    if (*p != '[') {
+        return -1;
+    }
+    int32_t capacity = 16;
+    int32_t count = 0;
+    char **paths = malloc(sizeof(char *) * (size_t) capacity);
+    if (paths == NULL) {
+        return -1;
+    }
+    p = skip_ws(p + 1);
+    while (*p == '"') {
+        char *path = json_string(&p);
+        if (path == NULL) {
+            break;
+        }
+        if (count == capacity) {
+            capacity *= 2;
+            char **grown = realloc(paths, sizeof(char *) * (size_t) capacity);
+            if (grown == NULL) {
+                free(path);
+                break;
+            }
+            paths = grown;
+        }
+        paths[count++] = path;
+        p = skip_ws(p);
+        if (*p == ',') {
+            p = skip_ws(p + 1);
+        }
+    }
+    if (*p != ']') {
+        for (int32_t i = 0; i < count; i++) {
+            free(paths[i]);
+        }
+        free(paths);
+        return -1;
+    }
+    *paths_out = paths;
+    return count;
+}
+
+static void *worker(void *arg) {
+    struct batch *b = arg;
+    for (;;) {
+        int32_t index = __atomic_fetch_add(&b->next, 1, __ATOMIC_RELAXED);
+        if (index >= b->count) {
+            return NULL;
+        }
+        char *raw = b->convert(b->paths[index]);
+        int32_t code = 500;
+        char *latex = NULL;
+        if (raw == NULL || !parse_result(raw, &code, &latex)) {
+            code = 500;
+        }
+        b->on_item(index, code, latex != NULL ? latex : "");
+        free(latex);
+        if (raw != NULL) {
+            b->free_cstr(raw);
+        }
+    }
+}
+
+SHIM_EXPORT int32_t ConvertListCallbackVia(convert_fn convert, free_fn free_cstr, const char *file_path_list,
+                                           item_callback on_item, int32_t parallelism) {
+    struct batch b = {convert, free_cstr, on_item, NULL, 0, 0};
+    b.count = parse_paths(file_path_list, &b.paths);
+    if (b.count < 0) {
+        return -1;
+    }
+
+    if (parallelism < 1) {
+        parallelism = 1;
+    }
+    if (parallelism > MAX_PARALLELISM) {
+        parallelism = MAX_PARALLELISM;
+    }
+    if (parallelism > b.count) {
+        parallelism = b.count;
+    }
+
+    pthread_t threads[MAX_PARALLELISM];
+    int started = 0;
+    for (int i = 1; i < parallelism; i++) {
+        if (pthread_create(&threads[started], NULL, worker, &b) == 0) {
+            started++;
+        }
+    }
+    /* the calling thread works too, so progress is made even if no thread starts */
+    worker(&b);
+    for (int i = 0; i < started; i++) {
+        pthread_join(threads[i], NULL);
+    }
+
+    for (int32_t i = 0; i < b.count; i++) {
+        free(b.paths[i]);
+    }
+    free(b.paths);
+    return b.count;
+}
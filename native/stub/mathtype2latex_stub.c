@@ -0,0 +1,149 @@
+/*
+ * Stub MathType2Latex library for offline load testing.
+ *
+ * Exports the same symbols as the real converter (Convert, ConvertList,
+ * ConvertListAsync, FreeCStr) and returns well-formed result JSON without
+ * reading the input files. Behaviour is controlled by environment variables
+ * read on first use:
+ *
+ *   MATHTYPE_STUB_LATENCY_US    simulated conversion time per item (default 0)
+ *   MATHTYPE_STUB_OUTPUT_BYTES  length of each resLatex value (default 64)
+ *   MATHTYPE_STUB_PARALLELISM   items converted concurrently by ConvertListAsync (default 4)
+ *   MATHTYPE_STUB_ERROR_EVERY   every Nth item returns code 500, 0 disables (default 0)
+ */
+#include <stdlib.h>
+#include <string.h>
+#include <time.h>
+
+#if defined(_WIN32)
+#define STUB_EXPORT __declspec(dllexport)
+#else
+#define STUB_EXPORT __attribute__((visibility("default")))
+#endif
+
+static long latency_us = -1;
+static long output_bytes;
+static long parallelism;
+static long error_every;
+
+static long env_long(const char *name, long fallback) {
+    const char *value = getenv(name);
+    if (value == NULL || *value == '\0') {
+        return fallback;
+    }
+    long parsed = strtol(value, NULL, 10);
+    return parsed < 0 ? fallback : parsed;
+}
+
+/* Racing initialisers compute the same values, so no lock is needed. */
+static void load_config(void) {
+    if (latency_us >= 0) {
+        return;
+    }
+    output_bytes = env_long("MATHTYPE_STUB_OUTPUT_BYTES", 64);
+    parallelism = env_long("MATHTYPE_STUB_PARALLELISM", 4);
+    if (parallelism < 1) {
+        parallelism = 1;
+    }
+    error_every = env_long("MATHTYPE_STUB_ERROR_EVERY", 0);
+    latency_us = env_long("MATHTYPE_STUB_LATENCY_US", 0);
+}
+
+static void sleep_us(long us) {
+    if (us <= 0) {
+        return;
+    }
+    struct timespec ts;
+    ts.tv_sec = us / 1000000;
+    ts.tv_nsec = (us % 1000000) * 1000;
+    while (nanosleep(&ts, &ts) != 0) {
+        /* resume after signal */
+    }
+}
+
+/* Upper bound for one {"code":...,"resLatex":"..."} object. */
+static size_t item_capacity(void) {
+    return (size_t) output_bytes + 48;
+}
+
+static char *write_item(char *out, long index) {
+    int failed = error_every > 0 && (index + 1) % error_every == 0;
+    const char *head = failed ? "{\"code\":500,\"resLatex\":\"" : "{\"code\":200,\"resLatex\":\"";
+    size_t head_len = strlen(head);
+    memcpy(out, head, head_len);
+    out += head_len;
+    /* "x+x+x+..." is valid LaTeX and needs no JSON escaping */
+    for (long i = 0; i < output_bytes; i++) {
+        *out++ = (i & 1) ? '+' : 'x';
+    }
+    memcpy(out, "\"}", 2);
+    return out + 2;
+}
+
+/* Counts the string elements of a JSON array such as ["a.bin","b.bin"]. */
+static long count_paths(const char *json) {
+    long count = 0;
+    int in_string = 0;
+    for (const char *p = json; *p != '\0'; p++) {
+        if (in_string) {
+            if (*p == '\\' && p[1] != '\0') {
+                p++;
+            } else if (*p == '"') {
+                in_string = 0;
+            }
+        } else if (*p == '"') {
+            in_string = 1;
+            count++;
+        }
+    }
+    return count;
+}
+
+static char *build_list(long count) {
+    char *result = malloc(3 + (size_t) count * (item_capacity() + 1));
+    if (result == NULL) {
+        return NULL;
+    }
+    char *out = result;
+    *out++ = '[';
+    for (long i = 0; i < count; i++) {
+        if (i > 0) {
+            *out++ = ',';
+        }
+        out = write_item(out, i);
+    }
+    *out++ = ']';
+    *out = '\0';
+    return result;
+}
+
+STUB_EXPORT char *Convert(const char *file_path) {
+    (void) file_path;
+    load_config();
+    sleep_us(latency_us);
+    char *result = malloc(item_capacity() + 1);
+    if (result == NULL) {
+        return NULL;
+    }
+    *write_item(result, 0) = '\0';
+    return result;
+}
+
+STUB_EXPORT char *ConvertList(const char *file_path_list) {
+    load_config();
+    long count = file_path_list != NULL ? count_paths(file_path_list) : 0;
+    sleep_us(latency_us * count);
+    return build_list(count);
+}
+
+STUB_EXPORT char *ConvertListAsync(const char *file_path_list) {
+    load_config();
+    long count = file_path_list != NULL ? count_paths(file_path_list) : 0;
+    long rounds = (count + parallelism - 1) / parallelism;
+    sleep_us(latency_us * rounds);
+    return build_list(count);
+}
+
+STUB_EXPORT void FreeCStr(char *cstr) {
+    free(cstr);
+}
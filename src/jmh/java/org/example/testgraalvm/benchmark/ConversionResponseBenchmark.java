@@ -0,0 +1,76 @@
+package org.example.testgraalvm.benchmark;
+
+import org.example.testgraalvm.controller.response.ConversionResponse;
+import org.example.testgraalvm.controller.response.ConversionResponseSerializer;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量转换响应的序列化开销：HashMap 组装 + 反射序列化 vs 类型化响应 + 手写序列化器
+ * <p>
+ * 重点看 -prof gc 输出的 gc.alloc.rate.norm（每次操作分配的字节数）：
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="ConversionResponseBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversionResponseBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    private int batchSize;
+
+    private JsonMapper mapper;
+    private List<String> fileNames;
+    private List<Mtef2LatexDTO> results;
+
+    @Setup
+    public void setup() {
+        mapper = JsonMapper.builder().addModule(ConversionResponseSerializer.module()).build();
+        fileNames = new ArrayList<>(batchSize);
+        results = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            fileNames.add("oleObject" + i + ".bin");
+            results.add(i % 10 == 0
+                    ? Mtef2LatexDTO.error("转换失败: 无效的 MTEF 数据")
+                    : Mtef2LatexDTO.success("\\frac{a_{" + i + "}}{b^{2}}+\\sqrt{x}"));
+        }
+    }
+
+    /**
+     * 原实现：每个结果一个 HashMap，外层再包一个 HashMap
+     */
+    @Benchmark
+    public void hashMapResponse() {
+        Map<String, Object> response = new HashMap<>();
+        List<Map<String, Object>> resultList = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            Mtef2LatexDTO dto = results.get(i);
+            Map<String, Object> item = new HashMap<>();
+            item.put("filename", fileNames.get(i));
+            item.put("success", dto.getCode() == Mtef2LatexDTO.SUCCESS_CODE);
+            item.put("code", dto.getCode());
+            item.put("latex", dto.getResLatex());
+            resultList.add(item);
+        }
+        response.put("success", true);
+        response.put("total", resultList.size());
+        response.put("results", resultList);
+        mapper.writeValue(OutputStream.nullOutputStream(), response);
+    }
+
+    /**
+     * 类型化响应：直接用 JsonGenerator 逐项写出
+     */
+    @Benchmark
+    public void typedResponse() {
+        mapper.writeValue(OutputStream.nullOutputStream(), new ConversionResponse.Batch(fileNames, results));
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.testgraalvm.benchmark;
+
+import org.example.testgraalvm.mtef.MtefException;
+import org.example.testgraalvm.mtef.MtefFastPath;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Java 快速路径与本地库单文件转换的对比，语料为真实 .bin 文件目录
+ * <p>
+ * 开始时打印语料的快速路径命中率；三个基准都只轮流转换命中的文件：
+ * javaInMemory 只含 OLE/MTEF 解析和 LaTeX 输出，javaFromFile 另含读文件（与线上快速路径相同），
+ * nativeConvert 为关闭快速路径后的一次 convertLatex（读文件、FFM 调用和结果 JSON 解析）：
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="MtefFastPathBenchmark \
+ *     -jvmArgsAppend '-Dmtef.corpus=/path/to/corpus -Dmathtype.lib.path=/path/to/lib.so'"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+@State(Scope.Thread)
+public class MtefFastPathBenchmark {
+
+    private List<Path> hitPaths;
+    private List<byte[]> hitBytes;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        String corpus = System.getProperty("mtef.corpus");
+        if (corpus == null) {
+            throw new IllegalStateException("-Dmtef.corpus=DIR is required");
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(Path.of(corpus))) {
+            files = walk.filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".bin"))
+                    .sorted()
+                    .toList();
+        }
+        hitPaths = new ArrayList<>();
+        hitBytes = new ArrayList<>();
+        for (Path file : files) {
+            byte[] bytes = Files.readAllBytes(file);
+            try {
+                MtefFastPath.convert(bytes);
+                hitPaths.add(file.toAbsolutePath());
+                hitBytes.add(bytes);
+            } catch (MtefException e) {
+                // 未命中的文件不参与计时
+            }
+        }
+        System.out.printf(Locale.ROOT, "%nfast-path hits: %d / %d (%.1f%%)%n", hitPaths.size(), files.size(),
+                files.isEmpty() ? 0.0 : hitPaths.size() * 100.0 / files.size());
+        if (hitPaths.isEmpty()) {
+            throw new IllegalStateException("No file in " + corpus + " is handled by the fast path");
+        }
+        MtefFastPath.configure(new MtefFastPath.Settings(false, MtefFastPath.Settings.defaults().maxFileBytes()));
+    }
+
+    private int nextIndex() {
+        int index = next;
+        next = index + 1 == hitPaths.size() ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public String javaInMemory() throws MtefException {
+        return MtefFastPath.convert(hitBytes.get(nextIndex()));
+    }
+
+    @Benchmark
+    public String javaFromFile() throws MtefException, IOException {
+        return MtefFastPath.convert(Files.readAllBytes(hitPaths.get(nextIndex())));
+    }
+
+    @Benchmark
+    public Mtef2LatexDTO nativeConvert() {
+        return MathTypeToLatexUtil.convertLatex(hitPaths.get(nextIndex()).toString());
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.testgraalvm.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 短 downcall 的单次调用开销：默认链接选项 vs {@code Linker.Option.critical}
+ * <p>
+ * strlen 与 MathType2LatexBindings 中的绑定方式相同，只依赖 C 标准库，
+ * 不需要加载转换库：
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="NativeDowncallBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+@State(Scope.Thread)
+public class NativeDowncallBenchmark {
+
+    @Param({"64", "4096"})
+    private int length;
+
+    private Arena arena;
+    private MemorySegment cstr;
+
+    private MethodHandle strlenDefault;
+    private MethodHandle strlenCritical;
+    private MethodHandle mallocDefault;
+    private MethodHandle freeDefault;
+    private MethodHandle freeCritical;
+
+    @Setup
+    public void setup() {
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup libc = linker.defaultLookup();
+        FunctionDescriptor strlen = FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.ADDRESS);
+        FunctionDescriptor free = FunctionDescriptor.ofVoid(ValueLayout.ADDRESS);
+
+        strlenDefault = linker.downcallHandle(libc.find("strlen").orElseThrow(), strlen);
+        strlenCritical = linker.downcallHandle(libc.find("strlen").orElseThrow(), strlen,
+                Linker.Option.critical(false));
+        mallocDefault = linker.downcallHandle(libc.find("malloc").orElseThrow(),
+                FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.JAVA_LONG));
+        freeDefault = linker.downcallHandle(libc.find("free").orElseThrow(), free);
+        freeCritical = linker.downcallHandle(libc.find("free").orElseThrow(), free,
+                Linker.Option.critical(false));
+
+        arena = Arena.ofConfined();
+        cstr = arena.allocate(length + 1);
+        cstr.fill((byte) 'x');
+        cstr.set(ValueLayout.JAVA_BYTE, length, (byte) 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        arena.close();
+    }
+
+    @Benchmark
+    public long strlenDefault() throws Throwable {
+        return (long) strlenDefault.invokeExact(cstr);
+    }
+
+    @Benchmark
+    public long strlenCritical() throws Throwable {
+        return (long) strlenCritical.invokeExact(cstr);
+    }
+
+    /**
+     * malloc 两种情况相同，差值即 free 的开销差
+     */
+    @Benchmark
+    public void mallocFreeDefault() throws Throwable {
+        MemorySegment p = (MemorySegment) mallocDefault.invokeExact((long) length);
+        freeDefault.invokeExact(p);
+    }
+
+    @Benchmark
+    public void mallocFreeCritical() throws Throwable {
+        MemorySegment p = (MemorySegment) mallocDefault.invokeExact((long) length);
+        freeCritical.invokeExact(p);
+    }
+}
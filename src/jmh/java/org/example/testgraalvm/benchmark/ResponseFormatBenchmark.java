@@ -0,0 +1,100 @@
+package org.example.testgraalvm.benchmark;
+
+import org.example.testgraalvm.controller.response.ConversionResponse;
+import org.example.testgraalvm.controller.response.ConversionResponseSerializer;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 批量转换响应在 JSON / CBOR / Smile 下的编码、解码开销与传输字节数，可叠加 gzip
+ * <p>
+ * 每组参数开始时打印一次编码后的字节数（bytes on wire）：
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="ResponseFormatBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    @Param({"100", "1000"})
+    private int batchSize;
+
+    private ObjectMapper mapper;
+    private ConversionResponse.Batch response;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = switch (format) {
+            case "json" -> JsonMapper.builder().addModule(ConversionResponseSerializer.module()).build();
+            case "cbor" -> CBORMapper.builder().addModule(ConversionResponseSerializer.module()).build();
+            case "smile" -> SmileMapper.builder().addModule(ConversionResponseSerializer.module()).build();
+            default -> throw new IllegalArgumentException(format);
+        };
+        List<String> fileNames = new ArrayList<>(batchSize);
+        List<Mtef2LatexDTO> results = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            fileNames.add("oleObject" + i + ".bin");
+            results.add(i % 10 == 0
+                    ? Mtef2LatexDTO.error("转换失败: 无效的 MTEF 数据")
+                    : Mtef2LatexDTO.success("\\frac{a_{" + i + "}}{b^{2}}+\\sqrt{x_{" + (i * 31 % 97) + "}}"));
+        }
+        response = new ConversionResponse.Batch(fileNames, results);
+        encoded = encode();
+        System.out.printf(Locale.ROOT, "%n[%s gzip=%s batch=%d] %d bytes on wire%n",
+                format, gzip, batchSize, encoded.length);
+    }
+
+    /**
+     * 服务端：序列化（并压缩）整批结果
+     */
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(8192);
+        if (gzip) {
+            try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+                mapper.writeValue(out, response);
+            }
+        } else {
+            mapper.writeValue(buffer, response);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 调用方：（解压并）解析整批结果
+     */
+    @Benchmark
+    public JsonNode decode() throws IOException {
+        try (InputStream in = gzip
+                ? new GZIPInputStream(new ByteArrayInputStream(encoded))
+                : new ByteArrayInputStream(encoded)) {
+            return mapper.readTree(in);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.testgraalvm.benchmark;
+
+import org.example.testgraalvm.panama.MathType2LatexBindings;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 经 {@link MathType2LatexBindings} 调用 Convert + FreeCStr 的单次开销：默认链接选项 vs {@code Linker.Option.critical}
+ * <p>
+ * 针对 native/stub 构建的桩库，它不读输入文件，只按 MATHTYPE_STUB_OUTPUT_BYTES 返回固定长度的结果，
+ * 因此测得的是 downcall 本身与结果分配/释放的开销。critical 的 FreeCStr 只在桩库上可用，
+ * 真实库的 FreeCStr 会进入 Go 运行时，不能以 critical 调用：
+ * mvn -Pbenchmark compile exec:exec -Djmh.args="StubConvertDowncallBenchmark \
+ *     -jvmArgsAppend '-Dmathtype.lib.path=native/stub/build/libmathtype2latex_stub.so'"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-native-access=ALL-UNNAMED")
+@State(Scope.Thread)
+public class StubConvertDowncallBenchmark {
+
+    private Arena arena;
+    private MemorySegment filePath;
+
+    private MathType2LatexBindings bindings;
+    private MethodHandle convertCritical;
+    private MethodHandle freeCStrCritical;
+
+    @Setup
+    public void setup() {
+        String library = System.getProperty("mathtype.lib.path");
+        if (library == null) {
+            throw new IllegalStateException("-Dmathtype.lib.path=/path/to/libmathtype2latex_stub.so is required");
+        }
+        arena = Arena.ofShared();
+        Linker linker = Linker.nativeLinker();
+        bindings = new MathType2LatexBindings(SymbolLookup.libraryLookup(Path.of(library), arena), linker);
+        convertCritical = linker.downcallHandle(bindings.Convert$address(),
+                MathType2LatexBindings.CONVERT.descriptor(), Linker.Option.critical(false));
+        freeCStrCritical = linker.downcallHandle(bindings.FreeCStr$address(),
+                MathType2LatexBindings.FREE_CSTR.descriptor(), Linker.Option.critical(false));
+        filePath = arena.allocateFrom("/tmp/equation.bin");
+    }
+
+    @TearDown
+    public void tearDown() {
+        arena.close();
+    }
+
+    /**
+     * 与线上相同：两个调用都走生成的绑定
+     */
+    @Benchmark
+    public void convertFreeDefault() {
+        MemorySegment result = bindings.Convert(filePath);
+        bindings.FreeCStr(result);
+    }
+
+    /**
+     * Convert 相同，与 convertFreeDefault 的差值即 FreeCStr 的开销差
+     */
+    @Benchmark
+    public void convertFreeCStrCritical() throws Throwable {
+        MemorySegment result = bindings.Convert(filePath);
+        freeCStrCritical.invokeExact(result);
+    }
+
+    @Benchmark
+    public void convertFreeCritical() throws Throwable {
+        MemorySegment result = (MemorySegment) convertCritical.invokeExact(filePath);
+        freeCStrCritical.invokeExact(result);
+    }
+}
@@ -1,12 +1,24 @@
 package org.example.testgraalvm;
 
+import org.example.testgraalvm.bulk.BulkConvertCommand;
+import org.example.testgraalvm.mtef.MtefDiffCommand;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.Arrays;
+
 @SpringBootApplication
 public class TestGraalvmApplication {
 
     public static void main(String[] args) {
+        // 批量回填命令行，不启动 Spring：java -jar test-graalvm.jar bulk --input DIR --output FILE
+        if (args.length > 0 && args[0].equals("bulk")) {
+            System.exit(BulkConvertCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        // Java 快速路径与本地库的差分核对：java -jar test-graalvm.jar mtef-diff --input DIR
+        if (args.length > 0 && args[0].equals("mtef-diff")) {
+            System.exit(MtefDiffCommand.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
         SpringApplication.run(TestGraalvmApplication.class, args);
     }
 
@@ -0,0 +1,164 @@
+package org.example.testgraalvm.aot;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * AOT 缓存训练运行（JDK 25，JEP 483/514）
+ * <p>
+ * 以 -XX:AOTCacheOutput 启动并开启 mathtype.aot-training.enabled 时，应用就绪后通过 HTTP
+ * 跑一遍有代表性的负载（单文件 / 批量 / NDJSON 转换、Demo CRUD），随后正常退出；
+ * JVM 退出时把训练中加载、链接的类和方法画像写入 AOT 缓存。见 pom.xml 中的 aot-cache profile。
+ */
+@Component
+@ConditionalOnProperty(prefix = "mathtype.aot-training", name = "enabled", havingValue = "true")
+public class AotTrainingRunner implements ApplicationRunner {
+
+    private static final Logger log = Logger.getLogger(AotTrainingRunner.class.getName());
+    // 随应用打包的 MTEF v5 公式对象，能通过上传预检，训练覆盖预检、快速路径和本地库调用
+    private static final String BUNDLED_SAMPLES = "/aot-training/";
+    private static final List<String> BUNDLED_SAMPLE_NAMES = List.of(
+            "frac.bin", "greek.bin", "integral.bin", "matrix.bin", "nthroot.bin", "sqrt.bin", "subsup.bin", "text.bin");
+
+    private final ConfigurableApplicationContext context;
+    private final Environment environment;
+    private final int rounds;
+    private final String samplesDir;
+
+    public AotTrainingRunner(ConfigurableApplicationContext context,
+                             Environment environment,
+                             @Value("${mathtype.aot-training.rounds:30}") int rounds,
+                             @Value("${mathtype.aot-training.samples-dir:}") String samplesDir) {
+        this.context = context;
+        this.environment = environment;
+        this.rounds = Math.max(1, rounds);
+        this.samplesDir = samplesDir;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String baseUrl = "http://localhost:" + environment.getRequiredProperty("local.server.port");
+        HttpClient client = HttpClient.newHttpClient();
+        List<Sample> samples = loadSamples();
+        // conversion-only 部署没有 /api/demo
+        boolean persistenceEnabled = environment.getProperty("mathtype.persistence.enabled", Boolean.class, true);
+
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            get(client, baseUrl + "/api/mathtype/status");
+            post(client, baseUrl + "/api/mathtype/convert", multipart("file", samples.subList(0, 1)));
+            post(client, baseUrl + "/api/mathtype/convert-batch", multipart("files", samples));
+            post(client, baseUrl + "/api/mathtype/convert-batch-ndjson", multipart("files", samples));
+            if (persistenceEnabled) {
+                demoCrud(client, baseUrl + "/api/demo", round);
+            }
+        }
+        log.info("AOT training workload finished: " + rounds + " rounds in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        // 正常退出，JVM 关闭时写出 AOT 缓存
+        System.exit(SpringApplication.exit(context));
+    }
+
+    private void demoCrud(HttpClient client, String demoUrl, int round) throws IOException, InterruptedException {
+        String created = send(client, HttpRequest.newBuilder(URI.create(demoUrl))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"aot-training-" + round + "\"}")));
+        String id = created.replaceAll("(?s).*\"id\"\\s*:\\s*(\\d+).*", "$1");
+        get(client, demoUrl);
+        get(client, demoUrl + "/" + id);
+        get(client, demoUrl + "/search?name=aot");
+        send(client, HttpRequest.newBuilder(URI.create(demoUrl + "/" + id))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"name\":\"aot-training-" + round + "-updated\"}")));
+        send(client, HttpRequest.newBuilder(URI.create(demoUrl + "/" + id)).DELETE());
+    }
+
+    private record Sample(String filename, byte[] content) {
+    }
+
+    private record Multipart(String contentType, byte[] body) {
+    }
+
+    /**
+     * 训练样本：samples-dir 下的 .bin 文件（最多 8 个），未配置时使用随应用打包的公式对象
+     */
+    private List<Sample> loadSamples() throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        if (!samplesDir.isBlank()) {
+            try (Stream<Path> files = Files.list(Path.of(samplesDir))) {
+                for (Path file : files.filter(f -> f.toString().endsWith(".bin")).sorted().limit(8).toList()) {
+                    samples.add(new Sample(file.getFileName().toString(), Files.readAllBytes(file)));
+                }
+            }
+        }
+        if (samples.isEmpty()) {
+            for (String name : BUNDLED_SAMPLE_NAMES) {
+                try (InputStream in = AotTrainingRunner.class.getResourceAsStream(BUNDLED_SAMPLES + name)) {
+                    if (in == null) {
+                        throw new IOException("Missing AOT training sample " + BUNDLED_SAMPLES + name);
+                    }
+                    samples.add(new Sample(name, in.readAllBytes()));
+                }
+            }
+        }
+        return samples;
+    }
+
+    private static Multipart multipart(String field, List<Sample> samples) {
+        String boundary = "aot-" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Sample sample : samples) {
+            body.writeBytes(("--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"" + field + "\"; filename=\"" + sample.filename() + "\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            body.writeBytes(sample.content());
+            body.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        body.writeBytes(("--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return new Multipart("multipart/form-data; boundary=" + boundary, body.toByteArray());
+    }
+
+    private static void get(HttpClient client, String url) throws IOException, InterruptedException {
+        send(client, HttpRequest.newBuilder(URI.create(url)).GET());
+    }
+
+    private static void post(HttpClient client, String url, Multipart multipart)
+            throws IOException, InterruptedException {
+        send(client, HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", multipart.contentType())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart.body())));
+    }
+
+    private static String send(HttpClient client, HttpRequest.Builder request)
+            throws IOException, InterruptedException {
+        HttpRequest built = request.build();
+        HttpResponse<String> response = client.send(built, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 400) {
+            log.warning(built.method() + " " + built.uri() + " -> " + response.statusCode());
+        }
+        return response.body();
+    }
+}
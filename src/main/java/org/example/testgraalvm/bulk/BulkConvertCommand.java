@@ -0,0 +1,248 @@
+package org.example.testgraalvm.bulk;
+
+import org.example.testgraalvm.panama.ConversionDispatcher;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量回填命令行：遍历目录树中的 .bin 文件，转换后写入 NDJSON 或 SQLite，支持断点续跑
+ * <p>
+ * 用法（不启动 Spring，JVM 与原生镜像均可）：
+ * <pre>
+ * java -jar test-graalvm.jar bulk --input /archive/ole --output results.ndjson \
+ *     [--format ndjson|sqlite] [--batch-size 256] [--parallelism N] [--suffix .bin] \
+ *     [--report-interval 10s] [--lib /path/to/lib.so] [--restart]
+ * </pre>
+ * 文件按 {@link SortedFileWalker} 的确定顺序惰性遍历，凑满 batch-size 个组成子批次，
+ * 由 parallelism 个线程各自调用本地库转换（调度器并行度设为 1，子批次不再二次拆分）。
+ * 结果按遍历顺序提交到输出，每批提交同时推进断点；同时在转换中的批次数有上限，内存占用与目录规模无关。
+ * 崩溃或中断后以相同参数重新运行，从最后一个已提交的文件之后继续；--restart 丢弃已有输出和断点。
+ * 退出码：0 完成（单个文件转换失败记录在输出中，不影响退出码），1 运行错误，2 参数错误。
+ */
+public final class BulkConvertCommand {
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * 一个子批次：相对路径与转换结果
+     */
+    private record Batch(List<String> paths, CompletableFuture<List<Mtef2LatexDTO>> results) {
+    }
+
+    private final Path input;
+    private final Path output;
+    private final boolean sqlite;
+    private final int batchSize;
+    private final int parallelism;
+    private final String suffix;
+    private final Duration reportInterval;
+    private final String libPath;
+    private final boolean restart;
+
+    private final AtomicLong committedFiles = new AtomicLong();
+    private final AtomicLong committedFailures = new AtomicLong();
+
+    private BulkConvertCommand(Map<String, String> options) {
+        this.input = Path.of(required(options, "input"));
+        this.output = Path.of(required(options, "output"));
+        String name = output.getFileName().toString().toLowerCase(Locale.ROOT);
+        String format = options.getOrDefault("format",
+                name.endsWith(".db") || name.endsWith(".sqlite") ? "sqlite" : "ndjson");
+        if (!format.equals("ndjson") && !format.equals("sqlite")) {
+            throw new IllegalArgumentException("Unknown format: " + format + " (ndjson, sqlite)");
+        }
+        this.sqlite = format.equals("sqlite");
+        this.batchSize = Math.max(1, Integer.parseInt(options.getOrDefault("batch-size",
+                Integer.toString(DEFAULT_BATCH_SIZE))));
+        this.parallelism = Math.max(1, Integer.parseInt(options.getOrDefault("parallelism",
+                Integer.toString(Runtime.getRuntime().availableProcessors()))));
+        this.suffix = options.getOrDefault("suffix", ".bin");
+        // 以秒为单位，可带 s 后缀
+        this.reportInterval = Duration.ofSeconds(Math.max(1, Long.parseLong(
+                options.getOrDefault("report-interval", "10").replaceFirst("s$", ""))));
+        this.libPath = options.get("lib");
+        this.restart = options.containsKey("restart");
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * 执行命令并返回退出码
+     */
+    public static int run(String[] args) {
+        BulkConvertCommand command;
+        try {
+            command = new BulkConvertCommand(parseOptions(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: bulk --input DIR --output FILE [--format ndjson|sqlite] [--batch-size N]"
+                    + " [--parallelism N] [--suffix .bin] [--report-interval 10s] [--lib PATH] [--restart]");
+            return 2;
+        }
+        try {
+            return command.execute();
+        } catch (IOException e) {
+            System.err.println("bulk conversion failed: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    private int execute() throws IOException, InterruptedException {
+        if (!Files.isDirectory(input)) {
+            System.err.println("Input is not a directory: " + input);
+            return 2;
+        }
+        if (libPath != null) {
+            MathTypeToLatexUtil.initFromPath(Path.of(libPath));
+        }
+        if (!MathTypeToLatexUtil.isAvailable()) {
+            System.err.println("MathType2Latex library is not available");
+            return 1;
+        }
+        // 并行由本命令按子批次完成，调度器只负责为每个子批次选择本地库入口
+        ConversionDispatcher.Settings defaults = ConversionDispatcher.Settings.defaults();
+        MathTypeToLatexUtil.configureDispatcher(new ConversionDispatcher.Settings(defaults.strategy(),
+                0, defaults.maxSubBatchSize(), 1, defaults.convertMaxBatch(),
+                defaults.exploreRate(), defaults.alpha()));
+
+        try (ResultSink sink = sqlite ? new SqliteResultSink(output, restart) : new NdjsonResultSink(output, restart)) {
+            ResultSink.Checkpoint checkpoint = sink.checkpoint();
+            if (checkpoint.lastPath() != null) {
+                System.err.printf(Locale.ROOT, "Resuming after %s (%,d files, %,d failures already committed)%n",
+                        checkpoint.lastPath(), checkpoint.files(), checkpoint.failures());
+            }
+            return convertAll(sink, checkpoint);
+        }
+    }
+
+    private int convertAll(ResultSink sink, ResultSink.Checkpoint resume) throws IOException, InterruptedException {
+        SortedFileWalker walker = new SortedFileWalker(input, suffix, resume.lastPath());
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("mathtype-bulk-", 0).daemon().factory());
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("mathtype-bulk-progress").daemon().factory());
+        long start = System.nanoTime();
+        long[] lastReport = {start, 0};
+        reporter.scheduleAtFixedRate(() -> lastReport[1] = report(start, lastReport),
+                reportInterval.toMillis(), reportInterval.toMillis(), TimeUnit.MILLISECONDS);
+
+        ResultSink.Checkpoint checkpoint = resume;
+        Deque<Batch> pending = new ArrayDeque<>();
+        int maxPending = parallelism * 2;
+        try {
+            while (walker.hasNext()) {
+                List<String> paths = new ArrayList<>(batchSize);
+                List<String> absolutePaths = new ArrayList<>(batchSize);
+                while (paths.size() < batchSize && walker.hasNext()) {
+                    Path file = walker.next();
+                    paths.add(walker.relativize(file));
+                    absolutePaths.add(file.toAbsolutePath().toString());
+                }
+                pending.add(new Batch(paths, CompletableFuture.supplyAsync(() -> convert(absolutePaths), workers)));
+                // 按遍历顺序提交，转换中的批次数达到上限时先提交最早的一批
+                if (pending.size() >= maxPending) {
+                    checkpoint = commit(sink, pending.poll(), checkpoint);
+                }
+            }
+            while (!pending.isEmpty()) {
+                checkpoint = commit(sink, pending.poll(), checkpoint);
+            }
+        } finally {
+            reporter.shutdownNow();
+            workers.shutdownNow();
+        }
+
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        System.err.printf(Locale.ROOT, "Done: %,d files in %.1fs (%.1f files/s), %,d failures; %,d files in total%n",
+                committedFiles.get(), seconds, committedFiles.get() / seconds, committedFailures.get(),
+                checkpoint.files());
+        return 0;
+    }
+
+    private ResultSink.Checkpoint commit(ResultSink sink, Batch batch, ResultSink.Checkpoint previous)
+            throws IOException {
+        List<Mtef2LatexDTO> results = batch.results().join();
+        long failures = results.stream().filter(r -> r.getCode() != Mtef2LatexDTO.SUCCESS_CODE).count();
+        ResultSink.Checkpoint next = new ResultSink.Checkpoint(batch.paths().getLast(),
+                previous.files() + results.size(), previous.failures() + failures);
+        sink.commit(batch.paths(), results, next);
+        committedFiles.addAndGet(results.size());
+        committedFailures.addAndGet(failures);
+        return next;
+    }
+
+    /**
+     * 转换一个子批次；库返回的结果数量不符时（整批失败）补齐为错误，保证与输入一一对应
+     */
+    private static List<Mtef2LatexDTO> convert(List<String> absolutePaths) {
+        List<Mtef2LatexDTO> results = new ArrayList<>(MathTypeToLatexUtil.convertLatexList(absolutePaths));
+        if (results.size() != absolutePaths.size()) {
+            results.clear();
+            for (int i = 0; i < absolutePaths.size(); i++) {
+                results.add(Mtef2LatexDTO.error("转换失败: 批量转换未返回结果"));
+            }
+        }
+        return results;
+    }
+
+    private long report(long start, long[] lastReport) {
+        long now = System.nanoTime();
+        long files = committedFiles.get();
+        double total = Math.max(1e-9, (now - start) / 1e9);
+        double recent = Math.max(1e-9, (now - lastReport[0]) / 1e9);
+        System.err.printf(Locale.ROOT, "%,d files, %.1f files/s (%.1f files/s recent), %,d failures%n",
+                files, files / total, (files - lastReport[1]) / recent, committedFailures.get());
+        lastReport[0] = now;
+        return files;
+    }
+
+    private static String required(Map<String, String> options, String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing --" + name);
+        }
+        return value;
+    }
+
+    /**
+     * 解析 --name value 形式的参数；不带值的参数视为开关
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                options.put(name, "true");
+            }
+        }
+        return options;
+    }
+}
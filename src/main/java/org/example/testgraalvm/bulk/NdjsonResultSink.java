@@ -0,0 +1,121 @@
+package org.example.testgraalvm.bulk;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.json.JsonFactory;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * NDJSON 输出：每个文件一行 {"path":..,"success":..,"code":..,"latex":..}
+ * <p>
+ * 断点写在旁边的 .checkpoint 文件中，除路径和计数外还记录输出文件已提交的长度。
+ * 提交时先追加结果并 fsync，再原子替换断点文件；续跑时把输出截断到断点记录的长度，
+ * 丢弃崩溃前写了一半或写完但未记入断点的行。重新开始时先删除断点文件再清空输出，
+ * 这样清空后、第一次提交前崩溃也不会按旧断点续跑。
+ */
+final class NdjsonResultSink implements ResultSink {
+
+    // 多个顶层对象之间不插入默认的空格分隔符，由每行末尾的换行分隔
+    private final JsonMapper mapper = JsonMapper.builder(
+            JsonFactory.builder().rootValueSeparator((String) null).build()).build();
+    private final Path checkpointFile;
+    private final FileChannel channel;
+    private final Checkpoint checkpoint;
+
+    NdjsonResultSink(Path output, boolean restart) throws IOException {
+        this.checkpointFile = output.resolveSibling(output.getFileName() + ".checkpoint");
+        if (restart) {
+            Files.deleteIfExists(checkpointFile);
+        }
+        this.channel = FileChannel.open(output,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long offset = 0;
+        Checkpoint loaded = Checkpoint.EMPTY;
+        if (!restart && Files.exists(checkpointFile)) {
+            Properties props = new Properties();
+            try (Reader reader = Files.newBufferedReader(checkpointFile, StandardCharsets.UTF_8)) {
+                props.load(reader);
+            }
+            offset = Long.parseLong(props.getProperty("offset"));
+            loaded = new Checkpoint(props.getProperty("lastPath"),
+                    Long.parseLong(props.getProperty("files")),
+                    Long.parseLong(props.getProperty("failures")));
+            if (offset > channel.size()) {
+                channel.close();
+                throw new IOException(checkpointFile + " points past the end of " + output
+                        + "; the output does not belong to this checkpoint, pass --restart");
+            }
+        } else if (!restart && channel.size() > 0) {
+            channel.close();
+            throw new IOException(output + " already exists without a checkpoint; delete it or pass --restart");
+        }
+        channel.truncate(offset);
+        channel.position(offset);
+        this.checkpoint = loaded;
+    }
+
+    @Override
+    public Checkpoint checkpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    public void commit(List<String> paths, List<Mtef2LatexDTO> results, Checkpoint next) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(paths.size() * 128);
+        try (JsonGenerator gen = mapper.createGenerator(buffer)) {
+            for (int i = 0; i < paths.size(); i++) {
+                Mtef2LatexDTO dto = results.get(i);
+                gen.writeStartObject();
+                gen.writeStringProperty("path", paths.get(i));
+                gen.writeBooleanProperty("success", dto.getCode() == Mtef2LatexDTO.SUCCESS_CODE);
+                gen.writeNumberProperty("code", dto.getCode());
+                gen.writeStringProperty("latex", dto.getResLatex());
+                gen.writeEndObject();
+                gen.writeRaw('\n');
+            }
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        writeCheckpoint(channel.position(), next);
+    }
+
+    private void writeCheckpoint(long offset, Checkpoint next) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("offset", Long.toString(offset));
+        props.setProperty("lastPath", next.lastPath());
+        props.setProperty("files", Long.toString(next.files()));
+        props.setProperty("failures", Long.toString(next.failures()));
+        StringWriter text = new StringWriter();
+        props.store(text, null);
+        Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(StandardCharsets.UTF_8.encode(text.toString()));
+            out.force(true);
+        }
+        Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.testgraalvm.bulk;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 批量转换结果的输出，同时负责断点
+ * 每次 {@link #commit} 写入一批结果并推进断点，二者要么都生效要么都不生效，崩溃后从断点续跑不会重复输出
+ */
+interface ResultSink extends AutoCloseable {
+
+    /**
+     * 断点：最后一个已提交文件的相对路径与累计计数
+     *
+     * @param lastPath 最后一个已提交文件，null 表示尚未提交过
+     * @param files    已提交的文件数
+     * @param failures 其中转换失败的文件数
+     */
+    record Checkpoint(String lastPath, long files, long failures) {
+
+        static final Checkpoint EMPTY = new Checkpoint(null, 0, 0);
+    }
+
+    /**
+     * 打开输出时读到的断点（重新开始时为 {@link Checkpoint#EMPTY}）
+     */
+    Checkpoint checkpoint();
+
+    /**
+     * 按遍历顺序提交一批结果
+     *
+     * @param paths      相对路径
+     * @param results    转换结果，与 paths 一一对应
+     * @param checkpoint 提交后的断点
+     */
+    void commit(List<String> paths, List<Mtef2LatexDTO> results, Checkpoint checkpoint) throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
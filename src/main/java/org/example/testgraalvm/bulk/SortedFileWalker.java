@@ -0,0 +1,122 @@
+package org.example.testgraalvm.bulk;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.logging.Logger;
+
+/**
+ * 按确定顺序惰性遍历目录树（非线程安全）
+ * <p>
+ * 每个目录只在进入时读取一次并按文件名排序，整体顺序为逐级按名称的深度优先顺序，
+ * 同一棵未改动的目录树每次遍历顺序相同，因此断点只需记录最后一个已提交文件的相对路径。
+ * 从断点恢复时，不大于断点的同级条目（包括整棵子目录）直接跳过，不再列出。
+ * 不跟随符号链接；无法读取的目录记录警告后跳过。
+ */
+final class SortedFileWalker implements Iterator<Path> {
+
+    private static final Logger log = Logger.getLogger(SortedFileWalker.class.getName());
+
+    /**
+     * 一层目录：排好序的条目和该层在断点路径上的位置（-1 表示已离开断点路径）
+     */
+    private record Frame(Iterator<Path> entries, int resumeDepth) {
+    }
+
+    private final Path root;
+    private final String suffix;
+    private final List<String> resumeAfter;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private Path next;
+
+    /**
+     * @param root        根目录
+     * @param suffix      文件后缀（忽略大小写），例如 .bin
+     * @param resumeAfter 断点：最后一个已处理文件相对 root 的路径（/ 分隔），null 表示从头开始
+     */
+    SortedFileWalker(Path root, String suffix, String resumeAfter) {
+        this.root = root;
+        this.suffix = suffix.toLowerCase(Locale.ROOT);
+        this.resumeAfter = resumeAfter == null || resumeAfter.isEmpty()
+                ? List.of() : List.of(resumeAfter.split("/"));
+        push(root, this.resumeAfter.isEmpty() ? -1 : 0);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && !stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (!frame.entries().hasNext()) {
+                stack.pop();
+                continue;
+            }
+            Path entry = frame.entries().next();
+            String name = entry.getFileName().toString();
+            int depth = frame.resumeDepth();
+            boolean onResumePath = false;
+            if (depth >= 0) {
+                int cmp = name.compareTo(resumeAfter.get(depth));
+                if (cmp < 0) {
+                    continue;
+                }
+                onResumePath = cmp == 0;
+            }
+            if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                // 断点路径上的目录继续按断点过滤，之后的目录全部列出
+                push(entry, onResumePath && depth + 1 < resumeAfter.size() ? depth + 1 : -1);
+            } else if (!onResumePath && Files.isRegularFile(entry, LinkOption.NOFOLLOW_LINKS)
+                    && name.toLowerCase(Locale.ROOT).endsWith(suffix)) {
+                next = entry;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Path next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Path result = next;
+        next = null;
+        return result;
+    }
+
+    /**
+     * 文件相对根目录的路径，统一用 / 分隔（断点与输出中使用）
+     */
+    String relativize(Path file) {
+        Path relative = root.relativize(file);
+        StringBuilder sb = new StringBuilder();
+        for (Path part : relative) {
+            if (!sb.isEmpty()) {
+                sb.append('/');
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    private void push(Path dir, int resumeDepth) {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+            }
+        } catch (IOException e) {
+            log.warning("Skipping unreadable directory " + dir + ": " + e.getMessage());
+            return;
+        }
+        entries.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+        stack.push(new Frame(entries.iterator(), resumeDepth));
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.testgraalvm.bulk;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * SQLite 输出：结果表 bulk_result（按相对路径去重）与单行断点表 bulk_checkpoint
+ * 每批结果和断点在同一个事务中提交
+ */
+final class SqliteResultSink implements ResultSink {
+
+    private final Connection connection;
+    private final PreparedStatement insert;
+    private final PreparedStatement updateCheckpoint;
+    private final Checkpoint checkpoint;
+
+    SqliteResultSink(Path output, boolean restart) throws IOException {
+        try {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + output.toAbsolutePath());
+            try (Statement st = connection.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL");
+                st.execute("PRAGMA synchronous=NORMAL");
+                st.execute("CREATE TABLE IF NOT EXISTS bulk_result ("
+                        + "path TEXT PRIMARY KEY, success INTEGER NOT NULL, code INTEGER NOT NULL, latex TEXT)");
+                st.execute("CREATE TABLE IF NOT EXISTS bulk_checkpoint ("
+                        + "id INTEGER PRIMARY KEY CHECK (id = 1), last_path TEXT, files INTEGER, failures INTEGER)");
+                if (restart) {
+                    st.execute("DELETE FROM bulk_result");
+                    st.execute("DELETE FROM bulk_checkpoint");
+                }
+            }
+            checkpoint = readCheckpoint();
+            connection.setAutoCommit(false);
+            insert = connection.prepareStatement(
+                    "INSERT OR REPLACE INTO bulk_result (path, success, code, latex) VALUES (?, ?, ?, ?)");
+            updateCheckpoint = connection.prepareStatement(
+                    "INSERT OR REPLACE INTO bulk_checkpoint (id, last_path, files, failures) VALUES (1, ?, ?, ?)");
+        } catch (SQLException e) {
+            throw new IOException("Failed to open " + output + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Checkpoint readCheckpoint() throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT last_path, files, failures FROM bulk_checkpoint WHERE id = 1")) {
+            return rs.next() ? new Checkpoint(rs.getString(1), rs.getLong(2), rs.getLong(3)) : Checkpoint.EMPTY;
+        }
+    }
+
+    @Override
+    public Checkpoint checkpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    public void commit(List<String> paths, List<Mtef2LatexDTO> results, Checkpoint next) throws IOException {
+        try {
+            for (int i = 0; i < paths.size(); i++) {
+                Mtef2LatexDTO dto = results.get(i);
+                insert.setString(1, paths.get(i));
+                insert.setInt(2, dto.getCode() == Mtef2LatexDTO.SUCCESS_CODE ? 1 : 0);
+                insert.setInt(3, dto.getCode());
+                insert.setString(4, dto.getResLatex());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+            updateCheckpoint.setString(1, next.lastPath());
+            updateCheckpoint.setLong(2, next.files());
+            updateCheckpoint.setLong(3, next.failures());
+            updateCheckpoint.executeUpdate();
+            connection.commit();
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+            }
+            throw new IOException("Failed to commit results: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+}
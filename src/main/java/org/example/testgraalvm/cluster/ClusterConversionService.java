@@ -0,0 +1,359 @@
+package org.example.testgraalvm.cluster;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 集群模式的分布式转换服务
+ * <p>
+ * 发起节点把批量文件按块发布到任务流，任意节点的 worker 通过消费组领取并在本地转换，
+ * 结果写回发起节点专属的结果流后聚合。崩溃节点未确认的任务在空闲超时后由其他节点认领；
+ * 投递次数超过 max-deliveries 的任务（例如每次都让 worker 崩溃的输入）不再处理，以错误结果回复发起节点后确认。
+ */
+public class ClusterConversionService implements SmartLifecycle {
+
+    private static final Logger log = Logger.getLogger(ClusterConversionService.class.getName());
+
+    // 阻塞读取的最长等待时间，决定停止时的响应速度
+    private static final Duration READ_BLOCK = Duration.ofSeconds(2);
+    private static final int RESULT_READ_COUNT = 100;
+    // 每次 XPENDING 扫描的条数
+    private static final int RECLAIM_PAGE_SIZE = 100;
+
+    /**
+     * 本节点的实际转换逻辑（缓存 + 本地库）
+     */
+    @FunctionalInterface
+    public interface LocalConverter {
+        List<Mtef2LatexDTO> convert(List<Path> binFiles) throws IOException;
+    }
+
+    private static final class PendingRequest {
+        final Mtef2LatexDTO[] results;
+        final Set<Integer> receivedOffsets = ConcurrentHashMap.newKeySet();
+        final CountDownLatch remaining;
+
+        PendingRequest(int size, int chunks) {
+            this.results = new Mtef2LatexDTO[size];
+            this.remaining = new CountDownLatch(chunks);
+        }
+    }
+
+    private final ConversionTaskQueue queue;
+    private final LocalConverter localConverter;
+    private final String nodeId;
+    private final String resultStream;
+    private final int workers;
+    private final int chunkSize;
+    private final int minBatchSize;
+    private final Duration requestTimeout;
+    private final Duration reclaimIdle;
+    private final int maxDeliveries;
+
+    private final Map<String, PendingRequest> inFlight = new ConcurrentHashMap<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    public ClusterConversionService(ConversionTaskQueue queue, LocalConverter localConverter, String nodeId,
+                                    String resultStreamPrefix, int workers, int chunkSize, int minBatchSize,
+                                    Duration requestTimeout, Duration reclaimIdle, int maxDeliveries) {
+        this.queue = queue;
+        this.localConverter = localConverter;
+        this.nodeId = nodeId;
+        this.resultStream = resultStreamPrefix + nodeId;
+        this.workers = Math.max(0, workers);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.requestTimeout = requestTimeout;
+        this.reclaimIdle = reclaimIdle;
+        this.maxDeliveries = Math.max(1, maxDeliveries);
+    }
+
+    /**
+     * 批量是否值得分发到集群（小批量直接本地转换更快）
+     */
+    public boolean shouldDistribute(int batchSize) {
+        return running && batchSize >= minBatchSize;
+    }
+
+    /**
+     * 分发批量转换并等待所有块的结果，结果顺序与输入一致
+     * 超时未返回的块以错误结果填充
+     */
+    public List<Mtef2LatexDTO> convertBatch(List<Path> binFiles) throws IOException {
+        if (binFiles.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        String requestId = UUID.randomUUID().toString();
+        int chunks = (binFiles.size() + chunkSize - 1) / chunkSize;
+        PendingRequest request = new PendingRequest(binFiles.size(), chunks);
+        inFlight.put(requestId, request);
+        try {
+            for (int offset = 0; offset < binFiles.size(); offset += chunkSize) {
+                List<Path> chunk = binFiles.subList(offset, Math.min(binFiles.size(), offset + chunkSize));
+                Map<String, String> fields = new HashMap<>();
+                fields.put("requestId", requestId);
+                fields.put("offset", Integer.toString(offset));
+                fields.put("replyTo", resultStream);
+                fields.put("count", Integer.toString(chunk.size()));
+                for (int i = 0; i < chunk.size(); i++) {
+                    fields.put("f" + i, Base64.getEncoder().encodeToString(Files.readAllBytes(chunk.get(i))));
+                }
+                queue.publishTask(fields);
+            }
+
+            if (!request.remaining.await(requestTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warning("Cluster conversion " + requestId + " timed out with "
+                        + request.remaining.getCount() + " chunk(s) outstanding");
+            }
+
+            List<Mtef2LatexDTO> results = new ArrayList<>(binFiles.size());
+            for (Mtef2LatexDTO dto : request.results) {
+                results.add(dto != null ? dto : Mtef2LatexDTO.error("转换失败: 集群转换超时"));
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Cluster conversion interrupted");
+        } finally {
+            inFlight.remove(requestId);
+        }
+    }
+
+    @Override
+    public void start() {
+        queue.ensureGroup();
+        running = true;
+        threads.add(Thread.ofPlatform().name("mathtype-cluster-results").daemon().start(this::resultLoop));
+        for (int i = 0; i < workers; i++) {
+            threads.add(Thread.ofPlatform().name("mathtype-cluster-worker-" + i).daemon().start(this::workerLoop));
+        }
+        if (workers > 0) {
+            threads.add(Thread.ofPlatform().name("mathtype-cluster-reclaim").daemon().start(this::reclaimLoop));
+        }
+        log.info("Cluster conversion started on node " + nodeId + " with " + workers + " worker(s)");
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join(READ_BLOCK.toMillis() * 2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        threads.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 聚合本节点发起的请求的结果
+     */
+    private void resultLoop() {
+        String lastId = "0-0";
+        while (running) {
+            try {
+                List<ConversionTaskQueue.Delivery> deliveries =
+                        queue.readResults(resultStream, lastId, RESULT_READ_COUNT, READ_BLOCK);
+                List<String> ids = new ArrayList<>(deliveries.size());
+                for (ConversionTaskQueue.Delivery delivery : deliveries) {
+                    lastId = delivery.id();
+                    ids.add(delivery.id());
+                    acceptResult(delivery.fields());
+                }
+                queue.deleteResults(resultStream, ids);
+            } catch (RuntimeException e) {
+                pauseAfterFailure("read cluster results", e);
+            }
+        }
+    }
+
+    private void acceptResult(Map<String, String> fields) {
+        PendingRequest request = inFlight.get(fields.get("requestId"));
+        if (request == null) {
+            // 请求已超时或来自本节点重启前
+            return;
+        }
+        int offset = Integer.parseInt(fields.get("offset"));
+        if (!request.receivedOffsets.add(offset)) {
+            // 被认领的任务可能被处理两次
+            return;
+        }
+        int count = Integer.parseInt(fields.get("count"));
+        for (int i = 0; i < count && offset + i < request.results.length; i++) {
+            // j 标记快速路径的结果，发起节点同样不持久化
+            Mtef2LatexDTO dto;
+            if (fields.containsKey("j" + i)) {
+                dto = Mtef2LatexDTO.fastPath(fields.get("l" + i));
+            } else {
+                dto = new Mtef2LatexDTO();
+                dto.setCode(Integer.parseInt(fields.get("c" + i)));
+                dto.setResLatex(fields.get("l" + i));
+            }
+            request.results[offset + i] = dto;
+        }
+        request.remaining.countDown();
+    }
+
+    private void workerLoop() {
+        while (running) {
+            try {
+                for (ConversionTaskQueue.Delivery delivery : queue.readTasks(nodeId, 1, READ_BLOCK)) {
+                    handleTask(delivery);
+                }
+            } catch (RuntimeException e) {
+                pauseAfterFailure("read cluster tasks", e);
+            }
+        }
+    }
+
+    private void reclaimLoop() {
+        while (running) {
+            try {
+                Thread.sleep(Math.max(1, reclaimIdle.toMillis() / 2));
+                reclaimStale();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                pauseAfterFailure("reclaim cluster tasks", e);
+            }
+        }
+    }
+
+    /**
+     * 翻页扫描整个待确认列表，处理或放弃认领到的任务
+     */
+    void reclaimStale() {
+        String from = null;
+        do {
+            ConversionTaskQueue.StalePage page = queue.claimStale(nodeId, reclaimIdle, from, RECLAIM_PAGE_SIZE);
+            for (ConversionTaskQueue.Delivery delivery : page.claimed()) {
+                if (delivery.deliveryCount() > maxDeliveries) {
+                    deadLetter(delivery);
+                } else {
+                    log.info("Reclaimed stale cluster task " + delivery.id()
+                            + " (delivery " + delivery.deliveryCount() + ")");
+                    handleTask(delivery);
+                }
+            }
+            from = page.next();
+        } while (from != null && running);
+    }
+
+    /**
+     * 放弃反复投递仍未确认的任务：以错误结果回复发起节点，使其不必等到超时
+     */
+    private void deadLetter(ConversionTaskQueue.Delivery delivery) {
+        Map<String, String> fields = delivery.fields();
+        log.warning("Giving up cluster task " + delivery.id() + " after " + (delivery.deliveryCount() - 1)
+                + " deliveries (max-deliveries " + maxDeliveries + ")");
+        String replyTo = fields.get("replyTo");
+        int count;
+        try {
+            count = Integer.parseInt(fields.get("count"));
+        } catch (NumberFormatException e) {
+            count = -1;
+        }
+        if (replyTo != null && count >= 0) {
+            List<Mtef2LatexDTO> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(Mtef2LatexDTO.error("转换失败: 任务多次投递均未完成"));
+            }
+            queue.publishResult(replyTo, reply(fields, results, count));
+        }
+        queue.ack(delivery.id());
+    }
+
+    /**
+     * 在本节点转换一个任务块，把结果写回发起节点后确认
+     */
+    void handleTask(ConversionTaskQueue.Delivery delivery) {
+        Map<String, String> fields = delivery.fields();
+        String replyTo = fields.get("replyTo");
+        int count;
+        try {
+            count = Integer.parseInt(fields.get("count"));
+        } catch (NumberFormatException e) {
+            log.warning("Dropping malformed cluster task " + delivery.id());
+            queue.ack(delivery.id());
+            return;
+        }
+
+        List<Path> tempFiles = new ArrayList<>(count);
+        List<Mtef2LatexDTO> results;
+        try {
+            for (int i = 0; i < count; i++) {
+                Path tempFile = Files.createTempFile("mathtype_cluster_", ".bin");
+                tempFiles.add(tempFile);
+                Files.write(tempFile, Base64.getDecoder().decode(fields.get("f" + i)));
+            }
+            results = localConverter.convert(tempFiles);
+        } catch (IOException | IllegalArgumentException e) {
+            results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                results.add(Mtef2LatexDTO.error("文件处理失败: " + e.getMessage()));
+            }
+        } finally {
+            for (Path tempFile : tempFiles) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        queue.publishResult(replyTo, reply(fields, results, count));
+        queue.ack(delivery.id());
+    }
+
+    private static Map<String, String> reply(Map<String, String> task, List<Mtef2LatexDTO> results, int count) {
+        Map<String, String> reply = new HashMap<>();
+        reply.put("requestId", task.get("requestId"));
+        reply.put("offset", task.get("offset"));
+        reply.put("count", Integer.toString(count));
+        for (int i = 0; i < count; i++) {
+            Mtef2LatexDTO dto = i < results.size() ? results.get(i) : Mtef2LatexDTO.error("转换失败: 本地库未返回结果");
+            reply.put("c" + i, Integer.toString(dto.getCode()));
+            reply.put("l" + i, dto.getResLatex() != null ? dto.getResLatex() : "");
+            if (dto.fromFastPath()) {
+                reply.put("j" + i, "1");
+            }
+        }
+        return reply;
+    }
+
+    private void pauseAfterFailure(String action, RuntimeException e) {
+        if (!running) {
+            return;
+        }
+        log.log(Level.WARNING, "Failed to " + action + ": " + e.getMessage(), e);
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
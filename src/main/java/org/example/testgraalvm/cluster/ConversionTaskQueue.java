@@ -0,0 +1,78 @@
+package org.example.testgraalvm.cluster;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 集群转换任务队列抽象（消费组语义）
+ * 生产环境使用 Redis Streams，测试与单机调试使用内存实现
+ */
+public interface ConversionTaskQueue {
+
+    /**
+     * 队列中的一条消息
+     *
+     * @param id            消息 ID
+     * @param fields        消息字段
+     * @param deliveryCount 已投递次数（含本次）；结果流中的消息恒为 1
+     */
+    record Delivery(String id, Map<String, String> fields, long deliveryCount) {
+
+        public Delivery(String id, Map<String, String> fields) {
+            this(id, fields, 1);
+        }
+    }
+
+    /**
+     * 一页认领结果
+     *
+     * @param claimed 本页中空闲超时并已转移给调用方的任务
+     * @param next    下一页的起始 ID（传给下次 {@link #claimStale}），已扫描到末尾时为 null
+     */
+    record StalePage(List<Delivery> claimed, String next) {
+    }
+
+    /**
+     * 创建任务流与消费组（已存在时忽略）
+     */
+    void ensureGroup();
+
+    /**
+     * 发布一个任务
+     */
+    void publishTask(Map<String, String> fields);
+
+    /**
+     * 以消费者身份领取新任务，没有任务时最多阻塞 block
+     */
+    List<Delivery> readTasks(String consumer, int count, Duration block);
+
+    /**
+     * 确认任务已处理完成
+     */
+    void ack(String id);
+
+    /**
+     * 扫描从 from 开始的至多 count 条未确认任务，把其中空闲超过 minIdle 的（例如所属节点已崩溃）转移给 consumer
+     * 调用方沿 {@link StalePage#next()} 翻页直到返回 null，以覆盖整个待确认列表
+     *
+     * @param from 起始 ID（含），null 表示从头开始
+     */
+    StalePage claimStale(String consumer, Duration minIdle, String from, int count);
+
+    /**
+     * 向发起节点的结果流发布结果
+     */
+    void publishResult(String resultStream, Map<String, String> fields);
+
+    /**
+     * 读取结果流中 afterId 之后的结果，没有结果时最多阻塞 block
+     */
+    List<Delivery> readResults(String resultStream, String afterId, int count, Duration block);
+
+    /**
+     * 删除已消费的结果
+     */
+    void deleteResults(String resultStream, List<String> ids);
+}
@@ -0,0 +1,184 @@
+package org.example.testgraalvm.cluster;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 进程内的任务队列实现，模拟 Redis Streams 消费组语义（待确认列表、空闲认领）
+ * 用于单机调试与测试，无需启动 Redis
+ */
+public class InMemoryTaskQueue implements ConversionTaskQueue {
+
+    private record Pending(Delivery delivery, String consumer, long deliveredAtNanos) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private final Deque<Delivery> undelivered = new ArrayDeque<>();
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private final Map<String, List<Delivery>> resultStreams = new HashMap<>();
+    private long sequence;
+
+    @Override
+    public void ensureGroup() {
+        // 内存实现只有一个隐式消费组
+    }
+
+    @Override
+    public void publishTask(Map<String, String> fields) {
+        lock.lock();
+        try {
+            undelivered.addLast(new Delivery(nextId(), Map.copyOf(fields)));
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Delivery> readTasks(String consumer, int count, Duration block) {
+        lock.lock();
+        try {
+            long remaining = block.toNanos();
+            while (undelivered.isEmpty() && remaining > 0) {
+                remaining = changed.awaitNanos(remaining);
+            }
+            List<Delivery> deliveries = new ArrayList<>();
+            long now = System.nanoTime();
+            while (!undelivered.isEmpty() && deliveries.size() < count) {
+                Delivery delivery = undelivered.pollFirst();
+                pending.put(delivery.id(), new Pending(delivery, consumer, now));
+                deliveries.add(delivery);
+            }
+            return deliveries;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void ack(String id) {
+        lock.lock();
+        try {
+            pending.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public StalePage claimStale(String consumer, Duration minIdle, String from, int count) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            List<Delivery> claimed = new ArrayList<>();
+            long start = from == null ? 0 : sequenceOf(from);
+            int scanned = 0;
+            String last = null;
+            for (Map.Entry<String, Pending> entry : pending.entrySet()) {
+                if (sequenceOf(entry.getKey()) < start) {
+                    continue;
+                }
+                if (scanned++ >= count) {
+                    // 还有未扫描的任务
+                    return new StalePage(claimed, (sequenceOf(last) + 1) + "-0");
+                }
+                last = entry.getKey();
+                Pending p = entry.getValue();
+                if (now - p.deliveredAtNanos() >= minIdle.toNanos()) {
+                    Delivery delivery = new Delivery(p.delivery().id(), p.delivery().fields(),
+                            p.delivery().deliveryCount() + 1);
+                    entry.setValue(new Pending(delivery, consumer, now));
+                    claimed.add(delivery);
+                }
+            }
+            return new StalePage(claimed, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void publishResult(String resultStream, Map<String, String> fields) {
+        lock.lock();
+        try {
+            resultStreams.computeIfAbsent(resultStream, k -> new ArrayList<>())
+                    .add(new Delivery(nextId(), Map.copyOf(fields)));
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Delivery> readResults(String resultStream, String afterId, int count, Duration block) {
+        lock.lock();
+        try {
+            long remaining = block.toNanos();
+            List<Delivery> found = after(resultStream, afterId, count);
+            while (found.isEmpty() && remaining > 0) {
+                remaining = changed.awaitNanos(remaining);
+                found = after(resultStream, afterId, count);
+            }
+            return found;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteResults(String resultStream, List<String> ids) {
+        lock.lock();
+        try {
+            List<Delivery> stream = resultStreams.get(resultStream);
+            if (stream != null) {
+                Set<String> remove = new HashSet<>(ids);
+                stream.removeIf(d -> remove.contains(d.id()));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前未确认的任务数量
+     */
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Delivery> after(String resultStream, String afterId, int count) {
+        List<Delivery> stream = resultStreams.getOrDefault(resultStream, List.of());
+        long after = sequenceOf(afterId);
+        List<Delivery> found = new ArrayList<>();
+        for (Delivery delivery : stream) {
+            if (sequenceOf(delivery.id()) > after && found.size() < count) {
+                found.add(delivery);
+            }
+        }
+        return found;
+    }
+
+    private String nextId() {
+        return (++sequence) + "-0";
+    }
+
+    private static long sequenceOf(String id) {
+        int dash = id.indexOf('-');
+        return Long.parseLong(dash < 0 ? id : id.substring(0, dash));
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.testgraalvm.cluster;
+
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * 基于 Redis Streams 消费组的任务队列
+ * 使用现有的 reactive Redis starter；调用方运行在 worker 线程上，因此这里直接 block()
+ */
+public class RedisStreamTaskQueue implements ConversionTaskQueue {
+
+    private static final Logger log = Logger.getLogger(RedisStreamTaskQueue.class.getName());
+
+    // 结果流的近似最大长度，防止发起节点崩溃后结果无限堆积
+    private static final long RESULT_STREAM_MAXLEN = 10_000;
+
+    private final ReactiveStreamOperations<String, String, String> streams;
+    private final String taskStream;
+    private final String group;
+
+    public RedisStreamTaskQueue(ReactiveStringRedisTemplate template, String taskStream, String group) {
+        this.streams = template.opsForStream();
+        this.taskStream = taskStream;
+        this.group = group;
+    }
+
+    @Override
+    public void ensureGroup() {
+        try {
+            streams.createGroup(taskStream, ReadOffset.from("0"), group).block();
+        } catch (RedisSystemException e) {
+            // BUSYGROUP: 消费组已存在
+            log.fine("Consumer group already exists: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void publishTask(Map<String, String> fields) {
+        streams.add(taskStream, fields).block();
+    }
+
+    @Override
+    public List<Delivery> readTasks(String consumer, int count, Duration block) {
+        // read 只有可变参数形式；数组只含一个 StreamOffset<String>，不会有堆污染
+        @SuppressWarnings("unchecked")
+        StreamOffset<String>[] offsets = (StreamOffset<String>[]) new StreamOffset<?>[]{
+                StreamOffset.create(taskStream, ReadOffset.lastConsumed())};
+        List<MapRecord<String, String, String>> records = streams.read(
+                Consumer.from(group, consumer),
+                StreamReadOptions.empty().count(count).block(block),
+                offsets).collectList().block();
+        return toDeliveries(records);
+    }
+
+    @Override
+    public void ack(String id) {
+        streams.acknowledge(taskStream, group, id).block();
+        streams.delete(taskStream, id).block();
+    }
+
+    @Override
+    public StalePage claimStale(String consumer, Duration minIdle, String from, int count) {
+        Range<String> range = from == null ? Range.unbounded() : Range.rightUnbounded(Range.Bound.inclusive(from));
+        PendingMessages pending = streams.pending(taskStream, group, range, count).block();
+        if (pending == null || pending.isEmpty()) {
+            return new StalePage(List.of(), null);
+        }
+
+        List<RecordId> stale = new ArrayList<>();
+        Map<String, Long> deliveryCounts = new HashMap<>();
+        RecordId last = null;
+        for (PendingMessage message : pending) {
+            last = message.getId();
+            if (message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+                stale.add(message.getId());
+                // XCLAIM 会再计一次投递
+                deliveryCounts.put(message.getIdAsString(), message.getTotalDeliveryCount() + 1);
+            }
+        }
+        // 本页已满时从最后一条的下一个 ID 继续（兼容不支持排他区间的 Redis 版本）
+        String next = pending.size() < count ? null
+                : last.getTimestamp() + "-" + (last.getSequence() + 1);
+        if (stale.isEmpty()) {
+            return new StalePage(List.of(), next);
+        }
+
+        // XCLAIM 自带 min-idle 校验，其他节点同时认领时只有一个会成功
+        List<MapRecord<String, String, String>> records = streams.claim(
+                taskStream, group, consumer, minIdle, stale.toArray(RecordId[]::new)).collectList().block();
+        List<Delivery> claimed = new ArrayList<>();
+        for (Delivery delivery : toDeliveries(records)) {
+            claimed.add(new Delivery(delivery.id(), delivery.fields(), deliveryCounts.getOrDefault(delivery.id(), 1L)));
+        }
+        return new StalePage(claimed, next);
+    }
+
+    @Override
+    public void publishResult(String resultStream, Map<String, String> fields) {
+        streams.add(MapRecord.create(resultStream, fields),
+                RedisStreamCommands.XAddOptions.maxlen(RESULT_STREAM_MAXLEN).approximateTrimming(true)).block();
+    }
+
+    @Override
+    public List<Delivery> readResults(String resultStream, String afterId, int count, Duration block) {
+        // 同 readTasks：数组只含一个 StreamOffset<String>
+        @SuppressWarnings("unchecked")
+        StreamOffset<String>[] offsets = (StreamOffset<String>[]) new StreamOffset<?>[]{
+                StreamOffset.create(resultStream, ReadOffset.from(afterId))};
+        List<MapRecord<String, String, String>> records = streams.read(
+                StreamReadOptions.empty().count(count).block(block),
+                offsets).collectList().block();
+        return toDeliveries(records);
+    }
+
+    @Override
+    public void deleteResults(String resultStream, List<String> ids) {
+        if (!ids.isEmpty()) {
+            streams.delete(resultStream, ids.toArray(String[]::new)).block();
+        }
+    }
+
+    private static List<Delivery> toDeliveries(List<MapRecord<String, String, String>> records) {
+        if (records == null || records.isEmpty()) {
+            return List.of();
+        }
+        List<Delivery> deliveries = new ArrayList<>(records.size());
+        for (MapRecord<String, String, String> record : records) {
+            deliveries.add(new Delivery(record.getId().getValue(), new LinkedHashMap<>(record.getValue())));
+        }
+        return deliveries;
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.testgraalvm.config;
+
+import org.example.testgraalvm.cluster.ClusterConversionService;
+import org.example.testgraalvm.cluster.ConversionTaskQueue;
+import org.example.testgraalvm.cluster.InMemoryTaskQueue;
+import org.example.testgraalvm.cluster.RedisStreamTaskQueue;
+import org.example.testgraalvm.service.MathTypeConversionService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Cluster mode: distribute conversion chunks over Redis Streams consumer groups.
+ * Enabled with {@code mathtype.cluster.enabled=true}; {@code transport=local} uses an in-process stand-in.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "mathtype.cluster", name = "enabled", havingValue = "true")
+public class ClusterConfig {
+
+    @Bean
+    public ConversionTaskQueue conversionTaskQueue(
+            ObjectProvider<ReactiveStringRedisTemplate> redisTemplate,
+            @Value("${mathtype.cluster.transport:redis}") String transport,
+            @Value("${mathtype.cluster.task-stream:mathtype:tasks}") String taskStream,
+            @Value("${mathtype.cluster.group:mathtype-workers}") String group) {
+        if ("local".equalsIgnoreCase(transport)) {
+            return new InMemoryTaskQueue();
+        }
+        return new RedisStreamTaskQueue(redisTemplate.getObject(), taskStream, group);
+    }
+
+    @Bean
+    public ClusterConversionService clusterConversionService(
+            ConversionTaskQueue queue,
+            MathTypeConversionService conversionService,
+            @Value("${mathtype.cluster.node-id:}") String nodeId,
+            @Value("${mathtype.cluster.result-stream-prefix:mathtype:results:}") String resultStreamPrefix,
+            @Value("${mathtype.cluster.workers:2}") int workers,
+            @Value("${mathtype.cluster.chunk-size:50}") int chunkSize,
+            @Value("${mathtype.cluster.min-batch-size:50}") int minBatchSize,
+            @Value("${mathtype.cluster.request-timeout:5m}") Duration requestTimeout,
+            @Value("${mathtype.cluster.reclaim-idle:60s}") Duration reclaimIdle,
+            @Value("${mathtype.cluster.max-deliveries:3}") int maxDeliveries) {
+        String node = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        return new ClusterConversionService(queue, conversionService::convertBatchLocally, node,
+                resultStreamPrefix, workers, chunkSize, minBatchSize, requestTimeout, reclaimIdle, maxDeliveries);
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.testgraalvm.config;
+
+import org.example.testgraalvm.panama.ConcurrencyLimiter;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * Adaptive concurrency limit on native calls from {@code mathtype.limiter.*}.
+ * The limiter is installed once the context has started, independent of lazy initialization;
+ * the settings bean only sizes the fair scheduler's worker pool.
+ */
+@Configuration
+@Lazy(false)
+@ConditionalOnProperty(prefix = "mathtype.limiter", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimiterConfig implements SmartInitializingSingleton {
+
+    private final ConcurrencyLimiter.Settings settings;
+
+    public ConcurrencyLimiterConfig(@Value("${mathtype.limiter.initial-limit:0}") int initialLimit,
+                                    @Value("${mathtype.limiter.min-limit:1}") int minLimit,
+                                    @Value("${mathtype.limiter.max-limit:0}") int maxLimit,
+                                    @Value("${mathtype.limiter.tolerance:1.5}") double tolerance,
+                                    @Value("${mathtype.limiter.smoothing:0.2}") double smoothing,
+                                    @Value("${mathtype.limiter.window:20}") int window,
+                                    @Value("${mathtype.limiter.probe-interval:100}") int probeInterval) {
+        ConcurrencyLimiter.Settings defaults = ConcurrencyLimiter.Settings.defaults();
+        int min = Math.max(1, minLimit);
+        int max = Math.max(min, maxLimit > 0 ? maxLimit : defaults.maxLimit());
+        this.settings = new ConcurrencyLimiter.Settings(
+                Math.clamp(initialLimit > 0 ? initialLimit : defaults.initialLimit(), min, max),
+                min,
+                max,
+                Math.max(1.0, tolerance),
+                Math.clamp(smoothing, 0.01, 1.0),
+                Math.max(1, window),
+                Math.max(1, probeInterval));
+    }
+
+    @Bean
+    public ConcurrencyLimiter.Settings concurrencyLimiterSettings() {
+        return settings;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        MathTypeToLatexUtil.configureLimiter(settings);
+    }
+}
@@ -0,0 +1,59 @@
+package org.example.testgraalvm.config;
+
+import org.example.testgraalvm.panama.ConversionDispatcher;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import java.util.Locale;
+
+/**
+ * Conversion dispatcher settings from {@code mathtype.dispatch.*}.
+ * {@code strategy=auto} lets the cost model pick the native entry point; {@code convert|list|async} pins one.
+ * <p>
+ * The settings are pushed into the static conversion entry point once the context has started. Nothing
+ * injects them, so the class opts out of lazy initialization; otherwise the lazy-persistence profile would never
+ * apply them.
+ */
+@Configuration
+@Lazy(false)
+public class DispatchConfig implements SmartInitializingSingleton {
+
+    private final ConversionDispatcher.Settings settings;
+
+    public DispatchConfig(@Value("${mathtype.dispatch.strategy:auto}") String strategy,
+                          @Value("${mathtype.dispatch.sub-batch-size:0}") int subBatchSize,
+                          @Value("${mathtype.dispatch.max-sub-batch-size:256}") int maxSubBatchSize,
+                          @Value("${mathtype.dispatch.parallelism:0}") int parallelism,
+                          @Value("${mathtype.dispatch.convert-max-batch:4}") int convertMaxBatch,
+                          @Value("${mathtype.dispatch.explore-rate:0.05}") double exploreRate,
+                          @Value("${mathtype.dispatch.alpha:0.2}") double alpha) {
+        ConversionDispatcher.Settings defaults = ConversionDispatcher.Settings.defaults();
+        this.settings = new ConversionDispatcher.Settings(
+                parseStrategy(strategy),
+                Math.max(0, subBatchSize),
+                Math.max(1, maxSubBatchSize),
+                parallelism > 0 ? parallelism : defaults.parallelism(),
+                Math.max(0, convertMaxBatch),
+                Math.clamp(exploreRate, 0.0, 1.0),
+                Math.clamp(alpha, 0.01, 1.0));
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        MathTypeToLatexUtil.configureDispatcher(settings);
+    }
+
+    private static ConversionDispatcher.Strategy parseStrategy(String strategy) {
+        return switch (strategy.trim().toLowerCase(Locale.ROOT)) {
+            case "auto", "" -> null;
+            case "convert" -> ConversionDispatcher.Strategy.CONVERT;
+            case "list" -> ConversionDispatcher.Strategy.LIST;
+            case "async" -> ConversionDispatcher.Strategy.ASYNC;
+            default -> throw new IllegalArgumentException(
+                    "mathtype.dispatch.strategy must be auto, convert, list or async: " + strategy);
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.testgraalvm.config;
+
+import org.example.testgraalvm.mtef.EquationNativeValidator;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * Upload pre-check that rejects non-equation files before any temp file or native call,
+ * from {@code mathtype.validation.*}. Applied once the context has started, independent of lazy initialization.
+ */
+@Configuration
+@Lazy(false)
+public class EquationValidationConfig implements SmartInitializingSingleton {
+
+    private final EquationNativeValidator.Settings settings;
+
+    public EquationValidationConfig(@Value("${mathtype.validation.enabled:true}") boolean enabled,
+                                    @Value("${mathtype.validation.max-file-bytes:1048576}") int maxFileBytes) {
+        this.settings = new EquationNativeValidator.Settings(enabled, Math.max(0, maxFileBytes));
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        EquationNativeValidator.configure(settings);
+    }
+}
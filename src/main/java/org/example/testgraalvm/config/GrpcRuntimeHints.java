@@ -0,0 +1,36 @@
+package org.example.testgraalvm.config;
+
+import org.example.testgraalvm.grpc.proto.ConvertRequest;
+import org.example.testgraalvm.grpc.proto.ConvertResult;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * GraalVM Native Image runtime hints for the gRPC conversion service.
+ * <p>
+ * grpc-netty-shaded ships its own native-image configuration. Generated protobuf messages parse and
+ * serialize without reflection, but their field accessor tables (toString, equals, descriptor-based
+ * access) look up the generated getters and builder methods reflectively.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "mathtype.grpc", name = "enabled", havingValue = "true")
+@ImportRuntimeHints(GrpcRuntimeHints.GrpcHintsRegistrar.class)
+public class GrpcRuntimeHints {
+
+    static class GrpcHintsRegistrar implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            for (Class<?> type : new Class<?>[] {ConvertRequest.class, ConvertRequest.Builder.class,
+                    ConvertResult.class, ConvertResult.Builder.class}) {
+                hints.reflection().registerType(type,
+                        MemberCategory.INVOKE_PUBLIC_METHODS,
+                        MemberCategory.INVOKE_DECLARED_METHODS);
+            }
+        }
+    }
+}
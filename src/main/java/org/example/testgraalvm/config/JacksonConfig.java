@@ -0,0 +1,49 @@
+package org.example.testgraalvm.config;
+
+import org.example.testgraalvm.controller.response.AdminSnapshotSerializers;
+import org.example.testgraalvm.controller.response.ConversionResponseSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.http.converter.autoconfigure.ServerHttpMessageConvertersCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.JacksonCborHttpMessageConverter;
+import org.springframework.http.converter.smile.JacksonSmileHttpMessageConverter;
+import tools.jackson.databind.JacksonModule;
+import tools.jackson.dataformat.cbor.CBORMapper;
+import tools.jackson.dataformat.smile.SmileMapper;
+
+/**
+ * Registers hand-written serializers with the auto-configured JSON mapper.
+ * <p>
+ * The same modules back the binary formats: clients that send {@code Accept: application/cbor} or
+ * {@code application/x-jackson-smile} get the identical document shape in a compact encoding, and
+ * {@code @RequestBody} accepts those content types too. JSON stays the default for {@code Accept: *}{@code /*}.
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public JacksonModule conversionResponseModule() {
+        return ConversionResponseSerializer.module();
+    }
+
+    @Bean
+    public JacksonModule adminSnapshotModule() {
+        return AdminSnapshotSerializers.module();
+    }
+
+    /**
+     * Replaces the default CBOR/Smile converters, which would use bare mappers without our modules.
+     * The CBOR mapper is Boot's (spring.jackson.* and module beans applied); Boot has no Smile mapper.
+     */
+    @Bean
+    public ServerHttpMessageConvertersCustomizer binaryMessageConverters(CBORMapper cborMapper,
+                                                                         ObjectProvider<JacksonModule> modules) {
+        SmileMapper smileMapper = SmileMapper.builder()
+                .addModules(modules.orderedStream().toList())
+                .build();
+        return builder -> builder
+                .withCborConverter(new JacksonCborHttpMessageConverter(cborMapper))
+                .withSmileConverter(new JacksonSmileHttpMessageConverter(smileMapper));
+    }
+}
@@ -1,9 +1,13 @@
 package org.example.testgraalvm.config;
 
+import org.example.testgraalvm.entity.ConversionJob;
+import org.example.testgraalvm.entity.ConversionJobItem;
+import org.example.testgraalvm.entity.ConversionResult;
 import org.example.testgraalvm.entity.Demo;
 import org.springframework.aot.hint.MemberCategory;
 import org.springframework.aot.hint.RuntimeHints;
 import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.ImportRuntimeHints;
 
@@ -11,6 +15,7 @@ import org.springframework.context.annotation.ImportRuntimeHints;
  * GraalVM Native Image runtime hints for JPA/Hibernate with SQLite.
  */
 @Configuration
+@ConditionalOnProperty(prefix = "mathtype.persistence", name = "enabled", havingValue = "true", matchIfMissing = true)
 @ImportRuntimeHints(JpaRuntimeHints.JpaHintsRegistrar.class)
 public class JpaRuntimeHints {
 
@@ -24,6 +29,21 @@ public class JpaRuntimeHints {
                     MemberCategory.INVOKE_DECLARED_METHODS,
                     MemberCategory.ACCESS_DECLARED_FIELDS);
 
+            // Register ConversionResult entity
+            hints.reflection().registerType(ConversionResult.class,
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                    MemberCategory.INVOKE_DECLARED_METHODS,
+                    MemberCategory.ACCESS_DECLARED_FIELDS);
+
+            // Register conversion job entities and their status enums
+            for (Class<?> type : new Class<?>[] {ConversionJob.class, ConversionJob.Status.class,
+                    ConversionJobItem.class, ConversionJobItem.Status.class}) {
+                hints.reflection().registerType(type,
+                        MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.INVOKE_DECLARED_METHODS,
+                        MemberCategory.ACCESS_DECLARED_FIELDS);
+            }
+
             // Register SQLite Dialect
             hints.reflection().registerTypeIfPresent(classLoader,
                     "org.hibernate.community.dialect.SQLiteDialect",
@@ -0,0 +1,47 @@
+package org.example.testgraalvm.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactoryBean;
+
+/**
+ * Lazy JPA bootstrap, enabled with {@code mathtype.persistence.lazy=true} (see the lazy-persistence profile).
+ * <p>
+ * Global lazy initialization does not reach the entity manager factory: the context instantiates every
+ * {@code LoadTimeWeaverAware} bean up front, and {@code LocalContainerEntityManagerFactoryBean} is one.
+ * Declaring its definition as a plain {@code FactoryBean<EntityManagerFactory>} keeps it out of that lookup,
+ * so Hibernate, the datasource and {@code ddl-auto} only start on first use. No load-time weaver is configured,
+ * so nothing is lost.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "mathtype.persistence", name = "lazy", havingValue = "true")
+public class LazyPersistenceConfig {
+
+    @Bean
+    public static BeanFactoryPostProcessor lazyEntityManagerFactory() {
+        return beanFactory -> {
+            for (String name : beanFactory.getBeanNamesForType(EntityManagerFactory.class, true, false)) {
+                String definitionName = name.startsWith(BeanFactory.FACTORY_BEAN_PREFIX)
+                        ? name.substring(BeanFactory.FACTORY_BEAN_PREFIX.length()) : name;
+                BeanDefinition definition = beanFactory.getBeanDefinition(definitionName);
+                definition.setLazyInit(true);
+                if (definition instanceof RootBeanDefinition root) {
+                    root.setTargetType(ResolvableType.forClassWithGenerics(FactoryBean.class, EntityManagerFactory.class));
+                }
+            }
+            // Repository definitions carry an explicit lazyInit=false. bootstrap-mode=lazy would flip that but also
+            // builds the factory on a background thread, which deadlocks against lazy creation on request threads.
+            for (String name : beanFactory.getBeanNamesForType(JpaRepositoryFactoryBean.class, true, false)) {
+                beanFactory.getBeanDefinition(name.substring(BeanFactory.FACTORY_BEAN_PREFIX.length())).setLazyInit(true);
+            }
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.testgraalvm.config;
+
+import org.example.testgraalvm.controller.LoadSheddingInterceptor;
+import org.example.testgraalvm.scheduler.FairConversionScheduler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+
+/**
+ * Sheds conversion requests with 429 + Retry-After once the adaptive limiter estimates that the
+ * backlog would wait longer than {@code mathtype.limiter.max-queue-delay}.
+ * Only the synchronous conversion endpoints are covered; async jobs queue on disk instead.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "mathtype.limiter", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class LoadSheddingConfig implements WebMvcConfigurer {
+
+    private final ObjectProvider<FairConversionScheduler> scheduler;
+    private final JsonMapper jsonMapper;
+    private final Duration maxQueueDelay;
+
+    public LoadSheddingConfig(ObjectProvider<FairConversionScheduler> scheduler, JsonMapper jsonMapper,
+                              @Value("${mathtype.limiter.max-queue-delay:10s}") Duration maxQueueDelay) {
+        this.scheduler = scheduler;
+        this.jsonMapper = jsonMapper;
+        this.maxQueueDelay = maxQueueDelay;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new LoadSheddingInterceptor(scheduler.getIfAvailable(), jsonMapper, maxQueueDelay))
+                .addPathPatterns("/api/mathtype/convert", "/api/mathtype/convert-*");
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.testgraalvm.config;
+
+import org.example.testgraalvm.mtef.MtefFastPath;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * Pure-Java MTEF fast path in front of the native library, from {@code mathtype.fast-path.*}.
+ * Applied once the context has started, independent of lazy initialization.
+ */
+@Configuration
+@Lazy(false)
+public class MtefFastPathConfig implements SmartInitializingSingleton {
+
+    private final MtefFastPath.Settings settings;
+
+    public MtefFastPathConfig(@Value("${mathtype.fast-path.enabled:false}") boolean enabled,
+                              @Value("${mathtype.fast-path.max-file-bytes:1048576}") int maxFileBytes) {
+        this.settings = new MtefFastPath.Settings(enabled, Math.max(0, maxFileBytes));
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        MtefFastPath.configure(settings);
+    }
+}
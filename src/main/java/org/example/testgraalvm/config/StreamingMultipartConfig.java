@@ -0,0 +1,37 @@
+package org.example.testgraalvm.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import java.util.Set;
+
+/**
+ * Keeps Spring from resolving multipart requests on the streaming upload endpoints.
+ * <p>
+ * {@code /convert-stream} and the multipart variant of {@code /convert-document} read the raw body with
+ * {@code MultipartStreamParser}, so nothing may consume it before the handler runs. Every other multipart
+ * endpoint keeps the default eager resolution. Replaces Boot's resolver; the
+ * {@code spring.servlet.multipart.*} limits still apply through the servlet's multipart config.
+ */
+@Configuration
+public class StreamingMultipartConfig {
+
+    static final Set<String> STREAMING_PATHS = Set.of(
+            "/api/mathtype/convert-stream",
+            "/api/mathtype/convert-document");
+
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public MultipartResolver multipartResolver() {
+        return new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                String path = request.getRequestURI().substring(request.getContextPath().length());
+                return !STREAMING_PATHS.contains(path) && super.isMultipart(request);
+            }
+        };
+    }
+}
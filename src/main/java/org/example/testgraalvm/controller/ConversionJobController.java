@@ -0,0 +1,93 @@
+package org.example.testgraalvm.controller;
+
+import org.example.testgraalvm.entity.ConversionJob;
+import org.example.testgraalvm.service.ConversionJobService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * MathType 异步批量转换任务 Controller
+ * 提交后立即返回任务 ID，客户端轮询或通过 SSE 获取进度和部分结果
+ */
+@RestController
+@ConditionalOnProperty(prefix = "mathtype", name = {"persistence.enabled", "jobs.enabled"}, havingValue = "true",
+        matchIfMissing = true)
+@RequestMapping("/api/mathtype/jobs")
+public class ConversionJobController {
+
+    private final ConversionJobService jobService;
+
+    public ConversionJobController(ConversionJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    /**
+     * 提交批量转换任务
+     * POST /api/mathtype/jobs
+     *
+     * @param files 上传的多个 .bin 文件
+     * @return 任务 ID 与状态
+     */
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> submit(@RequestParam("files") MultipartFile[] files) {
+        Map<String, Object> response = new HashMap<>();
+
+        if (files == null || files.length == 0) {
+            response.put("success", false);
+            response.put("message", "请上传文件");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        try {
+            ConversionJob job = jobService.submit(files);
+            response.putAll(jobService.toProgress(job));
+            response.put("success", true);
+            return ResponseEntity.accepted().body(response);
+        } catch (IllegalArgumentException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (IOException e) {
+            response.put("success", false);
+            response.put("message", "文件处理失败: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(response);
+        }
+    }
+
+    /**
+     * 轮询任务进度与结果
+     * GET /api/mathtype/jobs/{id}?since=0
+     *
+     * @param since 只返回 index >= since 的结果，用于增量拉取
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> poll(@PathVariable String id,
+                                                    @RequestParam(defaultValue = "0") int since) {
+        Optional<ConversionJob> job = jobService.findJob(id);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        Map<String, Object> response = new HashMap<>(jobService.toProgress(job.get()));
+        response.put("results", jobService.toResultList(jobService.findResults(id, since)));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 以 SSE 推送任务进度与部分结果
+     * GET /api/mathtype/jobs/{id}/events?since=0
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable String id, @RequestParam(defaultValue = "0") int since) {
+        return jobService.subscribe(id, since);
+    }
+}
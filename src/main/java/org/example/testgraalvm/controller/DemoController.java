@@ -2,6 +2,7 @@ package org.example.testgraalvm.controller;
 
 import org.example.testgraalvm.entity.Demo;
 import org.example.testgraalvm.repository.DemoRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,6 +14,7 @@ import java.util.Optional;
  * REST Controller for Demo entity CRUD operations.
  */
 @RestController
+@ConditionalOnProperty(prefix = "mathtype.persistence", name = "enabled", havingValue = "true", matchIfMissing = true)
 @RequestMapping("/api/demo")
 public class DemoController {
 
@@ -0,0 +1,61 @@
+package org.example.testgraalvm.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.testgraalvm.controller.response.ConversionResponse;
+import org.example.testgraalvm.panama.ConcurrencyLimiter;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.example.testgraalvm.scheduler.FairConversionScheduler;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.HandlerInterceptor;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 转换接口的入口限流：按自适应并发上限估计的排队时间超过 max-queue-delay 时，
+ * 在读取上传内容之前直接返回 429，并用 Retry-After 提示预计的排空时间（秒）
+ * 排队量包括公平调度中排队的文件和等待并发名额的文件
+ */
+public class LoadSheddingInterceptor implements HandlerInterceptor {
+
+    private final FairConversionScheduler scheduler;
+    private final JsonMapper jsonMapper;
+    private final long maxQueueDelayNanos;
+
+    /**
+     * @param scheduler 公平调度，未启用时为 null
+     */
+    public LoadSheddingInterceptor(FairConversionScheduler scheduler, JsonMapper jsonMapper, Duration maxQueueDelay) {
+        this.scheduler = scheduler;
+        this.jsonMapper = jsonMapper;
+        this.maxQueueDelayNanos = maxQueueDelay.toNanos();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        ConcurrencyLimiter limiter = MathTypeToLatexUtil.limiter();
+        if (limiter == null) {
+            return true;
+        }
+        long backlog = limiter.waitingItems() + (scheduler == null ? 0 : scheduler.queuedFiles());
+        long delay = limiter.estimatedDelayNanos(backlog,
+                scheduler == null ? Integer.MAX_VALUE : scheduler.workers());
+        if (delay <= maxQueueDelayNanos) {
+            return true;
+        }
+
+        limiter.recordRejected();
+        long retryAfter = Math.max(1, (delay + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        jsonMapper.writeValue(response.getOutputStream(),
+                ConversionResponse.error("转换服务繁忙，请 " + retryAfter + " 秒后重试"));
+        return false;
+    }
+}
@@ -1,19 +1,44 @@
 package org.example.testgraalvm.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.testgraalvm.controller.response.ConversionResponse;
+import org.example.testgraalvm.ingest.DocumentIngestor;
+import org.example.testgraalvm.ingest.MultipartStreamParser;
+import org.example.testgraalvm.ingest.StreamingConversionPipeline;
+import org.example.testgraalvm.ingest.StreamingIngestService;
+import org.example.testgraalvm.jfr.ResponseWriteEvent;
+import org.example.testgraalvm.jfr.TempFileWriteEvent;
+import org.example.testgraalvm.mtef.EquationNativeValidator;
+import org.example.testgraalvm.mtef.MtefException;
+import org.example.testgraalvm.mtef.MtefFastPath;
+import org.example.testgraalvm.panama.ConcurrencyLimiter;
+import org.example.testgraalvm.panama.ConversionDispatcher;
 import org.example.testgraalvm.panama.MathTypeToLatexUtil;
 import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.example.testgraalvm.panama.NativeMemoryStats;
+import org.example.testgraalvm.scheduler.FairConversionScheduler;
+import org.example.testgraalvm.service.MathTypeConversionService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ObjIntConsumer;
 
 /**
  * MathType 文件转换 Controller
@@ -23,6 +48,22 @@ import java.util.Map;
 @RequestMapping("/api/mathtype")
 public class MathTypeController {
 
+    private final MathTypeConversionService conversionService;
+    private final StreamingIngestService ingestService;
+    private final JsonMapper jsonMapper;
+    private final ObjectProvider<FairConversionScheduler> scheduler;
+    private final boolean libraryReloadEnabled;
+
+    public MathTypeController(MathTypeConversionService conversionService, StreamingIngestService ingestService,
+                              JsonMapper jsonMapper, ObjectProvider<FairConversionScheduler> scheduler,
+                              @Value("${mathtype.library.reload-enabled:false}") boolean libraryReloadEnabled) {
+        this.conversionService = conversionService;
+        this.ingestService = ingestService;
+        this.jsonMapper = jsonMapper;
+        this.scheduler = scheduler;
+        this.libraryReloadEnabled = libraryReloadEnabled;
+    }
+
     /**
      * 单文件上传转换
      * POST /api/mathtype/convert
@@ -31,43 +72,35 @@ public class MathTypeController {
      * @return 转换结果
      */
     @PostMapping(value = "/convert", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<Map<String, Object>> convertSingle(@RequestParam("file") MultipartFile file) {
-        Map<String, Object> response = new HashMap<>();
-        
+    public ResponseEntity<ConversionResponse> convertSingle(@RequestParam("file") MultipartFile file) {
         if (file.isEmpty()) {
-            response.put("success", false);
-            response.put("message", "请上传文件");
-            return ResponseEntity.badRequest().body(response);
+            return ResponseEntity.badRequest().body(ConversionResponse.error("请上传文件"));
         }
 
         // 检查文件扩展名
         String originalFilename = file.getOriginalFilename();
         if (originalFilename == null || !originalFilename.toLowerCase().endsWith(".bin")) {
-            response.put("success", false);
-            response.put("message", "请上传 .bin 格式的文件");
-            return ResponseEntity.badRequest().body(response);
+            return ResponseEntity.badRequest().body(ConversionResponse.error("请上传 .bin 格式的文件"));
         }
 
         Path tempFile = null;
         try {
-            // 创建临时文件
-            tempFile = Files.createTempFile("mathtype_", ".bin");
-            file.transferTo(tempFile);
+            // 不是有效的公式对象时不写临时文件、不调用本地库
+            Precheck precheck = precheck(file);
+            if (precheck.rejection() != null) {
+                return ResponseEntity.ok(new ConversionResponse.Single(originalFilename, precheck.rejection()));
+            }
 
-            // 调用转换
-            Mtef2LatexDTO result = MathTypeToLatexUtil.convertLatex(tempFile.toAbsolutePath().toString());
+            // 创建临时文件
+            tempFile = writeTempFile(file);
 
-            response.put("success", result.getCode() == Mtef2LatexDTO.SUCCESS_CODE);
-            response.put("code", result.getCode());
-            response.put("latex", result.getResLatex());
-            response.put("filename", originalFilename);
+            // 调用转换，服务直接使用预检得到的哈希
+            Mtef2LatexDTO result = conversionService.convert(tempFile, precheck.inspection());
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(new ConversionResponse.Single(originalFilename, result));
 
         } catch (IOException e) {
-            response.put("success", false);
-            response.put("message", "文件处理失败: " + e.getMessage());
-            return ResponseEntity.internalServerError().body(response);
+            return ResponseEntity.internalServerError().body(ConversionResponse.error("文件处理失败: " + e.getMessage()));
         } finally {
             // 清理临时文件
             if (tempFile != null) {
@@ -87,18 +120,17 @@ public class MathTypeController {
      * @return 转换结果列表
      */
     @PostMapping(value = "/convert-batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<Map<String, Object>> convertBatch(@RequestParam("files") MultipartFile[] files) {
-        Map<String, Object> response = new HashMap<>();
-
+    public ResponseEntity<ConversionResponse> convertBatch(@RequestParam("files") MultipartFile[] files) {
         if (files == null || files.length == 0) {
-            response.put("success", false);
-            response.put("message", "请上传文件");
-            return ResponseEntity.badRequest().body(response);
+            return ResponseEntity.badRequest().body(ConversionResponse.error("请上传文件"));
         }
 
         List<Path> tempFiles = new ArrayList<>();
-        List<String> filePaths = new ArrayList<>();
+        // 与 tempFiles 对应的预检结果，未预检的文件为 null
+        List<EquationNativeValidator.Inspection> inspections = new ArrayList<>();
         List<String> fileNames = new ArrayList<>();
+        // 预检未通过的文件：下标 -> 错误结果
+        Map<Integer, Mtef2LatexDTO> rejected = new HashMap<>();
 
         try {
             // 保存所有上传的文件到临时目录
@@ -110,46 +142,174 @@ public class MathTypeController {
                     continue; // 跳过非 bin 文件
                 }
 
-                Path tempFile = Files.createTempFile("mathtype_", ".bin");
-                file.transferTo(tempFile);
+                Precheck precheck = precheck(file);
+                if (precheck.rejection() != null) {
+                    rejected.put(fileNames.size(), precheck.rejection());
+                    fileNames.add(originalFilename);
+                    continue;
+                }
+
+                Path tempFile = writeTempFile(file);
                 tempFiles.add(tempFile);
-                filePaths.add(tempFile.toAbsolutePath().toString());
+                inspections.add(precheck.inspection());
                 fileNames.add(originalFilename);
             }
 
-            if (filePaths.isEmpty()) {
-                response.put("success", false);
-                response.put("message", "没有有效的 .bin 文件");
-                return ResponseEntity.badRequest().body(response);
+            if (fileNames.isEmpty()) {
+                return ResponseEntity.badRequest().body(ConversionResponse.error("没有有效的 .bin 文件"));
             }
 
-            // 批量转换
-            List<Mtef2LatexDTO> results = MathTypeToLatexUtil.convertLatexList(filePaths);
+            // 批量转换（已转换过的内容直接取持久化结果）
+            List<Mtef2LatexDTO> converted = tempFiles.isEmpty() ? List.of() : conversionService.convertBatch(tempFiles, inspections);
+            List<Mtef2LatexDTO> results = new ArrayList<>(fileNames.size());
+            for (int i = 0, j = 0; i < fileNames.size(); i++) {
+                Mtef2LatexDTO rejection = rejected.get(i);
+                results.add(rejection != null ? rejection : converted.get(j++));
+            }
 
-            // 构建结果
-            List<Map<String, Object>> resultList = new ArrayList<>();
-            for (int i = 0; i < results.size(); i++) {
-                Mtef2LatexDTO dto = results.get(i);
-                Map<String, Object> item = new HashMap<>();
-                item.put("filename", fileNames.get(i));
-                item.put("success", dto.getCode() == Mtef2LatexDTO.SUCCESS_CODE);
-                item.put("code", dto.getCode());
-                item.put("latex", dto.getResLatex());
-                resultList.add(item);
+            return ResponseEntity.ok(new ConversionResponse.Batch(fileNames, results));
+
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body(ConversionResponse.error("文件处理失败: " + e.getMessage()));
+        } finally {
+            // 清理所有临时文件
+            for (Path tempFile : tempFiles) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量转换，直接输出本地库的结果 JSON
+     * POST /api/mathtype/convert-batch-raw
+     * <p>
+     * 响应体为本地库返回的数组 [{"code":..,"resLatex":..}, ...]，顺序与上传的有效 .bin 文件一致。
+     * 结果从本地内存分块写入响应流，不解码为 String、不经过 DTO 和二次序列化；
+     * 因此也不查询、不写入持久化结果。
+     *
+     * @param files    上传的多个 .bin 文件
+     * @param response 响应
+     */
+    @PostMapping(value = "/convert-batch-raw", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ConversionResponse> convertBatchRaw(@RequestParam("files") MultipartFile[] files,
+                                                              HttpServletResponse response) {
+        List<Path> tempFiles = new ArrayList<>();
+        try {
+            List<String> paths = new ArrayList<>();
+            for (MultipartFile file : files) {
+                String originalFilename = file.getOriginalFilename();
+                if (file.isEmpty() || originalFilename == null || !originalFilename.toLowerCase().endsWith(".bin")) {
+                    continue;
+                }
+                Path tempFile = writeTempFile(file);
+                tempFiles.add(tempFile);
+                paths.add(tempFile.toAbsolutePath().toString());
             }
 
-            response.put("success", true);
-            response.put("total", resultList.size());
-            response.put("results", resultList);
+            if (paths.isEmpty()) {
+                return ResponseEntity.badRequest().body(ConversionResponse.error("没有有效的 .bin 文件"));
+            }
 
-            return ResponseEntity.ok(response);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            if (!conversionService.writeBatchJson(paths, response.getOutputStream(),
+                    response::setContentLengthLong)) {
+                return ResponseEntity.internalServerError().body(ConversionResponse.error("加载 MathType 转换库失败"));
+            }
+            // 响应已直接写出
+            return null;
 
         } catch (IOException e) {
-            response.put("success", false);
-            response.put("message", "文件处理失败: " + e.getMessage());
-            return ResponseEntity.internalServerError().body(response);
+            return ResponseEntity.internalServerError().body(ConversionResponse.error("文件处理失败: " + e.getMessage()));
+        } finally {
+            for (Path tempFile : tempFiles) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量转换，逐项输出结果
+     * POST /api/mathtype/convert-batch-ndjson
+     * <p>
+     * 响应为 application/x-ndjson，每个文件转换完成就写出一行
+     * {"index":..,"filename":..,"success":..,"code":..,"latex":..}，行的顺序为完成顺序，index 为上传顺序。
+     * 逐项完成依赖回调 shim（-Dmathtype.callback-shim.path），未加载时整批完成后一次写出。
+     *
+     * @param files    上传的多个 .bin 文件
+     * @param response 响应
+     */
+    @PostMapping(value = "/convert-batch-ndjson", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ConversionResponse> convertBatchNdjson(@RequestParam("files") MultipartFile[] files,
+                                                                 HttpServletResponse response) {
+        List<Path> tempFiles = new ArrayList<>();
+        List<String> fileNames = new ArrayList<>();
+        // 临时文件对应的上传下标和预检结果；预检未通过的文件不写临时文件
+        List<Integer> tempIndexes = new ArrayList<>();
+        List<EquationNativeValidator.Inspection> inspections = new ArrayList<>();
+        Map<Integer, Mtef2LatexDTO> rejected = new HashMap<>();
+        try {
+            for (MultipartFile file : files) {
+                String originalFilename = file.getOriginalFilename();
+                if (file.isEmpty() || originalFilename == null || !originalFilename.toLowerCase().endsWith(".bin")) {
+                    continue;
+                }
+                Precheck precheck = precheck(file);
+                if (precheck.rejection() != null) {
+                    rejected.put(fileNames.size(), precheck.rejection());
+                    fileNames.add(originalFilename);
+                    continue;
+                }
+                Path tempFile = writeTempFile(file);
+                tempFiles.add(tempFile);
+                tempIndexes.add(fileNames.size());
+                inspections.add(precheck.inspection());
+                fileNames.add(originalFilename);
+            }
+
+            if (fileNames.isEmpty()) {
+                return ResponseEntity.badRequest().body(ConversionResponse.error("没有有效的 .bin 文件"));
+            }
+
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            OutputStream out = response.getOutputStream();
+            AtomicBoolean clientGone = new AtomicBoolean();
+            // 结果可能从多个本地线程并发到达，按行串行写出
+            ObjIntConsumer<Mtef2LatexDTO> writer = (dto, index) -> {
+                ResponseWriteEvent event = new ResponseWriteEvent();
+                event.begin();
+                byte[] line = jsonMapper.writeValueAsBytes(new ConversionResponse.Item(index, fileNames.get(index), dto));
+                synchronized (out) {
+                    if (clientGone.get()) {
+                        return;
+                    }
+                    try {
+                        out.write(line);
+                        out.write('\n');
+                        out.flush();
+                    } catch (IOException e) {
+                        clientGone.set(true);
+                        return;
+                    }
+                }
+                event.commit("ndjson", 1, line.length + 1);
+            };
+            // 预检未通过的文件最先写出
+            rejected.forEach((index, dto) -> writer.accept(dto, index));
+            if (!tempFiles.isEmpty()) {
+                conversionService.convertBatchIncremental(tempFiles, inspections, (dto, j) -> writer.accept(dto, tempIndexes.get(j)));
+            }
+            // 响应已直接写出
+            return null;
+
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body(ConversionResponse.error("文件处理失败: " + e.getMessage()));
         } finally {
-            // 清理所有临时文件
             for (Path tempFile : tempFiles) {
                 try {
                     Files.deleteIfExists(tempFile);
@@ -159,16 +319,253 @@ public class MathTypeController {
         }
     }
 
+    /**
+     * 流式批量上传转换
+     * POST /api/mathtype/convert-stream
+     * <p>
+     * 直接解析请求体中的 multipart 流，每个 .bin part 到达后立即进入转换流水线，
+     * 不经过 Spring 的 MultipartFile 缓冲（StreamingMultipartConfig 不为此路径解析 multipart）。
+     * 注意不能调用 request.getParameter()，否则 Tomcat 会先把整个请求体解析掉。
+     *
+     * @param request 原始请求
+     * @return 转换结果列表，格式与 convert-batch 相同
+     */
+    @PostMapping(value = "/convert-stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ConversionResponse> convertStream(HttpServletRequest request) {
+        String boundary = MultipartStreamParser.boundaryOf(request.getContentType());
+        if (boundary == null) {
+            return ResponseEntity.badRequest().body(ConversionResponse.error("缺少 multipart boundary"));
+        }
+
+        StreamingConversionPipeline pipeline = ingestService.newPipeline();
+        try {
+            MultipartStreamParser parser = new MultipartStreamParser(request.getInputStream(), boundary);
+            MultipartStreamParser.PartHeaders part;
+            while ((part = parser.nextPart()) != null) {
+                String filename = part.filename();
+                if (filename == null || !filename.toLowerCase().endsWith(".bin")) {
+                    continue; // 跳过非 bin 文件
+                }
+                pipeline.add(filename, parser.body());
+            }
+
+            if (pipeline.size() == 0) {
+                return ResponseEntity.badRequest().body(ConversionResponse.error("没有有效的 .bin 文件"));
+            }
+
+            List<Mtef2LatexDTO> results = pipeline.finish();
+            List<String> fileNames = pipeline.names();
+
+            return ResponseEntity.ok(new ConversionResponse.Batch(fileNames, results));
+
+        } catch (IOException e) {
+            pipeline.abort();
+            return ResponseEntity.internalServerError().body(ConversionResponse.error("文件处理失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Word 文档 / zip 转换（请求体即文件内容）
+     * POST /api/mathtype/convert-document
+     * <p>
+     * 服务端顺序解压，内嵌的 OLE 公式对象（word/embeddings/*.bin）一解压出来就进入转换流水线，
+     * 结果通过 word/_rels/*.rels 映射回关系 ID。
+     *
+     * @param request 原始请求，请求体为 .docx 或 zip
+     * @return 每个内嵌对象的转换结果
+     */
+    @PostMapping(value = "/convert-document", consumes = {
+            "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "application/zip",
+            MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<ConversionResponse> convertDocument(HttpServletRequest request) {
+        try {
+            return convertDocument(request.getInputStream());
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body(ConversionResponse.error("文件处理失败: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Word 文档 / zip 转换（multipart 上传单个文件）
+     * POST /api/mathtype/convert-document
+     *
+     * @param request 原始请求，第一个文件 part 为 .docx 或 zip
+     * @return 每个内嵌对象的转换结果
+     */
+    @PostMapping(value = "/convert-document", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ConversionResponse> convertDocumentUpload(HttpServletRequest request) {
+        String boundary = MultipartStreamParser.boundaryOf(request.getContentType());
+        if (boundary == null) {
+            return ResponseEntity.badRequest().body(ConversionResponse.error("缺少 multipart boundary"));
+        }
+
+        try {
+            MultipartStreamParser parser = new MultipartStreamParser(request.getInputStream(), boundary);
+            MultipartStreamParser.PartHeaders part;
+            while ((part = parser.nextPart()) != null) {
+                if (part.filename() != null) {
+                    return convertDocument(parser.body());
+                }
+            }
+            return ResponseEntity.badRequest().body(ConversionResponse.error("请上传文件"));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().body(ConversionResponse.error("文件处理失败: " + e.getMessage()));
+        }
+    }
+
+    private ResponseEntity<ConversionResponse> convertDocument(InputStream document) throws IOException {
+        StreamingConversionPipeline pipeline = ingestService.newPipeline();
+        DocumentIngestor.Ingested ingested;
+        List<Mtef2LatexDTO> results;
+        try {
+            ingested = DocumentIngestor.ingest(document, pipeline);
+            results = pipeline.finish();
+        } catch (IOException e) {
+            pipeline.abort();
+            throw e;
+        }
+
+        if (ingested.entries().isEmpty()) {
+            return ResponseEntity.badRequest().body(ConversionResponse.error("文档中没有内嵌的 MathType 公式对象"));
+        }
+
+        return ResponseEntity.ok(new ConversionResponse.Document(ingested, results));
+    }
+
+    /**
+     * 把上传文件写入临时文件；写入失败时删除已创建的文件
+     */
+    private static Path writeTempFile(MultipartFile file) throws IOException {
+        TempFileWriteEvent event = new TempFileWriteEvent();
+        event.begin();
+        Path tempFile = Files.createTempFile("mathtype_", ".bin");
+        try {
+            file.transferTo(tempFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        event.commit(file.getSize());
+        return tempFile;
+    }
+
+    /**
+     * 上传文件的预检结果：rejection 不为 null 时不是有效的公式对象；
+     * inspection 交给转换服务作为结果存储的键，未启用或超过大小上限时两者都为 null
+     */
+    private record Precheck(Mtef2LatexDTO rejection, EquationNativeValidator.Inspection inspection) {
+    }
+
+    /**
+     * 预检上传文件；超过预检大小上限的文件不读入内存
+     */
+    private static Precheck precheck(MultipartFile file) throws IOException {
+        if (!EquationNativeValidator.appliesTo(file.getSize())) {
+            return new Precheck(null, null);
+        }
+        try {
+            return new Precheck(null, EquationNativeValidator.inspect(file.getBytes()));
+        } catch (MtefException e) {
+            return new Precheck(EquationNativeValidator.rejection(e), null);
+        }
+    }
+
     /**
      * 检查服务状态
      * GET /api/mathtype/status
      */
     @GetMapping("/status")
-    public ResponseEntity<Map<String, Object>> status() {
-        Map<String, Object> response = new HashMap<>();
-        response.put("available", MathTypeToLatexUtil.isAvailable());
-        response.put("message", MathTypeToLatexUtil.isAvailable() ? 
-            "MathType 转换服务正常" : "MathType 转换库未加载");
-        return ResponseEntity.ok(response);
+    public ResponseEntity<ConversionResponse> status() {
+        boolean available = MathTypeToLatexUtil.isAvailable();
+        return ResponseEntity.ok(new ConversionResponse.Status(available,
+            available ? "MathType 转换服务正常" : "MathType 转换库未加载"));
+    }
+
+    /**
+     * 本地内存记账：本地库返回的 C 字符串、调用参数和 upcall stub 的分配/释放/未释放数，
+     * FreeCStr 失败次数，以及进程 RSS 和 NMT committed 总量（不可用时为 -1）
+     * 空闲时各 outstanding 应为 0；loadgen/soak-suite.sh 用它判定长时间运行后是否泄漏
+     * GET /api/mathtype/native-memory
+     */
+    @GetMapping("/native-memory")
+    public ResponseEntity<NativeMemoryStats.Snapshot> nativeMemory() {
+        return ResponseEntity.ok(NativeMemoryStats.snapshot());
+    }
+
+    /**
+     * 转换调度器状态：当前配置、各入口选中次数和每个区间的代价估计
+     * GET /api/mathtype/dispatch
+     */
+    @GetMapping("/dispatch")
+    public ResponseEntity<ConversionDispatcher.Snapshot> dispatch() {
+        return ResponseEntity.ok(MathTypeToLatexUtil.dispatcherSnapshot());
+    }
+
+    /**
+     * 自适应并发上限：当前上限、进行中与等待的调用、当前与基线单项延迟，以及入口拒绝次数
+     * GET /api/mathtype/limiter
+     */
+    @GetMapping("/limiter")
+    public ResponseEntity<?> limiter() {
+        ConcurrencyLimiter limiter = MathTypeToLatexUtil.limiter();
+        if (limiter == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ConversionResponse.error("未启用自适应限流（mathtype.limiter.enabled）"));
+        }
+        return ResponseEntity.ok(limiter.snapshot());
+    }
+
+    /**
+     * Java 快速路径：尝试与命中次数、平均耗时，以及按原因统计的回退次数
+     * GET /api/mathtype/fast-path
+     */
+    @GetMapping("/fast-path")
+    public ResponseEntity<MtefFastPath.Snapshot> fastPath() {
+        return ResponseEntity.ok(MtefFastPath.snapshot());
+    }
+
+    /**
+     * 公平调度状态：worker 数、执行中的块数，以及各租户的排队深度和等待时间
+     * GET /api/mathtype/scheduler
+     */
+    @GetMapping("/scheduler")
+    public ResponseEntity<?> scheduler() {
+        FairConversionScheduler current = scheduler.getIfAvailable();
+        if (current == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ConversionResponse.error("未启用公平调度（mathtype.scheduler.enabled）"));
+        }
+        return ResponseEntity.ok(current.snapshot());
+    }
+
+    /**
+     * 本地库状态：当前代号、进行中的调用数，以及替换后仍在等待调用结束的旧库
+     * GET /api/mathtype/library
+     */
+    @GetMapping("/library")
+    public ResponseEntity<MathTypeToLatexUtil.LibraryStatus> library() {
+        return ResponseEntity.ok(MathTypeToLatexUtil.libraryStatus());
+    }
+
+    /**
+     * 不停机替换本地库（需开启 mathtype.library.reload-enabled）
+     * 新库加载成功后新请求立即使用新库，旧库在进行中的调用结束后关闭；加载失败时继续使用当前的库
+     * POST /api/mathtype/library/reload?path=/opt/mathtype/libMathType2Latex.so
+     */
+    @PostMapping("/library/reload")
+    public ResponseEntity<?> reloadLibrary(@RequestParam("path") String path) {
+        if (!libraryReloadEnabled) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ConversionResponse.error("未开启本地库替换（mathtype.library.reload-enabled）"));
+        }
+        Path libPath = Path.of(path);
+        if (!Files.isRegularFile(libPath)) {
+            return ResponseEntity.badRequest().body(ConversionResponse.error("库文件不存在: " + path));
+        }
+        if (!MathTypeToLatexUtil.initFromPath(libPath)) {
+            return ResponseEntity.internalServerError().body(ConversionResponse.error("加载本地库失败: " + path));
+        }
+        return ResponseEntity.ok(MathTypeToLatexUtil.libraryStatus());
     }
 }
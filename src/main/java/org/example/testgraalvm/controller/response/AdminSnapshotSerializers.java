@@ -0,0 +1,277 @@
+package org.example.testgraalvm.controller.response;
+
+import org.example.testgraalvm.mtef.MtefFastPath;
+import org.example.testgraalvm.panama.ConcurrencyLimiter;
+import org.example.testgraalvm.panama.ConversionDispatcher;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.example.testgraalvm.panama.NativeMemoryStats;
+import org.example.testgraalvm.scheduler.FairConversionScheduler;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.SerializableString;
+import tools.jackson.core.io.SerializedString;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.ValueSerializer;
+import tools.jackson.databind.module.SimpleModule;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.example.testgraalvm.controller.response.ConversionResponseSerializer.writeBoolean;
+import static org.example.testgraalvm.controller.response.ConversionResponseSerializer.writeInt;
+import static org.example.testgraalvm.controller.response.ConversionResponseSerializer.writeString;
+
+/**
+ * 管理接口返回的状态快照（调度器、本地库、公平调度、限流、快速路径、本地内存）的手写序列化器
+ * 每种快照类型单独注册；与 {@link ConversionResponseSerializer} 一样预先编码字段名、不依赖反射，原生镜像中无需额外配置
+ */
+public final class AdminSnapshotSerializers {
+
+    private static final SerializableString STRATEGY = new SerializedString("strategy");
+    private static final SerializableString SUB_BATCH_SIZE = new SerializedString("subBatchSize");
+    private static final SerializableString MAX_SUB_BATCH_SIZE = new SerializedString("maxSubBatchSize");
+    private static final SerializableString PARALLELISM = new SerializedString("parallelism");
+    private static final SerializableString CONVERT_MAX_BATCH = new SerializedString("convertMaxBatch");
+    private static final SerializableString EXPLORE_RATE = new SerializedString("exploreRate");
+    private static final SerializableString ALPHA = new SerializedString("alpha");
+    private static final SerializableString DECISIONS = new SerializedString("decisions");
+    private static final SerializableString SPLITS = new SerializedString("splits");
+    private static final SerializableString COSTS = new SerializedString("costs");
+    private static final SerializableString BATCH_SIZE = new SerializedString("batchSize");
+    private static final SerializableString FILE_SIZE = new SerializedString("fileSize");
+    private static final SerializableString SAMPLES = new SerializedString("samples");
+    private static final SerializableString MICROS_PER_ITEM = new SerializedString("microsPerItem");
+    private static final SerializableString EPOCH = new SerializedString("epoch");
+    private static final SerializableString SOURCE = new SerializedString("source");
+    private static final SerializableString IN_FLIGHT = new SerializedString("inFlight");
+    private static final SerializableString DRAINING = new SerializedString("draining");
+    private static final SerializableString WORKERS = new SerializedString("workers");
+    private static final SerializableString BUSY = new SerializedString("busy");
+    private static final SerializableString CHUNK_SIZE = new SerializedString("chunkSize");
+    private static final SerializableString QUANTUM = new SerializedString("quantum");
+    private static final SerializableString INTERACTIVE_MAX_FILES = new SerializedString("interactiveMaxFiles");
+    private static final SerializableString TENANTS = new SerializedString("tenants");
+    private static final SerializableString TENANT = new SerializedString("tenant");
+    private static final SerializableString WEIGHT = new SerializedString("weight");
+    private static final SerializableString QUEUED_TASKS = new SerializedString("queuedTasks");
+    private static final SerializableString QUEUED_FILES = new SerializedString("queuedFiles");
+    private static final SerializableString OLDEST_WAIT_MILLIS = new SerializedString("oldestWaitMillis");
+    private static final SerializableString SERVED_TASKS = new SerializedString("servedTasks");
+    private static final SerializableString SERVED_FILES = new SerializedString("servedFiles");
+    private static final SerializableString AVG_WAIT_MILLIS = new SerializedString("avgWaitMillis");
+    private static final SerializableString MAX_WAIT_MILLIS = new SerializedString("maxWaitMillis");
+    private static final SerializableString LIMIT = new SerializedString("limit");
+    private static final SerializableString MIN_LIMIT = new SerializedString("minLimit");
+    private static final SerializableString MAX_LIMIT = new SerializedString("maxLimit");
+    private static final SerializableString WAITING_ITEMS = new SerializedString("waitingItems");
+    private static final SerializableString LATENCY_MICROS = new SerializedString("latencyMicros");
+    private static final SerializableString BASELINE_MICROS = new SerializedString("baselineMicros");
+    private static final SerializableString REJECTED = new SerializedString("rejected");
+    private static final SerializableString ENABLED = new SerializedString("enabled");
+    private static final SerializableString ATTEMPTS = new SerializedString("attempts");
+    private static final SerializableString HITS = new SerializedString("hits");
+    private static final SerializableString HIT_RATE = new SerializedString("hitRate");
+    private static final SerializableString AVG_MICROS = new SerializedString("avgMicros");
+    private static final SerializableString FALLBACKS = new SerializedString("fallbacks");
+    private static final SerializableString C_STRINGS_RECEIVED = new SerializedString("cStringsReceived");
+    private static final SerializableString C_STRINGS_FREED = new SerializedString("cStringsFreed");
+    private static final SerializableString C_STRINGS_FREE_FAILED = new SerializedString("cStringsFreeFailed");
+    private static final SerializableString C_STRINGS_OUTSTANDING = new SerializedString("cStringsOutstanding");
+    private static final SerializableString RESULT_BYTES_RECEIVED = new SerializedString("resultBytesReceived");
+    private static final SerializableString RESULT_BYTES_FREED = new SerializedString("resultBytesFreed");
+    private static final SerializableString RESULT_BYTES_OUTSTANDING = new SerializedString("resultBytesOutstanding");
+    private static final SerializableString ARGUMENT_BYTES_ALLOCATED = new SerializedString("argumentBytesAllocated");
+    private static final SerializableString ARGUMENT_BYTES_FREED = new SerializedString("argumentBytesFreed");
+    private static final SerializableString ARGUMENT_BYTES_OUTSTANDING = new SerializedString("argumentBytesOutstanding");
+    private static final SerializableString UPCALL_STUBS_CREATED = new SerializedString("upcallStubsCreated");
+    private static final SerializableString UPCALL_STUBS_FREED = new SerializedString("upcallStubsFreed");
+    private static final SerializableString LIBRARIES_LOADED = new SerializedString("librariesLoaded");
+    private static final SerializableString LIBRARIES_CLOSED = new SerializedString("librariesClosed");
+    private static final SerializableString RSS_BYTES = new SerializedString("rssBytes");
+    private static final SerializableString NMT_COMMITTED_BYTES = new SerializedString("nmtCommittedBytes");
+
+    private AdminSnapshotSerializers() {
+    }
+
+    /**
+     * 注册了各快照序列化器的模块
+     */
+    public static SimpleModule module() {
+        SimpleModule module = new SimpleModule("AdminSnapshotModule");
+        module.addSerializer(ConversionDispatcher.Snapshot.class, serializer(AdminSnapshotSerializers::writeDispatch));
+        module.addSerializer(MathTypeToLatexUtil.LibraryStatus.class,
+                serializer(AdminSnapshotSerializers::writeLibrary));
+        module.addSerializer(FairConversionScheduler.Snapshot.class,
+                serializer(AdminSnapshotSerializers::writeScheduler));
+        module.addSerializer(ConcurrencyLimiter.Snapshot.class, serializer(AdminSnapshotSerializers::writeLimiter));
+        module.addSerializer(MtefFastPath.Snapshot.class, serializer(AdminSnapshotSerializers::writeFastPath));
+        module.addSerializer(NativeMemoryStats.Snapshot.class, serializer(AdminSnapshotSerializers::writeNativeMemory));
+        return module;
+    }
+
+    /**
+     * 把字段写入方法包装成写出一个 JSON 对象的序列化器
+     */
+    private static <T> ValueSerializer<T> serializer(BiConsumer<JsonGenerator, T> fields) {
+        return new ValueSerializer<>() {
+            @Override
+            public void serialize(T value, JsonGenerator gen, SerializationContext ctxt) {
+                gen.writeStartObject();
+                fields.accept(gen, value);
+                gen.writeEndObject();
+            }
+        };
+    }
+
+    private static void writeDispatch(JsonGenerator gen, ConversionDispatcher.Snapshot snapshot) {
+        ConversionDispatcher.Settings settings = snapshot.settings();
+        ConversionDispatcher.Strategy strategy = settings.strategy();
+        writeString(gen, STRATEGY, strategy == null ? "auto" : strategy.name());
+        writeInt(gen, SUB_BATCH_SIZE, settings.subBatchSize());
+        writeInt(gen, MAX_SUB_BATCH_SIZE, settings.maxSubBatchSize());
+        writeInt(gen, PARALLELISM, settings.parallelism());
+        writeInt(gen, CONVERT_MAX_BATCH, settings.convertMaxBatch());
+        gen.writeName(EXPLORE_RATE);
+        gen.writeNumber(settings.exploreRate());
+        gen.writeName(ALPHA);
+        gen.writeNumber(settings.alpha());
+
+        gen.writeName(DECISIONS);
+        gen.writeStartObject();
+        snapshot.decisions().forEach((s, count) -> {
+            gen.writeName(s.name());
+            gen.writeNumber(count);
+        });
+        gen.writeEndObject();
+        gen.writeName(SPLITS);
+        gen.writeNumber(snapshot.splits());
+
+        List<ConversionDispatcher.Stat> stats = snapshot.stats();
+        gen.writeName(COSTS);
+        gen.writeStartArray(stats, stats.size());
+        for (ConversionDispatcher.Stat stat : stats) {
+            gen.writeStartObject();
+            writeString(gen, STRATEGY, stat.strategy().name());
+            writeString(gen, BATCH_SIZE, stat.batchSize());
+            writeString(gen, FILE_SIZE, stat.fileSize());
+            gen.writeName(SAMPLES);
+            gen.writeNumber(stat.samples());
+            gen.writeName(MICROS_PER_ITEM);
+            gen.writeNumber(Math.round(stat.microsPerItem() * 10) / 10.0);
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    private static void writeLibrary(JsonGenerator gen, MathTypeToLatexUtil.LibraryStatus status) {
+        gen.writeName(EPOCH);
+        gen.writeNumber(status.epoch());
+        writeString(gen, SOURCE, status.source());
+        gen.writeName(IN_FLIGHT);
+        gen.writeNumber(status.inFlight());
+        gen.writeName(DRAINING);
+        gen.writeStartArray();
+        status.draining().forEach((epoch, inFlight) -> {
+            gen.writeStartObject();
+            gen.writeName(EPOCH);
+            gen.writeNumber(epoch);
+            gen.writeName(IN_FLIGHT);
+            gen.writeNumber(inFlight);
+            gen.writeEndObject();
+        });
+        gen.writeEndArray();
+    }
+
+    private static void writeScheduler(JsonGenerator gen, FairConversionScheduler.Snapshot snapshot) {
+        writeInt(gen, WORKERS, snapshot.workers());
+        writeInt(gen, BUSY, snapshot.busy());
+        writeInt(gen, CHUNK_SIZE, snapshot.chunkSize());
+        writeInt(gen, QUANTUM, snapshot.quantum());
+        writeInt(gen, INTERACTIVE_MAX_FILES, snapshot.interactiveMaxFiles());
+        List<FairConversionScheduler.TenantStats> tenants = snapshot.tenants();
+        gen.writeName(TENANTS);
+        gen.writeStartArray(tenants, tenants.size());
+        for (FairConversionScheduler.TenantStats tenant : tenants) {
+            gen.writeStartObject();
+            writeString(gen, TENANT, tenant.tenant());
+            writeInt(gen, WEIGHT, tenant.weight());
+            writeInt(gen, QUEUED_TASKS, tenant.queuedTasks());
+            gen.writeName(QUEUED_FILES);
+            gen.writeNumber(tenant.queuedFiles());
+            gen.writeName(OLDEST_WAIT_MILLIS);
+            gen.writeNumber(tenant.oldestWaitMillis());
+            gen.writeName(SERVED_TASKS);
+            gen.writeNumber(tenant.servedTasks());
+            gen.writeName(SERVED_FILES);
+            gen.writeNumber(tenant.servedFiles());
+            gen.writeName(AVG_WAIT_MILLIS);
+            gen.writeNumber(Math.round(tenant.avgWaitMillis() * 10) / 10.0);
+            gen.writeName(MAX_WAIT_MILLIS);
+            gen.writeNumber(Math.round(tenant.maxWaitMillis() * 10) / 10.0);
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    private static void writeLimiter(JsonGenerator gen, ConcurrencyLimiter.Snapshot snapshot) {
+        gen.writeName(LIMIT);
+        gen.writeNumber(Math.round(snapshot.limit() * 10) / 10.0);
+        writeInt(gen, MIN_LIMIT, snapshot.settings().minLimit());
+        writeInt(gen, MAX_LIMIT, snapshot.settings().maxLimit());
+        writeInt(gen, IN_FLIGHT, snapshot.inFlight());
+        gen.writeName(WAITING_ITEMS);
+        gen.writeNumber(snapshot.waitingItems());
+        gen.writeName(LATENCY_MICROS);
+        gen.writeNumber(Math.round(snapshot.latencyMicros() * 10) / 10.0);
+        gen.writeName(BASELINE_MICROS);
+        gen.writeNumber(Math.round(snapshot.baselineMicros() * 10) / 10.0);
+        gen.writeName(SAMPLES);
+        gen.writeNumber(snapshot.samples());
+        gen.writeName(REJECTED);
+        gen.writeNumber(snapshot.rejected());
+    }
+
+    private static void writeFastPath(JsonGenerator gen, MtefFastPath.Snapshot snapshot) {
+        writeBoolean(gen, ENABLED, snapshot.settings().enabled());
+        gen.writeName(ATTEMPTS);
+        gen.writeNumber(snapshot.attempts());
+        gen.writeName(HITS);
+        gen.writeNumber(snapshot.hits());
+        gen.writeName(HIT_RATE);
+        gen.writeNumber(snapshot.attempts() == 0 ? 0.0
+                : Math.round(snapshot.hits() * 1000.0 / snapshot.attempts()) / 1000.0);
+        gen.writeName(AVG_MICROS);
+        gen.writeNumber(snapshot.attempts() == 0 ? 0.0
+                : Math.round(snapshot.nanos() / 100.0 / snapshot.attempts()) / 10.0);
+        gen.writeName(FALLBACKS);
+        gen.writeStartObject();
+        snapshot.fallbacks().forEach((reason, count) -> {
+            gen.writeName(reason);
+            gen.writeNumber(count);
+        });
+        gen.writeEndObject();
+    }
+
+    private static void writeNativeMemory(JsonGenerator gen, NativeMemoryStats.Snapshot snapshot) {
+        writeLong(gen, C_STRINGS_RECEIVED, snapshot.cStringsReceived());
+        writeLong(gen, C_STRINGS_FREED, snapshot.cStringsFreed());
+        writeLong(gen, C_STRINGS_FREE_FAILED, snapshot.cStringsFreeFailed());
+        writeLong(gen, C_STRINGS_OUTSTANDING, snapshot.cStringsOutstanding());
+        writeLong(gen, RESULT_BYTES_RECEIVED, snapshot.resultBytesReceived());
+        writeLong(gen, RESULT_BYTES_FREED, snapshot.resultBytesFreed());
+        writeLong(gen, RESULT_BYTES_OUTSTANDING, snapshot.resultBytesOutstanding());
+        writeLong(gen, ARGUMENT_BYTES_ALLOCATED, snapshot.argumentBytesAllocated());
+        writeLong(gen, ARGUMENT_BYTES_FREED, snapshot.argumentBytesFreed());
+        writeLong(gen, ARGUMENT_BYTES_OUTSTANDING, snapshot.argumentBytesOutstanding());
+        writeLong(gen, UPCALL_STUBS_CREATED, snapshot.upcallStubsCreated());
+        writeLong(gen, UPCALL_STUBS_FREED, snapshot.upcallStubsFreed());
+        writeLong(gen, LIBRARIES_LOADED, snapshot.librariesLoaded());
+        writeLong(gen, LIBRARIES_CLOSED, snapshot.librariesClosed());
+        writeLong(gen, RSS_BYTES, snapshot.rssBytes());
+        writeLong(gen, NMT_COMMITTED_BYTES, snapshot.nmtCommittedBytes());
+    }
+
+    private static void writeLong(JsonGenerator gen, SerializableString name, long value) {
+        gen.writeName(name);
+        gen.writeNumber(value);
+    }
+}
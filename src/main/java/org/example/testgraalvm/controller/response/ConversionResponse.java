@@ -0,0 +1,54 @@
+package org.example.testgraalvm.controller.response;
+
+import org.example.testgraalvm.ingest.DocumentIngestor;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+
+import java.util.List;
+
+/**
+ * 转换接口的响应体
+ * 由 {@link ConversionResponseSerializer} 直接用 JsonGenerator 写出，不经过 Map 和反射
+ */
+public sealed interface ConversionResponse {
+
+    static ConversionResponse error(String message) {
+        return new Error(message);
+    }
+
+    /**
+     * 失败响应：{"success":false,"message":...}
+     */
+    record Error(String message) implements ConversionResponse {
+    }
+
+    /**
+     * 单文件转换结果
+     */
+    record Single(String filename, Mtef2LatexDTO result) implements ConversionResponse {
+    }
+
+    /**
+     * 批量转换结果，filenames 与 results 一一对应
+     * 序列化时逐项写出，不为每个结果创建中间对象
+     */
+    record Batch(List<String> filenames, List<Mtef2LatexDTO> results) implements ConversionResponse {
+    }
+
+    /**
+     * 单个结果（NDJSON 流中的一行），index 为在上传文件中的下标
+     */
+    record Item(int index, String filename, Mtef2LatexDTO result) implements ConversionResponse {
+    }
+
+    /**
+     * 文档转换结果，ingested.entries() 与 results 一一对应
+     */
+    record Document(DocumentIngestor.Ingested ingested, List<Mtef2LatexDTO> results) implements ConversionResponse {
+    }
+
+    /**
+     * 服务状态
+     */
+    record Status(boolean available, String message) implements ConversionResponse {
+    }
+}
@@ -0,0 +1,155 @@
+package org.example.testgraalvm.controller.response;
+
+import org.example.testgraalvm.ingest.DocumentIngestor;
+import org.example.testgraalvm.jfr.ResponseWriteEvent;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.SerializableString;
+import tools.jackson.core.io.SerializedString;
+import tools.jackson.databind.SerializationContext;
+import tools.jackson.databind.ValueSerializer;
+import tools.jackson.databind.module.SimpleModule;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * {@link ConversionResponse} 的手写序列化器
+ * 字段名预先编码，按固定顺序写出；不依赖反射，原生镜像中无需额外配置
+ */
+public class ConversionResponseSerializer extends ValueSerializer<ConversionResponse> {
+
+    private static final SerializableString SUCCESS = new SerializedString("success");
+    private static final SerializableString MESSAGE = new SerializedString("message");
+    private static final SerializableString TOTAL = new SerializedString("total");
+    private static final SerializableString RESULTS = new SerializedString("results");
+    private static final SerializableString FILENAME = new SerializedString("filename");
+    private static final SerializableString CODE = new SerializedString("code");
+    private static final SerializableString LATEX = new SerializedString("latex");
+    private static final SerializableString ENTRY = new SerializedString("entry");
+    private static final SerializableString RELATIONSHIP_ID = new SerializedString("relationshipId");
+    private static final SerializableString RELATIONSHIPS = new SerializedString("relationships");
+    private static final SerializableString PART = new SerializedString("part");
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString AVAILABLE = new SerializedString("available");
+    private static final SerializableString INDEX = new SerializedString("index");
+
+    /**
+     * 注册了本序列化器的模块；按接口注册，所有实现类型都会命中
+     */
+    public static SimpleModule module() {
+        SimpleModule module = new SimpleModule("ConversionResponseModule");
+        module.addSerializer(ConversionResponse.class, new ConversionResponseSerializer());
+        return module;
+    }
+
+    @Override
+    public void serialize(ConversionResponse value, JsonGenerator gen, SerializationContext ctxt)
+            throws JacksonException {
+        ResponseWriteEvent event = new ResponseWriteEvent();
+        event.begin();
+        gen.writeStartObject();
+        switch (value) {
+            case ConversionResponse.Error error -> {
+                writeBoolean(gen, SUCCESS, false);
+                writeString(gen, MESSAGE, error.message());
+            }
+            case ConversionResponse.Single single -> {
+                writeResult(gen, single.result());
+                writeString(gen, FILENAME, single.filename());
+            }
+            case ConversionResponse.Batch batch -> {
+                List<String> filenames = batch.filenames();
+                List<Mtef2LatexDTO> results = batch.results();
+                writeBoolean(gen, SUCCESS, true);
+                writeInt(gen, TOTAL, results.size());
+                gen.writeName(RESULTS);
+                gen.writeStartArray(results, results.size());
+                for (int i = 0; i < results.size(); i++) {
+                    gen.writeStartObject();
+                    writeString(gen, FILENAME, filenames.get(i));
+                    writeResult(gen, results.get(i));
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+            }
+            case ConversionResponse.Item item -> {
+                writeInt(gen, INDEX, item.index());
+                writeString(gen, FILENAME, item.filename());
+                writeResult(gen, item.result());
+            }
+            case ConversionResponse.Document document -> {
+                DocumentIngestor.Ingested ingested = document.ingested();
+                List<Mtef2LatexDTO> results = document.results();
+                writeBoolean(gen, SUCCESS, true);
+                writeInt(gen, TOTAL, results.size());
+                gen.writeName(RESULTS);
+                gen.writeStartArray(results, results.size());
+                for (int i = 0; i < results.size(); i++) {
+                    String entry = ingested.entries().get(i);
+                    gen.writeStartObject();
+                    writeString(gen, ENTRY, entry);
+                    writeString(gen, RELATIONSHIP_ID, ingested.primaryRelationshipId(entry));
+                    writeRelationships(gen, ingested.relationships().getOrDefault(entry, List.of()));
+                    writeResult(gen, results.get(i));
+                    gen.writeEndObject();
+                }
+                gen.writeEndArray();
+            }
+            case ConversionResponse.Status status -> {
+                writeBoolean(gen, AVAILABLE, status.available());
+                writeString(gen, MESSAGE, status.message());
+            }
+        }
+        gen.writeEndObject();
+        // 只记录转换结果响应；ndjson 的逐行写出由 Controller 记录。字节数在这里未知，记为 0；
+        // format 取自生成器所属的工厂（json、cbor 或 smile）
+        int items = switch (value) {
+            case ConversionResponse.Single single -> 1;
+            case ConversionResponse.Batch batch -> batch.results().size();
+            case ConversionResponse.Document document -> document.results().size();
+            default -> 0;
+        };
+        if (items > 0) {
+            event.commit(ctxt.tokenStreamFactory().getFormatName().toLowerCase(Locale.ROOT), items, 0);
+        }
+    }
+
+    private static void writeResult(JsonGenerator gen, Mtef2LatexDTO dto) {
+        writeBoolean(gen, SUCCESS, dto.getCode() == Mtef2LatexDTO.SUCCESS_CODE);
+        writeInt(gen, CODE, dto.getCode());
+        writeString(gen, LATEX, dto.getResLatex());
+    }
+
+    private static void writeRelationships(JsonGenerator gen, List<DocumentIngestor.Relationship> relationships) {
+        gen.writeName(RELATIONSHIPS);
+        gen.writeStartArray(relationships, relationships.size());
+        for (DocumentIngestor.Relationship relationship : relationships) {
+            gen.writeStartObject();
+            writeString(gen, PART, relationship.part());
+            writeString(gen, ID, relationship.id());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    static void writeBoolean(JsonGenerator gen, SerializableString name, boolean value) {
+        gen.writeName(name);
+        gen.writeBoolean(value);
+    }
+
+    static void writeInt(JsonGenerator gen, SerializableString name, int value) {
+        gen.writeName(name);
+        gen.writeNumber(value);
+    }
+
+    static void writeString(JsonGenerator gen, SerializableString name, String value) {
+        gen.writeName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(value);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.testgraalvm.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * Asynchronous batch conversion job. Items of the job are stored in {@link ConversionJobItem}.
+ */
+@Entity
+@Table(name = "conversion_job")
+public class ConversionJob {
+
+    /**
+     * Lifecycle of a job.
+     */
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        COMPLETED
+    }
+
+    @Id
+    @Column(name = "id", nullable = false, length = 36)
+    private String id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status;
+
+    @Column(name = "total", nullable = false)
+    private int total;
+
+    @Column(name = "completed", nullable = false)
+    private int completed;
+
+    @Column(name = "failed", nullable = false)
+    private int failed;
+
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private long updatedAt;
+
+    // Default constructor required by JPA
+    public ConversionJob() {
+    }
+
+    public ConversionJob(String id, int total) {
+        this.id = id;
+        this.status = Status.QUEUED;
+        this.total = total;
+        this.createdAt = System.currentTimeMillis();
+        this.updatedAt = this.createdAt;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(int completed) {
+        this.completed = completed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ConversionJob{" +
+                "id='" + id + '\'' +
+                ", status=" + status +
+                ", total=" + total +
+                ", completed=" + completed +
+                ", failed=" + failed +
+                '}';
+    }
+}
@@ -0,0 +1,150 @@
+package org.example.testgraalvm.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * A single file of a {@link ConversionJob}. Pending items form the durable work queue.
+ * A running item holds a lease that its worker keeps renewing; once the lease expires the item is queued again.
+ */
+@Entity
+@Table(name = "conversion_job_item", indexes = {
+        @Index(name = "ix_job_item_status", columnList = "status, id"),
+        @Index(name = "ix_job_item_job", columnList = "job_id, item_index")
+})
+public class ConversionJobItem {
+
+    /**
+     * Processing state of an item.
+     */
+    public enum Status {
+        PENDING,
+        RUNNING,
+        DONE
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false, length = 36)
+    private String jobId;
+
+    @Column(name = "item_index", nullable = false)
+    private int itemIndex;
+
+    @Column(name = "filename", nullable = false, length = 255)
+    private String filename;
+
+    @Column(name = "spool_path", nullable = false, length = 1024)
+    private String spoolPath;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status;
+
+    @Column(name = "code")
+    private Integer code;
+
+    @Column(name = "res_latex", columnDefinition = "TEXT")
+    private String resLatex;
+
+    // Epoch millis until which a RUNNING item belongs to the worker that claimed it
+    @Column(name = "lease_until")
+    private Long leaseUntil;
+
+    // Default constructor required by JPA
+    public ConversionJobItem() {
+    }
+
+    public ConversionJobItem(String jobId, int itemIndex, String filename, String spoolPath) {
+        this.jobId = jobId;
+        this.itemIndex = itemIndex;
+        this.filename = filename;
+        this.spoolPath = spoolPath;
+        this.status = Status.PENDING;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public int getItemIndex() {
+        return itemIndex;
+    }
+
+    public void setItemIndex(int itemIndex) {
+        this.itemIndex = itemIndex;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public String getSpoolPath() {
+        return spoolPath;
+    }
+
+    public void setSpoolPath(String spoolPath) {
+        this.spoolPath = spoolPath;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Integer getCode() {
+        return code;
+    }
+
+    public void setCode(Integer code) {
+        this.code = code;
+    }
+
+    public String getResLatex() {
+        return resLatex;
+    }
+
+    public void setResLatex(String resLatex) {
+        this.resLatex = resLatex;
+    }
+
+    public Long getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(Long leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    @Override
+    public String toString() {
+        return "ConversionJobItem{" +
+                "id=" + id +
+                ", jobId='" + jobId + '\'' +
+                ", itemIndex=" + itemIndex +
+                ", filename='" + filename + '\'' +
+                ", status=" + status +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.testgraalvm.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Persisted MathType conversion result, keyed by the SHA-256 hash of the uploaded content.
+ * The primary key doubles as the unique hash index, so identical formulas are stored once.
+ */
+@Entity
+@Table(name = "conversion_result")
+public class ConversionResult implements Persistable<String> {
+
+    @Id
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "code", nullable = false)
+    private int code;
+
+    @Column(name = "res_latex", columnDefinition = "TEXT")
+    private String resLatex;
+
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    // Assigned ids would otherwise make save() issue a SELECT before every INSERT
+    @Transient
+    private boolean isNew = true;
+
+    // Default constructor required by JPA
+    public ConversionResult() {
+    }
+
+    public ConversionResult(String contentHash, int code, String resLatex) {
+        this.contentHash = contentHash;
+        this.code = code;
+        this.resLatex = resLatex;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    @Override
+    public String getId() {
+        return contentHash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    // Getters and Setters
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public void setCode(int code) {
+        this.code = code;
+    }
+
+    public String getResLatex() {
+        return resLatex;
+    }
+
+    public void setResLatex(String resLatex) {
+        this.resLatex = resLatex;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ConversionResult{" +
+                "contentHash='" + contentHash + '\'' +
+                ", code=" + code +
+                ", resLatex='" + resLatex + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.testgraalvm.grpc;
+
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 在 Web 服务器之外单独监听 gRPC 端口（mathtype.grpc.port，0 表示随机端口）
+ * 使用 grpc-netty-shaded 直接构建服务器，不经过 ServiceLoader 查找传输实现，原生镜像中行为一致
+ */
+@Component
+@ConditionalOnProperty(prefix = "mathtype.grpc", name = "enabled", havingValue = "true")
+public class GrpcServerLifecycle implements SmartLifecycle {
+
+    private static final Logger log = Logger.getLogger(GrpcServerLifecycle.class.getName());
+
+    private final MathTypeGrpcService service;
+    private final int port;
+    private final DataSize maxMessageSize;
+    private final Duration shutdownGracePeriod;
+    private volatile Server server;
+
+    public GrpcServerLifecycle(MathTypeGrpcService service,
+                               @Value("${mathtype.grpc.port:9090}") int port,
+                               @Value("${mathtype.grpc.max-message-size:16MB}") DataSize maxMessageSize,
+                               @Value("${mathtype.grpc.shutdown-grace-period:10s}") Duration shutdownGracePeriod) {
+        this.service = service;
+        this.port = port;
+        this.maxMessageSize = maxMessageSize;
+        this.shutdownGracePeriod = shutdownGracePeriod;
+    }
+
+    @Override
+    public void start() {
+        try {
+            server = NettyServerBuilder.forPort(port)
+                    .addService(service)
+                    .maxInboundMessageSize((int) maxMessageSize.toBytes())
+                    .build()
+                    .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start gRPC server on port " + port, e);
+        }
+        log.info("gRPC server started on port " + server.getPort());
+    }
+
+    @Override
+    public void stop() {
+        Server current = server;
+        if (current == null) {
+            return;
+        }
+        // 不再接受新流，给进行中的流留出时间完成
+        current.shutdown();
+        try {
+            if (!current.awaitTermination(shutdownGracePeriod.toMillis(), TimeUnit.MILLISECONDS)) {
+                current.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            current.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * 实际监听的端口（配置为 0 时由系统分配）
+     */
+    public int getPort() {
+        Server current = server;
+        return current != null ? current.getPort() : -1;
+    }
+}
@@ -0,0 +1,217 @@
+package org.example.testgraalvm.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PreDestroy;
+import org.example.testgraalvm.grpc.proto.ConvertRequest;
+import org.example.testgraalvm.grpc.proto.ConvertResult;
+import org.example.testgraalvm.grpc.proto.MathTypeConversionGrpc;
+import org.example.testgraalvm.ingest.ScratchFilePool;
+import org.example.testgraalvm.mtef.EquationNativeValidator;
+import org.example.testgraalvm.mtef.MtefException;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.example.testgraalvm.service.MathTypeConversionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * gRPC 双向流转换服务（mathtype_conversion.proto）
+ * <p>
+ * 请求内容直接写入复用的临时文件（本地库只接受路径），在有界线程池中转换，结果按完成顺序写回同一个流。
+ * 每个流同时处理的条数不超过 mathtype.grpc.max-in-flight-per-stream：关闭自动读取，只有结果发出
+ * 且出站缓冲可写时才向客户端请求下一条，由 HTTP/2 流控反压上游。
+ * 客户端取消或超过 deadline 后，尚未开始的条目不再调用本地库。
+ */
+@Service
+@ConditionalOnProperty(prefix = "mathtype.grpc", name = "enabled", havingValue = "true")
+public class MathTypeGrpcService extends MathTypeConversionGrpc.MathTypeConversionImplBase {
+
+    private final MathTypeConversionService conversionService;
+    private final ThreadPoolExecutor executor;
+    private final ScratchFilePool scratchPool;
+    private final int maxInFlightPerStream;
+
+    public MathTypeGrpcService(MathTypeConversionService conversionService,
+                               @Value("${mathtype.grpc.workers:2}") int workers,
+                               @Value("${mathtype.grpc.queue-capacity:256}") int queueCapacity,
+                               @Value("${mathtype.grpc.max-in-flight-per-stream:16}") int maxInFlightPerStream,
+                               @Value("${mathtype.grpc.scratch-pool-size:64}") int scratchPoolSize) throws IOException {
+        this.conversionService = conversionService;
+        // 队列满时拒绝，对应的流以 RESOURCE_EXHAUSTED 结束
+        this.executor = new ThreadPoolExecutor(Math.max(1, workers), Math.max(1, workers),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                Thread.ofPlatform().name("mathtype-grpc-", 0).daemon().factory());
+        this.scratchPool = new ScratchFilePool(
+                Path.of(System.getProperty("java.io.tmpdir"), "mathtype-grpc-scratch"), scratchPoolSize);
+        this.maxInFlightPerStream = Math.max(1, maxInFlightPerStream);
+    }
+
+    @Override
+    public StreamObserver<ConvertRequest> convert(StreamObserver<ConvertResult> responseObserver) {
+        ServerCallStreamObserver<ConvertResult> responses = (ServerCallStreamObserver<ConvertResult>) responseObserver;
+        ConvertStream stream = new ConvertStream(responses);
+        // 必须在方法返回前设置
+        responses.disableAutoRequest();
+        responses.setOnReadyHandler(stream::onReady);
+        responses.setOnCancelHandler(stream::onCancel);
+        responses.request(maxInFlightPerStream);
+        return stream;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        scratchPool.close();
+    }
+
+    private Mtef2LatexDTO convertPayload(ConvertRequest request) {
+        if (request.getPayload().isEmpty()) {
+            return Mtef2LatexDTO.error("内容为空");
+        }
+        // 不是有效的公式对象时不写临时文件；预检结果交给转换服务，不再重复解析
+        EquationNativeValidator.Inspection inspection = null;
+        if (EquationNativeValidator.appliesTo(request.getPayload().size())) {
+            try {
+                inspection = EquationNativeValidator.inspect(request.getPayload().toByteArray());
+            } catch (MtefException e) {
+                return EquationNativeValidator.rejection(e);
+            }
+        }
+        Path scratch;
+        try {
+            scratch = scratchPool.acquire();
+        } catch (IOException e) {
+            return Mtef2LatexDTO.error("文件处理失败: " + e.getMessage());
+        }
+        try {
+            try (OutputStream out = Files.newOutputStream(scratch,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                request.getPayload().writeTo(out);
+            }
+            return conversionService.convert(scratch, inspection);
+        } catch (IOException e) {
+            return Mtef2LatexDTO.error("文件处理失败: " + e.getMessage());
+        } finally {
+            scratchPool.release(scratch);
+        }
+    }
+
+    private static ConvertResult toResult(String id, Mtef2LatexDTO dto) {
+        ConvertResult.Builder result = ConvertResult.newBuilder()
+                .setId(id)
+                .setSuccess(dto.getCode() == Mtef2LatexDTO.SUCCESS_CODE)
+                .setCode(dto.getCode());
+        if (dto.getResLatex() != null) {
+            result.setLatex(dto.getResLatex());
+        }
+        return result.build();
+    }
+
+    /**
+     * 一个双向流的状态；入站回调与转换线程并发访问，全部在 this 上同步
+     */
+    private final class ConvertStream implements StreamObserver<ConvertRequest> {
+
+        private final ServerCallStreamObserver<ConvertResult> responses;
+        private int inFlight;
+        // 出站缓冲不可写时推迟的读取请求，在 onReady 中补上
+        private int deferredRequests;
+        private boolean halfClosed;
+        private boolean done;
+
+        ConvertStream(ServerCallStreamObserver<ConvertResult> responses) {
+            this.responses = responses;
+        }
+
+        @Override
+        public void onNext(ConvertRequest request) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                inFlight++;
+            }
+            try {
+                executor.execute(() -> {
+                    if (isDone()) {
+                        complete(null);
+                        return;
+                    }
+                    complete(toResult(request.getId(), convertPayload(request)));
+                });
+            } catch (RejectedExecutionException e) {
+                fail(Status.RESOURCE_EXHAUSTED.withDescription("转换队列已满"));
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // 客户端取消或连接断开
+            onCancel();
+        }
+
+        @Override
+        public synchronized void onCompleted() {
+            halfClosed = true;
+            if (inFlight == 0 && !done) {
+                done = true;
+                responses.onCompleted();
+            }
+        }
+
+        synchronized void onReady() {
+            if (deferredRequests > 0 && !done) {
+                responses.request(deferredRequests);
+                deferredRequests = 0;
+            }
+        }
+
+        synchronized void onCancel() {
+            done = true;
+        }
+
+        private synchronized boolean isDone() {
+            return done;
+        }
+
+        private synchronized void complete(ConvertResult result) {
+            inFlight--;
+            if (done) {
+                return;
+            }
+            if (result != null) {
+                responses.onNext(result);
+            }
+            if (halfClosed) {
+                if (inFlight == 0) {
+                    done = true;
+                    responses.onCompleted();
+                }
+            } else if (responses.isReady()) {
+                responses.request(1);
+            } else {
+                deferredRequests++;
+            }
+        }
+
+        private synchronized void fail(Status status) {
+            inFlight--;
+            if (!done) {
+                done = true;
+                responses.onError(status.asRuntimeException());
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package org.example.testgraalvm.ingest;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * .docx / zip 文档解析：顺序读取压缩包条目，把内嵌的 OLE 对象（word/embeddings/oleObject*.bin 等）逐个送入转换流水线
+ * 同时解析 word/_rels/*.rels，把每个结果映射回引用它的关系 ID
+ * <p>
+ * 防止压缩炸弹：限制条目数、单个条目和全部条目解压后的字节数；不使用的条目也按解压后的字节计入总量
+ */
+public final class DocumentIngestor {
+
+    // 单个条目解压后的最大字节数
+    private static final long MAX_ENTRY_SIZE = 16L * 1024 * 1024;
+    // 全部条目解压后的最大字节数与最大条目数
+    static final long MAX_TOTAL_SIZE = 256L * 1024 * 1024;
+    static final int MAX_ENTRIES = 10_000;
+    private static final String EMBEDDINGS_DIR = "/embeddings/";
+    private static final String RELS_DIR = "word/_rels/";
+
+    /**
+     * 引用内嵌对象的关系
+     *
+     * @param part 声明该关系的部件，例如 word/document.xml
+     * @param id   关系 ID，例如 rId7
+     */
+    public record Relationship(String part, String id) {
+    }
+
+    /**
+     * 解析结果
+     *
+     * @param entries       送入流水线的条目名称，顺序与流水线结果一致
+     * @param relationships 条目名称 -> 引用它的关系
+     */
+    public record Ingested(List<String> entries, Map<String, List<Relationship>> relationships) {
+
+        /**
+         * 条目在正文（word/document.xml）中的关系 ID，没有时取第一个引用
+         */
+        public String primaryRelationshipId(String entry) {
+            List<Relationship> refs = relationships.getOrDefault(entry, List.of());
+            for (Relationship ref : refs) {
+                if (ref.part().equals("word/document.xml")) {
+                    return ref.id();
+                }
+            }
+            return refs.isEmpty() ? null : refs.getFirst().id();
+        }
+    }
+
+    private DocumentIngestor() {
+    }
+
+    /**
+     * 顺序读取压缩包，条目一解压出来就交给流水线
+     *
+     * @param document .docx 或 zip 输入流
+     * @param pipeline 转换流水线
+     */
+    public static Ingested ingest(InputStream document, StreamingConversionPipeline pipeline) throws IOException {
+        List<String> entries = new ArrayList<>();
+        // 关系文件可能出现在内嵌对象之后，先收集目标路径，最后再对应
+        Map<String, List<Relationship>> byTarget = new HashMap<>();
+
+        ZipInputStream zip = new ZipInputStream(document);
+        BoundedInputStream content = new BoundedInputStream(zip);
+        ZipEntry entry;
+        int count = 0;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (++count > MAX_ENTRIES) {
+                throw new IOException("Too many entries in document (max " + MAX_ENTRIES + ")");
+            }
+            String name = entry.getName();
+            if (entry.isDirectory()) {
+                continue;
+            }
+            content.startEntry(name);
+            if (isEmbeddedObject(name)) {
+                if (pipeline.add(name, content)) {
+                    entries.add(name);
+                }
+            } else if (name.startsWith(RELS_DIR) && name.endsWith(".rels")) {
+                byte[] xml = content.readAllBytes();
+                String part = "word/" + name.substring(RELS_DIR.length(), name.length() - ".rels".length());
+                readRelationships(xml, part, byTarget);
+            }
+            // 其余条目也经过计数读完，而不是由 getNextEntry 不计数地跳过
+            content.transferTo(OutputStream.nullOutputStream());
+        }
+
+        Map<String, List<Relationship>> relationships = new HashMap<>();
+        for (String name : entries) {
+            List<Relationship> refs = byTarget.get(name);
+            if (refs != null) {
+                relationships.put(name, refs);
+            }
+        }
+        return new Ingested(entries, relationships);
+    }
+
+    /**
+     * OOXML 包中的内嵌 OLE 对象，例如 word/embeddings/oleObject1.bin
+     */
+    static boolean isEmbeddedObject(String name) {
+        int slash = name.lastIndexOf('/');
+        if (slash < 0 || !name.regionMatches(true, slash - EMBEDDINGS_DIR.length() + 1,
+                EMBEDDINGS_DIR, 0, EMBEDDINGS_DIR.length())) {
+            return false;
+        }
+        String file = name.substring(slash + 1).toLowerCase(Locale.ROOT);
+        return file.startsWith("oleobject") && file.endsWith(".bin");
+    }
+
+    private static void readRelationships(byte[] xml, String part, Map<String, List<Relationship>> byTarget)
+            throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(new ByteArrayInputStream(xml));
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && reader.getLocalName().equals("Relationship")
+                            && !"External".equals(reader.getAttributeValue(null, "TargetMode"))) {
+                        String id = reader.getAttributeValue(null, "Id");
+                        String target = reader.getAttributeValue(null, "Target");
+                        if (id != null && target != null) {
+                            byTarget.computeIfAbsent(resolveTarget(target), t -> new ArrayList<>())
+                                    .add(new Relationship(part, id));
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed relationships part for " + part + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 关系目标相对于 word/ 目录，以 / 开头时相对于包根目录
+     */
+    private static String resolveTarget(String target) {
+        if (target.startsWith("/")) {
+            return target.substring(1);
+        }
+        Deque<String> segments = new ArrayDeque<>(List.of("word"));
+        for (String segment : target.split("/")) {
+            if (segment.equals("..")) {
+                segments.pollLast();
+            } else if (!segment.isEmpty() && !segment.equals(".")) {
+                segments.addLast(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    /**
+     * 限制单个条目和整个压缩包解压后的读取长度，且不关闭底层的 ZipInputStream
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+
+        // 单字节读取复用的缓冲
+        private final byte[] single = new byte[1];
+        private String name;
+        private long remaining;
+        private long totalRemaining = MAX_TOTAL_SIZE;
+
+        BoundedInputStream(InputStream in) {
+            super(in);
+        }
+
+        void startEntry(String name) {
+            this.name = name;
+            this.remaining = MAX_ENTRY_SIZE;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                remaining -= n;
+                totalRemaining -= n;
+                if (remaining < 0) {
+                    throw new IOException("Entry too large: " + name);
+                }
+                if (totalRemaining < 0) {
+                    throw new IOException("Document too large: more than " + MAX_TOTAL_SIZE + " bytes uncompressed");
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // 由调用方关闭整个压缩包
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package org.example.testgraalvm.ingest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 增量式 multipart/form-data 解析器
+ * 直接从请求输入流中逐个读出 part，不在内存或磁盘上缓冲整个请求
+ */
+public final class MultipartStreamParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_LINE = 8 * 1024;
+    private static final int MAX_HEADERS = 64;
+
+    /**
+     * part 的头部信息
+     *
+     * @param name        表单字段名
+     * @param filename    上传文件名，非文件字段为 null
+     * @param contentType part 的 Content-Type，可能为 null
+     */
+    public record PartHeaders(String name, String filename, String contentType) {
+    }
+
+    private final InputStream in;
+    // "\r\n--" + boundary
+    private final byte[] delimiter;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    // body() 单字节读取复用的缓冲
+    private final byte[] single = new byte[1];
+    private int pos;
+    private int limit;
+    private boolean eof;
+    private boolean started;
+    private boolean finished;
+    private boolean inBody;
+
+    public MultipartStreamParser(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        if (delimiter.length * 2 > BUFFER_SIZE) {
+            throw new IllegalArgumentException("Multipart boundary too long");
+        }
+        // 把流视为以 CRLF 开头，第一个分隔符就与后续分隔符格式一致
+        buf[0] = '\r';
+        buf[1] = '\n';
+        limit = 2;
+    }
+
+    /**
+     * 从 Content-Type 头中取出 boundary
+     *
+     * @return boundary，不存在时返回 null
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            String trimmed = param.trim();
+            if (trimmed.toLowerCase(Locale.ROOT).startsWith("boundary=")) {
+                String value = trimmed.substring("boundary=".length());
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value.isEmpty() ? null : value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 前进到下一个 part，未读完的当前 part 内容会被跳过
+     *
+     * @return 下一个 part 的头部，没有更多 part 时返回 null
+     */
+    public PartHeaders nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        if (inBody) {
+            byte[] skip = new byte[8192];
+            while (readBody(skip, 0, skip.length) >= 0) {
+                // 丢弃当前 part 剩余内容
+            }
+        } else if (!started) {
+            // 跳过前导内容直到第一个分隔符
+            while (true) {
+                int idx = indexOfDelimiter();
+                if (idx >= 0) {
+                    pos = idx + delimiter.length;
+                    break;
+                }
+                pos = Math.max(pos, limit - delimiter.length + 1);
+                if (!fill()) {
+                    throw new IOException("Multipart boundary not found");
+                }
+            }
+            started = true;
+        }
+
+        // 分隔符后是 "--" 表示结束，否则是 CRLF 和 part 头部
+        ensure(2);
+        if (limit - pos >= 2 && buf[pos] == '-' && buf[pos + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        String transportPadding = readLine();
+        if (!transportPadding.isBlank()) {
+            throw new IOException("Malformed multipart delimiter line");
+        }
+
+        List<String> lines = new ArrayList<>();
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            // 以空白开头的行是上一个头部的折行（obs-fold）
+            if ((line.charAt(0) == ' ' || line.charAt(0) == '\t') && !lines.isEmpty()) {
+                lines.set(lines.size() - 1, lines.getLast() + " " + line.strip());
+            } else if (lines.size() == MAX_HEADERS) {
+                throw new IOException("Too many multipart headers");
+            } else {
+                lines.add(line);
+            }
+        }
+
+        String name = null;
+        String filename = null;
+        String contentType = null;
+        for (String header : lines) {
+            int colon = header.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String key = header.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = header.substring(colon + 1).trim();
+            if (key.equals("content-disposition")) {
+                name = dispositionParam(value, "name");
+                filename = dispositionParam(value, "filename");
+            } else if (key.equals("content-type")) {
+                contentType = value;
+            }
+        }
+        inBody = true;
+        return new PartHeaders(name, filename, contentType);
+    }
+
+    /**
+     * 当前 part 内容的输入流，读到 part 结束时返回 -1
+     */
+    public InputStream body() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                return readBody(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return readBody(b, off, len);
+            }
+        };
+    }
+
+    private int readBody(byte[] dst, int off, int len) throws IOException {
+        if (!inBody) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            int idx = indexOfDelimiter();
+            if (idx == pos) {
+                pos += delimiter.length;
+                inBody = false;
+                return -1;
+            }
+            // 分隔符可能跨越缓冲区末尾，末尾 delimiter.length - 1 字节暂不交出
+            int safeEnd = idx >= 0 ? idx : limit - delimiter.length + 1;
+            if (safeEnd > pos) {
+                int n = Math.min(len, safeEnd - pos);
+                System.arraycopy(buf, pos, dst, off, n);
+                pos += n;
+                return n;
+            }
+            if (!fill()) {
+                throw new IOException("Unexpected end of multipart stream");
+            }
+        }
+    }
+
+    private int indexOfDelimiter() {
+        byte first = delimiter[0];
+        int last = limit - delimiter.length;
+        outer:
+        for (int i = pos; i <= last; i++) {
+            if (buf[i] != first) {
+                continue;
+            }
+            for (int j = 1; j < delimiter.length; j++) {
+                if (buf[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private String readLine() throws IOException {
+        while (true) {
+            for (int i = pos; i + 1 < limit; i++) {
+                if (buf[i] == '\r' && buf[i + 1] == '\n') {
+                    String line = new String(buf, pos, i - pos, StandardCharsets.UTF_8);
+                    pos = i + 2;
+                    return line;
+                }
+            }
+            if (limit - pos > MAX_HEADER_LINE) {
+                throw new IOException("Multipart header line too long");
+            }
+            if (!fill()) {
+                throw new IOException("Unexpected end of multipart headers");
+            }
+        }
+    }
+
+    private void ensure(int n) throws IOException {
+        while (limit - pos < n && fill()) {
+            // 继续读取
+        }
+    }
+
+    /**
+     * 压缩缓冲区并读入更多数据
+     *
+     * @return 是否读到了新数据
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            throw new IOException("Multipart buffer overflow");
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * 取 Content-Disposition 的参数值；带引号的值可以包含 ';'，其中的 \" 表示引号，
+     * 其余反斜杠原样保留（旧版浏览器会发送未转义的 Windows 路径）
+     */
+    static String dispositionParam(String disposition, String param) {
+        int n = disposition.length();
+        int i = disposition.indexOf(';');
+        while (i >= 0) {
+            int start = i + 1;
+            int eq = disposition.indexOf('=', start);
+            int semi = disposition.indexOf(';', start);
+            if (eq < 0 || (semi >= 0 && semi < eq)) {
+                // 没有值的参数
+                i = semi;
+                continue;
+            }
+            String key = disposition.substring(start, eq).trim();
+            int j = eq + 1;
+            while (j < n && (disposition.charAt(j) == ' ' || disposition.charAt(j) == '\t')) {
+                j++;
+            }
+            String value;
+            if (j < n && disposition.charAt(j) == '"') {
+                StringBuilder quoted = new StringBuilder();
+                for (j++; j < n && disposition.charAt(j) != '"'; j++) {
+                    char c = disposition.charAt(j);
+                    if (c == '\\' && j + 1 < n && disposition.charAt(j + 1) == '"') {
+                        c = '"';
+                        j++;
+                    }
+                    quoted.append(c);
+                }
+                value = quoted.toString();
+                i = disposition.indexOf(';', j);
+            } else {
+                int end = disposition.indexOf(';', j);
+                value = disposition.substring(j, end < 0 ? n : end).trim();
+                i = end;
+            }
+            if (key.equalsIgnoreCase(param)) {
+                // 浏览器可能带上客户端路径
+                int slash = Math.max(value.lastIndexOf('/'), value.lastIndexOf('\\'));
+                return param.equals("filename") && slash >= 0 ? value.substring(slash + 1) : value;
+            }
+        }
+        return null;
+    }
+}
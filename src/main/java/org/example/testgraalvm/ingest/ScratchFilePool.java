@@ -0,0 +1,68 @@
+package org.example.testgraalvm.ingest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * 可复用的临时文件池
+ * 本地库只接受文件路径，复用文件可避免每个 part 都创建、删除一次临时文件
+ */
+public final class ScratchFilePool implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(ScratchFilePool.class.getName());
+
+    private final Path dir;
+    private final int maxIdle;
+    private final ConcurrentLinkedDeque<Path> idle = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public ScratchFilePool(Path dir, int maxIdle) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * 取出一个空闲文件，没有时新建；调用方负责覆盖写入
+     */
+    public Path acquire() throws IOException {
+        Path path = idle.pollFirst();
+        if (path != null) {
+            idleCount.decrementAndGet();
+            return path;
+        }
+        return Files.createTempFile(dir, "mathtype_scratch_", ".bin");
+    }
+
+    /**
+     * 归还文件，池已满时直接删除
+     */
+    public void release(Path path) {
+        if (idleCount.incrementAndGet() <= maxIdle) {
+            idle.offerFirst(path);
+            return;
+        }
+        idleCount.decrementAndGet();
+        delete(path);
+    }
+
+    @Override
+    public void close() {
+        Path path;
+        while ((path = idle.pollFirst()) != null) {
+            delete(path);
+        }
+        idleCount.set(0);
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warning("Failed to delete scratch file " + path + ": " + e.getMessage());
+        }
+    }
+}
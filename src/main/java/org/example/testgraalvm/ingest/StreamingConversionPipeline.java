@@ -0,0 +1,178 @@
+package org.example.testgraalvm.ingest;
+
+import org.example.testgraalvm.jfr.TempFileWriteEvent;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 边接收边转换的流水线（每个请求一个实例，非线程安全）
+ * 输入按到达顺序写入复用的临时文件，凑满一块就提交到线程池转换，上传与转换重叠进行
+ */
+public final class StreamingConversionPipeline {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 一块文件的实际转换逻辑
+     */
+    @FunctionalInterface
+    public interface BatchConverter {
+        List<Mtef2LatexDTO> convert(List<Path> binFiles) throws IOException;
+    }
+
+    private final BatchConverter converter;
+    private final ExecutorService executor;
+    private final ScratchFilePool scratchPool;
+    private final int chunkSize;
+    // 限制单个请求同时在转换的块数，转换跟不上时让上传读取等待
+    private final Semaphore inFlight;
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Future<List<Mtef2LatexDTO>>> chunks = new ArrayList<>();
+    private final List<Integer> chunkSizes = new ArrayList<>();
+    private List<Path> current = new ArrayList<>();
+    private final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+
+    public StreamingConversionPipeline(BatchConverter converter, ExecutorService executor,
+                                       ScratchFilePool scratchPool, int chunkSize, int maxInFlightChunks) {
+        this.converter = converter;
+        this.executor = executor;
+        this.scratchPool = scratchPool;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.inFlight = new Semaphore(Math.max(1, maxInFlightChunks));
+    }
+
+    /**
+     * 接收一个输入，内容为空时忽略
+     *
+     * @param name    输入名称（文件名或条目名）
+     * @param content 输入内容，读到末尾为止
+     * @return 是否接收
+     */
+    public boolean add(String name, InputStream content) throws IOException {
+        Path scratch = scratchPool.acquire();
+        TempFileWriteEvent event = new TempFileWriteEvent();
+        event.begin();
+        long size;
+        try {
+            size = copy(content, scratch);
+        } catch (IOException e) {
+            scratchPool.release(scratch);
+            throw e;
+        }
+        event.commit(size);
+        if (size == 0) {
+            scratchPool.release(scratch);
+            return false;
+        }
+
+        names.add(name);
+        current.add(scratch);
+        if (current.size() >= chunkSize) {
+            submitCurrent();
+        }
+        return true;
+    }
+
+    /**
+     * 已接收的输入数量
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * 已接收输入的名称，顺序与结果一致
+     */
+    public List<String> names() {
+        return names;
+    }
+
+    /**
+     * 提交剩余输入并等待全部结果，结果顺序与接收顺序一致
+     */
+    public List<Mtef2LatexDTO> finish() throws IOException {
+        if (!current.isEmpty()) {
+            submitCurrent();
+        }
+        List<Mtef2LatexDTO> results = new ArrayList<>(names.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            try {
+                results.addAll(chunks.get(i).get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                for (int j = 0; j < chunkSizes.get(i); j++) {
+                    results.add(Mtef2LatexDTO.error("转换失败: " + cause.getMessage()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Conversion interrupted");
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 请求失败时归还尚未提交的临时文件（已提交的块在转换结束后自行归还）
+     */
+    public void abort() {
+        current.forEach(scratchPool::release);
+        current = new ArrayList<>();
+    }
+
+    private void submitCurrent() throws IOException {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for conversion capacity");
+        }
+        List<Path> chunk = current;
+        current = new ArrayList<>();
+        chunkSizes.add(chunk.size());
+        try {
+            chunks.add(executor.submit(() -> {
+                try {
+                    return converter.convert(chunk);
+                } finally {
+                    chunk.forEach(scratchPool::release);
+                    inFlight.release();
+                }
+            }));
+        } catch (RuntimeException e) {
+            chunk.forEach(scratchPool::release);
+            inFlight.release();
+            chunkSizes.removeLast();
+            throw e;
+        }
+    }
+
+    private long copy(InputStream content, Path target) throws IOException {
+        long total = 0;
+        try (FileChannel channel = FileChannel.open(target,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int n;
+            while ((n = content.read(copyBuffer)) > 0) {
+                ByteBuffer buffer = ByteBuffer.wrap(copyBuffer, 0, n);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                total += n;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.testgraalvm.ingest;
+
+import jakarta.annotation.PreDestroy;
+import org.example.testgraalvm.scheduler.TenantContext;
+import org.example.testgraalvm.service.MathTypeConversionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 流式上传转换服务：持有转换线程池与临时文件池，为每个请求创建流水线
+ */
+@Service
+public class StreamingIngestService {
+
+    private final MathTypeConversionService conversionService;
+    private final ExecutorService executor;
+    private final ScratchFilePool scratchPool;
+    private final int chunkSize;
+    private final int maxInFlightChunks;
+
+    public StreamingIngestService(MathTypeConversionService conversionService,
+                                  @Value("${mathtype.ingest.workers:2}") int workers,
+                                  @Value("${mathtype.ingest.chunk-size:20}") int chunkSize,
+                                  @Value("${mathtype.ingest.max-in-flight-chunks:4}") int maxInFlightChunks,
+                                  @Value("${mathtype.ingest.scratch-pool-size:256}") int scratchPoolSize) throws IOException {
+        this.conversionService = conversionService;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, workers),
+                Thread.ofPlatform().name("mathtype-ingest-", 0).daemon().factory());
+        this.scratchPool = new ScratchFilePool(
+                Path.of(System.getProperty("java.io.tmpdir"), "mathtype-scratch"), scratchPoolSize);
+        this.chunkSize = chunkSize;
+        this.maxInFlightChunks = maxInFlightChunks;
+    }
+
+    /**
+     * 为一个请求创建新的流水线
+     */
+    public StreamingConversionPipeline newPipeline() {
+        // 块在转换线程中执行，提交前记下请求所属的租户
+        String tenant = TenantContext.current();
+        return new StreamingConversionPipeline(
+                files -> TenantContext.callAs(tenant, () -> conversionService.convertBatch(files)),
+                executor, scratchPool, chunkSize, maxInFlightChunks);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        scratchPool.close();
+    }
+}
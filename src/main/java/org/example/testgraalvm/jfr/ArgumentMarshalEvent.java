@@ -0,0 +1,39 @@
+package org.example.testgraalvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 本地调用的参数编组：路径列表序列化为 JSON（step=json），再拷贝为本地内存中的 C 字符串（step=c-string）
+ */
+@Name("org.example.testgraalvm.ArgumentMarshal")
+@Label("Argument Marshal")
+@Category({"MathType", "Native"})
+@Description("File paths serialized to JSON and copied into native memory as a C string")
+@StackTrace(false)
+public class ArgumentMarshalEvent extends Event {
+
+    @Label("Step")
+    public String step;
+
+    @Label("Paths")
+    public int paths;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    public void commit(String step, int paths, long bytes) {
+        if (shouldCommit()) {
+            this.step = step;
+            this.paths = paths;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
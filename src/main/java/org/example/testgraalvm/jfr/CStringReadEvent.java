@@ -0,0 +1,35 @@
+package org.example.testgraalvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 读取本地库返回的 C 字符串：strlen 测量长度，需要时再拷贝到堆内并解码（decoded=false 时结果直接从本地内存写出）
+ */
+@Name("org.example.testgraalvm.CStringRead")
+@Label("C String Read")
+@Category({"MathType", "Native"})
+@Description("Result C string measured and, unless streamed, copied to the heap and decoded")
+@StackTrace(false)
+public class CStringReadEvent extends Event {
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Decoded")
+    public boolean decoded;
+
+    public void commit(long bytes, boolean decoded) {
+        if (shouldCommit()) {
+            this.bytes = bytes;
+            this.decoded = decoded;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.testgraalvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一次本地库函数调用，只包含 downcall 本身（不含参数编组和结果读取）
+ * <p>
+ * 本包的事件覆盖转换流水线的各个阶段，用法相同：{@code begin()} 后在阶段结束时调用带字段的 {@code commit(...)}。
+ * 没有进行中的录制时两者都是空操作，字段只在 {@code shouldCommit()} 为真时赋值，事件对象可被逃逸分析消除。
+ * 录制：{@code -XX:StartFlightRecording=filename=mathtype.jfr}（原生镜像需以 {@code --enable-monitoring=jfr} 构建），
+ * 查看：{@code jfr print --categories MathType mathtype.jfr}
+ */
+@Name("org.example.testgraalvm.NativeCall")
+@Label("Native Call")
+@Category({"MathType", "Native"})
+@Description("Downcall into the MathType2Latex library")
+@StackTrace(false)
+public class NativeCallEvent extends Event {
+
+    @Label("Function")
+    public String function;
+
+    @Label("Batch Size")
+    public int batchSize;
+
+    public void commit(String function, int batchSize) {
+        if (shouldCommit()) {
+            this.function = function;
+            this.batchSize = batchSize;
+            commit();
+        }
+    }
+}
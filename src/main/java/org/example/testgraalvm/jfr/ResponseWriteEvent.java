@@ -0,0 +1,40 @@
+package org.example.testgraalvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 转换结果写入响应：format 为 json、cbor 或 smile（按协商的格式序列化响应对象，字节数未知时为 0）、
+ * ndjson（一行）或 raw（本地库结果原样写出）
+ */
+@Name("org.example.testgraalvm.ResponseWrite")
+@Label("Response Write")
+@Category({"MathType", "Conversion"})
+@Description("Conversion results serialized and written to the response")
+@StackTrace(false)
+public class ResponseWriteEvent extends Event {
+
+    @Label("Format")
+    public String format;
+
+    @Label("Items")
+    public int items;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    public void commit(String format, int items, long bytes) {
+        if (shouldCommit()) {
+            this.format = format;
+            this.items = items;
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
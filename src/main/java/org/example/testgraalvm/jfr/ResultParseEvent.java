@@ -0,0 +1,33 @@
+package org.example.testgraalvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 本地库结果 JSON 解析为 DTO
+ */
+@Name("org.example.testgraalvm.ResultParse")
+@Label("Result Parse")
+@Category({"MathType", "Conversion"})
+@Description("Native result JSON parsed into DTOs")
+@StackTrace(false)
+public class ResultParseEvent extends Event {
+
+    @Label("Items")
+    public int items;
+
+    @Label("Characters")
+    public long characters;
+
+    public void commit(int items, long characters) {
+        if (shouldCommit()) {
+            this.items = items;
+            this.characters = characters;
+            commit();
+        }
+    }
+}
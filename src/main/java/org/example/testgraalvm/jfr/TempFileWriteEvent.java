@@ -0,0 +1,31 @@
+package org.example.testgraalvm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 上传内容写入临时文件（本地库只接受文件路径）
+ */
+@Name("org.example.testgraalvm.TempFileWrite")
+@Label("Temp File Write")
+@Category({"MathType", "Conversion"})
+@Description("Upload copied to a temp file before conversion")
+@StackTrace(false)
+public class TempFileWriteEvent extends Event {
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    public void commit(long bytes) {
+        if (shouldCommit()) {
+            this.bytes = bytes;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.example.testgraalvm.mtef;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 上传内容的预检：在写临时文件和调用本地库之前确认它是 MathType 公式对象
+ * <p>
+ * 校验 OLE 复合文件结构，定位 {@code Equation Native} 流，检查 EQNOLEFILEHDR 和 MTEF 头；
+ * 空文件、非 OLE 文件、没有公式流或结构损坏的文件在微秒级内得到明确的错误结果，不再交给本地库。
+ * 流内容按扇区直接在原始字节上计算哈希，不拷贝。
+ * <p>
+ * 有效对象的 {@link Inspection#canonicalHash()} 只覆盖 MTEF 数据（头和记录），
+ * 不含复合文件中的 CLSID、时间戳、CompObj 等容器元数据，同一公式由不同程序保存时也能命中同一个持久化结果。
+ */
+public final class EquationNativeValidator {
+
+    private static final int OLE_HEADER_SIZE = 28;
+    // MTEF 头中用于校验的前 5 个字节：version、platform、product、product version、product subversion
+    private static final int MTEF_HEADER_SIZE = 5;
+    private static final int MAX_MTEF_VERSION = 5;
+
+    /**
+     * @param enabled      是否启用预检
+     * @param maxFileBytes 超过该大小的文件不预检，直接交给本地库
+     */
+    public record Settings(boolean enabled, int maxFileBytes) {
+
+        public static Settings defaults() {
+            return new Settings(true, 1 << 20);
+        }
+    }
+
+    /**
+     * 有效公式对象的摘要
+     *
+     * @param mtefVersion   MTEF 版本（MathType 4 及以后为 5）
+     * @param platform      0 为 Mac，1 为 Windows
+     * @param product       0 为 MathType，1 为 Equation Editor
+     * @param mtefBytes     MTEF 数据的字节数
+     * @param canonicalHash MTEF 数据的 SHA-256（十六进制），用作持久化结果和批内去重的键
+     */
+    public record Inspection(int mtefVersion, int platform, int product, int productVersion,
+                             int productSubversion, long mtefBytes, String canonicalHash) {
+    }
+
+    private static volatile Settings settings = Settings.defaults();
+
+    private EquationNativeValidator() {
+    }
+
+    public static void configure(Settings settings) {
+        EquationNativeValidator.settings = settings;
+    }
+
+    /**
+     * 该大小的内容是否需要预检
+     */
+    public static boolean appliesTo(long size) {
+        Settings current = settings;
+        return current.enabled() && size <= current.maxFileBytes();
+    }
+
+    /**
+     * 预检上传内容
+     *
+     * @return 无效时的错误结果；有效、未启用或超过大小上限时返回 null
+     */
+    public static Mtef2LatexDTO precheck(byte[] file) {
+        if (!appliesTo(file.length)) {
+            return null;
+        }
+        try {
+            inspect(file);
+            return null;
+        } catch (MtefException e) {
+            return rejection(e);
+        }
+    }
+
+    /**
+     * 预检文件并计算规范哈希
+     *
+     * @return 未启用或超过大小上限时返回 null，由调用方按文件内容处理
+     * @throws MtefException 文件不是有效的公式对象
+     */
+    public static Inspection inspect(Path file) throws IOException, MtefException {
+        if (!appliesTo(Files.size(file))) {
+            return null;
+        }
+        return inspect(Files.readAllBytes(file));
+    }
+
+    /**
+     * 校验公式对象并计算规范哈希，不受配置影响
+     *
+     * @throws MtefException 文件不是有效的公式对象，{@link MtefException#reason()} 为分类键
+     */
+    public static Inspection inspect(byte[] file) throws MtefException {
+        if (file.length == 0) {
+            throw new MtefException("empty", "Empty file");
+        }
+        OleCompoundFile ole = new OleCompoundFile(file);
+        Collector collector = new Collector();
+        ole.read(OleCompoundFile.EQUATION_NATIVE, collector);
+        return collector.finish();
+    }
+
+    /**
+     * 预检失败时返回给调用方的错误结果
+     */
+    public static Mtef2LatexDTO rejection(MtefException e) {
+        String reason = e.reason();
+        if (reason.equals("empty")) {
+            return Mtef2LatexDTO.error("内容为空");
+        }
+        if (reason.equals("ole:short") || reason.equals("ole:signature")) {
+            return Mtef2LatexDTO.error("不是 MathType 公式对象: 文件不是 OLE 复合文件");
+        }
+        if (reason.equals("ole:no-equation")) {
+            return Mtef2LatexDTO.error("不是 MathType 公式对象: 没有 Equation Native 流");
+        }
+        if (reason.startsWith("ole:")) {
+            return Mtef2LatexDTO.error("OLE 复合文件已损坏: " + e.getMessage());
+        }
+        return Mtef2LatexDTO.error("Equation Native 流无效: " + e.getMessage());
+    }
+
+    /**
+     * 顺序接收 Equation Native 流：解析 28 字节的 EQNOLEFILEHDR，随后 cbObject 字节的 MTEF 数据计入哈希
+     */
+    private static final class Collector implements OleCompoundFile.RangeSink {
+
+        private final MessageDigest digest = newDigest();
+        private final byte[] oleHeader = new byte[OLE_HEADER_SIZE];
+        private final int[] mtefHeader = new int[MTEF_HEADER_SIZE];
+        private long position;
+        private long headerSize = Long.MAX_VALUE;
+        private long payloadEnd = Long.MAX_VALUE;
+        private long hashed;
+
+        @Override
+        public void accept(ByteBuffer data, int offset, int length) throws MtefException {
+            byte[] array = data.array();
+            int i = 0;
+            while (i < length) {
+                long streamPosition = position + i;
+                if (streamPosition < OLE_HEADER_SIZE) {
+                    oleHeader[(int) streamPosition] = array[offset + i++];
+                    if (streamPosition == OLE_HEADER_SIZE - 1) {
+                        readOleHeader();
+                    }
+                } else if (streamPosition < headerSize) {
+                    i += (int) Math.min(length - i, headerSize - streamPosition);
+                } else if (streamPosition < payloadEnd) {
+                    int count = (int) Math.min(length - i, payloadEnd - streamPosition);
+                    for (int k = 0; k < count && hashed + k < MTEF_HEADER_SIZE; k++) {
+                        mtefHeader[(int) (hashed + k)] = array[offset + i + k] & 0xFF;
+                    }
+                    digest.update(array, offset + i, count);
+                    hashed += count;
+                    i += count;
+                } else {
+                    break;
+                }
+            }
+            position += length;
+        }
+
+        private void readOleHeader() throws MtefException {
+            ByteBuffer header = ByteBuffer.wrap(oleHeader).order(ByteOrder.LITTLE_ENDIAN);
+            headerSize = Short.toUnsignedInt(header.getShort(0));
+            long objectSize = Integer.toUnsignedLong(header.getInt(8));
+            if (headerSize < OLE_HEADER_SIZE) {
+                throw new MtefException("mtef:header", "Invalid EQNOLEFILEHDR size " + headerSize);
+            }
+            if (objectSize == 0) {
+                throw new MtefException("mtef:empty", "EQNOLEFILEHDR declares no MTEF data");
+            }
+            payloadEnd = headerSize + objectSize;
+        }
+
+        Inspection finish() throws MtefException {
+            if (position < OLE_HEADER_SIZE) {
+                throw new MtefException("mtef:header", "Equation Native stream too short: " + position);
+            }
+            // 声明的 cbObject 比流长时与 MtefParser 一样按实际长度处理，只要求 MTEF 头完整
+            if (hashed < MTEF_HEADER_SIZE) {
+                throw new MtefException("mtef:truncated", "MTEF data has only " + hashed + " bytes");
+            }
+            int version = mtefHeader[0];
+            if (version < 1 || version > MAX_MTEF_VERSION) {
+                throw new MtefException("mtef:version-" + version, "Unknown MTEF version " + version);
+            }
+            return new Inspection(version, mtefHeader[1], mtefHeader[2], mtefHeader[3], mtefHeader[4], hashed,
+                    HexFormat.of().formatHex(digest.digest()));
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package org.example.testgraalvm.mtef;
+
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * 快速路径与本地库的差分核对：在语料上逐个文件比较两者的输出，并统计命中率与单文件耗时
+ * <p>
+ * 用法（不启动 Spring）：
+ * <pre>
+ * java -jar test-graalvm.jar mtef-diff --input /corpus/ole [--lib /path/to/lib.so] [--suffix .bin] \
+ *     [--report mismatches.ndjson] [--samples 20]
+ * </pre>
+ * Java 解析器命中的文件再单独调用一次本地库（此时关闭快速路径），两者去掉空白和 $ / \[ \] 定界符后比较；
+ * 不一致的文件写入 --report（NDJSON：file、java、native），前 --samples 个同时打印到标准错误。
+ * 未命中的文件按回退原因计数，用于决定下一步覆盖哪些模板或字符。
+ * 耗时只统计命中的文件：Java 为读文件到输出 LaTeX，本地库为一次 convertLatex（含 FFM 调用和结果 JSON 解析）。
+ * 退出码：0 没有不一致，3 有不一致，1 运行错误，2 参数错误。
+ */
+public final class MtefDiffCommand {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Path input;
+    private final String libPath;
+    private final String suffix;
+    private final Path report;
+    private final int samples;
+
+    private long files;
+    private long hits;
+    private long agreed;
+    private long mismatched;
+    private long nativeFailed;
+    private long javaNanos;
+    private long nativeNanos;
+    private final Map<String, Long> fallbacks = new TreeMap<>();
+
+    private MtefDiffCommand(Map<String, String> options) {
+        String inputOption = options.get("input");
+        if (inputOption == null) {
+            throw new IllegalArgumentException("Missing --input");
+        }
+        this.input = Path.of(inputOption);
+        this.libPath = options.get("lib");
+        this.suffix = options.getOrDefault("suffix", ".bin").toLowerCase(Locale.ROOT);
+        this.report = options.containsKey("report") ? Path.of(options.get("report")) : null;
+        this.samples = Math.max(0, Integer.parseInt(options.getOrDefault("samples", "20")));
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args));
+    }
+
+    /**
+     * 执行命令并返回退出码
+     */
+    public static int run(String[] args) {
+        MtefDiffCommand command;
+        try {
+            command = new MtefDiffCommand(parseOptions(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: mtef-diff --input DIR [--lib PATH] [--suffix .bin]"
+                    + " [--report FILE] [--samples N]");
+            return 2;
+        }
+        try {
+            return command.execute();
+        } catch (IOException e) {
+            System.err.println("mtef diff failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private int execute() throws IOException {
+        if (!Files.isDirectory(input)) {
+            System.err.println("Input is not a directory: " + input);
+            return 2;
+        }
+        if (libPath != null) {
+            MathTypeToLatexUtil.initFromPath(Path.of(libPath));
+        }
+        if (!MathTypeToLatexUtil.isAvailable()) {
+            System.err.println("MathType2Latex library is not available");
+            return 1;
+        }
+        // 本地库一侧必须真正调用本地库
+        MtefFastPath.configure(new MtefFastPath.Settings(false, MtefFastPath.Settings.defaults().maxFileBytes()));
+
+        List<Path> corpus;
+        try (Stream<Path> walk = Files.walk(input)) {
+            corpus = walk.filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(suffix))
+                    .sorted(Comparator.naturalOrder())
+                    .toList();
+        }
+
+        BufferedWriter writer = report == null ? null : Files.newBufferedWriter(report, StandardCharsets.UTF_8);
+        try {
+            for (Path file : corpus) {
+                compare(file, writer);
+            }
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+        printSummary();
+        return mismatched == 0 ? 0 : 3;
+    }
+
+    private void compare(Path file, BufferedWriter writer) throws IOException {
+        files++;
+        byte[] bytes = Files.readAllBytes(file);
+        String javaLatex;
+        long start = System.nanoTime();
+        try {
+            javaLatex = MtefFastPath.convert(bytes);
+        } catch (MtefException e) {
+            fallbacks.merge(e.reason(), 1L, Long::sum);
+            return;
+        }
+        javaNanos += System.nanoTime() - start;
+        hits++;
+
+        start = System.nanoTime();
+        Mtef2LatexDTO nativeResult = MathTypeToLatexUtil.convertLatex(file.toAbsolutePath().toString());
+        nativeNanos += System.nanoTime() - start;
+
+        String relative = input.relativize(file).toString();
+        if (nativeResult.getCode() != Mtef2LatexDTO.SUCCESS_CODE) {
+            // 本地库失败而 Java 成功：同样需要人工确认，按不一致处理
+            nativeFailed++;
+        } else if (normalize(javaLatex).equals(normalize(nativeResult.getResLatex()))) {
+            agreed++;
+            return;
+        }
+        mismatched++;
+        if (mismatched <= samples) {
+            System.err.printf("MISMATCH %s%n  java:   %s%n  native: %s%n", relative, javaLatex,
+                    nativeResult.getResLatex());
+        }
+        if (writer != null) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("file", relative);
+            line.put("java", javaLatex);
+            line.put("native", nativeResult.getResLatex());
+            line.put("nativeCode", nativeResult.getCode());
+            writer.write(objectMapper.writeValueAsString(line));
+            writer.newLine();
+        }
+    }
+
+    /**
+     * 去掉空白和外层定界符，只比较公式本身
+     */
+    static String normalize(String latex) {
+        String s = latex == null ? "" : latex.replaceAll("\\s+", "");
+        if (s.startsWith("$$") && s.endsWith("$$") && s.length() >= 4) {
+            s = s.substring(2, s.length() - 2);
+        } else if (s.startsWith("$") && s.endsWith("$") && s.length() >= 2) {
+            s = s.substring(1, s.length() - 1);
+        } else if (s.startsWith("\\[") && s.endsWith("\\]")) {
+            s = s.substring(2, s.length() - 2);
+        }
+        return s;
+    }
+
+    private void printSummary() {
+        System.out.printf(Locale.ROOT, "files:          %,d%n", files);
+        System.out.printf(Locale.ROOT, "fast-path hits: %,d (%.1f%%)%n", hits, files == 0 ? 0.0 : hits * 100.0 / files);
+        System.out.printf(Locale.ROOT, "agree:          %,d%n", agreed);
+        System.out.printf(Locale.ROOT, "mismatch:       %,d (native failed on %,d)%n", mismatched, nativeFailed);
+        if (hits > 0) {
+            double javaMicros = javaNanos / 1e3 / hits;
+            double nativeMicros = nativeNanos / 1e3 / hits;
+            System.out.printf(Locale.ROOT, "per hit:        java %.1f us, native %.1f us (%.1fx)%n",
+                    javaMicros, nativeMicros, nativeMicros / Math.max(javaMicros, 1e-3));
+        }
+        if (!fallbacks.isEmpty()) {
+            System.out.println("fallback reasons:");
+            List<Map.Entry<String, Long>> sorted = new ArrayList<>(fallbacks.entrySet());
+            sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            for (Map.Entry<String, Long> entry : sorted) {
+                System.out.printf(Locale.ROOT, "  %-24s %,d%n", entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                options.put(name, "true");
+            }
+        }
+        return options;
+    }
+}
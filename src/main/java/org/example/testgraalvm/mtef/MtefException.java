@@ -0,0 +1,19 @@
+package org.example.testgraalvm.mtef;
+
+/**
+ * Java 解析器无法处理的输入：文件格式不对，或含有尚未支持的记录、模板、字符
+ * {@link #reason()} 是简短的分类键（例如 {@code template:15}），用于统计回退原因
+ */
+public class MtefException extends Exception {
+
+    private final String reason;
+
+    public MtefException(String reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    public String reason() {
+        return reason;
+    }
+}
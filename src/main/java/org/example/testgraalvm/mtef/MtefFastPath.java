@@ -0,0 +1,123 @@
+package org.example.testgraalvm.mtef;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 纯 Java 的转换快速路径：简单公式在堆内完成 OLE → MTEF → LaTeX，不经过 FFM 调用本地库
+ * <p>
+ * {@link #tryConvert} 未命中时返回 null，由调用方交给本地库；按 {@link MtefException#reason()} 统计回退原因，
+ * 用于判断下一步值得覆盖哪些模板或字符。输出与本地库的差异用 {@link MtefDiffCommand} 在语料上核对。
+ * 默认关闭；命中的结果标记为 {@link org.example.testgraalvm.panama.Mtef2LatexDTO#fromFastPath()}，不写入持久化结果，
+ * 关闭快速路径后不会继续返回已保存的 Java 输出。
+ */
+public final class MtefFastPath {
+
+    private static final Logger log = Logger.getLogger(MtefFastPath.class.getName());
+    // 回退原因的种类上限，超出的归入 other
+    private static final int MAX_REASONS = 256;
+
+    /**
+     * @param enabled      是否启用
+     * @param maxFileBytes 超过该大小的文件直接交给本地库（公式对象通常只有几 KB）
+     */
+    public record Settings(boolean enabled, int maxFileBytes) {
+
+        public static Settings defaults() {
+            return new Settings(false, 1 << 20);
+        }
+    }
+
+    /**
+     * @param attempts  尝试次数
+     * @param hits      由 Java 解析器完成的次数
+     * @param nanos     全部尝试（含未命中）的累计耗时
+     * @param fallbacks 回退原因 -> 次数
+     */
+    public record Snapshot(Settings settings, long attempts, long hits, long nanos, Map<String, Long> fallbacks) {
+    }
+
+    private static volatile Settings settings = Settings.defaults();
+    private static final LongAdder attempts = new LongAdder();
+    private static final LongAdder hits = new LongAdder();
+    private static final LongAdder nanos = new LongAdder();
+    private static final Map<String, LongAdder> fallbacks = new ConcurrentHashMap<>();
+
+    private MtefFastPath() {
+    }
+
+    public static void configure(Settings settings) {
+        MtefFastPath.settings = settings;
+    }
+
+    public static boolean enabled() {
+        return settings.enabled();
+    }
+
+    /**
+     * 尝试用 Java 解析器转换
+     *
+     * @return LaTeX；未启用或公式不在覆盖范围内时返回 null
+     */
+    public static String tryConvert(String binPath) {
+        Settings current = settings;
+        if (!current.enabled()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        attempts.increment();
+        try {
+            Path path = Path.of(binPath);
+            if (Files.size(path) > current.maxFileBytes()) {
+                fallback("too-large");
+                return null;
+            }
+            String latex = convert(Files.readAllBytes(path));
+            hits.increment();
+            return latex;
+        } catch (MtefException e) {
+            fallback(e.reason());
+            return null;
+        } catch (IOException e) {
+            // 读取失败由本地库给出错误结果
+            fallback("io");
+            return null;
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "MTEF fast path failed on " + binPath + ": " + e.getMessage(), e);
+            fallback("internal");
+            return null;
+        } finally {
+            nanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 转换 OLE 公式对象（.bin 文件内容），不计入统计
+     */
+    public static String convert(byte[] file) throws MtefException {
+        return MtefLatexEmitter.toLatex(MtefParser.parseEquationNative(OleCompoundFile.equationNative(file)));
+    }
+
+    private static void fallback(String reason) {
+        LongAdder counter = fallbacks.get(reason);
+        if (counter == null) {
+            counter = fallbacks.size() < MAX_REASONS
+                    ? fallbacks.computeIfAbsent(reason, r -> new LongAdder())
+                    : fallbacks.computeIfAbsent("other", r -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    public static Snapshot snapshot() {
+        Map<String, Long> reasons = new TreeMap<>();
+        fallbacks.forEach((reason, count) -> reasons.put(reason, count.sum()));
+        return new Snapshot(settings, attempts.sum(), hits.sum(), nanos.sum(), reasons);
+    }
+}
@@ -0,0 +1,362 @@
+package org.example.testgraalvm.mtef;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把 {@link MtefParser} 的对象树输出为 LaTeX
+ * <p>
+ * 覆盖常见的简单公式：字母、数字、希腊字母与常用运算符，文本与函数名，
+ * 分式、根式、上下标、括号类模板，常用字符修饰（撇号、帽子、横线、点、向量箭头）和左/中/右对齐的多行。
+ * 遇到未覆盖的模板、修饰或字符抛出 {@link MtefException}，由调用方交给本地库，
+ * 因此这里只需要保证覆盖到的部分输出正确，不需要对未知内容给出近似结果。
+ */
+public final class MtefLatexEmitter {
+
+    // 样式（typeface）
+    private static final int FN_TEXT = 1;
+    private static final int FN_FUNCTION = 2;
+    private static final int FN_VECTOR = 7;
+    private static final int FN_EXPAND = 22;
+    private static final int FN_MARKER = 23;
+    private static final int FN_SPACE = 24;
+
+    // 模板选择子
+    private static final int TM_ANGLE = 0;
+    private static final int TM_PAREN = 1;
+    private static final int TM_BRACE = 2;
+    private static final int TM_BRACK = 3;
+    private static final int TM_BAR = 4;
+    private static final int TM_DBAR = 5;
+    private static final int TM_FLOOR = 6;
+    private static final int TM_CEILING = 7;
+    private static final int TM_ROOT = 10;
+    private static final int TM_FRACT = 11;
+    private static final int TM_SUB = 27;
+    private static final int TM_SUP = 28;
+    private static final int TM_SUBSUP = 29;
+
+    // 模板变体位
+    private static final int TV_FENCE_L = 0x0001;
+    private static final int TV_FENCE_R = 0x0002;
+    private static final int TV_ROOT_NTH = 0x0001;
+    private static final int TV_FR_SLASH = 0x0004;
+    private static final int TV_SU_PRECEDES = 0x0001;
+
+    private static final String[] LOWER_GREEK = {
+            "\\alpha", "\\beta", "\\gamma", "\\delta", "\\varepsilon", "\\zeta", "\\eta", "\\theta",
+            "\\iota", "\\kappa", "\\lambda", "\\mu", "\\nu", "\\xi", "o", "\\pi",
+            "\\rho", "\\varsigma", "\\sigma", "\\tau", "\\upsilon", "\\varphi", "\\chi", "\\psi", "\\omega"};
+    private static final String[] UPPER_GREEK = {
+            "A", "B", "\\Gamma", "\\Delta", "E", "Z", "H", "\\Theta",
+            "I", "K", "\\Lambda", "M", "N", "\\Xi", "O", "\\Pi",
+            "P", null, "\\Sigma", "T", "\\Upsilon", "\\Phi", "X", "\\Psi", "\\Omega"};
+
+    private static final Map<Integer, String> SYMBOLS = Map.ofEntries(
+            Map.entry(0x03D1, "\\vartheta"), Map.entry(0x03D5, "\\phi"), Map.entry(0x03D6, "\\varpi"),
+            Map.entry(0x03F1, "\\varrho"), Map.entry(0x03F5, "\\epsilon"),
+            Map.entry(0x00B1, "\\pm"), Map.entry(0x2213, "\\mp"), Map.entry(0x00D7, "\\times"),
+            Map.entry(0x00F7, "\\div"), Map.entry(0x2212, "-"), Map.entry(0x22C5, "\\cdot"),
+            Map.entry(0x00B7, "\\cdot"), Map.entry(0x2219, "\\cdot"), Map.entry(0x2217, "*"),
+            Map.entry(0x2264, "\\le"), Map.entry(0x2265, "\\ge"), Map.entry(0x2260, "\\ne"),
+            Map.entry(0x2248, "\\approx"), Map.entry(0x2261, "\\equiv"), Map.entry(0x2245, "\\cong"),
+            Map.entry(0x223C, "\\sim"), Map.entry(0x221D, "\\propto"), Map.entry(0x226A, "\\ll"),
+            Map.entry(0x226B, "\\gg"), Map.entry(0x221E, "\\infty"), Map.entry(0x2202, "\\partial"),
+            Map.entry(0x2207, "\\nabla"), Map.entry(0x2192, "\\to"), Map.entry(0x2190, "\\leftarrow"),
+            Map.entry(0x2194, "\\leftrightarrow"), Map.entry(0x21D2, "\\Rightarrow"),
+            Map.entry(0x21D0, "\\Leftarrow"), Map.entry(0x21D4, "\\Leftrightarrow"),
+            Map.entry(0x2208, "\\in"), Map.entry(0x2209, "\\notin"), Map.entry(0x220B, "\\ni"),
+            Map.entry(0x2282, "\\subset"), Map.entry(0x2283, "\\supset"), Map.entry(0x2286, "\\subseteq"),
+            Map.entry(0x2287, "\\supseteq"), Map.entry(0x222A, "\\cup"), Map.entry(0x2229, "\\cap"),
+            Map.entry(0x2205, "\\varnothing"), Map.entry(0x2200, "\\forall"), Map.entry(0x2203, "\\exists"),
+            Map.entry(0x00AC, "\\neg"), Map.entry(0x2227, "\\wedge"), Map.entry(0x2228, "\\vee"),
+            Map.entry(0x2220, "\\angle"), Map.entry(0x22A5, "\\perp"), Map.entry(0x2225, "\\parallel"),
+            Map.entry(0x25B3, "\\triangle"), Map.entry(0x2234, "\\therefore"), Map.entry(0x2235, "\\because"),
+            Map.entry(0x2026, "\\ldots"), Map.entry(0x22EF, "\\cdots"), Map.entry(0x22EE, "\\vdots"),
+            Map.entry(0x2032, "'"), Map.entry(0x2033, "''"), Map.entry(0x00B0, "^{\\circ}"),
+            Map.entry(0x2218, "\\circ"), Map.entry(0x2295, "\\oplus"), Map.entry(0x2297, "\\otimes"),
+            Map.entry(0x210F, "\\hbar"), Map.entry(0x2113, "\\ell"), Map.entry(0x2135, "\\aleph"),
+            Map.entry(0x2016, "\\|"), Map.entry(0x27E8, "\\langle"), Map.entry(0x27E9, "\\rangle"),
+            Map.entry(0x2329, "\\langle"), Map.entry(0x232A, "\\rangle"));
+
+    // \sin 等 LaTeX 内置的函数名，其余用 \operatorname
+    private static final List<String> FUNCTIONS = List.of(
+            "sin", "cos", "tan", "cot", "sec", "csc", "arcsin", "arccos", "arctan", "sinh", "cosh", "tanh",
+            "coth", "log", "ln", "lg", "exp", "lim", "max", "min", "sup", "inf", "det", "gcd", "deg", "dim",
+            "ker", "arg", "hom", "Pr");
+
+    private MtefLatexEmitter() {
+    }
+
+    public static String toLatex(List<MtefNode> nodes) throws MtefException {
+        Out out = new Out();
+        for (MtefNode node : nodes) {
+            switch (node) {
+                case MtefNode.Line line -> line(out, line.items());
+                case MtefNode.Pile pile -> pile(out, pile);
+                case MtefNode.Char c -> character(out, c);
+                case MtefNode.Template template -> template(out, template);
+            }
+        }
+        if (out.isEmpty()) {
+            throw new MtefException("empty", "Equation has no content");
+        }
+        return out.toString();
+    }
+
+    private static void line(Out out, List<MtefNode> items) throws MtefException {
+        for (int i = 0; i < items.size(); i++) {
+            MtefNode item = items.get(i);
+            if (item instanceof MtefNode.Char c && (c.typeface() == FN_TEXT || c.typeface() == FN_FUNCTION)
+                    && c.embellishments().isEmpty()) {
+                int runEnd = i + 1;
+                while (runEnd < items.size() && items.get(runEnd) instanceof MtefNode.Char next
+                        && next.typeface() == c.typeface() && next.embellishments().isEmpty()) {
+                    runEnd++;
+                }
+                if (c.typeface() == FN_TEXT) {
+                    text(out, items.subList(i, runEnd));
+                } else {
+                    function(out, items.subList(i, runEnd));
+                }
+                i = runEnd - 1;
+                continue;
+            }
+            switch (item) {
+                case MtefNode.Char c -> character(out, c);
+                case MtefNode.Template template -> template(out, template);
+                case MtefNode.Pile pile -> pile(out, pile);
+                case MtefNode.Line nested -> line(out, nested.items());
+            }
+        }
+    }
+
+    private static String slot(MtefNode.Line line) throws MtefException {
+        Out out = new Out();
+        line(out, line.items());
+        return out.toString();
+    }
+
+    private static void character(Out out, MtefNode.Char c) throws MtefException {
+        if (c.typeface() == FN_MARKER) {
+            return;
+        }
+        if (c.typeface() == FN_SPACE || c.typeface() == FN_EXPAND) {
+            throw new MtefException("char:typeface-" + c.typeface(), "Unsupported typeface " + c.typeface());
+        }
+        String symbol = symbol(c.code());
+        if (c.typeface() == FN_VECTOR && c.code() < 0x80 && Character.isLetterOrDigit(c.code())) {
+            symbol = "\\mathbf{" + symbol + "}";
+        }
+        String suffix = "";
+        for (int embellishment : c.embellishments()) {
+            switch (embellishment) {
+                case 2 -> symbol = "\\dot{" + symbol + "}";
+                case 3 -> symbol = "\\ddot{" + symbol + "}";
+                case 4 -> symbol = "\\dddot{" + symbol + "}";
+                case 5 -> suffix += "'";
+                case 6 -> suffix += "''";
+                case 18 -> suffix += "'''";
+                case 8 -> symbol = "\\tilde{" + symbol + "}";
+                case 9 -> symbol = "\\hat{" + symbol + "}";
+                case 11 -> symbol = "\\vec{" + symbol + "}";
+                case 17 -> symbol = "\\bar{" + symbol + "}";
+                default -> throw new MtefException("embell:" + embellishment,
+                        "Unsupported embellishment " + embellishment);
+            }
+        }
+        out.append(symbol);
+        out.append(suffix);
+    }
+
+    private static String symbol(int code) throws MtefException {
+        if (code >= '0' && code <= '9' || code >= 'a' && code <= 'z' || code >= 'A' && code <= 'Z') {
+            return String.valueOf((char) code);
+        }
+        if (code >= 0x03B1 && code <= 0x03C9) {
+            return LOWER_GREEK[code - 0x03B1];
+        }
+        if (code >= 0x0391 && code <= 0x03A9 && UPPER_GREEK[code - 0x0391] != null) {
+            return UPPER_GREEK[code - 0x0391];
+        }
+        String mapped = SYMBOLS.get(code);
+        if (mapped != null) {
+            return mapped;
+        }
+        return switch (code) {
+            case '+', '-', '=', '<', '>', '(', ')', '[', ']', ',', '.', '/', '|', '!', '\'', ':', ';', '?', '*' ->
+                    String.valueOf((char) code);
+            case '{' -> "\\{";
+            case '}' -> "\\}";
+            case '#', '$', '%', '&', '_' -> "\\" + (char) code;
+            case '~' -> "\\sim";
+            case '\\' -> "\\backslash";
+            default -> throw new MtefException("char:" + Integer.toHexString(code),
+                    "Unsupported character U+" + String.format("%04X", code));
+        };
+    }
+
+    /**
+     * 文本样式的连续字符合并为一个 \text{}；除 ASCII 外只接受字母（例如中文）
+     */
+    private static void text(Out out, List<MtefNode> run) throws MtefException {
+        StringBuilder text = new StringBuilder();
+        for (MtefNode node : run) {
+            int code = ((MtefNode.Char) node).code();
+            if (code >= 0x20 && code < 0x7F && "\\{}$&#^_%~".indexOf(code) < 0
+                    || code >= 0x80 && Character.isLetter(code)) {
+                text.appendCodePoint(code);
+            } else {
+                throw new MtefException("text:" + Integer.toHexString(code),
+                        "Unsupported text character U+" + String.format("%04X", code));
+            }
+        }
+        out.append("\\text{" + text + "}");
+    }
+
+    /**
+     * 函数样式的连续字母组成函数名；夹在其中的非字母字符按普通字符输出
+     */
+    private static void function(Out out, List<MtefNode> run) throws MtefException {
+        StringBuilder name = new StringBuilder();
+        for (MtefNode node : run) {
+            MtefNode.Char c = (MtefNode.Char) node;
+            if (c.code() < 0x80 && Character.isLetter(c.code())) {
+                name.append((char) c.code());
+            } else {
+                flushFunction(out, name);
+                character(out, c);
+            }
+        }
+        flushFunction(out, name);
+    }
+
+    private static void flushFunction(Out out, StringBuilder name) {
+        if (name.isEmpty()) {
+            return;
+        }
+        String function = name.toString();
+        out.append(FUNCTIONS.contains(function) ? "\\" + function : "\\operatorname{" + function + "}");
+        name.setLength(0);
+    }
+
+    private static void template(Out out, MtefNode.Template template) throws MtefException {
+        List<MtefNode.Line> slots = template.items().stream()
+                .filter(MtefNode.Line.class::isInstance)
+                .map(MtefNode.Line.class::cast)
+                .toList();
+        int selector = template.selector();
+        int variation = template.variation();
+        switch (selector) {
+            case TM_FRACT -> {
+                if ((variation & TV_FR_SLASH) != 0 || slots.size() != 2) {
+                    throw unsupported(template);
+                }
+                out.append("\\frac{" + slot(slots.get(0)) + "}{" + slot(slots.get(1)) + "}");
+            }
+            case TM_ROOT -> {
+                if (slots.isEmpty()) {
+                    throw unsupported(template);
+                }
+                String index = (variation & TV_ROOT_NTH) != 0 && slots.size() > 1 ? slot(slots.get(1)) : "";
+                out.append(index.isEmpty()
+                        ? "\\sqrt{" + slot(slots.get(0)) + "}"
+                        : "\\sqrt[" + index + "]{" + slot(slots.get(0)) + "}");
+            }
+            case TM_SUB, TM_SUP, TM_SUBSUP -> {
+                if ((variation & TV_SU_PRECEDES) != 0 || slots.isEmpty() || slots.size() > 2) {
+                    throw unsupported(template);
+                }
+                // 两个槽依次为下标、上标；只有一个槽时按模板类型确定
+                String sub = selector == TM_SUP && slots.size() == 1 ? "" : slot(slots.get(0));
+                String sup = slots.size() == 2 ? slot(slots.get(1)) : selector == TM_SUP ? slot(slots.get(0)) : "";
+                if (out.isEmpty()) {
+                    out.append("{}");
+                }
+                if (!sub.isEmpty()) {
+                    out.append("_{" + sub + "}");
+                }
+                if (!sup.isEmpty()) {
+                    out.append("^{" + sup + "}");
+                }
+            }
+            case TM_ANGLE, TM_PAREN, TM_BRACE, TM_BRACK, TM_BAR, TM_DBAR, TM_FLOOR, TM_CEILING -> {
+                if (slots.size() != 1) {
+                    throw unsupported(template);
+                }
+                String[] fence = switch (selector) {
+                    case TM_ANGLE -> new String[]{"\\langle", "\\rangle"};
+                    case TM_PAREN -> new String[]{"(", ")"};
+                    case TM_BRACE -> new String[]{"\\{", "\\}"};
+                    case TM_BRACK -> new String[]{"[", "]"};
+                    case TM_BAR -> new String[]{"|", "|"};
+                    case TM_DBAR -> new String[]{"\\|", "\\|"};
+                    case TM_FLOOR -> new String[]{"\\lfloor", "\\rfloor"};
+                    default -> new String[]{"\\lceil", "\\rceil"};
+                };
+                out.append("\\left" + ((variation & TV_FENCE_L) != 0 ? fence[0] : "."));
+                out.append(slot(slots.getFirst()));
+                out.append("\\right" + ((variation & TV_FENCE_R) != 0 ? fence[1] : "."));
+            }
+            default -> throw unsupported(template);
+        }
+    }
+
+    private static MtefException unsupported(MtefNode.Template template) {
+        return new MtefException("template:" + template.selector(), "Unsupported template selector "
+                + template.selector() + " variation " + template.variation());
+    }
+
+    private static void pile(Out out, MtefNode.Pile pile) throws MtefException {
+        String align = switch (pile.halign()) {
+            case 1 -> "l";
+            case 2 -> "c";
+            case 3 -> "r";
+            default -> throw new MtefException("pile:align-" + pile.halign(),
+                    "Unsupported pile alignment " + pile.halign());
+        };
+        StringBuilder body = new StringBuilder();
+        for (MtefNode.Line line : pile.lines()) {
+            if (!body.isEmpty()) {
+                body.append(" \\\\ ");
+            }
+            body.append(slot(line));
+        }
+        out.append("\\begin{array}{" + align + "}" + body + "\\end{array}");
+    }
+
+    /**
+     * 控制词（如 \alpha）之后紧跟字母时插入空格，避免拼成另一个命令
+     */
+    private static final class Out {
+
+        private final StringBuilder sb = new StringBuilder();
+
+        void append(String token) {
+            if (token.isEmpty()) {
+                return;
+            }
+            if (Character.isLetter(token.charAt(0)) && endsWithControlWord()) {
+                sb.append(' ');
+            }
+            sb.append(token);
+        }
+
+        private boolean endsWithControlWord() {
+            int i = sb.length() - 1;
+            while (i >= 0 && Character.isLetter(sb.charAt(i))) {
+                i--;
+            }
+            return i >= 0 && i < sb.length() - 1 && sb.charAt(i) == '\\';
+        }
+
+        boolean isEmpty() {
+            return sb.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.testgraalvm.mtef;
+
+import java.util.List;
+
+/**
+ * MTEF 对象树中与输出相关的节点；字号、字体、颜色、偏好等记录解析时跳过，不进入对象树
+ */
+public sealed interface MtefNode {
+
+    /**
+     * LINE：一行（或模板中的一个槽），空行的 items 为空
+     */
+    record Line(List<MtefNode> items) implements MtefNode {
+    }
+
+    /**
+     * CHAR：字符，code 为 MTCode（MathType 的 Unicode 扩展），typeface 为样式编号（fnTEXT=1 等，负数表示显式字体）
+     *
+     * @param embellishments 修饰（撇号、帽子、横线等）的 EMBELL 类型
+     */
+    record Char(int typeface, int code, List<Integer> embellishments) implements MtefNode {
+    }
+
+    /**
+     * TMPL：模板（分式、根式、上下标、括号等），items 依次是槽（{@link Line}）和模板自带的字符（如括号）
+     */
+    record Template(int selector, int variation, List<MtefNode> items) implements MtefNode {
+    }
+
+    /**
+     * PILE：竖直排列的多行
+     *
+     * @param halign 水平对齐：1 左、2 居中、3 右、4 按关系符、5 按小数点
+     */
+    record Pile(int halign, List<Line> lines) implements MtefNode {
+    }
+}
@@ -0,0 +1,328 @@
+package org.example.testgraalvm.mtef;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * MTEF v5（MathType 4 及以后版本）二进制格式解析器
+ * <p>
+ * 输入是 {@code Equation Native} 流：28 字节的 EQNOLEFILEHDR 之后是 MTEF 头和记录序列。
+ * 输出是 {@link MtefNode} 对象树，只保留 LINE、CHAR、TMPL、PILE 和字符修饰；
+ * 字号、字体、颜色、标尺、偏好等记录按格式跳过。MATRIX 和 v5 以前的格式抛出 {@link MtefException} 交给本地库处理。
+ * 嵌套深度有上限，截断或损坏的输入不会越界读或栈溢出。
+ */
+public final class MtefParser {
+
+    private static final int OLE_HEADER_SIZE = 28;
+    private static final int MAX_DEPTH = 64;
+
+    // 记录类型
+    private static final int END = 0;
+    private static final int LINE = 1;
+    private static final int CHAR = 2;
+    private static final int TMPL = 3;
+    private static final int PILE = 4;
+    private static final int MATRIX = 5;
+    private static final int EMBELL = 6;
+    private static final int RULER = 7;
+    private static final int FONT_STYLE_DEF = 8;
+    private static final int SIZE = 9;
+    private static final int SUBSYM = 14;
+    private static final int COLOR = 15;
+    private static final int COLOR_DEF = 16;
+    private static final int FONT_DEF = 17;
+    private static final int EQN_PREFS = 18;
+    private static final int ENCODING_DEF = 19;
+    private static final int FUTURE = 100;
+
+    // 记录选项位
+    private static final int OPT_NUDGE = 0x08;
+    private static final int OPT_CHAR_EMBELL = 0x01;
+    private static final int OPT_CHAR_ENC_CHAR_8 = 0x04;
+    private static final int OPT_CHAR_ENC_CHAR_16 = 0x10;
+    private static final int OPT_CHAR_ENC_NO_MTCODE = 0x20;
+    private static final int OPT_LINE_NULL = 0x01;
+    private static final int OPT_LP_RULER = 0x02;
+    private static final int OPT_LINE_LSPACE = 0x04;
+    private static final int OPT_COLOR_CMYK = 0x01;
+    private static final int OPT_COLOR_NAME = 0x04;
+
+    private final byte[] data;
+    private final int end;
+    private int position;
+
+    private MtefParser(byte[] data, int start, int end) {
+        this.data = data;
+        this.position = start;
+        this.end = end;
+    }
+
+    /**
+     * 解析 {@code Equation Native} 流，返回顶层的行和多行结构
+     */
+    public static List<MtefNode> parseEquationNative(byte[] stream) throws MtefException {
+        if (stream.length < OLE_HEADER_SIZE) {
+            throw new MtefException("mtef:header", "Equation Native stream too short: " + stream.length);
+        }
+        int headerSize = (stream[0] & 0xFF) | (stream[1] & 0xFF) << 8;
+        long mtefSize = (stream[8] & 0xFFL) | (stream[9] & 0xFFL) << 8 | (stream[10] & 0xFFL) << 16
+                | (stream[11] & 0xFFL) << 24;
+        if (headerSize < OLE_HEADER_SIZE || headerSize >= stream.length) {
+            throw new MtefException("mtef:header", "Invalid EQNOLEFILEHDR size " + headerSize);
+        }
+        int end = (int) Math.min(stream.length, headerSize + mtefSize);
+        return new MtefParser(stream, headerSize, end).parseMtef();
+    }
+
+    private List<MtefNode> parseMtef() throws MtefException {
+        int version = u8();
+        if (version != 5) {
+            throw new MtefException("mtef:version-" + version, "Only MTEF v5 is supported, got v" + version);
+        }
+        // platform、product、product version、product subversion
+        skip(4);
+        skipString();   // application key，例如 DSMT4
+        u8();           // equation options
+        return objectList(0, true);
+    }
+
+    /**
+     * 读取对象列表直到 END；顶层允许数据直接结束
+     */
+    private List<MtefNode> objectList(int depth, boolean topLevel) throws MtefException {
+        if (depth > MAX_DEPTH) {
+            throw new MtefException("mtef:depth", "Objects nested deeper than " + MAX_DEPTH);
+        }
+        List<MtefNode> nodes = new ArrayList<>();
+        while (true) {
+            if (topLevel && position >= end) {
+                return nodes;
+            }
+            int tag = u8();
+            switch (tag) {
+                case END -> {
+                    return nodes;
+                }
+                case LINE -> nodes.add(line(depth));
+                case CHAR -> nodes.add(character(depth));
+                case TMPL -> nodes.add(template(depth));
+                case PILE -> nodes.add(pile(depth));
+                case MATRIX -> throw new MtefException("record:matrix", "MATRIX records are not supported");
+                case EMBELL -> throw new MtefException("mtef:embell", "EMBELL record outside a character");
+                case RULER -> skipRulerBody();
+                case FONT_STYLE_DEF -> {
+                    uint();
+                    u8();
+                }
+                case SIZE -> skipSize();
+                case COLOR -> uint();
+                case COLOR_DEF -> skipColorDef();
+                case FONT_DEF -> {
+                    uint();
+                    skipString();
+                }
+                case EQN_PREFS -> skipEquationPrefs();
+                case ENCODING_DEF -> skipString();
+                default -> {
+                    if (tag > SIZE && tag <= SUBSYM) {
+                        // FULL、SUB、SUB2、SYM、SUBSYM：只有标签
+                    } else if (tag >= FUTURE) {
+                        skip(uint());
+                    } else {
+                        throw new MtefException("mtef:tag", "Unknown record tag " + tag + " at " + (position - 1));
+                    }
+                }
+            }
+        }
+    }
+
+    private MtefNode.Line line(int depth) throws MtefException {
+        int options = u8();
+        skipNudge(options);
+        if ((options & OPT_LINE_LSPACE) != 0) {
+            skip(2);
+        }
+        if ((options & OPT_LP_RULER) != 0) {
+            skipRuler();
+        }
+        if ((options & OPT_LINE_NULL) != 0) {
+            return new MtefNode.Line(List.of());
+        }
+        return new MtefNode.Line(objectList(depth + 1, false));
+    }
+
+    private MtefNode.Char character(int depth) throws MtefException {
+        int options = u8();
+        skipNudge(options);
+        int typeface = u8() - 128;
+        int code = -1;
+        if ((options & OPT_CHAR_ENC_NO_MTCODE) == 0) {
+            code = u16();
+        }
+        if ((options & OPT_CHAR_ENC_CHAR_8) != 0) {
+            u8();
+        }
+        if ((options & OPT_CHAR_ENC_CHAR_16) != 0) {
+            u16();
+        }
+        if (code < 0) {
+            throw new MtefException("char:no-mtcode", "Character without MTCode");
+        }
+        List<Integer> embellishments = List.of();
+        if ((options & OPT_CHAR_EMBELL) != 0) {
+            embellishments = embellishments(depth + 1);
+        }
+        return new MtefNode.Char(typeface, code, embellishments);
+    }
+
+    private List<Integer> embellishments(int depth) throws MtefException {
+        if (depth > MAX_DEPTH) {
+            throw new MtefException("mtef:depth", "Objects nested deeper than " + MAX_DEPTH);
+        }
+        List<Integer> types = new ArrayList<>(1);
+        for (int tag = u8(); tag != END; tag = u8()) {
+            if (tag != EMBELL) {
+                throw new MtefException("mtef:embell", "Expected EMBELL record, got tag " + tag);
+            }
+            skipNudge(u8());
+            types.add(u8());
+        }
+        return types;
+    }
+
+    private MtefNode.Template template(int depth) throws MtefException {
+        int options = u8();
+        skipNudge(options);
+        int selector = u8();
+        int variation = u8();
+        if ((variation & 0x80) != 0) {
+            variation = (variation & 0x7F) | u8() << 8;
+        }
+        u8();   // 模板自身的选项（例如积分上下限的位置）
+        return new MtefNode.Template(selector, variation, objectList(depth + 1, false));
+    }
+
+    private MtefNode.Pile pile(int depth) throws MtefException {
+        int options = u8();
+        skipNudge(options);
+        int halign = u8();
+        u8();   // 竖直对齐
+        if ((options & OPT_LP_RULER) != 0) {
+            skipRuler();
+        }
+        List<MtefNode.Line> lines = new ArrayList<>();
+        for (MtefNode node : objectList(depth + 1, false)) {
+            if (!(node instanceof MtefNode.Line line)) {
+                throw new MtefException("pile:item", "PILE contains a non-LINE object");
+            }
+            lines.add(line);
+        }
+        return new MtefNode.Pile(halign, lines);
+    }
+
+    /**
+     * 偏移量：两个字节；任一为 128 时后跟两个 16 位值
+     */
+    private void skipNudge(int options) throws MtefException {
+        if ((options & OPT_NUDGE) != 0) {
+            int dx = u8();
+            int dy = u8();
+            if (dx == 128 || dy == 128) {
+                skip(4);
+            }
+        }
+    }
+
+    private void skipRuler() throws MtefException {
+        int tag = u8();
+        if (tag != RULER) {
+            throw new MtefException("mtef:ruler", "Expected RULER record, got tag " + tag);
+        }
+        skipRulerBody();
+    }
+
+    private void skipRulerBody() throws MtefException {
+        int stops = u8();
+        // 每个制表位：类型 1 字节 + 位置 2 字节
+        skip(stops * 3);
+    }
+
+    private void skipSize() throws MtefException {
+        int size = u8();
+        if (size == 101) {
+            skip(2);        // 显式字号
+        } else if (size == 100) {
+            skip(1 + 2);    // 字号类型 + 增量
+        } else {
+            skip(1);
+        }
+    }
+
+    private void skipColorDef() throws MtefException {
+        int options = u8();
+        skip(((options & OPT_COLOR_CMYK) != 0 ? 4 : 3) * 2);
+        if ((options & OPT_COLOR_NAME) != 0) {
+            skipString();
+        }
+    }
+
+    private void skipEquationPrefs() throws MtefException {
+        u8();   // options
+        skipDimensions(u8());   // 字号
+        skipDimensions(u8());   // 间距
+        int styles = u8();
+        for (int i = 0; i < styles; i++) {
+            if (u8() != 0) {
+                u8();
+            }
+        }
+    }
+
+    /**
+     * 半字节编码的尺寸数组：每个值以单位半字节开头、0xF 结尾，结束后丢弃所在字节剩余的半字节
+     */
+    private void skipDimensions(int count) throws MtefException {
+        int remaining = count;
+        while (remaining > 0) {
+            int b = u8();
+            if ((b >> 4) == 0xF && --remaining == 0) {
+                return;
+            }
+            if ((b & 0xF) == 0xF) {
+                remaining--;
+            }
+        }
+    }
+
+    private void skipString() throws MtefException {
+        while (u8() != 0) {
+            // 以 0 结尾
+        }
+    }
+
+    /**
+     * MTEF 无符号整数：小于 255 占一个字节，否则为 255 后跟 16 位值
+     */
+    private int uint() throws MtefException {
+        int value = u8();
+        return value == 255 ? u16() : value;
+    }
+
+    private int u8() throws MtefException {
+        if (position >= end) {
+            throw new MtefException("mtef:truncated", "MTEF data ends at " + position);
+        }
+        return data[position++] & 0xFF;
+    }
+
+    private int u16() throws MtefException {
+        return u8() | u8() << 8;
+    }
+
+    private void skip(int count) throws MtefException {
+        if (count > end - position) {
+            throw new MtefException("mtef:truncated", "MTEF data ends at " + end);
+        }
+        position += count;
+    }
+}
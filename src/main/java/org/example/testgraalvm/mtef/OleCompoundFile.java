@@ -0,0 +1,290 @@
+package org.example.testgraalvm.mtef;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.BitSet;
+
+/**
+ * OLE 复合文件（CFB）的只读解析，只用于取出 MathType 对象中的 {@code Equation Native} 流
+ * <p>
+ * 支持 512 字节扇区（v3）和 4096 字节扇区（v4）、普通流与 mini 流。
+ * FAT、miniFAT 和目录都直接在原始字节上按偏移读取，只为扇区链分配很小的扇区号数组；
+ * 流内容按扇区交给 {@link RangeSink}，需要时才拷贝（{@link #stream}）。
+ * 所有扇区号和链长度都做越界与成环检查，格式错误抛出 {@link MtefException}，不会越界读或死循环。
+ */
+public final class OleCompoundFile {
+
+    public static final String EQUATION_NATIVE = "Equation Native";
+
+    private static final long SIGNATURE = 0xE11AB1A1E011CFD0L;
+    private static final int HEADER_SIZE = 512;
+    private static final int DIR_ENTRY_SIZE = 128;
+    private static final int HEADER_DIFAT_ENTRIES = 109;
+    private static final int END_OF_CHAIN = 0xFFFFFFFE;
+    private static final int FREE_SECT = 0xFFFFFFFF;
+    private static final int TYPE_STREAM = 2;
+    private static final int TYPE_ROOT = 5;
+
+    /**
+     * 按顺序接收流内容的一段：data 中从 offset 开始的 length 字节（绝对偏移，不要修改 data 的位置）
+     */
+    @FunctionalInterface
+    interface RangeSink {
+        void accept(ByteBuffer data, int offset, int length) throws MtefException;
+    }
+
+    private final ByteBuffer data;
+    private final int sectorSize;
+    private final int miniSectorSize;
+    private final long miniStreamCutoff;
+    private final int sectorCount;
+    // 每个 FAT 扇区在文件中的扇区号
+    private final int[] fatSectors;
+    private final int[] directorySectors;
+
+    OleCompoundFile(byte[] file) throws MtefException {
+        if (file.length < HEADER_SIZE) {
+            throw new MtefException("ole:short", "File too short for an OLE header: " + file.length + " bytes");
+        }
+        this.data = ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN);
+        if (data.getLong(0) != SIGNATURE) {
+            throw new MtefException("ole:signature", "Not an OLE compound file");
+        }
+        int sectorShift = data.getShort(0x1E);
+        int miniSectorShift = data.getShort(0x20);
+        if (sectorShift != 9 && sectorShift != 12 || miniSectorShift != 6) {
+            throw new MtefException("ole:header", "Unsupported sector shift " + sectorShift + "/" + miniSectorShift);
+        }
+        this.sectorSize = 1 << sectorShift;
+        this.miniSectorSize = 1 << miniSectorShift;
+        this.miniStreamCutoff = Integer.toUnsignedLong(data.getInt(0x38));
+        // 末尾不完整的扇区不可用
+        this.sectorCount = file.length / sectorSize - 1;
+        if (sectorCount < 1) {
+            throw new MtefException("ole:short", "File has no sectors after the header");
+        }
+        this.fatSectors = readFatSectors();
+        this.directorySectors = chain(data.getInt(0x30), Long.MAX_VALUE);
+    }
+
+    /**
+     * 取出复合文件中 {@code Equation Native} 流的内容
+     */
+    public static byte[] equationNative(byte[] file) throws MtefException {
+        return new OleCompoundFile(file).stream(EQUATION_NATIVE);
+    }
+
+    /**
+     * 按名称（不区分大小写）查找流并拷贝出内容
+     */
+    byte[] stream(String name) throws MtefException {
+        long size = streamSize(name);
+        byte[] out = new byte[(int) size];
+        int[] position = {0};
+        read(name, (buffer, offset, length) -> {
+            buffer.get(offset, out, position[0], length);
+            position[0] += length;
+        });
+        return out;
+    }
+
+    /**
+     * 流的字节数
+     */
+    long streamSize(String name) throws MtefException {
+        return checkedSize(findEntry(name));
+    }
+
+    /**
+     * 按顺序把流内容逐段交给 sink，不拷贝
+     */
+    void read(String name, RangeSink sink) throws MtefException {
+        int entry = findEntry(name);
+        int start = data.getInt(entry + 0x74);
+        long size = checkedSize(entry);
+        if (size >= miniStreamCutoff) {
+            readRegular(start, size, sink);
+        } else {
+            readMini(start, size, sink);
+        }
+    }
+
+    private void readRegular(int start, long size, RangeSink sink) throws MtefException {
+        int[] sectors = chain(start, size);
+        if ((long) sectors.length * sectorSize < size) {
+            throw new MtefException("ole:size", "Stream chain shorter than its size");
+        }
+        long remaining = size;
+        for (int i = 0; remaining > 0; i++) {
+            int count = (int) Math.min(sectorSize, remaining);
+            sink.accept(data, sectorOffset(sectors[i]), count);
+            remaining -= count;
+        }
+    }
+
+    private void readMini(int start, long size, RangeSink sink) throws MtefException {
+        int root = findRoot();
+        int[] miniStream = chain(data.getInt(root + 0x74), entrySize(root));
+        int[] miniFat = chain(data.getInt(0x3C), Long.MAX_VALUE);
+        long miniFatEntries = (long) miniFat.length * (sectorSize / 4);
+        long miniStreamBytes = (long) miniStream.length * sectorSize;
+        long remaining = size;
+        int hops = 0;
+        for (int sector = start; remaining > 0; sector = miniFatEntry(miniFat, sector)) {
+            if (++hops > miniFatEntries) {
+                throw new MtefException("ole:chain", "Mini sector chain loops at " + sector);
+            }
+            long offset = (long) sector * miniSectorSize;
+            int count = (int) Math.min(miniSectorSize, remaining);
+            if (sector < 0 || offset + count > miniStreamBytes) {
+                throw new MtefException("ole:chain", "Mini sector " + sector + " outside the mini stream");
+            }
+            // mini 扇区不跨越普通扇区（64 整除 512/4096）
+            sink.accept(data, sectorOffset(miniStream[(int) (offset / sectorSize)]) + (int) (offset % sectorSize), count);
+            remaining -= count;
+        }
+    }
+
+    /**
+     * 目录项很少，线性扫描即可，不需要遍历红黑树；返回目录项在文件中的偏移
+     */
+    private int findEntry(String name) throws MtefException {
+        int perSector = sectorSize / DIR_ENTRY_SIZE;
+        for (int sector : directorySectors) {
+            int base = sectorOffset(sector);
+            for (int i = 0; i < perSector; i++) {
+                int entry = base + i * DIR_ENTRY_SIZE;
+                if (data.get(entry + 0x42) == TYPE_STREAM && nameEquals(entry, name)) {
+                    return entry;
+                }
+            }
+        }
+        throw new MtefException("ole:no-equation", "No '" + name + "' stream");
+    }
+
+    private int findRoot() throws MtefException {
+        int perSector = sectorSize / DIR_ENTRY_SIZE;
+        for (int sector : directorySectors) {
+            int base = sectorOffset(sector);
+            for (int i = 0; i < perSector; i++) {
+                if (data.get(base + i * DIR_ENTRY_SIZE + 0x42) == TYPE_ROOT) {
+                    return base + i * DIR_ENTRY_SIZE;
+                }
+            }
+        }
+        throw new MtefException("ole:no-root", "No root entry for the mini stream");
+    }
+
+    private long checkedSize(int entry) throws MtefException {
+        long size = entrySize(entry);
+        if (size > data.capacity()) {
+            throw new MtefException("ole:size", "Stream size " + size + " exceeds file size");
+        }
+        return size;
+    }
+
+    private long entrySize(int entry) {
+        return sectorSize == 512 ? Integer.toUnsignedLong(data.getInt(entry + 0x78)) : data.getLong(entry + 0x78);
+    }
+
+    /**
+     * 目录项名称（UTF-16LE，含结尾 0）与 name 比较，不区分大小写，不创建字符串
+     */
+    private boolean nameEquals(int entry, String name) {
+        int length = data.getShort(entry + 0x40);
+        if (length != (name.length() + 1) * 2) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = data.getChar(entry + i * 2);
+            char expected = name.charAt(i);
+            if (c != expected && Character.toUpperCase(c) != Character.toUpperCase(expected)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按 DIFAT 收集 FAT 扇区号
+     */
+    private int[] readFatSectors() throws MtefException {
+        int fatCount = data.getInt(0x2C);
+        if (fatCount < 0 || fatCount > sectorCount) {
+            throw new MtefException("ole:fat", "Invalid FAT sector count " + fatCount);
+        }
+        int[] sectors = new int[fatCount];
+        int found = 0;
+        for (int i = 0; i < HEADER_DIFAT_ENTRIES && found < fatCount; i++) {
+            sectors[found++] = checkSector(data.getInt(0x4C + i * 4));
+        }
+        int perSector = sectorSize / 4;
+        int difat = data.getInt(0x44);
+        // 每个 DIFAT 扇区至少补充一个 FAT 扇区号，单靠链长度上限发现不了成环，需要记录走过的扇区
+        BitSet visited = new BitSet();
+        while (found < fatCount && difat != END_OF_CHAIN && difat != FREE_SECT) {
+            int base = sectorOffset(difat);
+            if (visited.get(difat)) {
+                throw new MtefException("ole:difat", "DIFAT chain loops at " + difat);
+            }
+            visited.set(difat);
+            for (int i = 0; i < perSector - 1 && found < fatCount; i++) {
+                sectors[found++] = checkSector(data.getInt(base + i * 4));
+            }
+            difat = data.getInt(base + sectorSize - 4);
+        }
+        if (found < fatCount) {
+            throw new MtefException("ole:fat", "Only " + found + " of " + fatCount + " FAT sectors listed");
+        }
+        return sectors;
+    }
+
+    /**
+     * 沿 FAT 链收集扇区号，覆盖 limit 字节即停止；链长度超过扇区总数视为成环
+     */
+    private int[] chain(int start, long limit) throws MtefException {
+        int length = 0;
+        for (int sector = start; sector != END_OF_CHAIN; sector = fatEntry(sector)) {
+            if (++length > sectorCount) {
+                throw new MtefException("ole:chain", "Sector chain loops at " + sector);
+            }
+            if ((long) length * sectorSize >= limit) {
+                break;
+            }
+        }
+        int[] sectors = new int[length];
+        for (int i = 0, sector = start; i < length; i++, sector = fatEntry(sector)) {
+            sectors[i] = checkSector(sector);
+        }
+        return sectors;
+    }
+
+    private int fatEntry(int sector) throws MtefException {
+        int perSector = sectorSize / 4;
+        if (sector < 0 || sector / perSector >= fatSectors.length) {
+            throw new MtefException("ole:chain", "Sector " + Integer.toUnsignedString(sector) + " outside the fat");
+        }
+        return data.getInt(sectorOffset(fatSectors[sector / perSector]) + sector % perSector * 4);
+    }
+
+    private int miniFatEntry(int[] miniFat, int sector) throws MtefException {
+        int perSector = sectorSize / 4;
+        if (sector < 0 || sector / perSector >= miniFat.length) {
+            throw new MtefException("ole:chain", "Sector " + Integer.toUnsignedString(sector)
+                    + " outside the minifat");
+        }
+        return data.getInt(sectorOffset(miniFat[sector / perSector]) + sector % perSector * 4);
+    }
+
+    private int checkSector(int sector) throws MtefException {
+        sectorOffset(sector);
+        return sector;
+    }
+
+    private int sectorOffset(int sector) throws MtefException {
+        if (sector < 0 || sector >= sectorCount) {
+            throw new MtefException("ole:chain", "Sector " + Integer.toUnsignedString(sector) + " outside the file");
+        }
+        return (sector + 1) * sectorSize;
+    }
+}
@@ -0,0 +1,243 @@
+package org.example.testgraalvm.panama;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * 本地库调用的自适应并发上限（梯度算法，思路同 Netflix concurrency-limits 的 Gradient2）
+ * <p>
+ * 每次调用结束后按文件数折算单项延迟，每 window 个样本取平均作为当前延迟并调整一次上限。
+ * 基线取各窗口延迟的最小值（未饱和时的延迟）。饱和时每个窗口的延迟都高于真正的空载延迟，基线无法自行回落，
+ * 因此每隔约 probe-interval 个窗口（随机抖动 ±50%）探测一次：上限降到 √上限 并重新测量基线，
+ * 以适应库版本或负载结构的变化；探测前开始的调用不计入新基线。
+ * 梯度 = clamp(tolerance × 基线 / 当前, 0.5, 1)，新上限 = 上限 × 梯度 + √上限，再按 smoothing 平滑：
+ * 延迟接近基线时上限逐步增长，延迟明显高于基线（本地库或 CPU 已饱和）时按比例收缩，
+ * 因此在不同硬件上都会停留在延迟曲线的拐点附近，无需手工设定线程数。
+ * 窗口内进行中的调用从未达到上限一半时不增长（负载不足以说明更高的并发是否有益）。
+ * <p>
+ * 超过上限的调用在 {@link #acquire} 中等待；是否在入口直接拒绝由调用方根据 {@link #estimatedDelayNanos} 决定。
+ */
+public final class ConcurrencyLimiter {
+
+    /**
+     * @param initialLimit 初始上限
+     * @param minLimit     上限下界
+     * @param maxLimit     上限上界
+     * @param tolerance    当前延迟不超过基线的多少倍时视为未饱和
+     * @param smoothing     每次调整向新上限移动的比例
+     * @param window        每次调整使用的样本数
+     * @param probeInterval 两次重新测量基线之间的平均窗口数
+     */
+    public record Settings(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing,
+                           int window, int probeInterval) {
+
+        public static Settings defaults() {
+            int cores = Runtime.getRuntime().availableProcessors();
+            return new Settings(cores, 1, Math.max(4, cores * 8), 1.5, 0.2, 20, 100);
+        }
+    }
+
+    /**
+     * @param limit          当前上限（取整后生效）
+     * @param inFlight       进行中的调用数
+     * @param waitingItems   等待上限放行的调用所含的文件数
+     * @param latencyMicros  最近一个窗口的单项延迟
+     * @param baselineMicros 基线单项延迟
+     * @param samples        已采样的调用数
+     * @param rejected       入口因排队过长拒绝的请求数
+     */
+    public record Snapshot(Settings settings, double limit, int inFlight, long waitingItems,
+                           double latencyMicros, double baselineMicros, long samples, long rejected) {
+    }
+
+    /**
+     * 一次调用占用的名额，调用结束后必须 {@link #release}
+     */
+    public final class Permit {
+
+        private final long startNanos = clock.getAsLong();
+        private final int items;
+        private final int inFlightAtStart;
+        private final long probe;
+
+        private Permit(int items, int inFlightAtStart, long probe) {
+            this.items = items;
+            this.inFlightAtStart = inFlightAtStart;
+            this.probe = probe;
+        }
+
+        /**
+         * @param sample 是否把本次耗时计入延迟估计（耗时包含写出等非本地库时间时传 false）
+         */
+        public void release(boolean sample) {
+            ConcurrencyLimiter.this.release(this, sample);
+        }
+    }
+
+    private final Settings settings;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permits = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private long waitingItems;
+    private double shortNanos = Double.NaN;
+    private double longNanos = Double.NaN;
+    private long samples;
+    // 当前窗口的累计值
+    private double windowNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    // 探测次数与距下次探测的窗口数
+    private long probes;
+    private int windowsUntilProbe;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ConcurrencyLimiter(Settings settings) {
+        this(settings, System::nanoTime);
+    }
+
+    ConcurrencyLimiter(Settings settings, LongSupplier clock) {
+        this.settings = settings;
+        this.clock = clock;
+        this.limit = Math.clamp(settings.initialLimit(), settings.minLimit(), settings.maxLimit());
+        this.windowsUntilProbe = nextProbeCountdown();
+    }
+
+    /**
+     * 获取调用名额，进行中的调用数达到上限时等待
+     *
+     * @param items 本次调用包含的文件数（用于折算单项延迟）
+     */
+    public Permit acquire(int items) {
+        lock.lock();
+        try {
+            waitingItems += items;
+            try {
+                while (inFlight >= (int) limit) {
+                    permits.awaitUninterruptibly();
+                }
+            } finally {
+                waitingItems -= items;
+            }
+            inFlight++;
+            return new Permit(Math.max(1, items), inFlight, probes);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Permit permit, boolean sample) {
+        long elapsed = clock.getAsLong() - permit.startNanos;
+        lock.lock();
+        try {
+            inFlight--;
+            if (sample && permit.probe == probes) {
+                update(elapsed / (double) permit.items, permit.inFlightAtStart);
+            }
+            permits.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void update(double perItemNanos, int inFlightAtStart) {
+        samples++;
+        windowNanos += perItemNanos;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtStart);
+        if (++windowSamples < settings.window()) {
+            return;
+        }
+        shortNanos = windowNanos / windowSamples;
+        int maxInFlight = windowMaxInFlight;
+        windowNanos = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+
+        if (Double.isNaN(longNanos) || shortNanos < longNanos) {
+            longNanos = shortNanos;
+        }
+        if (--windowsUntilProbe <= 0) {
+            windowsUntilProbe = nextProbeCountdown();
+            probes++;
+            longNanos = Double.NaN;
+            limit = Math.clamp(Math.sqrt(limit), settings.minLimit(), settings.maxLimit());
+            return;
+        }
+        double gradient = Math.clamp(settings.tolerance() * longNanos / shortNanos, 0.5, 1.0);
+        // 负载不足上限的一半时，延迟不能说明更高并发是否有益：只收缩不增长
+        if (gradient >= 1.0 && maxInFlight < limit / 2) {
+            return;
+        }
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.clamp(limit * (1 - settings.smoothing()) + target * settings.smoothing(),
+                settings.minLimit(), settings.maxLimit());
+    }
+
+    private int nextProbeCountdown() {
+        int interval = Math.max(1, settings.probeInterval());
+        return interval / 2 + ThreadLocalRandom.current().nextInt(interval + 1);
+    }
+
+    /**
+     * 按当前单项延迟估计 backlogItems 个文件排队完成需要的时间；尚无样本时返回 0
+     *
+     * @param maxConcurrency 调用方自身的并发上限（例如调度线程数），与当前上限取较小值
+     */
+    public long estimatedDelayNanos(long backlogItems, int maxConcurrency) {
+        lock.lock();
+        try {
+            if (Double.isNaN(shortNanos) || backlogItems <= 0) {
+                return 0;
+            }
+            int concurrency = Math.max(1, Math.min((int) limit, maxConcurrency));
+            return (long) (backlogItems * shortNanos / concurrency);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 当前生效的上限
+     */
+    public int currentLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一次入口拒绝（只用于统计）
+     */
+    public void recordRejected() {
+        rejected.incrementAndGet();
+    }
+
+    public long waitingItems() {
+        lock.lock();
+        try {
+            return waitingItems;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Snapshot snapshot() {
+        lock.lock();
+        try {
+            return new Snapshot(settings, limit, inFlight, waitingItems,
+                    Double.isNaN(shortNanos) ? 0 : shortNanos / TimeUnit.MICROSECONDS.toNanos(1),
+                    Double.isNaN(longNanos) ? 0 : longNanos / TimeUnit.MICROSECONDS.toNanos(1), samples,
+                    rejected.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package org.example.testgraalvm.panama;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 基于在线代价模型的转换调度器
+ * <p>
+ * 对 Convert / ConvertList / ConvertListAsync 三个入口，按（批量大小区间 × 平均文件大小区间）
+ * 分别记录每个文件耗时的指数滑动平均（EWMA），每次请求选择当前估计最便宜的入口；
+ * 新区间先对每个入口各试几次，之后以小概率随机探索，保持估计不过期。
+ * 入口抛出异常时记一个高代价样本，并用下一个估计最便宜的入口重试该批次。
+ * <p>
+ * 大批量按估计的墙钟时间（子批次轮数 × 子批次耗时）选择子批次大小，拆分后并行执行。
+ */
+public class ConversionDispatcher implements AutoCloseable {
+
+    private static final Logger log = Logger.getLogger(ConversionDispatcher.class.getName());
+
+    // 每个单元在参与比较前需要的最少样本数
+    private static final int MIN_SAMPLES = 3;
+    // 入口失败时记录的每文件耗时下限（纳秒），失败也计入样本数
+    private static final double FAILURE_PENALTY_NANOS = 1_000_000_000.0;
+
+    // 批量大小区间上界：1, 2-4, 5-16, 17-64, 65-256, 257+
+    private static final int[] BATCH_BOUNDS = {1, 4, 16, 64, 256, Integer.MAX_VALUE};
+    private static final String[] BATCH_LABELS = {"1", "2-4", "5-16", "17-64", "65-256", "257+"};
+
+    // 平均文件大小区间上界：<4KB, <16KB, <64KB, 64KB+
+    private static final long[] SIZE_BOUNDS = {4 * 1024, 16 * 1024, 64 * 1024, Long.MAX_VALUE};
+    private static final String[] SIZE_LABELS = {"<4KB", "<16KB", "<64KB", "64KB+"};
+
+    // 可选的子批次大小
+    private static final int[] SUB_BATCH_CANDIDATES = {16, 32, 64, 128, 256, 512};
+
+    /**
+     * 本地库的三个转换入口
+     */
+    public enum Strategy {
+        CONVERT, LIST, ASYNC
+    }
+
+    /**
+     * 实际调用本地库的后端
+     */
+    public interface Backend {
+
+        Mtef2LatexDTO convert(String binPath);
+
+        List<Mtef2LatexDTO> convertList(List<String> binPaths);
+
+        List<Mtef2LatexDTO> convertListAsync(List<String> binPaths);
+    }
+
+    /**
+     * 调度配置
+     *
+     * @param strategy        固定使用的入口，null 表示按代价模型选择
+     * @param subBatchSize    固定的子批次大小，0 表示按代价模型选择
+     * @param maxSubBatchSize 子批次大小上限，也是没有估计数据时的默认拆分大小
+     * @param parallelism     并行执行子批次的线程数
+     * @param convertMaxBatch 逐个调用 Convert 只用于不超过此数量的批次
+     * @param exploreRate     随机探索的概率
+     * @param alpha           EWMA 的平滑系数
+     */
+    public record Settings(Strategy strategy, int subBatchSize, int maxSubBatchSize, int parallelism,
+                           int convertMaxBatch, double exploreRate, double alpha) {
+
+        public static Settings defaults() {
+            return new Settings(null, 0, 256, Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                    4, 0.05, 0.2);
+        }
+    }
+
+    /**
+     * 一个单元的估计值
+     *
+     * @param microsPerItem 每个文件耗时（微秒）的 EWMA
+     */
+    public record Stat(Strategy strategy, String batchSize, String fileSize, long samples, double microsPerItem) {
+    }
+
+    /**
+     * 调度器状态快照
+     *
+     * @param decisions 各入口被选中的次数
+     * @param splits    被拆分的批次数
+     * @param stats     有样本的单元
+     */
+    public record Snapshot(Settings settings, Map<Strategy, Long> decisions, long splits, List<Stat> stats) {
+    }
+
+    private static final class Cell {
+        private long samples;
+        private double ewma;
+
+        synchronized void record(double value, double alpha) {
+            ewma = samples == 0 ? value : alpha * value + (1 - alpha) * ewma;
+            samples++;
+        }
+
+        synchronized long samples() {
+            return samples;
+        }
+
+        synchronized double ewma() {
+            return ewma;
+        }
+    }
+
+    private final Backend backend;
+    private final Settings settings;
+    private final Cell[][][] cells = new Cell[Strategy.values().length][BATCH_BOUNDS.length][SIZE_BOUNDS.length];
+    private final LongAdder[] decisions = new LongAdder[Strategy.values().length];
+    private final LongAdder splits = new LongAdder();
+    private final ExecutorService executor;
+
+    public ConversionDispatcher(Backend backend, Settings settings) {
+        this.backend = backend;
+        this.settings = settings;
+        for (int s = 0; s < cells.length; s++) {
+            decisions[s] = new LongAdder();
+            for (int b = 0; b < BATCH_BOUNDS.length; b++) {
+                for (int z = 0; z < SIZE_BOUNDS.length; z++) {
+                    cells[s][b][z] = new Cell();
+                }
+            }
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, settings.parallelism()),
+                r -> Thread.ofPlatform().name("mathtype-dispatch-" + threadIndex.getAndIncrement())
+                        .daemon().unstarted(r));
+    }
+
+    public Settings settings() {
+        return settings;
+    }
+
+    /**
+     * 批量转换，结果顺序与输入一致且数量相同
+     *
+     * @param binPaths 文件路径列表
+     * @return 转换结果列表
+     */
+    public List<Mtef2LatexDTO> convert(List<String> binPaths) {
+        int n = binPaths.size();
+        if (n == 0) {
+            return new ArrayList<>();
+        }
+        int sizeBucket = sizeBucket(binPaths);
+        int subBatch = chooseSubBatchSize(n, sizeBucket);
+        if (subBatch >= n) {
+            return runChunk(binPaths, sizeBucket);
+        }
+
+        splits.increment();
+        List<CompletableFuture<List<Mtef2LatexDTO>>> futures = new ArrayList<>();
+        for (int offset = 0; offset < n; offset += subBatch) {
+            List<String> chunk = binPaths.subList(offset, Math.min(n, offset + subBatch));
+            futures.add(CompletableFuture.supplyAsync(() -> runChunk(chunk, sizeBucket), executor));
+        }
+        List<Mtef2LatexDTO> results = new ArrayList<>(n);
+        for (CompletableFuture<List<Mtef2LatexDTO>> future : futures) {
+            results.addAll(future.join());
+        }
+        return results;
+    }
+
+    /**
+     * 当前估计值快照
+     */
+    public Snapshot snapshot() {
+        List<Stat> stats = new ArrayList<>();
+        for (Strategy strategy : Strategy.values()) {
+            for (int b = 0; b < BATCH_BOUNDS.length; b++) {
+                for (int z = 0; z < SIZE_BOUNDS.length; z++) {
+                    Cell cell = cells[strategy.ordinal()][b][z];
+                    long samples = cell.samples();
+                    if (samples > 0) {
+                        stats.add(new Stat(strategy, BATCH_LABELS[b], SIZE_LABELS[z], samples, cell.ewma() / 1000.0));
+                    }
+                }
+            }
+        }
+        Map<Strategy, Long> counts = new EnumMap<>(Strategy.class);
+        for (Strategy strategy : Strategy.values()) {
+            counts.put(strategy, decisions[strategy.ordinal()].sum());
+        }
+        return new Snapshot(settings, counts, splits.sum(), stats);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * 用选中的入口转换一个（子）批次并记录耗时；入口失败时按估计代价依次换用其余入口
+     */
+    private List<Mtef2LatexDTO> runChunk(List<String> binPaths, int sizeBucket) {
+        int n = binPaths.size();
+        List<Strategy> failed = new ArrayList<>(3);
+        Strategy strategy = chooseStrategy(n, sizeBucket);
+        String failure = null;
+        while (strategy != null) {
+            decisions[strategy.ordinal()].increment();
+            Cell cell = cells[strategy.ordinal()][batchBucket(n)][sizeBucket];
+            long start = System.nanoTime();
+            try {
+                List<Mtef2LatexDTO> results = invoke(strategy, binPaths);
+                cell.record((double) (System.nanoTime() - start) / n, settings.alpha());
+                while (results.size() < n) {
+                    results.add(Mtef2LatexDTO.error("转换失败: 本地库未返回结果"));
+                }
+                return results;
+            } catch (RuntimeException e) {
+                log.log(Level.WARNING, strategy + " failed for " + n + " file(s): " + e.getMessage(), e);
+                // 失败也算一个样本，否则样本不足的失败入口会一直被优先选中
+                cell.record(Math.max((double) (System.nanoTime() - start) / n, FAILURE_PENALTY_NANOS),
+                        settings.alpha());
+                failed.add(strategy);
+                failure = "转换失败: " + e.getMessage();
+            }
+            // 固定入口时不换用其他入口
+            strategy = settings.strategy() != null ? null : nextCheapest(n, sizeBucket, failed);
+        }
+
+        List<Mtef2LatexDTO> results = new ArrayList<>(n);
+        while (results.size() < n) {
+            results.add(Mtef2LatexDTO.error(failure));
+        }
+        return results;
+    }
+
+    private List<Mtef2LatexDTO> invoke(Strategy strategy, List<String> binPaths) {
+        return switch (strategy) {
+            case CONVERT -> {
+                List<Mtef2LatexDTO> list = new ArrayList<>(binPaths.size());
+                for (String binPath : binPaths) {
+                    list.add(backend.convert(binPath));
+                }
+                yield list;
+            }
+            case LIST -> new ArrayList<>(backend.convertList(binPaths));
+            case ASYNC -> new ArrayList<>(backend.convertListAsync(binPaths));
+        };
+    }
+
+    private List<Strategy> eligible(int n) {
+        List<Strategy> eligible = new ArrayList<>(3);
+        for (Strategy strategy : Strategy.values()) {
+            if (strategy != Strategy.CONVERT || n <= settings.convertMaxBatch()) {
+                eligible.add(strategy);
+            }
+        }
+        return eligible;
+    }
+
+    /**
+     * 除已失败的入口外估计最便宜的入口，没有样本的入口优先；都失败过时返回 null
+     */
+    private Strategy nextCheapest(int n, int sizeBucket, List<Strategy> failed) {
+        int batchBucket = batchBucket(n);
+        Strategy best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (Strategy strategy : eligible(n)) {
+            if (failed.contains(strategy)) {
+                continue;
+            }
+            Cell cell = cells[strategy.ordinal()][batchBucket][sizeBucket];
+            double cost = cell.samples() == 0 ? 0 : cell.ewma();
+            if (best == null || cost < bestCost) {
+                bestCost = cost;
+                best = strategy;
+            }
+        }
+        return best;
+    }
+
+    private Strategy chooseStrategy(int n, int sizeBucket) {
+        if (settings.strategy() != null) {
+            return settings.strategy();
+        }
+        List<Strategy> eligible = eligible(n);
+
+        int batchBucket = batchBucket(n);
+        // 先让每个入口积累足够样本
+        for (Strategy strategy : eligible) {
+            if (cells[strategy.ordinal()][batchBucket][sizeBucket].samples() < MIN_SAMPLES) {
+                return strategy;
+            }
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < settings.exploreRate()) {
+            return eligible.get(random.nextInt(eligible.size()));
+        }
+
+        Strategy best = eligible.getFirst();
+        double bestCost = Double.MAX_VALUE;
+        for (Strategy strategy : eligible) {
+            double cost = cells[strategy.ordinal()][batchBucket][sizeBucket].ewma();
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = strategy;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 选择子批次大小：估计墙钟时间 = 轮数 × 子批次大小 × 每文件耗时，轮数 = ceil(子批次数 / 并行度)
+     * 返回值不小于 n 表示不拆分
+     */
+    private int chooseSubBatchSize(int n, int sizeBucket) {
+        if (settings.subBatchSize() > 0) {
+            return balanced(n, settings.subBatchSize());
+        }
+        int parallelism = Math.max(1, settings.parallelism());
+        if (parallelism == 1 || n <= SUB_BATCH_CANDIDATES[0]) {
+            return n;
+        }
+
+        List<Integer> candidates = new ArrayList<>();
+        for (int candidate : SUB_BATCH_CANDIDATES) {
+            if (candidate < n && candidate <= settings.maxSubBatchSize()) {
+                candidates.add(balanced(n, candidate));
+            }
+        }
+        if (n <= settings.maxSubBatchSize()) {
+            candidates.add(n);
+        }
+        if (candidates.isEmpty()) {
+            return balanced(n, settings.maxSubBatchSize());
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < settings.exploreRate()) {
+            return candidates.get(random.nextInt(candidates.size()));
+        }
+
+        int best = -1;
+        double bestTime = Double.MAX_VALUE;
+        for (int size : candidates) {
+            double perItem = bestKnownCost(batchBucket(size), sizeBucket);
+            if (Double.isNaN(perItem)) {
+                continue;
+            }
+            int rounds = ((n + size - 1) / size + parallelism - 1) / parallelism;
+            double time = (double) rounds * size * perItem;
+            if (time < bestTime) {
+                bestTime = time;
+                best = size;
+            }
+        }
+        if (best > 0) {
+            return best;
+        }
+        // 还没有任何估计：按上限均匀拆分
+        return balanced(n, Math.min(n, settings.maxSubBatchSize()));
+    }
+
+    private double bestKnownCost(int batchBucket, int sizeBucket) {
+        double best = Double.NaN;
+        for (Strategy strategy : Strategy.values()) {
+            Cell cell = cells[strategy.ordinal()][batchBucket][sizeBucket];
+            if (cell.samples() >= MIN_SAMPLES && (Double.isNaN(best) || cell.ewma() < best)) {
+                best = cell.ewma();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 把 n 按不超过 target 的大小均匀分块后的块大小
+     */
+    private static int balanced(int n, int target) {
+        int chunks = (n + target - 1) / target;
+        return (n + chunks - 1) / chunks;
+    }
+
+    private static int batchBucket(int n) {
+        for (int i = 0; i < BATCH_BOUNDS.length; i++) {
+            if (n <= BATCH_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BATCH_BOUNDS.length - 1;
+    }
+
+    private static int sizeBucket(List<String> binPaths) {
+        long total = 0;
+        for (String binPath : binPaths) {
+            try {
+                total += Files.size(Path.of(binPath));
+            } catch (IOException e) {
+                // 文件大小只用于分桶，读不到时按 0 计
+            }
+        }
+        long average = total / binPaths.size();
+        for (int i = 0; i < SIZE_BOUNDS.length; i++) {
+            if (average < SIZE_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return SIZE_BOUNDS.length - 1;
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.testgraalvm.panama;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 带引用计数的本地库句柄，用于不停机替换本地库
+ * <p>
+ * 每次调用本地库前 {@link #tryAcquire()}，调用结束后 {@link #release()}；当前句柄自身持有一个引用。
+ * 替换时新调用立即转到新句柄，旧句柄 {@link #retire()} 交出自身引用，
+ * 等进行中的调用全部释放后才关闭库的 Arena，不会在调用中途卸载代码段。
+ * 引用计数降到 0 后不能再获取，获取失败的调用重新读取当前句柄即可。
+ */
+final class LibraryHandle {
+
+    private static final Logger log = Logger.getLogger(LibraryHandle.class.getName());
+
+    private final MathType2LatexLib lib;
+    // 关闭库的 Arena
+    private final Runnable closer;
+    private final long epoch;
+    private final String source;
+    // 进行中的调用数 + 1（当前句柄自身的引用，退役时释放）
+    private final AtomicLong refs = new AtomicLong(1);
+    private volatile long retiredAtNanos;
+
+    LibraryHandle(MathType2LatexLib lib, long epoch, String source) {
+        this(lib, epoch, source, lib::close);
+    }
+
+    LibraryHandle(MathType2LatexLib lib, long epoch, String source, Runnable closer) {
+        this.lib = lib;
+        this.closer = closer;
+        this.epoch = epoch;
+        this.source = source;
+    }
+
+    MathType2LatexLib lib() {
+        return lib;
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    String source() {
+        return source;
+    }
+
+    /**
+     * 进行中的调用数
+     */
+    long inFlight() {
+        long current = refs.get();
+        return retiredAtNanos == 0 ? Math.max(0, current - 1) : current;
+    }
+
+    boolean closed() {
+        return refs.get() == 0;
+    }
+
+    /**
+     * 获取一个调用引用；句柄已关闭时返回 false
+     */
+    boolean tryAcquire() {
+        long current;
+        do {
+            current = refs.get();
+            if (current == 0) {
+                return false;
+            }
+        } while (!refs.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    void release() {
+        if (refs.decrementAndGet() == 0) {
+            close();
+        }
+    }
+
+    /**
+     * 退役：不再是当前句柄，最后一个进行中的调用结束时关闭（没有进行中的调用则立即关闭）
+     */
+    void retire() {
+        retiredAtNanos = System.nanoTime();
+        release();
+    }
+
+    private void close() {
+        try {
+            closer.run();
+            long drainMillis = (System.nanoTime() - retiredAtNanos) / 1_000_000;
+            log.info("MathType2Latex library epoch " + epoch + " (" + source + ") drained in "
+                    + drainMillis + " ms and closed");
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Error closing library epoch " + epoch + ": " + e.getMessage(), e);
+        }
+    }
+}
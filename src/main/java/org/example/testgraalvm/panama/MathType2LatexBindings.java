@@ -0,0 +1,140 @@
+package org.example.testgraalvm.panama;
+
+import java.lang.foreign.*;
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+/**
+ * MathType2Latex 本地库的 FFM 绑定，按 jextract 生成代码的结构组织：
+ * 每个函数一个描述符常量（含链接选项）、一个句柄和一个与 C 函数同名的调用方法
+ * <p>
+ * 链接选项：
+ * <ul>
+ *     <li>strlen 来自 C 标准库，只扫描内存且不会回调或阻塞，使用 {@code critical}：跳过线程状态切换，
+ *     调用期间不能发生 GC</li>
+ *     <li>FreeCStr 是 Go 库经 cgo 导出的函数，进入时要切换到 Go 运行时并可能等待其调度或 GC，
+ *     耗时没有上界，保持默认选项</li>
+ *     <li>Convert / ConvertList / ConvertListAsync / ConvertListCallbackVia 单次可能耗时数毫秒到数秒，
+ *     作为 critical 调用会在整个转换期间阻塞 GC，因此保持默认选项，参数也就不能直接使用堆内存段</li>
+ * </ul>
+ * {@link PanamaFeature} 从 {@link #DOWNCALLS} 注册原生镜像所需的全部签名
+ */
+public final class MathType2LatexBindings {
+
+    /**
+     * 一个 downcall 签名及其链接选项，原生镜像注册时两者必须与绑定时一致
+     */
+    public record Downcall(FunctionDescriptor descriptor, Linker.Option... options) {
+
+        MethodHandle bind(Linker linker, MemorySegment address) {
+            return linker.downcallHandle(address, descriptor, options);
+        }
+    }
+
+    // char* Convert(const char* filePath)
+    // char* ConvertList(const char* filePathList) / char* ConvertListAsync(const char* filePathList)
+    public static final Downcall CONVERT = new Downcall(
+            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS));
+
+    // void FreeCStr(char* cstr)
+    public static final Downcall FREE_CSTR = new Downcall(
+            FunctionDescriptor.ofVoid(ValueLayout.ADDRESS));
+
+    // size_t strlen(const char* s)，来自 C 标准库
+    public static final Downcall STRLEN = new Downcall(
+            FunctionDescriptor.of(ValueLayout.JAVA_LONG, ValueLayout.ADDRESS),
+            Linker.Option.critical(false));
+
+    // int32_t ConvertListCallbackVia(convert, free_cstr, const char* filePathList, on_item, int32_t parallelism)
+    public static final Downcall CONVERT_LIST_CALLBACK_VIA = new Downcall(
+            FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS, ValueLayout.ADDRESS,
+                    ValueLayout.ADDRESS, ValueLayout.ADDRESS, ValueLayout.JAVA_INT));
+
+    // void on_item(int32_t index, int32_t code, const char* latex)
+    public static final FunctionDescriptor ITEM_CALLBACK =
+            FunctionDescriptor.ofVoid(ValueLayout.JAVA_INT, ValueLayout.JAVA_INT, ValueLayout.ADDRESS);
+
+    public static final List<Downcall> DOWNCALLS = List.of(CONVERT, FREE_CSTR, STRLEN, CONVERT_LIST_CALLBACK_VIA);
+
+    private final MemorySegment convertAddress;
+    private final MemorySegment freeCStrAddress;
+    private final MethodHandle convert;
+    private final MethodHandle convertList;
+    private final MethodHandle convertListAsync;
+    private final MethodHandle freeCStr;
+    private final MethodHandle strlen;
+
+    /**
+     * 从已加载的库中绑定全部函数
+     *
+     * @param lookup 本地库的符号查找
+     * @param linker 本地链接器
+     */
+    public MathType2LatexBindings(SymbolLookup lookup, Linker linker) {
+        this.convertAddress = find(lookup, "Convert");
+        this.freeCStrAddress = find(lookup, "FreeCStr");
+        this.convert = CONVERT.bind(linker, convertAddress);
+        this.convertList = CONVERT.bind(linker, find(lookup, "ConvertList"));
+        this.convertListAsync = CONVERT.bind(linker, find(lookup, "ConvertListAsync"));
+        this.freeCStr = FREE_CSTR.bind(linker, freeCStrAddress);
+        this.strlen = STRLEN.bind(linker, find(linker.defaultLookup(), "strlen"));
+    }
+
+    private static MemorySegment find(SymbolLookup lookup, String name) {
+        return lookup.find(name).orElseThrow(() -> new RuntimeException("Function '" + name + "' not found"));
+    }
+
+    /**
+     * Convert 的函数指针（传给回调 shim）
+     */
+    public MemorySegment Convert$address() {
+        return convertAddress;
+    }
+
+    /**
+     * FreeCStr 的函数指针（传给回调 shim）
+     */
+    public MemorySegment FreeCStr$address() {
+        return freeCStrAddress;
+    }
+
+    public MemorySegment Convert(MemorySegment filePath) {
+        try {
+            return (MemorySegment) convert.invokeExact(filePath);
+        } catch (Throwable ex) {
+            throw new AssertionError("should not reach here", ex);
+        }
+    }
+
+    public MemorySegment ConvertList(MemorySegment filePathList) {
+        try {
+            return (MemorySegment) convertList.invokeExact(filePathList);
+        } catch (Throwable ex) {
+            throw new AssertionError("should not reach here", ex);
+        }
+    }
+
+    public MemorySegment ConvertListAsync(MemorySegment filePathList) {
+        try {
+            return (MemorySegment) convertListAsync.invokeExact(filePathList);
+        } catch (Throwable ex) {
+            throw new AssertionError("should not reach here", ex);
+        }
+    }
+
+    public void FreeCStr(MemorySegment cstr) {
+        try {
+            freeCStr.invokeExact(cstr);
+        } catch (Throwable ex) {
+            throw new AssertionError("should not reach here", ex);
+        }
+    }
+
+    public long strlen(MemorySegment s) {
+        try {
+            return (long) strlen.invokeExact(s);
+        } catch (Throwable ex) {
+            throw new AssertionError("should not reach here", ex);
+        }
+    }
+}
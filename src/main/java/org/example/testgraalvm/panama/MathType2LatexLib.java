@@ -1,11 +1,21 @@
 package org.example.testgraalvm.panama;
 
+import org.example.testgraalvm.jfr.ArgumentMarshalEvent;
+import org.example.testgraalvm.jfr.CStringReadEvent;
+import org.example.testgraalvm.jfr.NativeCallEvent;
+
 import java.lang.foreign.*;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.io.InputStream;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -13,26 +23,60 @@ import java.util.logging.Logger;
  * 使用 JDK 25 Foreign Function & Memory API
  * 
  * 性能优化版本：使用共享 Arena 减少内存分配开销
+ * <p>
+ * 参数编组、本地调用和 C 字符串读取分别记录为 JFR 事件（{@link ArgumentMarshalEvent}、{@link NativeCallEvent}、
+ * {@link CStringReadEvent}），在 JFR 中可以把本地帧的耗时按阶段拆开
+ * <p>
+ * 返回的 C 字符串、参数占用的堆外内存和 upcall stub 的分配与释放计入 {@link NativeMemoryStats}
  */
 public class MathType2LatexLib implements AutoCloseable {
 
     private static final Logger log = Logger.getLogger(MathType2LatexLib.class.getName());
     
-    // 用于读取返回字符串的最大长度（避免 reinterpret Long.MAX_VALUE）
-    private static final long MAX_STRING_LENGTH = 10 * 1024 * 1024; // 10MB
-    
-    // 自动管理的 Arena，用于临时字符串分配（GC 自动回收）
-    private static final Arena AUTO_ARENA = Arena.ofAuto();
+    // 返回字符串写出时的分块大小
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    // 每个线程复用的拷贝缓冲区，避免为大结果分配与结果等长的 byte[]
+    private static final ThreadLocal<byte[]> COPY_BUFFER = ThreadLocal.withInitial(() -> new byte[COPY_CHUNK_SIZE]);
     
     private final Arena arena;
     private final SymbolLookup lookup;
     private final Linker linker;
     
-    // 本地函数句柄
-    private final MethodHandle convertHandle;
-    private final MethodHandle convertListHandle;
-    private final MethodHandle convertListAsyncHandle;
-    private final MethodHandle freeCStrHandle;
+    // 本地函数绑定
+    private final MathType2LatexBindings bindings;
+
+    // 逐项回调 shim（可选），未加载时为 null
+    private volatile MethodHandle convertListCallbackHandle;
+
+    private static final MethodHandle DISPATCH_ITEM;
+
+    static {
+        try {
+            DISPATCH_ITEM = MethodHandles.lookup().findVirtual(MathType2LatexLib.class, "dispatchItem",
+                    MethodType.methodType(void.class, ItemCallback.class, int.class, int.class, MemorySegment.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * 直接消费本地库返回的 UTF-8 字节（不含结尾的 0），回调返回后内存立即释放
+     * 回调内不能保留 segment 的引用
+     */
+    @FunctionalInterface
+    public interface NativeResultConsumer<T> {
+        T accept(MemorySegment utf8) throws IOException;
+    }
+
+    /**
+     * 单个文件转换完成时的回调
+     * 由本地线程调用，可能并发；latex 在回调返回后不再被引用
+     */
+    @FunctionalInterface
+    public interface ItemCallback {
+        void onItem(int index, int code, String latex);
+    }
 
     /**
      * 从资源路径加载本地库
@@ -40,57 +84,7 @@ public class MathType2LatexLib implements AutoCloseable {
      * @param libResourcePath 库在 classpath 中的资源路径，如 "/bin/MathType2Latex-win-amd64.dll"
      */
     public MathType2LatexLib(String libResourcePath) {
-        this.arena = Arena.ofShared();
-        this.linker = Linker.nativeLinker();
-        
-        try {
-            // 从 classpath 提取库文件到临时目录
-            Path tempLib = extractLibrary(libResourcePath);
-            
-            // 加载本地库
-            this.lookup = SymbolLookup.libraryLookup(tempLib, arena);
-            
-            // 绑定函数
-            // Pointer Convert(const char* filePath)
-            this.convertHandle = linker.downcallHandle(
-                lookup.find("Convert").orElseThrow(() -> new RuntimeException("Function 'Convert' not found")),
-                FunctionDescriptor.of(
-                    ValueLayout.ADDRESS,  // 返回值: char* (Pointer)
-                    ValueLayout.ADDRESS   // 参数: const char* filePath
-                )
-            );
-            
-            // Pointer ConvertList(const char* filePathList)
-            this.convertListHandle = linker.downcallHandle(
-                lookup.find("ConvertList").orElseThrow(() -> new RuntimeException("Function 'ConvertList' not found")),
-                FunctionDescriptor.of(
-                    ValueLayout.ADDRESS,  // 返回值: char*
-                    ValueLayout.ADDRESS   // 参数: const char* filePathList (JSON)
-                )
-            );
-            
-            // Pointer ConvertListAsync(const char* filePathList)
-            this.convertListAsyncHandle = linker.downcallHandle(
-                lookup.find("ConvertListAsync").orElseThrow(() -> new RuntimeException("Function 'ConvertListAsync' not found")),
-                FunctionDescriptor.of(
-                    ValueLayout.ADDRESS,  // 返回值: char*
-                    ValueLayout.ADDRESS   // 参数: const char* filePathList (JSON)
-                )
-            );
-            
-            // void FreeCStr(char* cstr)
-            this.freeCStrHandle = linker.downcallHandle(
-                lookup.find("FreeCStr").orElseThrow(() -> new RuntimeException("Function 'FreeCStr' not found")),
-                FunctionDescriptor.ofVoid(
-                    ValueLayout.ADDRESS   // 参数: char* cstr
-                )
-            );
-            
-            log.info("MathType2LatexLib loaded successfully via Panama FFM API");
-            
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to load native library: " + libResourcePath, e);
-        }
+        this(extractLibraryOrThrow(libResourcePath));
     }
 
     /**
@@ -103,41 +97,32 @@ public class MathType2LatexLib implements AutoCloseable {
         this.linker = Linker.nativeLinker();
         
         try {
-            // 加载本地库
+            // 加载本地库并绑定函数
             this.lookup = SymbolLookup.libraryLookup(libPath, arena);
-            
-            // 绑定函数（同上）
-            this.convertHandle = linker.downcallHandle(
-                lookup.find("Convert").orElseThrow(),
-                FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS)
-            );
-            
-            this.convertListHandle = linker.downcallHandle(
-                lookup.find("ConvertList").orElseThrow(),
-                FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS)
-            );
-            
-            this.convertListAsyncHandle = linker.downcallHandle(
-                lookup.find("ConvertListAsync").orElseThrow(),
-                FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS)
-            );
-            
-            this.freeCStrHandle = linker.downcallHandle(
-                lookup.find("FreeCStr").orElseThrow(),
-                FunctionDescriptor.ofVoid(ValueLayout.ADDRESS)
-            );
+            this.bindings = new MathType2LatexBindings(lookup, linker);
+            NativeMemoryStats.libraryLoaded();
             
             log.info("MathType2LatexLib loaded successfully from path: " + libPath);
             
         } catch (Exception e) {
+            arena.close();
             throw new RuntimeException("Failed to load native library from path: " + libPath, e);
         }
     }
 
+    private static Path extractLibraryOrThrow(String libResourcePath) {
+        try {
+            // 从 classpath 提取库文件到临时目录
+            return extractLibrary(libResourcePath);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to load native library: " + libResourcePath, e);
+        }
+    }
+
     /**
      * 从 classpath 资源提取库文件到临时目录
      */
-    private Path extractLibrary(String resourcePath) throws Exception {
+    private static Path extractLibrary(String resourcePath) throws Exception {
         String fileName = Path.of(resourcePath).getFileName().toString();
         
         // 首先尝试直接从文件系统加载（适用于 IDE 直接运行）
@@ -177,14 +162,14 @@ public class MathType2LatexLib implements AutoCloseable {
     /**
      * 尝试多种方式获取资源输入流
      */
-    private InputStream findResourceAsStream(String resourcePath) {
+    private static InputStream findResourceAsStream(String resourcePath) {
         // 尝试方式1: 直接使用类的 getResourceAsStream
-        InputStream is = getClass().getResourceAsStream(resourcePath);
+        InputStream is = MathType2LatexLib.class.getResourceAsStream(resourcePath);
         if (is != null) return is;
         
         // 尝试方式2: 使用类加载器（不带前导斜杠）
         String altPath = resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath;
-        is = getClass().getClassLoader().getResourceAsStream(altPath);
+        is = MathType2LatexLib.class.getClassLoader().getResourceAsStream(altPath);
         if (is != null) return is;
         
         // 尝试方式3: 使用线程上下文类加载器
@@ -195,7 +180,7 @@ public class MathType2LatexLib implements AutoCloseable {
     /**
      * 尝试从本地文件系统查找库文件（适用于 IDE 开发环境）
      */
-    private Path tryFindLocalFile(String resourcePath) {
+    private static Path tryFindLocalFile(String resourcePath) {
         String relativePath = resourcePath.startsWith("/") ? resourcePath.substring(1) : resourcePath;
         
         // 尝试常见的资源目录位置
@@ -225,92 +210,298 @@ public class MathType2LatexLib implements AutoCloseable {
      * @return JSON 格式的结果字符串
      */
     public String convert(String filePath) {
-        try {
-            // 使用自动 Arena 分配字符串（GC 自动回收，避免每次创建新 Arena）
-            MemorySegment pathSegment = AUTO_ARENA.allocateFrom(filePath);
-            
-            // 调用本地函数
-            MemorySegment resultPtr = (MemorySegment) convertHandle.invokeExact(pathSegment);
-            
-            // 读取返回的 C 字符串
-            String result = readCString(resultPtr);
-            
-            // 释放本地分配的内存
-            freeCStr(resultPtr);
-            
-            return result;
+        MemorySegment resultPtr;
+        // 参数只在调用期间有效，用调用级的 confined Arena 分配，返回时立即释放
+        try (CallArena call = new CallArena(Arena.ofConfined())) {
+            MemorySegment path = call.marshal(filePath, 1);
+            NativeCallEvent event = new NativeCallEvent();
+            event.begin();
+            resultPtr = bindings.Convert(path);
+            event.commit("Convert", 1);
         } catch (Throwable e) {
             throw new RuntimeException("Failed to call Convert", e);
         }
+        
+        // 读取返回的 C 字符串后释放本地分配的内存
+        return readAndFree(resultPtr);
     }
 
     /**
      * 批量转换 MathType 文件为 LaTeX（同步）
      *
      * @param filePathListJson 文件路径列表的 JSON 字符串
+     * @param batchSize        列表中的文件数（用于 JFR 事件）
      * @return JSON 格式的结果列表字符串
      */
-    public String convertList(String filePathListJson) {
-        try {
-            MemorySegment pathListSegment = AUTO_ARENA.allocateFrom(filePathListJson);
-            
-            MemorySegment resultPtr = (MemorySegment) convertListHandle.invokeExact(pathListSegment);
-            
-            String result = readCString(resultPtr);
-            freeCStr(resultPtr);
-            
-            return result;
+    public String convertList(String filePathListJson, int batchSize) {
+        MemorySegment resultPtr;
+        try (CallArena call = new CallArena(Arena.ofConfined())) {
+            MemorySegment pathList = call.marshal(filePathListJson, batchSize);
+            NativeCallEvent event = new NativeCallEvent();
+            event.begin();
+            resultPtr = bindings.ConvertList(pathList);
+            event.commit("ConvertList", batchSize);
         } catch (Throwable e) {
             throw new RuntimeException("Failed to call ConvertList", e);
         }
+        
+        return readAndFree(resultPtr);
     }
 
     /**
      * 批量转换 MathType 文件为 LaTeX（异步）
      *
      * @param filePathListJson 文件路径列表的 JSON 字符串
+     * @param batchSize        列表中的文件数（用于 JFR 事件）
      * @return JSON 格式的结果列表字符串
      */
-    public String convertListAsync(String filePathListJson) {
+    public String convertListAsync(String filePathListJson, int batchSize) {
+        return readAndFree(callConvertListAsync(filePathListJson, batchSize));
+    }
+
+    /**
+     * 批量转换（异步），结果不解码为 String，直接交给回调消费
+     * 回调结束后（包括抛出异常时）立即释放本地内存
+     *
+     * @param filePathListJson 文件路径列表的 JSON 字符串
+     * @param batchSize        列表中的文件数（用于 JFR 事件）
+     * @param consumer         结果 JSON 的 UTF-8 字节消费者
+     * @return 回调的返回值
+     */
+    public <T> T convertListAsync(String filePathListJson, int batchSize, NativeResultConsumer<T> consumer)
+            throws IOException {
+        MemorySegment resultPtr = callConvertListAsync(filePathListJson, batchSize);
+        CStringReadEvent event = new CStringReadEvent();
+        event.begin();
+        MemorySegment utf8 = received(resultPtr);
+        event.commit(utf8.byteSize(), false);
         try {
-            MemorySegment pathListSegment = AUTO_ARENA.allocateFrom(filePathListJson);
-            
-            MemorySegment resultPtr = (MemorySegment) convertListAsyncHandle.invokeExact(pathListSegment);
-            
-            String result = readCString(resultPtr);
-            freeCStr(resultPtr);
-            
-            return result;
+            return consumer.accept(utf8);
+        } finally {
+            freeCStr(resultPtr, utf8);
+        }
+    }
+
+    private MemorySegment callConvertListAsync(String filePathListJson, int batchSize) {
+        try (CallArena call = new CallArena(Arena.ofConfined())) {
+            MemorySegment pathList = call.marshal(filePathListJson, batchSize);
+            NativeCallEvent event = new NativeCallEvent();
+            event.begin();
+            MemorySegment resultPtr = bindings.ConvertListAsync(pathList);
+            event.commit("ConvertListAsync", batchSize);
+            return resultPtr;
         } catch (Throwable e) {
             throw new RuntimeException("Failed to call ConvertListAsync", e);
         }
     }
 
+    /**
+     * 调用级 Arena：参数字符串和 upcall stub 只在一次调用期间有效，close 时一起释放；分配与释放都计入统计
+     */
+    private static final class CallArena implements AutoCloseable {
+
+        private final Arena arena;
+        private long bytes;
+        private int upcallStubs;
+
+        CallArena(Arena arena) {
+            this.arena = arena;
+        }
+
+        /**
+         * 把参数拷贝为本地内存中的 C 字符串
+         */
+        MemorySegment marshal(String argument, int paths) {
+            ArgumentMarshalEvent event = new ArgumentMarshalEvent();
+            event.begin();
+            MemorySegment segment = arena.allocateFrom(argument);
+            event.commit("c-string", paths, segment.byteSize());
+            bytes += segment.byteSize();
+            NativeMemoryStats.argumentAllocated(segment.byteSize());
+            return segment;
+        }
+
+        MemorySegment upcallStub(Linker linker, MethodHandle target, FunctionDescriptor function) {
+            MemorySegment stub = linker.upcallStub(target, function, arena);
+            upcallStubs++;
+            NativeMemoryStats.upcallStubCreated();
+            return stub;
+        }
+
+        @Override
+        public void close() {
+            arena.close();
+            NativeMemoryStats.argumentsFreed(bytes, upcallStubs);
+        }
+    }
+
+    /**
+     * 加载逐项回调 shim（native/callback-shim）
+     * shim 使用本库的 Convert/FreeCStr 在线程池中逐个转换，每完成一项就回调一次
+     *
+     * @param shimPath shim 库文件路径
+     */
+    public void attachCallbackShim(Path shimPath) {
+        SymbolLookup shim = SymbolLookup.libraryLookup(shimPath, arena);
+        MethodHandle handle = linker.downcallHandle(
+            shim.find("ConvertListCallbackVia").orElseThrow(() -> new RuntimeException("Function 'ConvertListCallbackVia' not found")),
+            MathType2LatexBindings.CONVERT_LIST_CALLBACK_VIA.descriptor(),
+            MathType2LatexBindings.CONVERT_LIST_CALLBACK_VIA.options()
+        );
+        this.convertListCallbackHandle = MethodHandles.insertArguments(handle, 0,
+                bindings.Convert$address(), bindings.FreeCStr$address());
+        log.info("MathType2Latex callback shim loaded from path: " + shimPath);
+    }
+
+    /**
+     * 是否支持逐项回调
+     */
+    public boolean supportsCallbacks() {
+        return convertListCallbackHandle != null;
+    }
+
+    /**
+     * 批量转换，每个文件转换完成时立即回调，而不是等待整个批次
+     * 方法在所有回调结束后返回；回调的 upcall stub 随之释放
+     *
+     * @param filePathListJson 文件路径列表的 JSON 字符串
+     * @param batchSize        列表中的文件数（用于 JFR 事件）
+     * @param parallelism      并行转换的线程数
+     * @param callback         逐项回调
+     * @return 条目数
+     */
+    public int convertListCallback(String filePathListJson, int batchSize, int parallelism, ItemCallback callback) {
+        MethodHandle handle = convertListCallbackHandle;
+        if (handle == null) {
+            throw new IllegalStateException("Callback shim not loaded");
+        }
+        // 回调来自 shim 的工作线程，stub 需要能被任意线程调用
+        try (CallArena callArena = new CallArena(Arena.ofShared())) {
+            MemorySegment pathListSegment = callArena.marshal(filePathListJson, batchSize);
+            MemorySegment onItem = callArena.upcallStub(linker, DISPATCH_ITEM.bindTo(this).bindTo(callback),
+                    MathType2LatexBindings.ITEM_CALLBACK);
+            // 包含回调在 Java 中的处理时间
+            NativeCallEvent event = new NativeCallEvent();
+            event.begin();
+            int count = (int) handle.invokeExact(pathListSegment, onItem, parallelism);
+            event.commit("ConvertListCallbackVia", batchSize);
+            if (count < 0) {
+                throw new IllegalArgumentException("Callback shim rejected the file path list");
+            }
+            return count;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to call ConvertListCallbackVia", e);
+        }
+    }
+
+    /**
+     * upcall 入口：异常不能传回本地代码（会直接终止进程），在这里全部拦截
+     * latex 由 shim 在回调返回后释放，不计入本库的 C 字符串统计
+     */
+    private void dispatchItem(ItemCallback callback, int index, int code, MemorySegment latex) {
+        try {
+            callback.onItem(index, code, readCString(latex));
+        } catch (Throwable e) {
+            log.log(Level.WARNING, "Item callback failed for index " + index + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 把本地内存中的字节分块写入输出流，分块缓冲区按线程复用
+     */
+    public static void writeTo(MemorySegment utf8, OutputStream out) throws IOException {
+        byte[] buffer = COPY_BUFFER.get();
+        long size = utf8.byteSize();
+        for (long offset = 0; offset < size; offset += buffer.length) {
+            int n = (int) Math.min(buffer.length, size - offset);
+            MemorySegment.copy(utf8, ValueLayout.JAVA_BYTE, offset, buffer, 0, n);
+            out.write(buffer, 0, n);
+        }
+    }
+
     /**
      * 释放本地库分配的 C 字符串内存
+     * 失败时只能记录日志（调用方已拿到结果），该字符串计为释放失败，不会再被释放
+     *
+     * @param utf8 {@link #received} 返回的内容段，用于统计字节数
      */
-    private void freeCStr(MemorySegment cstrPtr) {
+    private void freeCStr(MemorySegment cstrPtr, MemorySegment utf8) {
+        if (cstrPtr.equals(MemorySegment.NULL)) {
+            return;
+        }
         try {
-            freeCStrHandle.invokeExact(cstrPtr);
+            bindings.FreeCStr(cstrPtr);
+            NativeMemoryStats.cStringFreed(utf8.byteSize() + 1);
         } catch (Throwable e) {
+            NativeMemoryStats.cStringFreeFailed();
             log.warning("Failed to free C string: " + e.getMessage());
         }
     }
 
+    /**
+     * 读取 C 字符串并释放本地内存
+     */
+    private String readAndFree(MemorySegment ptr) {
+        CStringReadEvent event = new CStringReadEvent();
+        event.begin();
+        MemorySegment utf8 = received(ptr);
+        try {
+            String value = decode(utf8);
+            event.commit(utf8.byteSize(), true);
+            return value;
+        } finally {
+            freeCStr(ptr, utf8);
+        }
+    }
+
+    /**
+     * 本地库返回、需由本库释放的 C 字符串：测量长度并计入统计
+     */
+    private MemorySegment received(MemorySegment ptr) {
+        MemorySegment utf8 = cString(ptr);
+        if (!ptr.equals(MemorySegment.NULL)) {
+            NativeMemoryStats.cStringReceived(utf8.byteSize() + 1);
+        }
+        return utf8;
+    }
+
     /**
      * 从内存段读取 C 字符串（以 null 结尾）
-     * 优化：使用合理的最大长度而非 Long.MAX_VALUE
+     * 只用 strlen 测量一次长度，再一次性拷贝解码
      */
     private String readCString(MemorySegment ptr) {
-        if (ptr.equals(MemorySegment.NULL)) {
+        CStringReadEvent event = new CStringReadEvent();
+        event.begin();
+        MemorySegment utf8 = cString(ptr);
+        String value = decode(utf8);
+        event.commit(utf8.byteSize(), true);
+        return value;
+    }
+
+    private static String decode(MemorySegment utf8) {
+        if (utf8.byteSize() == 0) {
             return "";
         }
-        // 使用合理的最大长度（避免 Long.MAX_VALUE 的开销）
-        return ptr.reinterpret(MAX_STRING_LENGTH).getString(0);
+        byte[] bytes = new byte[Math.toIntExact(utf8.byteSize())];
+        MemorySegment.copy(utf8, ValueLayout.JAVA_BYTE, 0, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 把以 null 结尾的指针重新解释为恰好覆盖字符串内容的内存段
+     */
+    private MemorySegment cString(MemorySegment ptr) {
+        if (ptr.equals(MemorySegment.NULL)) {
+            return MemorySegment.NULL;
+        }
+        return ptr.reinterpret(bindings.strlen(ptr));
     }
 
     @Override
     public void close() {
         arena.close();
+        NativeMemoryStats.libraryClosed();
     }
 }
@@ -2,28 +2,62 @@ package org.example.testgraalvm.panama;
 
 
 
+import org.example.testgraalvm.jfr.ArgumentMarshalEvent;
+import org.example.testgraalvm.jfr.ResponseWriteEvent;
+import org.example.testgraalvm.jfr.ResultParseEvent;
+import org.example.testgraalvm.mtef.MtefFastPath;
 import tools.jackson.core.JacksonException;
 import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
 
-import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
+import java.util.function.ObjIntConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Panama FFM API 实现的 MathType 转 LaTeX 工具类
  * 使用 JDK 25 Foreign Function & Memory API
+ * <p>
+ * 本地库通过 {@link LibraryHandle} 访问：每次调用持有当前句柄的引用，{@link #initFromPath} 替换库时
+ * 新调用立即使用新库，旧库等进行中的调用结束后才关闭，替换过程中不加锁、不中断请求。
+ * <p>
+ * 启用 {@link MtefFastPath} 时每个文件先由 Java 解析器尝试，只有未覆盖的公式才调用本地库。
+ * <p>
+ * 路径列表的 JSON 序列化、结果 JSON 解析和原样写出记录为 JFR 事件，与 {@link MathType2LatexLib} 中的
+ * 本地调用事件一起给出每个阶段的耗时。
  */
 public class MathTypeToLatexUtil {
 
     private static final Logger log = Logger.getLogger(MathTypeToLatexUtil.class.getName());
     private static final ObjectMapper objectMapper = new ObjectMapper();
 
-    private static volatile MathType2LatexLib mathType2LatexLib;
+    // 回调 shim 并行转换的线程数：-Dmathtype.callback.parallelism
+    private static final int CALLBACK_PARALLELISM = Integer.getInteger("mathtype.callback.parallelism",
+            Runtime.getRuntime().availableProcessors());
+
+    private static final AtomicReference<LibraryHandle> library = new AtomicReference<>();
+    private static final AtomicLong libraryEpochs = new AtomicLong();
+    // 已替换下来、仍在等待进行中调用结束的旧库
+    private static final Set<LibraryHandle> retiring = ConcurrentHashMap.newKeySet();
+    private static volatile ConversionDispatcher dispatcher;
+    // 本地库调用的自适应并发上限，null 表示不限制
+    private static volatile ConcurrencyLimiter limiter;
     private static volatile boolean canLoad = true;
     private static volatile boolean initialized = false;
 
@@ -35,6 +69,7 @@ public class MathTypeToLatexUtil {
             synchronized (MathTypeToLatexUtil.class) {
                 if (!initialized) {
                     initLibrary();
+                    ensureDispatcher();
                     initialized = true;
                 }
             }
@@ -46,6 +81,23 @@ public class MathTypeToLatexUtil {
      */
     private static void initLibrary() {
         Properties props = System.getProperties();
+
+        // 显式指定库路径（例如压测用的桩库）：-Dmathtype.lib.path=/path/to/libmathtype2latex_stub.so
+        String overridePath = props.getProperty("mathtype.lib.path");
+        if (overridePath != null && !overridePath.isBlank()) {
+            try {
+                MathType2LatexLib lib = new MathType2LatexLib(Path.of(overridePath));
+                attachCallbackShim(lib);
+                install(lib, overridePath);
+                log.info("MathType2Latex library loaded from mathtype.lib.path: " + overridePath);
+            } catch (Exception e) {
+                log.log(Level.WARNING, "Failed to load MathType2Latex library from " + overridePath
+                        + ": " + e.getMessage(), e);
+                canLoad = false;
+            }
+            return;
+        }
+
         String osArch = props.getProperty("os.arch"); // amd64, aarch64
         String osName = props.getProperty("os.name"); // Windows, Linux, Mac
         
@@ -71,7 +123,9 @@ public class MathTypeToLatexUtil {
         String libPath = String.format("/bin/MathType2Latex-%s-%s.%s", osTag, osArch, ext);
         
         try {
-            mathType2LatexLib = new MathType2LatexLib(libPath);
+            MathType2LatexLib lib = new MathType2LatexLib(libPath);
+            attachCallbackShim(lib);
+            install(lib, libPath);
             log.info("MathType2Latex library loaded successfully via Panama FFM");
         } catch (Exception e) {
             log.log(Level.WARNING, "Failed to load MathType2Latex library: " + e.getMessage(), e);
@@ -80,27 +134,219 @@ public class MathTypeToLatexUtil {
     }
 
     /**
-     * 直接从文件路径初始化本地库
+     * 加载逐项回调 shim（可选）：-Dmathtype.callback-shim.path=/path/to/libmathtype2latex_callback_shim.so
+     * 加载失败不影响批量接口，逐项转换退回到整批返回后再逐个回调
+     */
+    private static void attachCallbackShim(MathType2LatexLib lib) {
+        String shimPath = System.getProperty("mathtype.callback-shim.path");
+        if (shimPath == null || shimPath.isBlank()) {
+            return;
+        }
+        try {
+            lib.attachCallbackShim(Path.of(shimPath));
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Failed to load callback shim from " + shimPath + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 直接从文件路径初始化本地库；已加载时不停机替换
+     * 新库加载完成后才切换，之后的调用使用新库，旧库在进行中的调用全部结束后关闭。
+     * 加载失败时继续使用当前的库。
      *
      * @param libPath 库文件的完整路径
+     * @return 是否加载成功
      */
-    public static void initFromPath(Path libPath) {
+    public static boolean initFromPath(Path libPath) {
+        MathType2LatexLib lib;
+        try {
+            lib = new MathType2LatexLib(libPath);
+            attachCallbackShim(lib);
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Failed to load library from path: " + e.getMessage(), e);
+            if (library.get() == null) {
+                canLoad = false;
+            }
+            return false;
+        }
         synchronized (MathTypeToLatexUtil.class) {
-            try {
-                if (mathType2LatexLib != null) {
-                    mathType2LatexLib.close();
+            long epoch = install(lib, libPath.toString());
+            ensureDispatcher();
+            canLoad = true;
+            initialized = true;
+            log.info("MathType2Latex library loaded from path: " + libPath + " (epoch " + epoch + ")");
+        }
+        return true;
+    }
+
+    /**
+     * 把新库设为当前句柄，旧句柄退役
+     *
+     * @return 新句柄的代号
+     */
+    private static long install(MathType2LatexLib lib, String source) {
+        LibraryHandle handle = new LibraryHandle(lib, libraryEpochs.incrementAndGet(), source);
+        retire(library.getAndSet(handle));
+        return handle.epoch();
+    }
+
+    private static void retire(LibraryHandle old) {
+        if (old != null) {
+            retiring.add(old);
+            old.retire();
+            retiring.removeIf(LibraryHandle::closed);
+        }
+    }
+
+    /**
+     * 本地库的一次调用，执行期间持有句柄引用
+     */
+    @FunctionalInterface
+    private interface LibraryCall<T, E extends Exception> {
+        T apply(MathType2LatexLib lib) throws E;
+    }
+
+    /**
+     * 在当前库上执行调用：先取得并发名额（启用限流时），再获取句柄引用；
+     * 获取引用失败说明该句柄刚被替换并已关闭，重新读取当前句柄
+     *
+     * @param items  本次调用包含的文件数
+     * @param sample 耗时是否只反映本地库（计入自适应限流的延迟估计）
+     */
+    private static <T, E extends Exception> T withLibrary(int items, boolean sample, LibraryCall<T, E> call)
+            throws E {
+        ConcurrencyLimiter current = limiter;
+        if (current == null) {
+            return withHandle(call);
+        }
+        ConcurrencyLimiter.Permit permit = current.acquire(items);
+        boolean completed = false;
+        try {
+            T result = withHandle(call);
+            completed = true;
+            return result;
+        } finally {
+            // 失败的调用耗时不具代表性
+            permit.release(sample && completed);
+        }
+    }
+
+    /**
+     * 当前库是否带回调 shim；只读取句柄上的库对象，不获取引用
+     */
+    private static boolean currentSupportsCallbacks() {
+        LibraryHandle handle = library.get();
+        return handle != null && handle.lib().supportsCallbacks();
+    }
+
+    private static <T, E extends Exception> T withHandle(LibraryCall<T, E> call) throws E {
+        while (true) {
+            LibraryHandle handle = library.get();
+            if (handle == null) {
+                throw new IllegalStateException("MathType2Latex library is not loaded");
+            }
+            if (handle.tryAcquire()) {
+                try {
+                    return call.apply(handle.lib());
+                } finally {
+                    handle.release();
                 }
-                mathType2LatexLib = new MathType2LatexLib(libPath);
-                canLoad = true;
-                initialized = true;
-                log.info("MathType2Latex library loaded from path: " + libPath);
-            } catch (Exception e) {
-                log.log(Level.WARNING, "Failed to load library from path: " + e.getMessage(), e);
-                canLoad = false;
             }
         }
     }
 
+    /**
+     * 本地库状态：当前代号、来源和进行中的调用数，以及仍在等待调用结束的旧库
+     *
+     * @param epoch    当前库的代号（每次加载加一，0 表示未加载）
+     * @param source   当前库的路径
+     * @param inFlight 当前库上进行中的调用数
+     * @param draining 仍未关闭的旧库：代号 -> 进行中的调用数
+     */
+    public record LibraryStatus(long epoch, String source, long inFlight, Map<Long, Long> draining) {
+    }
+
+    public static LibraryStatus libraryStatus() {
+        retiring.removeIf(LibraryHandle::closed);
+        Map<Long, Long> draining = new TreeMap<>();
+        for (LibraryHandle handle : retiring) {
+            draining.put(handle.epoch(), handle.inFlight());
+        }
+        LibraryHandle handle = library.get();
+        return handle == null
+                ? new LibraryStatus(0, null, 0, draining)
+                : new LibraryStatus(handle.epoch(), handle.source(), handle.inFlight(), draining);
+    }
+
+    /**
+     * 启用（或以新配置重建）本地库调用的自适应并发上限；settings 为 null 时关闭
+     */
+    public static void configureLimiter(ConcurrencyLimiter.Settings settings) {
+        limiter = settings == null ? null : new ConcurrencyLimiter(settings);
+    }
+
+    /**
+     * 当前的自适应并发上限，未启用时为 null
+     */
+    public static ConcurrencyLimiter limiter() {
+        return limiter;
+    }
+
+    /**
+     * 替换转换调度器的配置，已积累的代价估计随旧调度器一起丢弃
+     *
+     * @param settings 调度配置
+     */
+    public static void configureDispatcher(ConversionDispatcher.Settings settings) {
+        synchronized (MathTypeToLatexUtil.class) {
+            ConversionDispatcher old = dispatcher;
+            dispatcher = newDispatcher(settings);
+            if (old != null) {
+                old.close();
+            }
+        }
+    }
+
+    /**
+     * 转换调度器的当前状态（配置、各入口选中次数和代价估计）
+     */
+    public static ConversionDispatcher.Snapshot dispatcherSnapshot() {
+        ensureInitialized();
+        return dispatcher.snapshot();
+    }
+
+    private static void ensureDispatcher() {
+        if (dispatcher == null) {
+            dispatcher = newDispatcher(ConversionDispatcher.Settings.defaults());
+        }
+    }
+
+    /**
+     * 调度器调用的三个本地库入口，每次调用时读取当前加载的库
+     */
+    private static ConversionDispatcher newDispatcher(ConversionDispatcher.Settings settings) {
+        return new ConversionDispatcher(new ConversionDispatcher.Backend() {
+            @Override
+            public Mtef2LatexDTO convert(String binPath) {
+                return parseResult(withLibrary(1, true, lib -> lib.convert(binPath)));
+            }
+
+            @Override
+            public List<Mtef2LatexDTO> convertList(List<String> binPaths) {
+                String json = toJson(binPaths);
+                return parseResultList(withLibrary(binPaths.size(), true,
+                        lib -> lib.convertList(json, binPaths.size())));
+            }
+
+            @Override
+            public List<Mtef2LatexDTO> convertListAsync(List<String> binPaths) {
+                String json = toJson(binPaths);
+                return parseResultList(withLibrary(binPaths.size(), true,
+                        lib -> lib.convertListAsync(json, binPaths.size())));
+            }
+        }, settings);
+    }
+
     /**
      * 转换单个 MathType bin 文件为 LaTeX
      *
@@ -109,14 +355,17 @@ public class MathTypeToLatexUtil {
      */
     public static Mtef2LatexDTO convertLatex(String binPath) {
         ensureInitialized();
-        
+
+        String latex = MtefFastPath.tryConvert(binPath);
+        if (latex != null) {
+            return Mtef2LatexDTO.fastPath(latex);
+        }
         if (!canLoad) {
             return Mtef2LatexDTO.error("加载 MathType 转换库失败");
         }
 
         try {
-            String resJson = mathType2LatexLib.convert(binPath);
-            return parseResult(resJson);
+            return dispatcher.convert(List.of(binPath)).getFirst();
         } catch (Exception e) {
             log.log(Level.WARNING, "Convert failed: " + e.getMessage(), e);
             return Mtef2LatexDTO.error("转换失败: " + e.getMessage());
@@ -125,27 +374,87 @@ public class MathTypeToLatexUtil {
 
     /**
      * 批量转换 MathType bin 文件为 LaTeX
+     * 由 {@link ConversionDispatcher} 选择入口，大批量拆成子批次并行转换
      *
      * @param binPathList 文件路径列表
      * @return 转换结果列表
      */
     public static List<Mtef2LatexDTO> convertLatexList(List<String> binPathList) {
         ensureInitialized();
-        
-        if (!canLoad || binPathList == null || binPathList.isEmpty()) {
+
+        if (binPathList == null || binPathList.isEmpty()) {
             return new ArrayList<>();
         }
 
+        Mtef2LatexDTO[] results = fastPath(binPathList, false);
+        List<String> pending = new ArrayList<>();
+        int[] pendingIndex = pending(binPathList, results, pending);
+        if (pending.isEmpty()) {
+            return new ArrayList<>(Arrays.asList(results));
+        }
+        List<Mtef2LatexDTO> converted = convertNative(pending);
+        if (pending.size() == results.length) {
+            return converted;
+        }
+        // 部分文件已由快速路径完成：整批失败时补齐错误结果，保证与输入一一对应
+        for (int i = 0; i < pendingIndex.length; i++) {
+            results[pendingIndex[i]] = i < converted.size() ? converted.get(i) : canLoad
+                    ? Mtef2LatexDTO.error("转换失败: 本地库未返回结果")
+                    : Mtef2LatexDTO.error("加载 MathType 转换库失败");
+        }
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * 由调度器调用本地库转换；库不可用或整批失败时返回空列表
+     */
+    private static List<Mtef2LatexDTO> convertNative(List<String> binPathList) {
+        if (!canLoad) {
+            return new ArrayList<>();
+        }
         try {
-            String binPathListJson = objectMapper.writeValueAsString(binPathList);
-            String resListJson = mathType2LatexLib.convertListAsync(binPathListJson);
-            return parseResultList(resListJson);
+            return dispatcher.convert(binPathList);
         } catch (Exception e) {
             log.log(Level.WARNING, "ConvertList failed: " + e.getMessage(), e);
             return new ArrayList<>();
         }
     }
 
+    /**
+     * 用 Java 快速路径逐个转换，返回与输入等长的数组，未命中的位置为 null
+     *
+     * @param stopAtMiss 遇到第一个未命中即停止（调用方只在全部命中时使用结果）
+     */
+    private static Mtef2LatexDTO[] fastPath(List<String> binPathList, boolean stopAtMiss) {
+        Mtef2LatexDTO[] results = new Mtef2LatexDTO[binPathList.size()];
+        if (!MtefFastPath.enabled()) {
+            return results;
+        }
+        for (int i = 0; i < results.length; i++) {
+            String latex = MtefFastPath.tryConvert(binPathList.get(i));
+            if (latex != null) {
+                results[i] = Mtef2LatexDTO.fastPath(latex);
+            } else if (stopAtMiss) {
+                break;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 收集快速路径未命中的文件到 pending，返回它们在输入中的下标
+     */
+    private static int[] pending(List<String> binPathList, Mtef2LatexDTO[] results, List<String> pending) {
+        int[] index = new int[results.length];
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                index[pending.size()] = i;
+                pending.add(binPathList.get(i));
+            }
+        }
+        return Arrays.copyOf(index, pending.size());
+    }
+
     /**
      * 批量转换 MathType bin 文件为 LaTeX（JSON 输入）
      *
@@ -155,37 +464,163 @@ public class MathTypeToLatexUtil {
     public static List<Mtef2LatexDTO> convertLatexList(String binPathListJson) {
         ensureInitialized();
         
-        if (!canLoad || binPathListJson == null || binPathListJson.isBlank()) {
+        if (binPathListJson == null || binPathListJson.isBlank()) {
             return new ArrayList<>();
         }
 
         try {
             // 验证 JSON 格式
             List<String> pathList = objectMapper.readValue(binPathListJson, new TypeReference<List<String>>() {});
-            if (pathList.isEmpty()) {
-                return new ArrayList<>();
-            }
-
-            String resListJson = mathType2LatexLib.convertListAsync(binPathListJson);
-            return parseResultList(resListJson);
+            return convertLatexList(pathList);
         } catch (Exception e) {
             log.log(Level.WARNING, "ConvertList failed: " + e.getMessage(), e);
             return new ArrayList<>();
         }
     }
 
+    /**
+     * 批量转换，每个文件转换完成时立即交给 listener（参数为结果和在输入中的下标）
+     * 快速路径命中的文件最先回调；其余文件在已加载回调 shim 时按完成顺序回调，且可能来自多个线程并发，
+     * 否则整批返回后按输入顺序回调。每个下标恰好回调一次，未返回结果的文件以错误结果补齐。
+     *
+     * @param binPathList 文件路径列表
+     * @param listener    逐项结果监听器
+     */
+    public static void convertLatexListIncremental(List<String> binPathList, ObjIntConsumer<Mtef2LatexDTO> listener) {
+        ensureInitialized();
+
+        if (binPathList == null || binPathList.isEmpty()) {
+            return;
+        }
+
+        AtomicIntegerArray delivered = new AtomicIntegerArray(binPathList.size());
+        ObjIntConsumer<Mtef2LatexDTO> once = (dto, index) -> {
+            if (index >= 0 && index < delivered.length() && delivered.compareAndSet(index, 0, 1)) {
+                listener.accept(dto, index);
+            }
+        };
+
+        Mtef2LatexDTO[] fast = fastPath(binPathList, false);
+        for (int i = 0; i < fast.length; i++) {
+            if (fast[i] != null) {
+                once.accept(fast[i], i);
+            }
+        }
+        List<String> pending = new ArrayList<>();
+        int[] pendingIndex = pending(binPathList, fast, pending);
+
+        if (canLoad && !pending.isEmpty()) {
+            try {
+                // 没有回调 shim 时不占用并发名额，直接走整批转换；
+                // 回调路径的耗时包含 listener（如写给客户端的 NDJSON），不计入限流的延迟估计
+                boolean streamed = currentSupportsCallbacks() && withLibrary(pending.size(), false, lib -> {
+                    // 检查之后库可能已被替换
+                    if (!lib.supportsCallbacks()) {
+                        return false;
+                    }
+                    String binPathListJson = toJson(pending);
+                    int items = pending.size();
+                    lib.convertListCallback(binPathListJson, items, CALLBACK_PARALLELISM, (index, code, latex) -> {
+                        if (index >= 0 && index < pendingIndex.length) {
+                            Mtef2LatexDTO dto = new Mtef2LatexDTO();
+                            dto.setCode(code);
+                            dto.setResLatex(latex);
+                            once.accept(dto, pendingIndex[index]);
+                        }
+                    });
+                    return true;
+                });
+                if (!streamed) {
+                    List<Mtef2LatexDTO> results = convertNative(pending);
+                    for (int i = 0; i < results.size() && i < pendingIndex.length; i++) {
+                        once.accept(results.get(i), pendingIndex[i]);
+                    }
+                }
+            } catch (Exception e) {
+                log.log(Level.WARNING, "ConvertListCallback failed: " + e.getMessage(), e);
+            }
+        }
+
+        Mtef2LatexDTO missing = canLoad
+                ? Mtef2LatexDTO.error("转换失败: 本地库未返回结果")
+                : Mtef2LatexDTO.error("加载 MathType 转换库失败");
+        for (int i = 0; i < binPathList.size(); i++) {
+            once.accept(missing, i);
+        }
+    }
+
+    /**
+     * 批量转换，把本地库返回的结果 JSON 原样写入输出流
+     * 结果不经过 String 和 DTO，直接从本地内存分块写出，写完立即释放。
+     * 本地库的结果只能整批写出，因此只有全部文件都由快速路径完成时才不调用本地库（遇到第一个未命中即停止尝试）。
+     *
+     * @param binPathList 文件路径列表
+     * @param out         输出流
+     * @param lengthKnown 写出前回调结果的字节数（可用于设置 Content-Length）
+     * @return 库不可用时返回 false，此时没有写出任何内容
+     */
+    public static boolean writeLatexListJson(List<String> binPathList, OutputStream out,
+                                             LongConsumer lengthKnown) throws IOException {
+        ensureInitialized();
+
+        Mtef2LatexDTO[] fast = fastPath(binPathList, true);
+        if (fast.length > 0 && Arrays.stream(fast).allMatch(Objects::nonNull)) {
+            ResponseWriteEvent event = new ResponseWriteEvent();
+            event.begin();
+            byte[] json = objectMapper.writeValueAsBytes(Arrays.asList(fast));
+            lengthKnown.accept(json.length);
+            out.write(json);
+            event.commit("raw", fast.length, json.length);
+            return true;
+        }
+        if (!canLoad) {
+            return false;
+        }
+
+        // 结果内存属于本地库，写出期间一直持有句柄引用；耗时包含写给客户端的时间，不计入限流的延迟估计
+        String binPathListJson = toJson(binPathList);
+        return withLibrary(binPathList.size(), false, lib -> lib.convertListAsync(binPathListJson, binPathList.size(),
+                utf8 -> {
+                    ResponseWriteEvent event = new ResponseWriteEvent();
+                    event.begin();
+                    lengthKnown.accept(utf8.byteSize());
+                    MathType2LatexLib.writeTo(utf8, out);
+                    event.commit("raw", binPathList.size(), utf8.byteSize());
+                    return true;
+                }));
+    }
+
+    /**
+     * 路径列表序列化为本地库的参数 JSON
+     */
+    private static String toJson(List<String> binPaths) throws JacksonException {
+        ArgumentMarshalEvent event = new ArgumentMarshalEvent();
+        event.begin();
+        String json = objectMapper.writeValueAsString(binPaths);
+        event.commit("json", binPaths.size(), json.length());
+        return json;
+    }
+
     /**
      * 解析单个结果 JSON
      */
     private static Mtef2LatexDTO parseResult(String json) throws JacksonException {
-        return objectMapper.readValue(json, Mtef2LatexDTO.class);
+        ResultParseEvent event = new ResultParseEvent();
+        event.begin();
+        Mtef2LatexDTO result = objectMapper.readValue(json, Mtef2LatexDTO.class);
+        event.commit(1, json.length());
+        return result;
     }
 
     /**
      * 解析结果列表 JSON
      */
     private static List<Mtef2LatexDTO> parseResultList(String json) throws JacksonException {
-        return objectMapper.readValue(json, new TypeReference<List<Mtef2LatexDTO>>() {});
+        ResultParseEvent event = new ResultParseEvent();
+        event.begin();
+        List<Mtef2LatexDTO> results = objectMapper.readValue(json, new TypeReference<List<Mtef2LatexDTO>>() {});
+        event.commit(results.size(), json.length());
+        return results;
     }
 
     /**
@@ -197,54 +632,13 @@ public class MathTypeToLatexUtil {
     }
 
     /**
-     * 关闭并释放本地库资源
+     * 卸载本地库：之后的调用重新初始化，进行中的调用结束后才释放库资源
      */
     public static void shutdown() {
         synchronized (MathTypeToLatexUtil.class) {
-            if (mathType2LatexLib != null) {
-                try {
-                    mathType2LatexLib.close();
-                } catch (Exception e) {
-                    log.warning("Error closing library: " + e.getMessage());
-                }
-                mathType2LatexLib = null;
-            }
+            retire(library.getAndSet(null));
             initialized = false;
             canLoad = true;
         }
     }
-
-    /**
-     * 测试入口
-     */
-    public static void main(String[] args) {
-        List<String> list = new ArrayList<>();
-        String dir = "C:\\Users\\hyt_c\\Desktop\\mathType\\";
-        
-        // 获取指定文件夹的所有 .bin 结尾的文件
-        File dirFile = new File(dir);
-        File[] files = dirFile.listFiles();
-        if (files != null) {
-            for (File file : files) {
-                if (file.getName().endsWith(".bin")) {
-                    list.add(file.getAbsolutePath());
-                }
-            }
-        }
-
-        long startTime = System.currentTimeMillis();
-        List<Mtef2LatexDTO> res = convertLatexList(list);
-        long duration = System.currentTimeMillis() - startTime;
-        
-        System.out.println("转换耗时: " + duration + "ms");
-        
-        for (int i = 0; i < list.size() && i < res.size(); i++) {
-            Mtef2LatexDTO dto = res.get(i);
-            if (dto.getCode() != Mtef2LatexDTO.SUCCESS_CODE) {
-                System.out.println(list.get(i) + " -> ERROR: " + dto.getResLatex());
-            } else {
-                System.out.println(list.get(i) + " -> " + dto.getResLatex());
-            }
-        }
-    }
 }
@@ -10,6 +10,8 @@ public class Mtef2LatexDTO {
     
     private int code;
     private String resLatex;
+    // 由 Java 快速路径而不是本地库得到；不是 bean 属性，不会被序列化
+    private boolean fastPath;
 
     public Mtef2LatexDTO() {
     }
@@ -28,6 +30,22 @@ public class Mtef2LatexDTO {
         return dto;
     }
 
+    /**
+     * Java 快速路径得到的成功结果
+     */
+    public static Mtef2LatexDTO fastPath(String resLatex) {
+        Mtef2LatexDTO dto = success(resLatex);
+        dto.fastPath = true;
+        return dto;
+    }
+
+    /**
+     * 结果是否来自 Java 快速路径；这类结果不写入持久化结果存储
+     */
+    public boolean fromFastPath() {
+        return fastPath;
+    }
+
     public int getCode() {
         return code;
     }
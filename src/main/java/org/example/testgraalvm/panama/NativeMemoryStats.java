@@ -0,0 +1,146 @@
+package org.example.testgraalvm.panama;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地内存记账：本地库返回的 C 字符串、调用参数占用的堆外内存、upcall stub 和库的加载/关闭次数
+ * <p>
+ * 每一项都分别计数分配与释放，进程空闲时两者之差（outstanding）应回到 0；持续增长说明有泄漏。
+ * {@code FreeCStr} 失败只记录日志不抛出，这里单独计数，对应的 C 字符串永远不会被释放。
+ * 快照另外附带进程 RSS（Linux）和 HotSpot NMT 的 committed 总量（需 -XX:NativeMemoryTracking=summary），
+ * 不可用时为 -1。
+ */
+public final class NativeMemoryStats {
+
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+    private static final Pattern VM_RSS = Pattern.compile("VmRSS:\\s+(\\d+) kB");
+    private static final Pattern NMT_TOTAL = Pattern.compile("Total: reserved=\\d+KB, committed=(\\d+)KB");
+
+    private static final LongAdder cStringsReceived = new LongAdder();
+    private static final LongAdder cStringsFreed = new LongAdder();
+    private static final LongAdder cStringsFreeFailed = new LongAdder();
+    private static final LongAdder resultBytesReceived = new LongAdder();
+    private static final LongAdder resultBytesFreed = new LongAdder();
+    private static final LongAdder argumentBytesAllocated = new LongAdder();
+    private static final LongAdder argumentBytesFreed = new LongAdder();
+    private static final LongAdder upcallStubsCreated = new LongAdder();
+    private static final LongAdder upcallStubsFreed = new LongAdder();
+    private static final LongAdder librariesLoaded = new LongAdder();
+    private static final LongAdder librariesClosed = new LongAdder();
+
+    /**
+     * @param cStringsReceived       本地库返回的非 NULL C 字符串数
+     * @param cStringsFreed          已通过 FreeCStr 释放的数量
+     * @param cStringsFreeFailed     FreeCStr 调用失败的数量（这些字符串已泄漏）
+     * @param resultBytesReceived    返回的 C 字符串字节数（含结尾的 0）
+     * @param resultBytesFreed       已释放的 C 字符串字节数
+     * @param argumentBytesAllocated 调用级 Arena 中为参数分配的字节数
+     * @param argumentBytesFreed     随 Arena 关闭释放的字节数
+     * @param upcallStubsCreated     逐项回调创建的 upcall stub 数
+     * @param upcallStubsFreed       随 Arena 关闭释放的 upcall stub 数
+     * @param librariesLoaded        已加载的本地库实例数（包括不停机替换）
+     * @param librariesClosed        已关闭的本地库实例数
+     * @param rssBytes               进程常驻内存，不可用时为 -1
+     * @param nmtCommittedBytes      NMT 统计的 JVM 本地内存 committed 总量，不可用时为 -1
+     */
+    public record Snapshot(long cStringsReceived, long cStringsFreed, long cStringsFreeFailed,
+                           long resultBytesReceived, long resultBytesFreed,
+                           long argumentBytesAllocated, long argumentBytesFreed,
+                           long upcallStubsCreated, long upcallStubsFreed,
+                           long librariesLoaded, long librariesClosed,
+                           long rssBytes, long nmtCommittedBytes) {
+
+        public long cStringsOutstanding() {
+            return cStringsReceived - cStringsFreed;
+        }
+
+        public long resultBytesOutstanding() {
+            return resultBytesReceived - resultBytesFreed;
+        }
+
+        public long argumentBytesOutstanding() {
+            return argumentBytesAllocated - argumentBytesFreed;
+        }
+    }
+
+    private NativeMemoryStats() {
+    }
+
+    static void cStringReceived(long bytes) {
+        cStringsReceived.increment();
+        resultBytesReceived.add(bytes);
+    }
+
+    static void cStringFreed(long bytes) {
+        cStringsFreed.increment();
+        resultBytesFreed.add(bytes);
+    }
+
+    static void cStringFreeFailed() {
+        cStringsFreeFailed.increment();
+    }
+
+    static void argumentAllocated(long bytes) {
+        argumentBytesAllocated.add(bytes);
+    }
+
+    static void argumentsFreed(long bytes, int upcallStubs) {
+        argumentBytesFreed.add(bytes);
+        upcallStubsFreed.add(upcallStubs);
+    }
+
+    static void upcallStubCreated() {
+        upcallStubsCreated.increment();
+    }
+
+    static void libraryLoaded() {
+        librariesLoaded.increment();
+    }
+
+    static void libraryClosed() {
+        librariesClosed.increment();
+    }
+
+    /**
+     * 当前计数；每次调用都会读取 RSS 和 NMT（NMT 汇总需要几毫秒），不要在转换路径上调用
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot(cStringsReceived.sum(), cStringsFreed.sum(), cStringsFreeFailed.sum(),
+                resultBytesReceived.sum(), resultBytesFreed.sum(),
+                argumentBytesAllocated.sum(), argumentBytesFreed.sum(),
+                upcallStubsCreated.sum(), upcallStubsFreed.sum(),
+                librariesLoaded.sum(), librariesClosed.sum(),
+                rssBytes(), nmtCommittedBytes());
+    }
+
+    private static long rssBytes() {
+        try {
+            Matcher m = VM_RSS.matcher(Files.readString(PROC_STATUS));
+            return m.find() ? Long.parseLong(m.group(1)) * 1024 : -1;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 通过 DiagnosticCommand MBean 执行 VM.native_memory summary；未开启 NMT 或在原生镜像中时返回 -1
+     */
+    private static long nmtCommittedBytes() {
+        try {
+            Object output = ManagementFactory.getPlatformMBeanServer().invoke(
+                    new ObjectName("com.sun.management:type=DiagnosticCommand"), "vmNativeMemory",
+                    new Object[]{new String[]{"summary"}}, new String[]{String[].class.getName()});
+            Matcher m = NMT_TOTAL.matcher(String.valueOf(output));
+            return m.find() ? Long.parseLong(m.group(1)) * 1024 : -1;
+        } catch (Exception | LinkageError e) {
+            return -1;
+        }
+    }
+}
@@ -3,32 +3,26 @@ package org.example.testgraalvm.panama;
 import org.graalvm.nativeimage.hosted.Feature;
 import org.graalvm.nativeimage.hosted.RuntimeForeignAccess;
 
-import java.lang.foreign.FunctionDescriptor;
-import java.lang.foreign.ValueLayout;
-
 /**
- * GraalVM Native Image Feature 用于注册 Panama FFM downcall 签名
+ * GraalVM Native Image Feature 用于注册 Panama FFM downcall/upcall 签名
+ * 签名和链接选项都取自 {@link MathType2LatexBindings}，与运行时绑定保持一致
  */
 public class PanamaFeature implements Feature {
 
     @Override
     public void duringSetup(DuringSetupAccess access) {
-        // 注册 Convert 函数签名: (ADDRESS) -> ADDRESS
-        RuntimeForeignAccess.registerForDowncall(
-            FunctionDescriptor.of(ValueLayout.ADDRESS, ValueLayout.ADDRESS)
-        );
-
-        // 注册 ConvertList/ConvertListAsync 函数签名: (ADDRESS) -> ADDRESS
-        // 与 Convert 相同，无需重复注册
+        // 注册全部 downcall 签名（含 critical 等链接选项）:
+        // Convert/ConvertList/ConvertListAsync, FreeCStr, strlen, ConvertListCallbackVia
+        for (MathType2LatexBindings.Downcall downcall : MathType2LatexBindings.DOWNCALLS) {
+            RuntimeForeignAccess.registerForDowncall(downcall.descriptor(), (Object[]) downcall.options());
+        }
 
-        // 注册 FreeCStr 函数签名: (ADDRESS) -> void
-        RuntimeForeignAccess.registerForDowncall(
-            FunctionDescriptor.ofVoid(ValueLayout.ADDRESS)
-        );
+        // 注册逐项回调的 upcall 签名: (JAVA_INT, JAVA_INT, ADDRESS) -> void
+        RuntimeForeignAccess.registerForUpcall(MathType2LatexBindings.ITEM_CALLBACK);
     }
 
     @Override
     public String getDescription() {
-        return "Register Panama FFM downcall signatures for MathType2Latex native library";
+        return "Register Panama FFM downcall and upcall signatures for MathType2Latex native library";
     }
 }
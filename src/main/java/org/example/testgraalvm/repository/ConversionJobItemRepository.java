@@ -0,0 +1,80 @@
+package org.example.testgraalvm.repository;
+
+import org.example.testgraalvm.entity.ConversionJobItem;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JPA Repository for items of asynchronous conversion jobs.
+ * Pending items act as the durable work queue.
+ */
+@Repository
+public interface ConversionJobItemRepository extends JpaRepository<ConversionJobItem, Long> {
+
+    /**
+     * Oldest items in the given state, in queue order.
+     */
+    List<ConversionJobItem> findByStatusOrderByIdAsc(ConversionJobItem.Status status, Limit limit);
+
+    /**
+     * Items of a job in the given state with index >= since, in item order.
+     */
+    List<ConversionJobItem> findByJobIdAndStatusAndItemIndexGreaterThanEqualOrderByItemIndexAsc(
+            String jobId, ConversionJobItem.Status status, int since);
+
+    /**
+     * All items of a job.
+     */
+    List<ConversionJobItem> findByJobId(String jobId);
+
+    /**
+     * Move every item from one state to another (used to resume after a restart).
+     */
+    @Transactional
+    @Modifying
+    @Query("update ConversionJobItem i set i.status = :to where i.status = :from")
+    int updateStatus(@Param("from") ConversionJobItem.Status from, @Param("to") ConversionJobItem.Status to);
+
+    /**
+     * Extend the lease of items that are still running.
+     */
+    @Transactional
+    @Modifying
+    @Query("update ConversionJobItem i set i.leaseUntil = :until " +
+            "where i.id in :ids and i.status = org.example.testgraalvm.entity.ConversionJobItem.Status.RUNNING")
+    int renewLeases(@Param("ids") Collection<Long> ids, @Param("until") long until);
+
+    /**
+     * Queue running items again once their lease has expired.
+     */
+    @Transactional
+    @Modifying
+    @Query("update ConversionJobItem i set i.status = org.example.testgraalvm.entity.ConversionJobItem.Status.PENDING, " +
+            "i.leaseUntil = null " +
+            "where i.status = org.example.testgraalvm.entity.ConversionJobItem.Status.RUNNING and i.leaseUntil < :now")
+    int requeueExpired(@Param("now") long now);
+
+    /**
+     * Store the result of an item unless it is already done (completed by another claim after a lease expired).
+     */
+    @Modifying
+    @Query("update ConversionJobItem i set i.status = org.example.testgraalvm.entity.ConversionJobItem.Status.DONE, " +
+            "i.code = :code, i.resLatex = :latex, i.leaseUntil = null " +
+            "where i.id = :id and i.status <> org.example.testgraalvm.entity.ConversionJobItem.Status.DONE")
+    int complete(@Param("id") long id, @Param("code") int code, @Param("latex") String latex);
+
+    /**
+     * Delete all items of the given jobs.
+     */
+    @Modifying
+    @Query("delete from ConversionJobItem i where i.jobId in :jobIds")
+    int deleteByJobIds(@Param("jobIds") Collection<String> jobIds);
+}
@@ -0,0 +1,50 @@
+package org.example.testgraalvm.repository;
+
+import org.example.testgraalvm.entity.ConversionJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * JPA Repository for asynchronous conversion jobs.
+ */
+@Repository
+public interface ConversionJobRepository extends JpaRepository<ConversionJob, String> {
+
+    /**
+     * Atomically add finished items to the job counters and set its status.
+     */
+    @Transactional
+    @Modifying
+    @Query("update ConversionJob j set j.completed = j.completed + :completed, j.failed = j.failed + :failed, " +
+            "j.status = :status, j.updatedAt = :now where j.id = :id")
+    int addProgress(@Param("id") String id, @Param("completed") int completed, @Param("failed") int failed,
+                    @Param("status") ConversionJob.Status status, @Param("now") long now);
+
+    /**
+     * Set the job status once all of its items are done.
+     */
+    @Transactional
+    @Modifying
+    @Query("update ConversionJob j set j.status = :status, j.updatedAt = :now " +
+            "where j.id = :id and j.completed >= j.total")
+    int markFinished(@Param("id") String id, @Param("status") ConversionJob.Status status, @Param("now") long now);
+
+    /**
+     * Ids of jobs in the given status that were last updated before the cutoff.
+     */
+    @Query("select j.id from ConversionJob j where j.status = :status and j.updatedAt < :before")
+    List<String> findIdsUpdatedBefore(@Param("status") ConversionJob.Status status, @Param("before") long before);
+
+    /**
+     * Delete the given jobs.
+     */
+    @Modifying
+    @Query("delete from ConversionJob j where j.id in :ids")
+    int deleteByIds(@Param("ids") List<String> ids);
+}
@@ -0,0 +1,20 @@
+package org.example.testgraalvm.repository;
+
+import org.example.testgraalvm.entity.ConversionResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JPA Repository for persisted conversion results.
+ */
+@Repository
+public interface ConversionResultRepository extends JpaRepository<ConversionResult, String> {
+
+    /**
+     * Find all results whose content hash is in the given collection (single IN query).
+     */
+    List<ConversionResult> findByContentHashIn(Collection<String> contentHashes);
+}
@@ -0,0 +1,523 @@
+package org.example.testgraalvm.scheduler;
+
+import jakarta.annotation.PreDestroy;
+import org.example.testgraalvm.panama.ConcurrencyLimiter;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 本地库前的多租户公平调度：一个租户的大批量请求不再独占转换线程
+ * <p>
+ * 请求按 chunk-size 拆成块，放入所属租户（{@link TenantContext}）的队列，由固定数量的 worker 取出执行：
+ * <ul>
+ *     <li>交互通道：总文件数不超过 interactive-max-files 的请求（单文件转换等），各租户轮流，优先于批量通道</li>
+ *     <li>批量通道：按租户做 Deficit Round Robin，每轮给租户 quantum × 权重 的文件额度，
+ *     块的代价为文件数；不能拆分的大任务（如原样输出结果 JSON）额度攒够后再执行</li>
+ * </ul>
+ * 启用自适应限流时，同时执行的块数不超过限流的当前上限：worker 只在有空闲名额时取块，
+ * 超出上限的请求留在调度队列中按上面的顺序等待，而不是取出后堵在限流的等待队列里（那里没有租户公平性）。
+ * <p>
+ * 各租户的排队块数、文件数、队首等待时间和平均等待时间见 {@link #snapshot()}。
+ * 租户数达到 max-tenants 时，新租户替换最久没有提交的空闲租户（队列为空），被替换租户的统计随之清除。
+ */
+@Component
+@ConditionalOnProperty(prefix = "mathtype.scheduler", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class FairConversionScheduler {
+
+    private static final Logger log = Logger.getLogger(FairConversionScheduler.class.getName());
+
+    /**
+     * 租户数达到 max-tenants 且没有空闲租户可淘汰时，新出现的租户共用的队列
+     */
+    public static final String OVERFLOW_TENANT = "other";
+
+    // 平均等待时间的 EWMA 平滑系数
+    private static final double WAIT_ALPHA = 0.1;
+    // 因并发上限而等待的 worker 重新检查上限的间隔（上限增长时没有通知）
+    private static final long CAPACITY_POLL_MILLIS = 20;
+
+    /**
+     * 可抛出 IOException 的调度任务
+     */
+    @FunctionalInterface
+    public interface IOAction<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * 单个租户的状态
+     *
+     * @param queuedTasks      排队中的块数（含交互通道）
+     * @param queuedFiles      排队中的文件数
+     * @param oldestWaitMillis 队首块已等待的时间
+     * @param avgWaitMillis    块从入队到开始执行的平均等待时间（EWMA）
+     * @param maxWaitMillis    最长等待时间
+     */
+    public record TenantStats(String tenant, int weight, int queuedTasks, long queuedFiles, long oldestWaitMillis,
+                              long servedTasks, long servedFiles, double avgWaitMillis, double maxWaitMillis) {
+    }
+
+    public record Snapshot(int workers, int busy, int chunkSize, int quantum, int interactiveMaxFiles,
+                           List<TenantStats> tenants) {
+    }
+
+    private static final class Task {
+        final Tenant tenant;
+        final int cost;
+        final Runnable body;
+        final Runnable cancel;
+        final long enqueuedAt = System.nanoTime();
+
+        Task(Tenant tenant, int cost, Runnable body, Runnable cancel) {
+            this.tenant = tenant;
+            this.cost = cost;
+            this.body = body;
+            this.cancel = cancel;
+        }
+    }
+
+    /**
+     * 租户的队列与统计，均由 lock 保护
+     */
+    private static final class Tenant {
+        final String name;
+        final int weight;
+        final ArrayDeque<Task> interactive = new ArrayDeque<>();
+        final ArrayDeque<Task> bulk = new ArrayDeque<>();
+        long deficit;
+        // 本轮是否已发放额度
+        boolean inTurn;
+        long queuedFiles;
+        long servedTasks;
+        long servedFiles;
+        double avgWaitNanos;
+        long maxWaitNanos;
+        // 最近一次提交块的时间，用于淘汰空闲租户
+        long lastEnqueuedAt;
+
+        Tenant(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        long oldestEnqueuedAt() {
+            long oldest = Long.MAX_VALUE;
+            if (!interactive.isEmpty()) {
+                oldest = interactive.peek().enqueuedAt;
+            }
+            if (!bulk.isEmpty()) {
+                oldest = Math.min(oldest, bulk.peek().enqueuedAt);
+            }
+            return oldest;
+        }
+
+        boolean idle() {
+            return interactive.isEmpty() && bulk.isEmpty();
+        }
+    }
+
+    private final int workerCount;
+    private final int chunkSize;
+    private final int quantum;
+    private final int interactiveMaxFiles;
+    private final int maxTenants;
+    private final Map<String, Integer> weights;
+    // 当前允许同时执行的块数
+    private final IntSupplier concurrency;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Map<String, Tenant> tenants = new LinkedHashMap<>();
+    private final ArrayDeque<Tenant> interactiveRound = new ArrayDeque<>();
+    private final ArrayDeque<Tenant> bulkRound = new ArrayDeque<>();
+    private int busy;
+    private boolean running = true;
+
+    @Autowired
+    public FairConversionScheduler(ObjectProvider<ConcurrencyLimiter.Settings> limiterSettings,
+                                   @Value("${mathtype.scheduler.workers:0}") int workers,
+                                   @Value("${mathtype.scheduler.chunk-size:32}") int chunkSize,
+                                   @Value("${mathtype.scheduler.quantum:32}") int quantum,
+                                   @Value("${mathtype.scheduler.interactive-max-files:4}") int interactiveMaxFiles,
+                                   @Value("${mathtype.scheduler.max-tenants:256}") int maxTenants,
+                                   @Value("${mathtype.scheduler.weights:}") String weights) {
+        // 启用自适应限流时由限流决定实际并发，worker 数取其上界
+        this(workers > 0 ? workers : limiterSettings.getIfAvailable() != null
+                        ? limiterSettings.getIfAvailable().maxLimit() : Runtime.getRuntime().availableProcessors(),
+                chunkSize, quantum, interactiveMaxFiles, maxTenants, weights, FairConversionScheduler::limiterCapacity);
+    }
+
+    FairConversionScheduler(int workers, int chunkSize, int quantum, int interactiveMaxFiles, int maxTenants,
+                            String weights, IntSupplier concurrency) {
+        this.workerCount = workers;
+        this.concurrency = concurrency;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.quantum = Math.max(1, quantum);
+        this.interactiveMaxFiles = Math.max(0, interactiveMaxFiles);
+        this.maxTenants = Math.max(1, maxTenants);
+        this.weights = parseWeights(weights);
+        for (int i = 0; i < workerCount; i++) {
+            Thread.ofPlatform().name("mathtype-sched-" + i).daemon().start(this::workLoop);
+        }
+    }
+
+    private static int limiterCapacity() {
+        ConcurrencyLimiter limiter = MathTypeToLatexUtil.limiter();
+        return limiter == null ? Integer.MAX_VALUE : limiter.currentLimit();
+    }
+
+    /**
+     * 解析 "tenantA=4,tenantB=2" 形式的权重配置，未列出的租户权重为 1
+     */
+    private static Map<String, Integer> parseWeights(String spec) {
+        Map<String, Integer> parsed = new HashMap<>();
+        for (String entry : spec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mathtype.scheduler.weights entry: " + entry);
+            }
+            parsed.put(parts[0].trim(), Math.max(1, Integer.parseInt(parts[1].trim())));
+        }
+        return parsed;
+    }
+
+    /**
+     * 以当前租户身份批量转换：按块排队，全部完成后按输入顺序返回
+     *
+     * @param paths     文件路径
+     * @param converter 转换一块文件（在 worker 线程中调用）
+     */
+    public List<Mtef2LatexDTO> convert(List<String> paths, Function<List<String>, List<Mtef2LatexDTO>> converter) {
+        boolean interactive = paths.size() <= interactiveMaxFiles;
+        String tenant = TenantContext.current();
+        List<CompletableFuture<List<Mtef2LatexDTO>>> chunks = new ArrayList<>();
+        for (int from = 0; from < paths.size(); from += chunkSize) {
+            List<String> chunk = paths.subList(from, Math.min(paths.size(), from + chunkSize));
+            CompletableFuture<List<Mtef2LatexDTO>> future = new CompletableFuture<>();
+            enqueue(tenant, chunk.size(), interactive, () -> future.complete(converter.apply(chunk)), future);
+            chunks.add(future);
+        }
+
+        List<Mtef2LatexDTO> results = new ArrayList<>(paths.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            int expected = Math.min(chunkSize, paths.size() - i * chunkSize);
+            List<Mtef2LatexDTO> chunkResults;
+            try {
+                chunkResults = chunks.get(i).join();
+            } catch (CompletionException e) {
+                log.log(Level.WARNING, "Scheduled conversion failed: " + e.getCause(), e.getCause());
+                chunkResults = List.of();
+            }
+            for (int j = 0; j < expected; j++) {
+                results.add(j < chunkResults.size() ? chunkResults.get(j)
+                        : Mtef2LatexDTO.error("转换失败: 本地库未返回结果"));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 以当前租户身份批量转换，每块执行时逐项回调 listener（下标为在 paths 中的位置），全部完成后返回
+     *
+     * @param converter 转换一块文件并逐项回调（下标为在块中的位置）
+     */
+    public void convertIncremental(List<String> paths, ObjIntConsumer<Mtef2LatexDTO> listener,
+                                   BiConsumer<List<String>, ObjIntConsumer<Mtef2LatexDTO>> converter) {
+        boolean interactive = paths.size() <= interactiveMaxFiles;
+        String tenant = TenantContext.current();
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from < paths.size(); from += chunkSize) {
+            int offset = from;
+            List<String> chunk = paths.subList(from, Math.min(paths.size(), from + chunkSize));
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            enqueue(tenant, chunk.size(), interactive, () -> {
+                converter.accept(chunk, (dto, j) -> listener.accept(dto, offset + j));
+                future.complete(null);
+            }, future);
+            chunks.add(future);
+        }
+        for (CompletableFuture<Void> chunk : chunks) {
+            try {
+                chunk.join();
+            } catch (CompletionException e) {
+                log.log(Level.WARNING, "Scheduled conversion failed: " + e.getCause(), e.getCause());
+            }
+        }
+    }
+
+    /**
+     * 以当前租户身份执行一个不可拆分的任务（代价为 cost 个文件），在 worker 线程中执行并等待结果
+     */
+    public <T> T call(int cost, IOAction<T> action) throws IOException {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        enqueue(TenantContext.current(), Math.max(1, cost), cost <= interactiveMaxFiles, () -> {
+            try {
+                future.complete(action.call());
+            } catch (IOException e) {
+                future.completeExceptionally(e);
+            }
+        }, future);
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    private void enqueue(String tenantName, int cost, boolean interactive, Runnable body,
+                         CompletableFuture<?> future) {
+        Runnable guarded = () -> {
+            try {
+                body.run();
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+            }
+        };
+        lock.lock();
+        try {
+            if (!running) {
+                future.completeExceptionally(new IllegalStateException("Conversion scheduler is stopped"));
+                return;
+            }
+            Tenant tenant = tenant(tenantName);
+            Task task = new Task(tenant, cost, guarded,
+                    () -> future.completeExceptionally(new IllegalStateException("Conversion scheduler is stopped")));
+            ArrayDeque<Task> queue = interactive ? tenant.interactive : tenant.bulk;
+            if (queue.isEmpty()) {
+                (interactive ? interactiveRound : bulkRound).add(tenant);
+            }
+            queue.add(task);
+            tenant.queuedFiles += cost;
+            tenant.lastEnqueuedAt = task.enqueuedAt;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Tenant tenant(String name) {
+        Tenant tenant = tenants.get(name);
+        if (tenant == null) {
+            if (tenants.size() >= maxTenants && !evictIdleTenant()) {
+                name = OVERFLOW_TENANT;
+                tenant = tenants.get(name);
+            }
+            if (tenant == null) {
+                tenant = new Tenant(name, weights.getOrDefault(name, 1));
+                tenants.put(name, tenant);
+            }
+        }
+        return tenant;
+    }
+
+    /**
+     * 移除最久没有提交块的空闲租户；空闲租户不在任何轮转队列中，执行中的块只引用租户对象，不受影响
+     *
+     * @return 所有租户都有排队的块时返回 false
+     */
+    private boolean evictIdleTenant() {
+        Tenant victim = null;
+        for (Tenant tenant : tenants.values()) {
+            if (tenant.idle() && (victim == null || tenant.lastEnqueuedAt - victim.lastEnqueuedAt < 0)) {
+                victim = tenant;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        tenants.remove(victim.name);
+        return true;
+    }
+
+    private void workLoop() {
+        while (true) {
+            Task task;
+            try {
+                task = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                task.body.run();
+            } finally {
+                lock.lock();
+                try {
+                    busy--;
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * 取下一个块：交互通道优先（租户间轮流），其次按 DRR 从批量通道取
+     * 执行中的块数达到并发上限时先等待，块在有名额时才按调度顺序出队
+     */
+    private Task take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running) {
+                if (interactiveRound.isEmpty() && bulkRound.isEmpty()) {
+                    available.await();
+                } else if (busy >= concurrency.getAsInt()) {
+                    available.await(CAPACITY_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } else {
+                    break;
+                }
+            }
+            if (!running) {
+                throw new InterruptedException();
+            }
+            Task task;
+            if (!interactiveRound.isEmpty()) {
+                Tenant tenant = interactiveRound.poll();
+                task = tenant.interactive.poll();
+                if (!tenant.interactive.isEmpty()) {
+                    interactiveRound.add(tenant);
+                }
+            } else {
+                task = takeBulk();
+            }
+
+            Tenant tenant = task.tenant;
+            long waited = System.nanoTime() - task.enqueuedAt;
+            tenant.queuedFiles -= task.cost;
+            tenant.servedTasks++;
+            tenant.servedFiles += task.cost;
+            tenant.avgWaitNanos = tenant.servedTasks == 1 ? waited
+                    : tenant.avgWaitNanos + WAIT_ALPHA * (waited - tenant.avgWaitNanos);
+            tenant.maxWaitNanos = Math.max(tenant.maxWaitNanos, waited);
+            busy++;
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Deficit Round Robin：轮到的租户先获得 quantum × 权重 的额度，队首块的代价不超过额度时执行并扣除，
+     * 否则额度留到下一轮、轮到下一个租户；队列清空的租户退出本轮并清零额度
+     */
+    private Task takeBulk() {
+        while (true) {
+            Tenant tenant = bulkRound.peek();
+            if (!tenant.inTurn) {
+                tenant.deficit += (long) quantum * tenant.weight;
+                tenant.inTurn = true;
+            }
+            Task head = tenant.bulk.peek();
+            if (head.cost <= tenant.deficit) {
+                tenant.deficit -= head.cost;
+                tenant.bulk.poll();
+                if (tenant.bulk.isEmpty()) {
+                    bulkRound.poll();
+                    tenant.deficit = 0;
+                    tenant.inTurn = false;
+                }
+                return head;
+            }
+            bulkRound.poll();
+            tenant.inTurn = false;
+            bulkRound.add(tenant);
+        }
+    }
+
+    public int workers() {
+        return workerCount;
+    }
+
+    /**
+     * 所有租户排队中的文件数
+     */
+    public long queuedFiles() {
+        lock.lock();
+        try {
+            long total = 0;
+            for (Tenant tenant : tenants.values()) {
+                total += tenant.queuedFiles;
+            }
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 调度状态：worker 数、执行中的块数和各租户的队列与等待时间
+     */
+    public Snapshot snapshot() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            List<TenantStats> stats = new ArrayList<>(tenants.size());
+            for (Tenant tenant : tenants.values()) {
+                long oldest = tenant.oldestEnqueuedAt();
+                stats.add(new TenantStats(tenant.name, tenant.weight,
+                        tenant.interactive.size() + tenant.bulk.size(), tenant.queuedFiles,
+                        oldest == Long.MAX_VALUE ? 0 : TimeUnit.NANOSECONDS.toMillis(now - oldest),
+                        tenant.servedTasks, tenant.servedFiles,
+                        tenant.avgWaitNanos / 1e6, tenant.maxWaitNanos / 1e6));
+            }
+            return new Snapshot(workerCount, busy, chunkSize, quantum, interactiveMaxFiles, stats);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 停止 worker，排队中的块以错误结束（执行中的块继续完成）
+     */
+    @PreDestroy
+    public void shutdown() {
+        List<Task> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            running = false;
+            for (Tenant tenant : tenants.values()) {
+                pending.addAll(tenant.interactive);
+                pending.addAll(tenant.bulk);
+                tenant.interactive.clear();
+                tenant.bulk.clear();
+                tenant.queuedFiles = 0;
+            }
+            interactiveRound.clear();
+            bulkRound.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        pending.forEach(task -> task.cancel.run());
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.testgraalvm.scheduler;
+
+/**
+ * 当前线程所属的租户，由 {@link TenantFilter} 按请求头设置，{@link FairConversionScheduler} 按它排队
+ * 转换交给其他线程执行时，需在提交前读取并用 {@link #callAs} 传递
+ */
+public final class TenantContext {
+
+    /**
+     * 未带租户头的请求和后台任务（异步任务、监听目录等）使用的租户
+     */
+    public static final String DEFAULT_TENANT = "default";
+
+    private static final ThreadLocal<String> TENANT = new ThreadLocal<>();
+
+    @FunctionalInterface
+    public interface TenantAction<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private TenantContext() {
+    }
+
+    public static String current() {
+        String tenant = TENANT.get();
+        return tenant == null ? DEFAULT_TENANT : tenant;
+    }
+
+    /**
+     * 以指定租户身份执行，结束后恢复原来的租户
+     */
+    public static <T, E extends Exception> T callAs(String tenant, TenantAction<T, E> action) throws E {
+        String previous = TENANT.get();
+        TENANT.set(tenant);
+        try {
+            return action.call();
+        } finally {
+            if (previous == null) {
+                TENANT.remove();
+            } else {
+                TENANT.set(previous);
+            }
+        }
+    }
+
+    static void set(String tenant) {
+        TENANT.set(tenant);
+    }
+
+    static void clear() {
+        TENANT.remove();
+    }
+}
@@ -0,0 +1,45 @@
+package org.example.testgraalvm.scheduler;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * 从请求头（mathtype.scheduler.tenant-header，默认 X-Tenant-Id）读取租户，在请求线程上设置 {@link TenantContext}
+ * 缺失或格式不合法（超过 64 个字符，或含字母、数字、. _ : - 以外的字符）时归入默认租户
+ */
+@Component
+@ConditionalOnProperty(prefix = "mathtype.scheduler", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class TenantFilter extends OncePerRequestFilter {
+
+    private static final Pattern VALID_TENANT = Pattern.compile("[A-Za-z0-9._:-]{1,64}");
+
+    private final String header;
+
+    public TenantFilter(@Value("${mathtype.scheduler.tenant-header:X-Tenant-Id}") String header) {
+        this.header = header;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String tenant = request.getHeader(header);
+        if (tenant == null || !VALID_TENANT.matcher(tenant = tenant.trim()).matches()) {
+            tenant = TenantContext.DEFAULT_TENANT;
+        }
+        TenantContext.set(tenant);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+}
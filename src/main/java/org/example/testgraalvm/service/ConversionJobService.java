@@ -0,0 +1,343 @@
+package org.example.testgraalvm.service;
+
+import org.example.testgraalvm.entity.ConversionJob;
+import org.example.testgraalvm.entity.ConversionJobItem;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.example.testgraalvm.repository.ConversionJobItemRepository;
+import org.example.testgraalvm.repository.ConversionJobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * 异步转换任务服务
+ * 任务与文件项持久化在 SQLite 中，上传文件落盘到 spool 目录，重启后可继续处理
+ * 领取的文件项带租约，worker 处理期间续约；租约过期（worker 卡住或结果保存失败）后重新入队
+ */
+@Service
+@ConditionalOnProperty(prefix = "mathtype", name = {"persistence.enabled", "jobs.enabled"}, havingValue = "true",
+        matchIfMissing = true)
+public class ConversionJobService {
+
+    private static final Logger log = Logger.getLogger(ConversionJobService.class.getName());
+
+    // SSE 连接最长保持时间
+    private static final long SSE_TIMEOUT_MS = 30 * 60 * 1000L;
+
+    private final ConversionJobRepository jobRepository;
+    private final ConversionJobItemRepository itemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path spoolDir;
+
+    // 新任务提交时唤醒 worker
+    private final Semaphore workSignal = new Semaphore(0);
+    private final Map<String, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    public ConversionJobService(ConversionJobRepository jobRepository,
+                                ConversionJobItemRepository itemRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${mathtype.jobs.spool-dir:./job-spool}") String spoolDir) {
+        this.jobRepository = jobRepository;
+        this.itemRepository = itemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.spoolDir = Path.of(spoolDir);
+    }
+
+    /**
+     * 提交批量转换任务：文件落盘后立即返回
+     *
+     * @param files 上传的文件，非 .bin 文件会被跳过
+     * @return 新建的任务
+     * @throws IllegalArgumentException 没有有效的 .bin 文件
+     */
+    public ConversionJob submit(MultipartFile[] files) throws IOException {
+        String jobId = UUID.randomUUID().toString();
+        Path jobDir = spoolDir.resolve(jobId);
+        Files.createDirectories(jobDir);
+
+        List<ConversionJobItem> items = new ArrayList<>(files.length);
+        for (MultipartFile file : files) {
+            String originalFilename = file.getOriginalFilename();
+            if (file.isEmpty() || originalFilename == null || !originalFilename.toLowerCase().endsWith(".bin")) {
+                continue;
+            }
+            int index = items.size();
+            Path spoolFile = jobDir.resolve(index + ".bin");
+            file.transferTo(spoolFile);
+            items.add(new ConversionJobItem(jobId, index, originalFilename, spoolFile.toAbsolutePath().toString()));
+        }
+
+        if (items.isEmpty()) {
+            deleteSpool(jobId);
+            throw new IllegalArgumentException("没有有效的 .bin 文件");
+        }
+
+        ConversionJob job = new ConversionJob(jobId, items.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            jobRepository.save(job);
+            itemRepository.saveAll(items);
+        });
+        workSignal.release();
+        return job;
+    }
+
+    /**
+     * 查询任务
+     */
+    public Optional<ConversionJob> findJob(String jobId) {
+        return jobRepository.findById(jobId);
+    }
+
+    /**
+     * 查询任务中 index >= since 的已完成结果
+     */
+    public List<ConversionJobItem> findResults(String jobId, int since) {
+        return itemRepository.findByJobIdAndStatusAndItemIndexGreaterThanEqualOrderByItemIndexAsc(
+                jobId, ConversionJobItem.Status.DONE, Math.max(0, since));
+    }
+
+    /**
+     * 重启恢复：把上次中断时处理中的文件项放回队列
+     *
+     * @return 恢复的文件项数量
+     */
+    public int resumeInterrupted() {
+        return itemRepository.updateStatus(ConversionJobItem.Status.RUNNING, ConversionJobItem.Status.PENDING);
+    }
+
+    /**
+     * 从持久化队列中领取一批待处理文件项
+     *
+     * @param lease 租约时长，到期前未续约或完成的文件项会重新入队
+     */
+    public List<ConversionJobItem> claim(int max, Duration lease) {
+        long leaseUntil = System.currentTimeMillis() + lease.toMillis();
+        return transactionTemplate.execute(status -> {
+            List<ConversionJobItem> items =
+                    itemRepository.findByStatusOrderByIdAsc(ConversionJobItem.Status.PENDING, Limit.of(max));
+            for (ConversionJobItem item : items) {
+                item.setStatus(ConversionJobItem.Status.RUNNING);
+                item.setLeaseUntil(leaseUntil);
+            }
+            return itemRepository.saveAll(items);
+        });
+    }
+
+    /**
+     * 为处理中的文件项续约
+     */
+    public void renewLeases(Collection<Long> itemIds, Duration lease) {
+        if (!itemIds.isEmpty()) {
+            itemRepository.renewLeases(itemIds, System.currentTimeMillis() + lease.toMillis());
+        }
+    }
+
+    /**
+     * 把租约已过期的处理中文件项放回队列
+     *
+     * @return 重新入队的文件项数量
+     */
+    public int requeueExpired() {
+        int requeued = itemRepository.requeueExpired(System.currentTimeMillis());
+        if (requeued > 0) {
+            workSignal.release();
+        }
+        return requeued;
+    }
+
+    /**
+     * 删除完成时间早于保留期的任务及其文件项
+     *
+     * @return 删除的任务数量
+     */
+    public int purgeCompleted(Duration retention) {
+        long before = System.currentTimeMillis() - retention.toMillis();
+        List<String> jobIds = jobRepository.findIdsUpdatedBefore(ConversionJob.Status.COMPLETED, before);
+        if (jobIds.isEmpty()) {
+            return 0;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            itemRepository.deleteByJobIds(jobIds);
+            jobRepository.deleteByIds(jobIds);
+        });
+        // 正常情况下完成时已删除，这里清理删除失败的残留
+        jobIds.stream().filter(jobId -> Files.isDirectory(spoolDir.resolve(jobId))).forEach(this::deleteSpool);
+        return jobIds.size();
+    }
+
+    /**
+     * 等待新任务提交或超时
+     */
+    public void awaitWork(long timeoutMs) throws InterruptedException {
+        if (workSignal.tryAcquire(timeoutMs, TimeUnit.MILLISECONDS)) {
+            workSignal.drainPermits();
+        }
+    }
+
+    /**
+     * 保存一批文件项的结果，更新任务进度并推送给订阅者
+     * 租约过期后已由其他领取完成的文件项不再计入进度
+     *
+     * @param items   领取的文件项
+     * @param results 与 items 一一对应的转换结果
+     */
+    public void complete(List<ConversionJobItem> items, List<Mtef2LatexDTO> results) {
+        long now = System.currentTimeMillis();
+        Map<String, int[]> progress = new LinkedHashMap<>();
+        Set<String> finishedJobs = new HashSet<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < items.size(); i++) {
+                ConversionJobItem item = items.get(i);
+                Mtef2LatexDTO dto = results.get(i);
+                if (itemRepository.complete(item.getId(), dto.getCode(), dto.getResLatex()) == 0) {
+                    continue;
+                }
+                item.setStatus(ConversionJobItem.Status.DONE);
+                item.setCode(dto.getCode());
+                item.setResLatex(dto.getResLatex());
+                item.setLeaseUntil(null);
+
+                int[] counters = progress.computeIfAbsent(item.getJobId(), id -> new int[2]);
+                counters[0]++;
+                if (dto.getCode() != Mtef2LatexDTO.SUCCESS_CODE) {
+                    counters[1]++;
+                }
+            }
+            progress.forEach((jobId, counters) -> {
+                jobRepository.addProgress(jobId, counters[0], counters[1], ConversionJob.Status.RUNNING, now);
+                if (jobRepository.markFinished(jobId, ConversionJob.Status.COMPLETED, now) > 0) {
+                    finishedJobs.add(jobId);
+                }
+            });
+        });
+
+        for (String jobId : progress.keySet()) {
+            List<ConversionJobItem> jobItems = items.stream()
+                    .filter(item -> item.getJobId().equals(jobId) && item.getStatus() == ConversionJobItem.Status.DONE)
+                    .toList();
+            publish(jobId, jobItems, finishedJobs.contains(jobId));
+        }
+        finishedJobs.forEach(this::deleteSpool);
+    }
+
+    /**
+     * 订阅任务进度（SSE），订阅时先推送 index >= since 的已有结果
+     * 快照与实时推送之间可能有重复结果，客户端按 index 去重
+     */
+    public SseEmitter subscribe(String jobId, int since) {
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+        Optional<ConversionJob> job = findJob(jobId);
+        if (job.isEmpty()) {
+            emitter.completeWithError(new NoSuchElementException("Job not found: " + jobId));
+            return emitter;
+        }
+
+        List<SseEmitter> list = subscribers.computeIfAbsent(jobId, id -> new CopyOnWriteArrayList<>());
+        list.add(emitter);
+        Runnable remove = () -> list.remove(emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        try {
+            List<ConversionJobItem> done = findResults(jobId, since);
+            if (!done.isEmpty()) {
+                emitter.send(SseEmitter.event().name("result").data(toResultList(done)));
+            }
+            emitter.send(SseEmitter.event().name("progress").data(toProgress(job.get())));
+            if (job.get().getStatus() == ConversionJob.Status.COMPLETED) {
+                emitter.send(SseEmitter.event().name("complete").data(toProgress(job.get())));
+                emitter.complete();
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    private void publish(String jobId, List<ConversionJobItem> items, boolean finished) {
+        List<SseEmitter> list = subscribers.get(jobId);
+        if (list == null || list.isEmpty()) {
+            return;
+        }
+        Optional<ConversionJob> job = findJob(jobId);
+        if (job.isEmpty()) {
+            return;
+        }
+        Map<String, Object> progress = toProgress(job.get());
+        List<Map<String, Object>> resultList = toResultList(items);
+        for (SseEmitter emitter : list) {
+            try {
+                emitter.send(SseEmitter.event().name("result").data(resultList));
+                emitter.send(SseEmitter.event().name("progress").data(progress));
+                if (finished) {
+                    emitter.send(SseEmitter.event().name("complete").data(progress));
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                list.remove(emitter);
+            }
+        }
+        if (finished) {
+            subscribers.remove(jobId);
+        }
+    }
+
+    /**
+     * 构建任务进度
+     */
+    public Map<String, Object> toProgress(ConversionJob job) {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("jobId", job.getId());
+        progress.put("status", job.getStatus().name());
+        progress.put("total", job.getTotal());
+        progress.put("completed", job.getCompleted());
+        progress.put("failed", job.getFailed());
+        return progress;
+    }
+
+    /**
+     * 构建结果列表
+     */
+    public List<Map<String, Object>> toResultList(List<ConversionJobItem> items) {
+        List<Map<String, Object>> resultList = new ArrayList<>(items.size());
+        for (ConversionJobItem item : items) {
+            Map<String, Object> entry = new HashMap<>();
+            entry.put("index", item.getItemIndex());
+            entry.put("filename", item.getFilename());
+            entry.put("success", item.getCode() != null && item.getCode() == Mtef2LatexDTO.SUCCESS_CODE);
+            entry.put("code", item.getCode());
+            entry.put("latex", item.getResLatex());
+            resultList.add(entry);
+        }
+        return resultList;
+    }
+
+    private void deleteSpool(String jobId) {
+        Path jobDir = spoolDir.resolve(jobId);
+        try (var paths = Files.list(jobDir)) {
+            for (Path path : paths.toList()) {
+                Files.deleteIfExists(path);
+            }
+            Files.deleteIfExists(jobDir);
+        } catch (IOException e) {
+            log.warning("Failed to clean spool directory " + jobDir + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package org.example.testgraalvm.service;
+
+import org.example.testgraalvm.entity.ConversionJobItem;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 异步转换任务的后台 worker
+ * 启动时恢复中断的文件项，随后由调度线程从持久化队列领取批次交给固定大小的线程池处理
+ * 维护线程每隔租约的三分之一为处理中的文件项续约、把租约过期的文件项重新入队，并定期删除超过保留期的已完成任务
+ */
+@Component
+@ConditionalOnProperty(prefix = "mathtype", name = {"persistence.enabled", "jobs.enabled"}, havingValue = "true",
+        matchIfMissing = true)
+public class ConversionJobWorker implements SmartLifecycle {
+
+    private static final Logger log = Logger.getLogger(ConversionJobWorker.class.getName());
+
+    // 保留期清理的执行间隔
+    private static final long PURGE_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final ConversionJobService jobService;
+    private final MathTypeConversionService conversionService;
+    private final int workers;
+    private final int chunkSize;
+    private final long pollIntervalMs;
+    private final Duration lease;
+    private final Duration retention;
+    // 本进程正在处理的文件项，由维护线程续约
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running;
+    private ExecutorService pool;
+    private Thread dispatcher;
+    private ScheduledExecutorService maintenance;
+    private Semaphore slots;
+    private long lastPurge;
+
+    public ConversionJobWorker(ConversionJobService jobService,
+                               MathTypeConversionService conversionService,
+                               @Value("${mathtype.jobs.workers:2}") int workers,
+                               @Value("${mathtype.jobs.chunk-size:50}") int chunkSize,
+                               @Value("${mathtype.jobs.poll-interval-ms:1000}") long pollIntervalMs,
+                               @Value("${mathtype.jobs.lease:5m}") Duration lease,
+                               @Value("${mathtype.jobs.retention:7d}") Duration retention) {
+        this.jobService = jobService;
+        this.conversionService = conversionService;
+        this.workers = Math.max(1, workers);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.pollIntervalMs = Math.max(10, pollIntervalMs);
+        this.lease = lease.compareTo(Duration.ofSeconds(1)) < 0 ? Duration.ofSeconds(1) : lease;
+        this.retention = retention;
+    }
+
+    @Override
+    public void start() {
+        int resumed = jobService.resumeInterrupted();
+        if (resumed > 0) {
+            log.info("Resumed " + resumed + " interrupted conversion job items");
+        }
+
+        slots = new Semaphore(workers);
+        pool = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("mathtype-job-", 0).factory());
+        running = true;
+        dispatcher = Thread.ofPlatform().name("mathtype-job-dispatcher").daemon().start(this::dispatchLoop);
+        maintenance = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("mathtype-job-maintenance").daemon().factory());
+        long period = lease.toMillis() / 3;
+        maintenance.scheduleWithFixedDelay(this::maintain, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 续约、重新入队过期文件项、按保留期清理任务；单步失败只记录日志，下个周期重试
+     */
+    private void maintain() {
+        try {
+            jobService.renewLeases(List.copyOf(inFlight), lease);
+            int requeued = jobService.requeueExpired();
+            if (requeued > 0) {
+                log.warning("Requeued " + requeued + " conversion job items whose lease expired");
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastPurge >= PURGE_INTERVAL_MS) {
+                lastPurge = now;
+                int purged = jobService.purgeCompleted(retention);
+                if (purged > 0) {
+                    log.info("Purged " + purged + " conversion jobs older than " + retention);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.log(Level.WARNING, "Conversion job maintenance failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 调度循环：有空闲 worker 时才领取下一批，避免把整个队列一次性标记为处理中
+     */
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                slots.acquire();
+                List<ConversionJobItem> items;
+                try {
+                    items = jobService.claim(chunkSize, lease);
+                } catch (RuntimeException e) {
+                    slots.release();
+                    log.log(Level.WARNING, "Failed to claim conversion job items: " + e.getMessage(), e);
+                    jobService.awaitWork(pollIntervalMs);
+                    continue;
+                }
+
+                if (items.isEmpty()) {
+                    slots.release();
+                    jobService.awaitWork(pollIntervalMs);
+                    continue;
+                }
+
+                items.forEach(item -> inFlight.add(item.getId()));
+                pool.execute(() -> {
+                    try {
+                        process(items);
+                    } finally {
+                        items.forEach(item -> inFlight.remove(item.getId()));
+                        slots.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void process(List<ConversionJobItem> items) {
+        List<Path> paths = new ArrayList<>(items.size());
+        List<Integer> present = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Path path = Path.of(items.get(i).getSpoolPath());
+            if (Files.exists(path)) {
+                paths.add(path);
+                present.add(i);
+            }
+        }
+
+        List<Mtef2LatexDTO> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            results.add(Mtef2LatexDTO.error("转换失败: 任务文件已丢失"));
+        }
+
+        if (!paths.isEmpty()) {
+            try {
+                List<Mtef2LatexDTO> converted = conversionService.convertBatch(paths);
+                for (int i = 0; i < present.size(); i++) {
+                    results.set(present.get(i), converted.get(i));
+                }
+            } catch (IOException | RuntimeException e) {
+                for (int i : present) {
+                    results.set(i, Mtef2LatexDTO.error("文件处理失败: " + e.getMessage()));
+                }
+            }
+        }
+
+        try {
+            jobService.complete(items, results);
+        } catch (RuntimeException e) {
+            // 文件项保持处理中状态，不再续约，租约过期后重新入队
+            log.log(Level.WARNING, "Failed to save conversion job results: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        if (pool != null) {
+            pool.shutdown();
+            try {
+                if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+                    pool.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
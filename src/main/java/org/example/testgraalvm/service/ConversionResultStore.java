@@ -0,0 +1,149 @@
+package org.example.testgraalvm.service;
+
+import org.example.testgraalvm.entity.ConversionResult;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.example.testgraalvm.repository.ConversionResultRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * 基于 SQLite 的转换结果持久化存储
+ * 以内容 SHA-256 为键，重启后仍可复用相同公式的转换结果
+ */
+@Service
+@ConditionalOnProperty(prefix = "mathtype.persistence", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ConversionResultStore {
+
+    private static final Logger log = Logger.getLogger(ConversionResultStore.class.getName());
+
+    // SQLite 单条语句最多 32766 个绑定参数（3.32+），IN 查询超出时才拆分
+    private static final int MAX_IN_PARAMETERS = 32_000;
+
+    private final ConversionResultRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final int insertChunkSize;
+
+    public ConversionResultStore(ConversionResultRepository repository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${mathtype.result-store.insert-chunk-size:500}") int insertChunkSize) {
+        this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.insertChunkSize = Math.max(1, insertChunkSize);
+    }
+
+    /**
+     * 计算文件内容的 SHA-256（十六进制）
+     */
+    public static String sha256Hex(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 计算字节内容的 SHA-256（十六进制）
+     */
+    public static String sha256Hex(byte[] content) {
+        return HexFormat.of().formatHex(newDigest().digest(content));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * 查询单个哈希对应的结果
+     */
+    public Optional<Mtef2LatexDTO> find(String contentHash) {
+        return repository.findById(contentHash).map(ConversionResultStore::toDto);
+    }
+
+    /**
+     * 批量查询：一次 IN 查询取回所有已存在的结果
+     *
+     * @return 哈希 -> 结果，不存在的哈希不会出现在结果中
+     */
+    public Map<String, Mtef2LatexDTO> findAll(Collection<String> contentHashes) {
+        if (contentHashes.isEmpty()) {
+            return Map.of();
+        }
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(contentHashes));
+        Map<String, Mtef2LatexDTO> found = new HashMap<>(distinct.size() * 2);
+        for (int from = 0; from < distinct.size(); from += MAX_IN_PARAMETERS) {
+            List<String> chunk = distinct.subList(from, Math.min(distinct.size(), from + MAX_IN_PARAMETERS));
+            for (ConversionResult result : repository.findByContentHashIn(chunk)) {
+                found.put(result.getContentHash(), toDto(result));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 批量保存转换成功的结果，按块提交事务（每块一次 JDBC 批量插入）
+     * 失败结果不落库：它们可能源于库未加载等暂时性问题
+     * Java 快速路径的结果也不落库：存储中只保存本地库的输出，快速路径可以随时关闭
+     */
+    public void saveAll(Map<String, Mtef2LatexDTO> results) {
+        List<ConversionResult> pending = new ArrayList<>(results.size());
+        results.forEach((hash, dto) -> {
+            if (dto.getCode() == Mtef2LatexDTO.SUCCESS_CODE && !dto.fromFastPath()) {
+                pending.add(new ConversionResult(hash, dto.getCode(), dto.getResLatex()));
+            }
+        });
+
+        for (int from = 0; from < pending.size(); from += insertChunkSize) {
+            saveChunk(pending.subList(from, Math.min(pending.size(), from + insertChunkSize)));
+        }
+    }
+
+    private void saveChunk(List<ConversionResult> chunk) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.saveAll(chunk));
+        } catch (DataIntegrityViolationException e) {
+            // 并发请求已写入了部分相同哈希：剔除已存在的记录后重试一次
+            Set<String> existing = findAll(chunk.stream().map(ConversionResult::getContentHash).toList()).keySet();
+            List<ConversionResult> remaining = chunk.stream()
+                    .filter(r -> !existing.contains(r.getContentHash()))
+                    .map(r -> new ConversionResult(r.getContentHash(), r.getCode(), r.getResLatex()))
+                    .toList();
+            if (remaining.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> repository.saveAll(remaining));
+            } catch (DataIntegrityViolationException retryFailure) {
+                log.warning("Failed to persist conversion results: " + retryFailure.getMessage());
+            }
+        }
+    }
+
+    private static Mtef2LatexDTO toDto(ConversionResult result) {
+        Mtef2LatexDTO dto = new Mtef2LatexDTO();
+        dto.setCode(result.getCode());
+        dto.setResLatex(result.getResLatex());
+        return dto;
+    }
+}
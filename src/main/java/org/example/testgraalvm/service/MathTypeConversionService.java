@@ -0,0 +1,354 @@
+package org.example.testgraalvm.service;
+
+import org.example.testgraalvm.cluster.ClusterConversionService;
+import org.example.testgraalvm.mtef.EquationNativeValidator;
+import org.example.testgraalvm.mtef.MtefException;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.example.testgraalvm.scheduler.FairConversionScheduler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * MathType 转换服务
+ * 先用 {@link EquationNativeValidator} 预检，不是有效公式对象的文件直接得到错误结果，不调用本地库
+ * 调用本地库前先按内容哈希查询持久化结果，只转换未命中的文件（结果存储可用时）；
+ * 有效公式对象的哈希只覆盖 MTEF 数据，容器元数据不同的同一公式也能复用结果
+ * 启用集群模式时，大批量的未命中文件会分发到集群中的其他节点
+ * 本节点的本地库调用经过 {@link FairConversionScheduler}（启用时）按租户公平排队
+ */
+@Service
+public class MathTypeConversionService {
+
+    private final ConversionResultStore resultStore;
+    private final boolean storeEnabled;
+    // 集群服务依赖本服务做本地转换，因此在调用时再解析
+    private final ObjectProvider<ClusterConversionService> clusterService;
+    private final FairConversionScheduler scheduler;
+
+    public MathTypeConversionService(ObjectProvider<ConversionResultStore> resultStore,
+                                     @Value("${mathtype.result-store.enabled:true}") boolean storeEnabled,
+                                     ObjectProvider<ClusterConversionService> clusterService,
+                                     ObjectProvider<FairConversionScheduler> scheduler) {
+        // 关闭持久化（mathtype.persistence.enabled=false）时没有结果存储；关闭结果复用时不解析，避免提前初始化 JPA
+        this.resultStore = storeEnabled ? resultStore.getIfAvailable() : null;
+        this.storeEnabled = this.resultStore != null;
+        this.clusterService = clusterService;
+        this.scheduler = scheduler.getIfAvailable();
+    }
+
+    /**
+     * 转换结果是否写入结果存储（开启了 mathtype.result-store.enabled 且持久化可用）
+     */
+    public boolean storesResults() {
+        return storeEnabled;
+    }
+
+    /**
+     * 转换单个文件
+     *
+     * @param binFile bin 文件路径
+     * @return 转换结果
+     */
+    public Mtef2LatexDTO convert(Path binFile) throws IOException {
+        return convert(binFile, null);
+    }
+
+    /**
+     * 转换单个已预检的文件，不再重复读取和解析
+     *
+     * @param binFile    bin 文件路径
+     * @param inspection 调用方对同一内容的预检结果；为 null 时（未预检）由本服务预检
+     * @return 转换结果
+     */
+    public Mtef2LatexDTO convert(Path binFile, EquationNativeValidator.Inspection inspection) throws IOException {
+        Checked checked = check(binFile, inspection);
+        if (checked.rejection() != null) {
+            return checked.rejection();
+        }
+        if (!storeEnabled) {
+            return convertOne(binFile);
+        }
+
+        String hash = checked.hash();
+        Optional<Mtef2LatexDTO> cached = resultStore.find(hash);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        Mtef2LatexDTO result = convertOne(binFile);
+        resultStore.saveAll(Map.of(hash, result));
+        return result;
+    }
+
+    /**
+     * 批量转换文件，结果顺序与输入一致
+     * 一次 IN 查询取回已有结果，同一批次内内容相同的文件只转换一次
+     *
+     * @param binFiles bin 文件路径列表
+     * @return 转换结果列表
+     */
+    public List<Mtef2LatexDTO> convertBatch(List<Path> binFiles) throws IOException {
+        return convertBatch(binFiles, null, true);
+    }
+
+    /**
+     * 批量转换已预检的文件
+     *
+     * @param inspections 与 binFiles 一一对应的预检结果，元素为 null 的文件由本服务预检
+     */
+    public List<Mtef2LatexDTO> convertBatch(List<Path> binFiles, List<EquationNativeValidator.Inspection> inspections)
+            throws IOException {
+        return convertBatch(binFiles, inspections, true);
+    }
+
+    /**
+     * 批量转换文件，只在本节点转换（集群 worker 使用）
+     */
+    public List<Mtef2LatexDTO> convertBatchLocally(List<Path> binFiles) throws IOException {
+        return convertBatch(binFiles, null, false);
+    }
+
+    private List<Mtef2LatexDTO> convertBatch(List<Path> binFiles, List<EquationNativeValidator.Inspection> inspections,
+                                             boolean allowDistribute) throws IOException {
+        List<Checked> checks = check(binFiles, inspections);
+        Mtef2LatexDTO[] results = new Mtef2LatexDTO[binFiles.size()];
+
+        if (!storeEnabled) {
+            List<Path> valid = new ArrayList<>(binFiles.size());
+            for (int i = 0; i < binFiles.size(); i++) {
+                if (checks.get(i).rejection() == null) {
+                    valid.add(binFiles.get(i));
+                } else {
+                    results[i] = checks.get(i).rejection();
+                }
+            }
+            List<Mtef2LatexDTO> converted = valid.isEmpty() ? List.of() : convertMisses(valid, allowDistribute);
+            for (int i = 0, j = 0; i < results.length; i++) {
+                if (results[i] == null) {
+                    results[i] = converted.get(j++);
+                }
+            }
+            return Arrays.asList(results);
+        }
+
+        List<String> hashes = new ArrayList<>(binFiles.size());
+        for (Checked checked : checks) {
+            if (checked.rejection() == null) {
+                hashes.add(checked.hash());
+            }
+        }
+
+        Map<String, Mtef2LatexDTO> known = new HashMap<>(hashes.isEmpty() ? Map.of() : resultStore.findAll(hashes));
+
+        // 每个未命中的哈希只取第一个文件去转换
+        Map<String, Path> misses = new LinkedHashMap<>();
+        for (int i = 0; i < binFiles.size(); i++) {
+            String hash = checks.get(i).hash();
+            if (hash != null && !known.containsKey(hash)) {
+                misses.putIfAbsent(hash, binFiles.get(i));
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            List<Mtef2LatexDTO> converted = convertMisses(new ArrayList<>(misses.values()), allowDistribute);
+            Map<String, Mtef2LatexDTO> fresh = new HashMap<>(misses.size() * 2);
+            int i = 0;
+            for (String hash : misses.keySet()) {
+                fresh.put(hash, converted.get(i++));
+            }
+            resultStore.saveAll(fresh);
+            known.putAll(fresh);
+        }
+
+        for (int i = 0; i < results.length; i++) {
+            Checked checked = checks.get(i);
+            results[i] = checked.rejection() != null ? checked.rejection() : known.get(checked.hash());
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 批量转换，每个结果就绪时立即交给 listener（参数为结果和在输入中的下标），不等待整批完成
+     * 已持久化的结果最先回调；其余文件只在本节点转换，按完成顺序回调，listener 可能被并发调用
+     *
+     * @param binFiles bin 文件路径列表
+     * @param listener 逐项结果监听器
+     */
+    public void convertBatchIncremental(List<Path> binFiles, ObjIntConsumer<Mtef2LatexDTO> listener) throws IOException {
+        convertBatchIncremental(binFiles, null, listener);
+    }
+
+    /**
+     * 逐项批量转换已预检的文件
+     *
+     * @param inspections 与 binFiles 一一对应的预检结果，元素为 null 的文件由本服务预检
+     */
+    public void convertBatchIncremental(List<Path> binFiles, List<EquationNativeValidator.Inspection> inspections,
+                                        ObjIntConsumer<Mtef2LatexDTO> listener) throws IOException {
+        List<Checked> checks = check(binFiles, inspections);
+        for (int i = 0; i < binFiles.size(); i++) {
+            if (checks.get(i).rejection() != null) {
+                listener.accept(checks.get(i).rejection(), i);
+            }
+        }
+
+        if (!storeEnabled) {
+            List<String> paths = new ArrayList<>(binFiles.size());
+            List<Integer> indexes = new ArrayList<>(binFiles.size());
+            for (int i = 0; i < binFiles.size(); i++) {
+                if (checks.get(i).rejection() == null) {
+                    paths.add(binFiles.get(i).toAbsolutePath().toString());
+                    indexes.add(i);
+                }
+            }
+            if (!paths.isEmpty()) {
+                convertIncrementalLocally(paths, (dto, j) -> listener.accept(dto, indexes.get(j)));
+            }
+            return;
+        }
+
+        List<String> hashes = new ArrayList<>(binFiles.size());
+        for (Checked checked : checks) {
+            if (checked.rejection() == null) {
+                hashes.add(checked.hash());
+            }
+        }
+
+        Map<String, Mtef2LatexDTO> known = hashes.isEmpty() ? Map.of() : resultStore.findAll(hashes);
+
+        // 未命中的哈希 -> 输入中所有内容相同的下标，只转换第一个文件
+        Map<String, List<Integer>> misses = new LinkedHashMap<>();
+        List<String> missPaths = new ArrayList<>();
+        for (int i = 0; i < binFiles.size(); i++) {
+            String hash = checks.get(i).hash();
+            if (hash == null) {
+                continue;
+            }
+            Mtef2LatexDTO cached = known.get(hash);
+            if (cached != null) {
+                listener.accept(cached, i);
+                continue;
+            }
+            List<Integer> indexes = misses.get(hash);
+            if (indexes == null) {
+                indexes = new ArrayList<>(1);
+                misses.put(hash, indexes);
+                missPaths.add(binFiles.get(i).toAbsolutePath().toString());
+            }
+            indexes.add(i);
+        }
+
+        if (misses.isEmpty()) {
+            return;
+        }
+
+        List<String> missHashes = new ArrayList<>(misses.keySet());
+        Map<String, Mtef2LatexDTO> fresh = new ConcurrentHashMap<>(misses.size() * 2);
+        convertIncrementalLocally(missPaths, (dto, j) -> {
+            String hash = missHashes.get(j);
+            fresh.put(hash, dto);
+            for (int index : misses.get(hash)) {
+                listener.accept(dto, index);
+            }
+        });
+        resultStore.saveAll(fresh);
+    }
+
+    /**
+     * 预检结果：rejection 不为 null 时文件不是有效的公式对象，直接作为转换结果；
+     * 否则 hash 为结果存储和批内去重的键（结果存储不可用时为 null）
+     */
+    private record Checked(Mtef2LatexDTO rejection, String hash) {
+    }
+
+    private List<Checked> check(List<Path> binFiles, List<EquationNativeValidator.Inspection> inspections)
+            throws IOException {
+        List<Checked> checks = new ArrayList<>(binFiles.size());
+        for (int i = 0; i < binFiles.size(); i++) {
+            checks.add(check(binFiles.get(i), inspections == null ? null : inspections.get(i)));
+        }
+        return checks;
+    }
+
+    /**
+     * 有效公式对象以 MTEF 数据的哈希为键；未预检（关闭或超过大小上限）的文件以整个文件内容的哈希为键
+     * 调用方已预检的文件直接使用其规范哈希
+     */
+    private Checked check(Path binFile, EquationNativeValidator.Inspection inspection) throws IOException {
+        if (inspection != null) {
+            return new Checked(null, inspection.canonicalHash());
+        }
+        try {
+            EquationNativeValidator.Inspection checked = EquationNativeValidator.inspect(binFile);
+            if (checked != null) {
+                return new Checked(null, checked.canonicalHash());
+            }
+        } catch (MtefException e) {
+            return new Checked(EquationNativeValidator.rejection(e), null);
+        }
+        return new Checked(null, storeEnabled ? ConversionResultStore.sha256Hex(binFile) : null);
+    }
+
+    /**
+     * 调用本地库（或集群）批量转换；返回数量不足时补齐错误结果，保证与输入一一对应
+     */
+    private List<Mtef2LatexDTO> convertMisses(List<Path> binFiles, boolean allowDistribute) throws IOException {
+        ClusterConversionService cluster = allowDistribute ? clusterService.getIfAvailable() : null;
+        if (cluster != null && cluster.shouldDistribute(binFiles.size())) {
+            return cluster.convertBatch(binFiles);
+        }
+
+        List<String> paths = new ArrayList<>(binFiles.size());
+        for (Path binFile : binFiles) {
+            paths.add(binFile.toAbsolutePath().toString());
+        }
+
+        List<Mtef2LatexDTO> results = new ArrayList<>(scheduler == null
+                ? MathTypeToLatexUtil.convertLatexList(paths)
+                : scheduler.convert(paths, MathTypeToLatexUtil::convertLatexList));
+        while (results.size() < paths.size()) {
+            results.add(Mtef2LatexDTO.error("转换失败: 本地库未返回结果"));
+        }
+        return results;
+    }
+
+    private Mtef2LatexDTO convertOne(Path binFile) throws IOException {
+        String path = binFile.toAbsolutePath().toString();
+        return scheduler == null
+                ? MathTypeToLatexUtil.convertLatex(path)
+                : scheduler.call(1, () -> MathTypeToLatexUtil.convertLatex(path));
+    }
+
+    private void convertIncrementalLocally(List<String> paths, ObjIntConsumer<Mtef2LatexDTO> listener) {
+        if (scheduler == null) {
+            MathTypeToLatexUtil.convertLatexListIncremental(paths, listener);
+        } else {
+            scheduler.convertIncremental(paths, listener, MathTypeToLatexUtil::convertLatexListIncremental);
+        }
+    }
+
+    /**
+     * 批量转换，把本地库返回的结果 JSON 原样写入输出流（不查询也不写入结果存储）
+     * 结果不能拆分，经过调度器时作为代价为文件数的单个任务排队
+     *
+     * @return 库不可用时返回 false，此时没有写出任何内容
+     * @see MathTypeToLatexUtil#writeLatexListJson
+     */
+    public boolean writeBatchJson(List<String> binPaths, OutputStream out, LongConsumer lengthKnown)
+            throws IOException {
+        if (scheduler == null) {
+            return MathTypeToLatexUtil.writeLatexListJson(binPaths, out, lengthKnown);
+        }
+        return scheduler.call(binPaths.size(), () -> MathTypeToLatexUtil.writeLatexListJson(binPaths, out, lengthKnown));
+    }
+}
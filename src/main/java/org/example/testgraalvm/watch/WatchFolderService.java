@@ -0,0 +1,389 @@
+package org.example.testgraalvm.watch;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.example.testgraalvm.service.MathTypeConversionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * 监听目录模式：生产方把 .bin 文件放进共享目录后近实时转换，不需要反复全量扫描
+ * <p>
+ * 用 {@link WatchService} 监听 mathtype.watch.dirs（可递归，新建的子目录自动注册）。
+ * 文件在 debounce 时间内没有新的事件才视为写完，攒够 max-batch-size 个或等待超过 max-batch-delay
+ * 后一起交给 {@link MathTypeConversionService#convertBatch}，在单独的线程中转换。
+ * 启动时和事件溢出（OVERFLOW）时扫描一次目录，补上停机期间或丢失事件的文件；
+ * 已转换且未变化的文件由 {@link WatchLedger} 按大小+修改时间或内容哈希跳过。
+ * <p>
+ * 输出方式（mathtype.watch.output）：tex 在输入旁写同名 .tex（只写成功的结果），json 写同名 .json，
+ * store 只写入结果存储（依赖 mathtype.result-store.enabled，没有结果存储时启动失败）。
+ */
+@Component
+@ConditionalOnProperty(prefix = "mathtype.watch", name = "enabled", havingValue = "true")
+public class WatchFolderService implements SmartLifecycle {
+
+    private static final Logger log = Logger.getLogger(WatchFolderService.class.getName());
+
+    enum Output {TEX, JSON, STORE}
+
+    private final MathTypeConversionService conversionService;
+    private final JsonMapper jsonMapper;
+    private final List<Path> dirs;
+    private final boolean recursive;
+    private final String suffix;
+    private final long debounceNanos;
+    private final long maxBatchDelayNanos;
+    private final int maxBatchSize;
+    private final Output output;
+    private final WatchLedger ledger;
+
+    // 以下字段只由监听线程访问：文件 -> 最后一次事件的时间
+    private final Map<Path, Long> settling = new LinkedHashMap<>();
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final List<Path> ready = new ArrayList<>();
+    private long readySince;
+
+    private volatile boolean running;
+    private WatchService watchService;
+    private Thread watcher;
+    private ExecutorService converter;
+
+    public WatchFolderService(MathTypeConversionService conversionService,
+                              JsonMapper jsonMapper,
+                              @Value("${mathtype.watch.dirs:}") String[] dirs,
+                              @Value("${mathtype.watch.recursive:true}") boolean recursive,
+                              @Value("${mathtype.watch.suffix:.bin}") String suffix,
+                              @Value("${mathtype.watch.debounce:500ms}") Duration debounce,
+                              @Value("${mathtype.watch.max-batch-size:256}") int maxBatchSize,
+                              @Value("${mathtype.watch.max-batch-delay:2s}") Duration maxBatchDelay,
+                              @Value("${mathtype.watch.output:tex}") String output,
+                              @Value("${mathtype.watch.skip-by:mtime-size}") String skipBy,
+                              @Value("${mathtype.watch.state-file:./watch-state.properties}") Path stateFile)
+            throws IOException {
+        this.conversionService = conversionService;
+        this.jsonMapper = jsonMapper;
+        this.dirs = Stream.of(dirs).filter(d -> !d.isBlank()).map(d -> Path.of(d.trim()).toAbsolutePath()).toList();
+        if (this.dirs.isEmpty()) {
+            throw new IllegalArgumentException("mathtype.watch.dirs must list at least one directory");
+        }
+        this.recursive = recursive;
+        this.suffix = suffix.toLowerCase(Locale.ROOT);
+        this.debounceNanos = Math.max(1, debounce.toNanos());
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxBatchDelayNanos = Math.max(0, maxBatchDelay.toNanos());
+        this.output = Output.valueOf(output.trim().toUpperCase(Locale.ROOT));
+        if (this.output == Output.STORE && !conversionService.storesResults()) {
+            // 否则转换结果不会写到任何地方，而记录仍把文件标为已转换
+            throw new IllegalArgumentException("mathtype.watch.output=store requires the result store "
+                    + "(mathtype.result-store.enabled and mathtype.persistence.enabled)");
+        }
+        this.ledger = new WatchLedger(stateFile,
+                WatchLedger.SkipBy.valueOf(skipBy.trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+    }
+
+    @Override
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path dir : dirs) {
+                Files.createDirectories(dir);
+                register(dir);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to watch " + dirs, e);
+        }
+        converter = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("mathtype-watch-convert").factory());
+        running = true;
+        watcher = Thread.ofPlatform().name("mathtype-watch").daemon().start(this::watchLoop);
+        log.info("Watching " + dirs + " for *" + suffix + " files (" + ledger.size() + " already converted)");
+    }
+
+    private void watchLoop() {
+        // 先补上停机期间放入的文件，已转换的由记录过滤
+        for (Path dir : dirs) {
+            scan(dir);
+        }
+        try {
+            while (running) {
+                WatchKey key = watchService.poll(pollTimeoutNanos(), TimeUnit.NANOSECONDS);
+                while (key != null) {
+                    handle(key);
+                    key = watchService.poll();
+                }
+                promoteSettled();
+                flushReady(false);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 停止
+        }
+    }
+
+    private void handle(WatchKey key) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                log.warning("Watch events overflowed in " + dir + ", rescanning");
+                scan(dir);
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                settling.remove(path);
+                ledger.remove(path);
+            } else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                // 新建的子目录：注册后扫描一次，注册之前已写入的文件不会再产生事件
+                if (recursive && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    scan(path);
+                }
+            } else if (matches(path)) {
+                settling.put(path, System.nanoTime());
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    /**
+     * 注册目录（递归时包括子目录）并把其中的文件加入等待队列
+     */
+    private void scan(Path dir) {
+        try {
+            register(dir);
+            try (Stream<Path> files = recursive ? Files.walk(dir) : Files.list(dir)) {
+                long now = System.nanoTime();
+                files.filter(this::matches)
+                        .filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                        .forEach(path -> settling.putIfAbsent(path, now - debounceNanos));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.log(Level.WARNING, "Failed to scan " + dir + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        if (!recursive) {
+            keys.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+            return;
+        }
+        try (Stream<Path> tree = Files.walk(dir)) {
+            for (Path sub : (Iterable<Path>) tree.filter(p -> Files.isDirectory(p, LinkOption.NOFOLLOW_LINKS))::iterator) {
+                keys.put(sub.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), sub);
+            }
+        }
+    }
+
+    private boolean matches(Path path) {
+        Path name = path.getFileName();
+        return name != null && name.toString().toLowerCase(Locale.ROOT).endsWith(suffix);
+    }
+
+    /**
+     * 超过 debounce 没有新事件的文件视为写完，移入待转换批次
+     */
+    private void promoteSettled() {
+        long now = System.nanoTime();
+        for (Iterator<Map.Entry<Path, Long>> it = settling.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, Long> entry = it.next();
+            if (now - entry.getValue() < debounceNanos) {
+                continue;
+            }
+            it.remove();
+            if (ready.isEmpty()) {
+                readySince = now;
+            }
+            ready.add(entry.getKey());
+            if (ready.size() >= maxBatchSize) {
+                flushReady(true);
+            }
+        }
+    }
+
+    private void flushReady(boolean full) {
+        if (ready.isEmpty()) {
+            return;
+        }
+        // 还有文件在等待 debounce 时，攒批最多等待 max-batch-delay
+        if (!full && !settling.isEmpty() && System.nanoTime() - readySince < maxBatchDelayNanos) {
+            return;
+        }
+        List<Path> batch = List.copyOf(ready);
+        ready.clear();
+        converter.execute(() -> convert(batch));
+    }
+
+    private long pollTimeoutNanos() {
+        if (settling.isEmpty()) {
+            return TimeUnit.SECONDS.toNanos(1);
+        }
+        long oldest = settling.values().stream().mapToLong(Long::longValue).min().orElseThrow();
+        return Math.max(TimeUnit.MILLISECONDS.toNanos(10), oldest + debounceNanos - System.nanoTime());
+    }
+
+    /**
+     * 在转换线程中执行：过滤已转换且未变化的文件，批量转换后写出结果并更新记录
+     */
+    private void convert(List<Path> batch) {
+        List<Path> files = new ArrayList<>(batch.size());
+        List<WatchLedger.Fingerprint> fingerprints = new ArrayList<>(batch.size());
+        for (Path file : batch) {
+            try {
+                WatchLedger.Fingerprint fingerprint = ledger.changed(file);
+                if (fingerprint != null) {
+                    files.add(file);
+                    fingerprints.add(fingerprint);
+                }
+            } catch (NoSuchFileException e) {
+                // 转换前已被移走
+            } catch (IOException e) {
+                log.warning("Skipping " + file + ": " + e.getMessage());
+            }
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+
+        List<Mtef2LatexDTO> results;
+        try {
+            results = conversionService.convertBatch(files);
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.WARNING, "Failed to convert " + files.size() + " watched files: " + e.getMessage(), e);
+            return;
+        }
+
+        int failures = 0;
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            Mtef2LatexDTO result = results.get(i);
+            boolean success = result.getCode() == Mtef2LatexDTO.SUCCESS_CODE;
+            if (!success) {
+                failures++;
+            }
+            try {
+                writeOutput(file, result, success);
+                if (success) {
+                    ledger.record(file, fingerprints.get(i));
+                }
+            } catch (IOException e) {
+                log.warning("Failed to write result for " + file + ": " + e.getMessage());
+            }
+        }
+        try {
+            ledger.flush();
+        } catch (IOException e) {
+            log.warning("Failed to save watch state: " + e.getMessage());
+        }
+        log.info("Converted " + files.size() + " watched files (" + failures + " failed)");
+    }
+
+    private void writeOutput(Path file, Mtef2LatexDTO result, boolean success) throws IOException {
+        switch (output) {
+            case TEX -> {
+                if (success) {
+                    writeAtomically(sibling(file, ".tex"), result.getResLatex().getBytes(StandardCharsets.UTF_8));
+                } else {
+                    log.warning("Failed to convert " + file + ": " + result.getResLatex());
+                }
+            }
+            case JSON -> {
+                Map<String, Object> json = new LinkedHashMap<>();
+                json.put("path", file.toString());
+                json.put("success", success);
+                json.put("code", result.getCode());
+                json.put("latex", result.getResLatex());
+                writeAtomically(sibling(file, ".json"), jsonMapper.writeValueAsBytes(json));
+            }
+            case STORE -> {
+                // 结果已由 convertBatch 写入结果存储
+            }
+        }
+    }
+
+    private Path sibling(Path file, String extension) {
+        return sibling(file, suffix, extension);
+    }
+
+    /**
+     * 把文件名末尾的 suffix（不区分大小写）换成 extension
+     */
+    static Path sibling(Path file, String suffix, String extension) {
+        String name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.length() - suffix.length()) + extension);
+    }
+
+    /**
+     * 先写临时文件再原子改名，读取方不会看到写了一半的结果
+     */
+    private static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, content);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (watcher != null) {
+            watcher.interrupt();
+        }
+        try {
+            if (watchService != null) {
+                watchService.close();
+            }
+        } catch (IOException e) {
+            log.warning("Failed to close watch service: " + e.getMessage());
+        }
+        if (converter != null) {
+            converter.shutdown();
+            try {
+                if (!converter.awaitTermination(30, TimeUnit.SECONDS)) {
+                    converter.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                converter.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
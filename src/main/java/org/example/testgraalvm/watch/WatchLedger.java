@@ -0,0 +1,135 @@
+package org.example.testgraalvm.watch;
+
+import org.example.testgraalvm.service.ConversionResultStore;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 监听目录中已转换文件的记录：绝对路径 -> 转换时的大小、修改时间（以及按哈希判断时的内容哈希）
+ * <p>
+ * 保存在一个 properties 文件中（先写临时文件再原子替换），重启后不会重复转换未变化的文件。
+ * 只记录转换成功的文件，失败的文件在下次修改或重启扫描时重试。
+ */
+final class WatchLedger {
+
+    /**
+     * 判断文件是否已转换的方式
+     */
+    enum SkipBy {
+        /** 大小和修改时间都未变化即跳过 */
+        MTIME_SIZE,
+        /** 大小或修改时间变化时再比较内容哈希，内容相同也跳过（例如被原样复制覆盖） */
+        HASH
+    }
+
+    /**
+     * @param hash 内容 SHA-256，MTIME_SIZE 模式下为 null
+     */
+    record Fingerprint(long size, long modifiedMillis, String hash) {
+
+        static Fingerprint parse(String value) {
+            String[] parts = value.split(":", 3);
+            return new Fingerprint(Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                    parts.length > 2 && !parts[2].isEmpty() ? parts[2] : null);
+        }
+
+        String format() {
+            return size + ":" + modifiedMillis + ":" + (hash == null ? "" : hash);
+        }
+
+        boolean sameAttributes(BasicFileAttributes attributes) {
+            return size == attributes.size() && modifiedMillis == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    private final Path stateFile;
+    private final SkipBy skipBy;
+    private final Map<String, Fingerprint> entries = new ConcurrentHashMap<>();
+
+    WatchLedger(Path stateFile, SkipBy skipBy) throws IOException {
+        this.stateFile = stateFile;
+        this.skipBy = skipBy;
+        if (Files.exists(stateFile)) {
+            Properties props = new Properties();
+            try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+                props.load(reader);
+            }
+            for (String key : props.stringPropertyNames()) {
+                entries.put(key, Fingerprint.parse(props.getProperty(key)));
+            }
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * 计算文件当前的指纹；文件与记录一致（已转换且未变化）时返回 null
+     */
+    Fingerprint changed(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Fingerprint recorded = entries.get(key(file));
+        if (recorded != null && recorded.sameAttributes(attributes)) {
+            return null;
+        }
+        long size = attributes.size();
+        long modified = attributes.lastModifiedTime().toMillis();
+        if (skipBy == SkipBy.MTIME_SIZE) {
+            return new Fingerprint(size, modified, null);
+        }
+        String hash = ConversionResultStore.sha256Hex(file);
+        Fingerprint current = new Fingerprint(size, modified, hash);
+        if (recorded != null && hash.equals(recorded.hash())) {
+            // 内容未变，只更新属性，下次不必再算哈希
+            entries.put(key(file), current);
+            return null;
+        }
+        return current;
+    }
+
+    void record(Path file, Fingerprint fingerprint) {
+        entries.put(key(file), fingerprint);
+    }
+
+    void remove(Path file) {
+        entries.remove(key(file));
+    }
+
+    /**
+     * 把当前记录原子地写回状态文件
+     */
+    synchronized void flush() throws IOException {
+        Properties props = new Properties();
+        entries.forEach((path, fingerprint) -> props.setProperty(path, fingerprint.format()));
+        StringWriter text = new StringWriter();
+        props.store(text, null);
+        Path parent = stateFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(StandardCharsets.UTF_8.encode(text.toString()));
+            out.force(true);
+        }
+        Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+}
@@ -166,6 +166,206 @@ function resetProgress() {
     showMessage('info', '🔄 进度已重置');
 }
 
+// ==================== 公式转换模块 ====================
+// 文件先在 Worker 中计算 SHA-256：本页面已转换过的内容直接显示缓存结果，同一次选择中的重复文件只上传一份。
+// 其余文件边哈希边分块，最多 MAX_PARALLEL_UPLOADS 个块同时上传到 convert-batch，每个块返回后立即显示结果。
+// 第一块只含几个文件，服务端按交互请求优先调度（mathtype.scheduler.interactive-max-files），首批结果最快出现。
+const FIRST_CHUNK_SIZE = 4;
+const CHUNK_SIZE = 25;
+const MAX_PARALLEL_UPLOADS = 4;
+const MAX_RETRIES = 5;
+
+// 内容哈希 -> 转换结果 { success, latex }
+const conversionCache = new Map();
+let conversionRun = null;
+
+function clearConversionCache() {
+    conversionCache.clear();
+    showMessage('info', '🔄 转换缓存已清空');
+}
+
+function startConversion(fileList) {
+    if (conversionRun) {
+        conversionRun.worker.terminate();
+    }
+    // 服务端只转换非空的 .bin 文件；先在这里过滤，保证结果与上传的文件一一对应
+    const files = Array.from(fileList).filter(f => f.size > 0 && f.name.toLowerCase().endsWith('.bin'));
+    const skipped = fileList.length - files.length;
+    const list = document.getElementById('convertResults');
+    list.replaceChildren();
+    if (files.length === 0) {
+        updateConversionProgress(0, 0);
+        showMessage('warning', '⚠️ 没有可转换的 .bin 文件');
+        return;
+    }
+
+    const fragment = document.createDocumentFragment();
+    const rows = files.map(file => {
+        const row = document.createElement('li');
+        const name = document.createElement('span');
+        name.className = 'file-name';
+        name.textContent = file.name;
+        name.title = file.name;
+        const latex = document.createElement('span');
+        latex.className = 'latex';
+        latex.textContent = '…';
+        row.append(name, latex);
+        fragment.appendChild(row);
+        return row;
+    });
+    list.appendChild(fragment);
+
+    const run = {
+        files,
+        rows,
+        worker: new Worker('hash-worker.js'),
+        // 哈希 -> 等待该结果的文件下标（同一内容只上传第一份）
+        waiting: new Map(),
+        // 哈希 -> 本次已返回的结果（含失败），结果返回后才算完哈希的重复文件直接使用
+        settled: new Map(),
+        pending: [],
+        chunks: [],
+        uploading: 0,
+        hashed: 0,
+        done: 0,
+        cached: 0,
+        uploaded: 0,
+        startedAt: performance.now()
+    };
+    conversionRun = run;
+    updateConversionProgress(0, files.length);
+    document.getElementById('convertSummary').textContent =
+        skipped > 0 ? `已跳过 ${skipped} 个非 .bin 或空文件` : '计算文件哈希…';
+
+    run.worker.onmessage = (event) => onFileHashed(run, event.data.index, event.data.hash);
+    run.worker.onerror = () => {
+        // Worker 不可用时不去重，全部上传
+        for (let i = run.hashed; i < files.length; i++) {
+            onFileHashed(run, i, null);
+        }
+    };
+    run.worker.postMessage({ files });
+}
+
+function onFileHashed(run, index, hash) {
+    if (run !== conversionRun) {
+        return;
+    }
+    run.hashed++;
+    const cached = hash && conversionCache.get(hash);
+    if (cached) {
+        run.cached++;
+        renderConversion(run, index, cached, true);
+    } else if (hash && run.settled.has(hash)) {
+        renderConversion(run, index, run.settled.get(hash), false);
+    } else if (hash && run.waiting.has(hash)) {
+        run.waiting.get(hash).push(index);
+    } else {
+        if (hash) {
+            run.waiting.set(hash, [index]);
+        }
+        run.pending.push({ index, hash });
+    }
+
+    const chunkSize = run.uploaded === 0 && run.chunks.length === 0 ? FIRST_CHUNK_SIZE : CHUNK_SIZE;
+    const allHashed = run.hashed === run.files.length;
+    if (run.pending.length >= chunkSize || (allHashed && run.pending.length > 0)) {
+        run.chunks.push(run.pending);
+        run.pending = [];
+    }
+    pumpUploads(run);
+}
+
+function pumpUploads(run) {
+    while (run.uploading < MAX_PARALLEL_UPLOADS && run.chunks.length > 0) {
+        const chunk = run.chunks.shift();
+        run.uploading++;
+        run.uploaded += chunk.length;
+        uploadChunk(run, chunk).finally(() => {
+            run.uploading--;
+            pumpUploads(run);
+        });
+    }
+}
+
+async function uploadChunk(run, chunk) {
+    let results;
+    try {
+        results = await postChunk(run, chunk);
+    } catch (e) {
+        results = chunk.map(() => ({ success: false, latex: '上传失败: ' + e.message }));
+    }
+    if (run !== conversionRun) {
+        return;
+    }
+    chunk.forEach((entry, i) => {
+        const result = results[i] || { success: false, latex: '服务端未返回该文件的结果' };
+        if (entry.hash && result.success) {
+            conversionCache.set(entry.hash, result);
+        }
+        if (!entry.hash) {
+            renderConversion(run, entry.index, result, false);
+            return;
+        }
+        const indexes = run.waiting.get(entry.hash);
+        run.waiting.delete(entry.hash);
+        run.settled.set(entry.hash, result);
+        indexes.forEach(index => renderConversion(run, index, result, false));
+    });
+}
+
+/**
+ * 上传一个块；服务繁忙（429）时按 Retry-After 等待后重试
+ */
+async function postChunk(run, chunk) {
+    for (let attempt = 0; ; attempt++) {
+        const form = new FormData();
+        chunk.forEach(entry => form.append('files', run.files[entry.index]));
+        const response = await fetch('/api/mathtype/convert-batch', { method: 'POST', body: form });
+        if (response.status === 429 && attempt < MAX_RETRIES && run === conversionRun) {
+            const seconds = Number(response.headers.get('Retry-After')) || 1;
+            await new Promise(resolve => setTimeout(resolve, seconds * 1000));
+            continue;
+        }
+        const body = await response.json();
+        if (!response.ok || !body.success) {
+            return chunk.map(() => ({ success: false, latex: body.message || 'HTTP ' + response.status }));
+        }
+        return body.results.map(r => ({ success: r.success, latex: r.latex }));
+    }
+}
+
+function renderConversion(run, index, result, cached) {
+    const row = run.rows[index];
+    row.className = result.success ? (cached ? 'cached' : 'success') : 'error';
+    row.lastChild.textContent = result.latex;
+    run.done++;
+    updateConversionProgress(run.done, run.files.length);
+    if (run.done === run.files.length) {
+        const millis = Math.round(performance.now() - run.startedAt);
+        const failed = run.rows.filter(r => r.className === 'error').length;
+        document.getElementById('convertSummary').textContent =
+            `${run.files.length} 个文件，上传 ${run.uploaded} 个，缓存命中 ${run.cached} 个，失败 ${failed} 个，用时 ${millis} ms`;
+        run.worker.terminate();
+        showMessage(failed > 0 ? 'warning' : 'success',
+            failed > 0 ? `⚠️ 转换完成，${failed} 个文件失败` : `✅ 转换完成：${run.files.length} 个文件`);
+    }
+}
+
+function updateConversionProgress(done, total) {
+    document.getElementById('convertProgressFill').style.width = (total === 0 ? 0 : done * 100 / total) + '%';
+    document.getElementById('convertProgressText').textContent = `${done} / ${total}`;
+}
+
+document.addEventListener('DOMContentLoaded', () => {
+    const input = document.getElementById('mathtypeFiles');
+    input.addEventListener('change', () => {
+        startConversion(input.files);
+        // 允许再次选择同一批文件（命中缓存）
+        input.value = '';
+    });
+});
+
 // ==================== 额外功能：键盘快捷键 ====================
 document.addEventListener('keydown', (e) => {
     switch(e.key) {
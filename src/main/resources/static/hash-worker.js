@@ -0,0 +1,20 @@
+/**
+ * 公式文件哈希 Worker
+ * 按顺序计算每个文件内容的 SHA-256，算完一个就回传一个，主线程可以边哈希边上传
+ * 非安全上下文（非 HTTPS、非 localhost）没有 crypto.subtle，此时回传 null，该文件不参与去重
+ */
+self.onmessage = async (event) => {
+    const files = event.data.files;
+    for (let index = 0; index < files.length; index++) {
+        let hash = null;
+        if (self.crypto && self.crypto.subtle) {
+            try {
+                const digest = await self.crypto.subtle.digest('SHA-256', await files[index].arrayBuffer());
+                hash = Array.from(new Uint8Array(digest), b => b.toString(16).padStart(2, '0')).join('');
+            } catch (e) {
+                // 读取失败的文件照常上传，由服务端给出结果
+            }
+        }
+        self.postMessage({ index, hash });
+    }
+};
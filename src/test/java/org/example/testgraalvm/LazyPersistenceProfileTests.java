@@ -0,0 +1,61 @@
+package org.example.testgraalvm;
+
+import org.example.testgraalvm.mtef.EquationNativeValidator;
+import org.example.testgraalvm.mtef.MtefFastPath;
+import org.example.testgraalvm.panama.ConcurrencyLimiter;
+import org.example.testgraalvm.panama.ConversionDispatcher;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The lazy-persistence profile initializes beans on first use; settings that
+ * nothing injects must still reach the static conversion entry points.
+ */
+@SpringBootTest(properties = {
+        "mathtype.dispatch.strategy=convert",
+        "mathtype.dispatch.parallelism=3",
+        "mathtype.limiter.max-limit=7",
+        "mathtype.fast-path.enabled=true",
+        "mathtype.validation.max-file-bytes=1024"
+})
+@ActiveProfiles("lazy-persistence")
+class LazyPersistenceProfileTests {
+
+    @AfterAll
+    static void restoreDefaults() {
+        // 这些配置是静态的，同一 JVM 中缓存的其他测试上下文不会重新应用
+        MathTypeToLatexUtil.configureDispatcher(ConversionDispatcher.Settings.defaults());
+        MathTypeToLatexUtil.configureLimiter(ConcurrencyLimiter.Settings.defaults());
+        MtefFastPath.configure(MtefFastPath.Settings.defaults());
+        EquationNativeValidator.configure(EquationNativeValidator.Settings.defaults());
+    }
+
+    @Test
+    void appliesDispatchSettingsAtStartup() {
+        ConversionDispatcher.Settings settings = MathTypeToLatexUtil.dispatcherSnapshot().settings();
+        assertEquals(ConversionDispatcher.Strategy.CONVERT, settings.strategy());
+        assertEquals(3, settings.parallelism());
+    }
+
+    @Test
+    void installsTheConcurrencyLimiterAtStartup() {
+        assertNotNull(MathTypeToLatexUtil.limiter());
+        assertEquals(7, MathTypeToLatexUtil.limiter().snapshot().settings().maxLimit());
+    }
+
+    @Test
+    void configuresTheFastPathAtStartup() {
+        assertTrue(MtefFastPath.enabled());
+    }
+
+    @Test
+    void configuresTheUploadPrecheckAtStartup() {
+        assertTrue(EquationNativeValidator.appliesTo(1024));
+        assertFalse(EquationNativeValidator.appliesTo(1025));
+    }
+}
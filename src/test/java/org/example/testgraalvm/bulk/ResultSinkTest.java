@@ -0,0 +1,130 @@
+package org.example.testgraalvm.bulk;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Resume and restart behaviour of the bulk result sinks.
+ */
+class ResultSinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void ndjsonResumeDropsLinesWrittenAfterTheCheckpoint() throws IOException {
+        Path output = tempDir.resolve("out.ndjson");
+        try (NdjsonResultSink sink = new NdjsonResultSink(output, false)) {
+            assertEquals(ResultSink.Checkpoint.EMPTY, sink.checkpoint());
+            commit(sink, "a.bin", new ResultSink.Checkpoint("a.bin", 1, 0));
+        }
+        // 崩溃前写了一半的一行
+        Files.writeString(output, "{\"path\":\"b.bin\",\"succ", StandardOpenOption.APPEND);
+
+        try (NdjsonResultSink sink = new NdjsonResultSink(output, false)) {
+            assertEquals(new ResultSink.Checkpoint("a.bin", 1, 0), sink.checkpoint());
+            commit(sink, "b.bin", new ResultSink.Checkpoint("b.bin", 2, 0));
+        }
+        List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"path\":\"a.bin\""), lines.get(0));
+        assertTrue(lines.get(1).startsWith("{\"path\":\"b.bin\""), lines.get(1));
+    }
+
+    @Test
+    void ndjsonRestartDeletesTheCheckpoint() throws IOException {
+        Path output = tempDir.resolve("out.ndjson");
+        try (NdjsonResultSink sink = new NdjsonResultSink(output, false)) {
+            commit(sink, "a.bin", new ResultSink.Checkpoint("a.bin", 1, 0));
+        }
+
+        // 重新开始后尚未提交就退出：再次续跑必须从头开始，而不是沿用旧断点
+        try (NdjsonResultSink sink = new NdjsonResultSink(output, true)) {
+            assertEquals(ResultSink.Checkpoint.EMPTY, sink.checkpoint());
+        }
+        assertFalse(Files.exists(tempDir.resolve("out.ndjson.checkpoint")));
+        try (NdjsonResultSink sink = new NdjsonResultSink(output, false)) {
+            assertEquals(ResultSink.Checkpoint.EMPTY, sink.checkpoint());
+        }
+        assertEquals(0, Files.size(output));
+    }
+
+    @Test
+    void ndjsonRefusesOutputWithoutCheckpoint() throws IOException {
+        Path output = tempDir.resolve("out.ndjson");
+        Files.writeString(output, "{}\n");
+
+        IOException e = assertThrows(IOException.class, () -> new NdjsonResultSink(output, false));
+        assertTrue(e.getMessage().contains("--restart"), e.getMessage());
+    }
+
+    @Test
+    void ndjsonRefusesACheckpointPastTheEndOfTheOutput() throws IOException {
+        Path output = tempDir.resolve("out.ndjson");
+        try (NdjsonResultSink sink = new NdjsonResultSink(output, false)) {
+            commit(sink, "a.bin", new ResultSink.Checkpoint("a.bin", 1, 0));
+        }
+        Files.writeString(output, "");
+
+        assertThrows(IOException.class, () -> new NdjsonResultSink(output, false));
+    }
+
+    @Test
+    void sqliteResumesFromTheCommittedCheckpoint() throws IOException, SQLException {
+        Path output = tempDir.resolve("out.db");
+        try (SqliteResultSink sink = new SqliteResultSink(output, false)) {
+            assertEquals(ResultSink.Checkpoint.EMPTY, sink.checkpoint());
+            commit(sink, "a.bin", new ResultSink.Checkpoint("a.bin", 1, 0));
+        }
+
+        try (SqliteResultSink sink = new SqliteResultSink(output, false)) {
+            assertEquals(new ResultSink.Checkpoint("a.bin", 1, 0), sink.checkpoint());
+            commit(sink, "b.bin", new ResultSink.Checkpoint("b.bin", 2, 0));
+        }
+        assertEquals(2, countResults(output));
+    }
+
+    @Test
+    void sqliteRestartClearsResultsAndCheckpoint() throws IOException, SQLException {
+        Path output = tempDir.resolve("out.db");
+        try (SqliteResultSink sink = new SqliteResultSink(output, false)) {
+            commit(sink, "a.bin", new ResultSink.Checkpoint("a.bin", 1, 0));
+        }
+
+        try (SqliteResultSink sink = new SqliteResultSink(output, true)) {
+            assertEquals(ResultSink.Checkpoint.EMPTY, sink.checkpoint());
+        }
+        try (SqliteResultSink sink = new SqliteResultSink(output, false)) {
+            assertEquals(ResultSink.Checkpoint.EMPTY, sink.checkpoint());
+        }
+        assertEquals(0, countResults(output));
+    }
+
+    private static void commit(ResultSink sink, String path, ResultSink.Checkpoint next) throws IOException {
+        sink.commit(List.of(path), List.of(Mtef2LatexDTO.success("x")), next);
+    }
+
+    private static int countResults(Path db) throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + db.toAbsolutePath());
+             Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM bulk_result")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
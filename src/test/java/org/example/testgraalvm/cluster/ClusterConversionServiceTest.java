@@ -0,0 +1,185 @@
+package org.example.testgraalvm.cluster;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cluster conversion against the in-process queue stand-in.
+ */
+class ClusterConversionServiceTest {
+
+    private final InMemoryTaskQueue queue = new InMemoryTaskQueue();
+    private final List<ClusterConversionService> nodes = new ArrayList<>();
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(ClusterConversionService::stop);
+    }
+
+    @Test
+    void aggregatesChunksConvertedOnAnotherNode() throws Exception {
+        ClusterConversionService origin = startNode("origin", 0, Duration.ofSeconds(60));
+        startNode("worker", 2, Duration.ofSeconds(60));
+
+        List<Path> files = writeFiles(5);
+        List<Mtef2LatexDTO> results = origin.convertBatch(files);
+
+        assertEquals(5, results.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(Mtef2LatexDTO.SUCCESS_CODE, results.get(i).getCode());
+            assertEquals("x_" + i, results.get(i).getResLatex());
+        }
+        assertNoPendingTasks();
+    }
+
+    @Test
+    void reclaimsTasksOfCrashedConsumer() throws Exception {
+        ClusterConversionService origin = startNode("origin", 0, Duration.ofSeconds(60));
+        List<Path> files = writeFiles(1);
+        CompletableFuture<List<Mtef2LatexDTO>> future = CompletableFuture.supplyAsync(() -> {
+            try {
+                return origin.convertBatch(files);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // 模拟领取任务后崩溃、从未确认的节点
+        assertEquals(1, queue.readTasks("crashed", 1, Duration.ofSeconds(5)).size());
+        assertEquals(1, queue.pendingCount());
+
+        startNode("rescuer", 1, Duration.ofMillis(100));
+
+        List<Mtef2LatexDTO> results = future.get(10, TimeUnit.SECONDS);
+        assertEquals("x_0", results.get(0).getResLatex());
+        assertNoPendingTasks();
+    }
+
+    @Test
+    void reclaimPagesThroughThePendingList() throws Exception {
+        ClusterConversionService origin = startNode("origin", 0, Duration.ofSeconds(60));
+        List<Path> files = writeFiles(250);
+        CompletableFuture<List<Mtef2LatexDTO>> future = convertAsync(origin, files);
+
+        // 125 个块全部被崩溃的节点领取，超过一页
+        List<ConversionTaskQueue.Delivery> taken = new ArrayList<>();
+        while (taken.size() < 125) {
+            taken.addAll(queue.readTasks("crashed", 125, Duration.ofSeconds(5)));
+        }
+
+        startNode("rescuer", 0, Duration.ZERO).reclaimStale();
+
+        List<Mtef2LatexDTO> results = future.get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < 250; i++) {
+            assertEquals("x_" + i, results.get(i).getResLatex());
+        }
+        assertNoPendingTasks();
+    }
+
+    @Test
+    void claimStaleReturnsPagesWithTheDeliveryCount() {
+        for (int i = 0; i < 25; i++) {
+            queue.publishTask(Map.of("n", Integer.toString(i)));
+        }
+        assertEquals(25, queue.readTasks("crashed", 25, Duration.ZERO).size());
+
+        List<ConversionTaskQueue.Delivery> claimed = new ArrayList<>();
+        String from = null;
+        int pages = 0;
+        do {
+            ConversionTaskQueue.StalePage page = queue.claimStale("rescuer", Duration.ZERO, from, 10);
+            claimed.addAll(page.claimed());
+            from = page.next();
+            pages++;
+        } while (from != null);
+
+        assertEquals(3, pages);
+        assertEquals(25, claimed.size());
+        assertEquals(25, claimed.stream().map(ConversionTaskQueue.Delivery::id).distinct().count());
+        assertTrue(claimed.stream().allMatch(d -> d.deliveryCount() == 2));
+    }
+
+    @Test
+    void failsTasksThatExceedMaxDeliveries() throws Exception {
+        ClusterConversionService origin = startNode("origin", 0, Duration.ofSeconds(60));
+        CompletableFuture<List<Mtef2LatexDTO>> future = convertAsync(origin, writeFiles(1));
+
+        // 任务两次都让领取它的节点崩溃
+        assertEquals(1, queue.readTasks("crashed-1", 1, Duration.ofSeconds(5)).size());
+        assertEquals(1, queue.claimStale("crashed-2", Duration.ZERO, null, 10).claimed().size());
+
+        ClusterConversionService rescuer = new ClusterConversionService(queue, binFiles -> {
+            throw new AssertionError("dead-lettered task converted");
+        }, "rescuer", "results:", 0, 2, 1, Duration.ofSeconds(10), Duration.ZERO, 2);
+        rescuer.start();
+        nodes.add(rescuer);
+        rescuer.reclaimStale();
+
+        List<Mtef2LatexDTO> results = future.get(10, TimeUnit.SECONDS);
+        assertEquals(1, results.size());
+        assertNotEquals(Mtef2LatexDTO.SUCCESS_CODE, results.get(0).getCode());
+        assertEquals("转换失败: 任务多次投递均未完成", results.get(0).getResLatex());
+        assertNoPendingTasks();
+    }
+
+    private static CompletableFuture<List<Mtef2LatexDTO>> convertAsync(ClusterConversionService node,
+                                                                       List<Path> files) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return node.convertBatch(files);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    // 结果先于确认写出，确认稍后才到达
+    private void assertNoPendingTasks() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.pendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, queue.pendingCount());
+    }
+
+    private ClusterConversionService startNode(String nodeId, int workers, Duration reclaimIdle) {
+        ClusterConversionService node = new ClusterConversionService(queue, ClusterConversionServiceTest::fakeConvert,
+                nodeId, "results:", workers, 2, 1, Duration.ofSeconds(10), reclaimIdle, 3);
+        node.start();
+        nodes.add(node);
+        return node;
+    }
+
+    private List<Path> writeFiles(int count) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.add(Files.writeString(tempDir.resolve(i + ".bin"), "x_" + i));
+        }
+        return files;
+    }
+
+    private static List<Mtef2LatexDTO> fakeConvert(List<Path> binFiles) throws IOException {
+        List<Mtef2LatexDTO> results = new ArrayList<>();
+        for (Path binFile : binFiles) {
+            results.add(Mtef2LatexDTO.success(Files.readString(binFile)));
+        }
+        return results;
+    }
+}
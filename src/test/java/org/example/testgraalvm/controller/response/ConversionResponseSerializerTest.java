@@ -0,0 +1,185 @@
+package org.example.testgraalvm.controller.response;
+
+import org.example.testgraalvm.ingest.DocumentIngestor;
+import org.example.testgraalvm.mtef.MtefFastPath;
+import org.example.testgraalvm.panama.ConcurrencyLimiter;
+import org.example.testgraalvm.panama.ConversionDispatcher;
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.example.testgraalvm.panama.NativeMemoryStats;
+import org.example.testgraalvm.scheduler.FairConversionScheduler;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+import tools.jackson.dataformat.cbor.CBORMapper;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The hand-written serializers must produce the same documents as the maps
+ * the controller used to build: same field names, values and nesting, in
+ * JSON and in CBOR.
+ */
+class ConversionResponseSerializerTest {
+
+    private final JsonMapper json = JsonMapper.builder()
+            .addModule(ConversionResponseSerializer.module())
+            .addModule(AdminSnapshotSerializers.module())
+            .build();
+    private final CBORMapper cbor = CBORMapper.builder()
+            .addModule(ConversionResponseSerializer.module())
+            .addModule(AdminSnapshotSerializers.module())
+            .build();
+
+    @Test
+    void error() {
+        assertShape(map("success", false, "message", "请上传文件"), ConversionResponse.error("请上传文件"));
+    }
+
+    @Test
+    void single() {
+        assertShape(map("success", true, "code", 200, "latex", "x^2", "filename", "a.bin"),
+                new ConversionResponse.Single("a.bin", Mtef2LatexDTO.success("x^2")));
+        assertShape(map("success", false, "code", 500, "latex", "bad", "filename", "b.bin"),
+                new ConversionResponse.Single("b.bin", Mtef2LatexDTO.error("bad")));
+    }
+
+    @Test
+    void batch() {
+        assertShape(map("success", true, "total", 2, "results", List.of(
+                        map("filename", "a.bin", "success", true, "code", 200, "latex", "x^2"),
+                        map("filename", "b.bin", "success", false, "code", 500, "latex", "bad"))),
+                new ConversionResponse.Batch(List.of("a.bin", "b.bin"),
+                        List.of(Mtef2LatexDTO.success("x^2"), Mtef2LatexDTO.error("bad"))));
+        assertShape(map("success", true, "total", 0, "results", List.of()),
+                new ConversionResponse.Batch(List.of(), List.of()));
+    }
+
+    @Test
+    void item() {
+        assertShape(map("index", 3, "filename", "a.bin", "success", true, "code", 200, "latex", "x^2"),
+                new ConversionResponse.Item(3, "a.bin", Mtef2LatexDTO.success("x^2")));
+    }
+
+    @Test
+    void document() {
+        DocumentIngestor.Relationship body = new DocumentIngestor.Relationship("word/document.xml", "rId7");
+        DocumentIngestor.Relationship header = new DocumentIngestor.Relationship("word/header1.xml", "rId2");
+        DocumentIngestor.Ingested ingested = new DocumentIngestor.Ingested(
+                List.of("word/embeddings/oleObject1.bin", "word/embeddings/oleObject2.bin"),
+                Map.of("word/embeddings/oleObject1.bin", List.of(header, body)));
+        assertShape(map("success", true, "total", 2, "results", List.of(
+                        map("entry", "word/embeddings/oleObject1.bin", "relationshipId", "rId7",
+                                "relationships", List.of(header, body),
+                                "success", true, "code", 200, "latex", "x^2"),
+                        map("entry", "word/embeddings/oleObject2.bin", "relationshipId", null,
+                                "relationships", List.of(),
+                                "success", false, "code", 500, "latex", "bad"))),
+                new ConversionResponse.Document(ingested,
+                        List.of(Mtef2LatexDTO.success("x^2"), Mtef2LatexDTO.error("bad"))));
+    }
+
+    @Test
+    void status() {
+        assertShape(map("available", false, "message", "MathType 转换库未加载"),
+                new ConversionResponse.Status(false, "MathType 转换库未加载"));
+    }
+
+    @Test
+    void dispatchSnapshot() {
+        Map<ConversionDispatcher.Strategy, Long> decisions = new EnumMap<>(ConversionDispatcher.Strategy.class);
+        decisions.put(ConversionDispatcher.Strategy.CONVERT, 4L);
+        decisions.put(ConversionDispatcher.Strategy.LIST, 9L);
+        ConversionDispatcher.Snapshot snapshot = new ConversionDispatcher.Snapshot(
+                new ConversionDispatcher.Settings(null, 0, 64, 4, 2, 0.05, 0.2), decisions, 3,
+                List.of(new ConversionDispatcher.Stat(ConversionDispatcher.Strategy.LIST, "9-32", "<4k", 12, 85.26)));
+        assertShape(map("strategy", "auto", "subBatchSize", 0, "maxSubBatchSize", 64, "parallelism", 4,
+                        "convertMaxBatch", 2, "exploreRate", 0.05, "alpha", 0.2,
+                        "decisions", map("CONVERT", 4, "LIST", 9), "splits", 3,
+                        "costs", List.of(map("strategy", "LIST", "batchSize", "9-32", "fileSize", "<4k",
+                                "samples", 12, "microsPerItem", 85.3))),
+                snapshot);
+        assertEquals("ASYNC", tree(new ConversionDispatcher.Snapshot(
+                new ConversionDispatcher.Settings(ConversionDispatcher.Strategy.ASYNC, 8, 64, 4, 2, 0.05, 0.2),
+                Map.of(), 0, List.of())).get("strategy").asString());
+    }
+
+    @Test
+    void libraryStatus() {
+        Map<Long, Long> draining = new LinkedHashMap<>();
+        draining.put(1L, 2L);
+        draining.put(2L, 0L);
+        assertShape(map("epoch", 3, "source", "/opt/lib.so", "inFlight", 5, "draining", List.of(
+                        map("epoch", 1, "inFlight", 2), map("epoch", 2, "inFlight", 0))),
+                new MathTypeToLatexUtil.LibraryStatus(3, "/opt/lib.so", 5, draining));
+    }
+
+    @Test
+    void schedulerSnapshot() {
+        assertShape(map("workers", 4, "busy", 1, "chunkSize", 16, "quantum", 8, "interactiveMaxFiles", 2,
+                        "tenants", List.of(map("tenant", "a", "weight", 3, "queuedTasks", 2, "queuedFiles", 20,
+                                "oldestWaitMillis", 15, "servedTasks", 40, "servedFiles", 400,
+                                "avgWaitMillis", 1.3, "maxWaitMillis", 9.0))),
+                new FairConversionScheduler.Snapshot(4, 1, 16, 8, 2, List.of(
+                        new FairConversionScheduler.TenantStats("a", 3, 2, 20, 15, 40, 400, 1.25, 9.04))));
+    }
+
+    @Test
+    void limiterSnapshot() {
+        assertShape(map("limit", 12.3, "minLimit", 2, "maxLimit", 64, "inFlight", 7, "waitingItems", 30,
+                        "latencyMicros", 410.5, "baselineMicros", 250.0, "samples", 1000, "rejected", 6),
+                new ConcurrencyLimiter.Snapshot(new ConcurrencyLimiter.Settings(8, 2, 64, 1.5, 0.2, 20, 100),
+                        12.34, 7, 30, 410.46, 250.01, 1000, 6));
+    }
+
+    @Test
+    void fastPathSnapshot() {
+        Map<String, Long> fallbacks = new LinkedHashMap<>();
+        fallbacks.put("mtef:record-9", 3L);
+        fallbacks.put("ole:chain", 1L);
+        assertShape(map("enabled", true, "attempts", 8, "hits", 5, "hitRate", 0.625, "avgMicros", 12.5,
+                        "fallbacks", map("mtef:record-9", 3, "ole:chain", 1)),
+                new MtefFastPath.Snapshot(new MtefFastPath.Settings(true, 65536), 8, 5, 100_000, fallbacks));
+        assertShape(map("enabled", false, "attempts", 0, "hits", 0, "hitRate", 0.0, "avgMicros", 0.0,
+                        "fallbacks", map()),
+                new MtefFastPath.Snapshot(new MtefFastPath.Settings(false, 65536), 0, 0, 0, Map.of()));
+    }
+
+    @Test
+    void nativeMemorySnapshot() {
+        Map<String, Object> expected = map(
+                "cStringsReceived", 10, "cStringsFreed", 9, "cStringsFreeFailed", 1, "cStringsOutstanding", 1,
+                "resultBytesReceived", 4096, "resultBytesFreed", 4000, "resultBytesOutstanding", 96,
+                "argumentBytesAllocated", 512, "argumentBytesFreed", 512, "argumentBytesOutstanding", 0,
+                "upcallStubsCreated", 2, "upcallStubsFreed", 2, "librariesLoaded", 2, "librariesClosed", 1,
+                "rssBytes", 123_456_789_012L, "nmtCommittedBytes", -1);
+        assertShape(expected,
+                new NativeMemoryStats.Snapshot(10, 9, 1, 4096, 4000, 512, 512, 2, 2, 2, 1, 123_456_789_012L, -1));
+    }
+
+    /**
+     * 按 JSON 和 CBOR 分别写出再读回，与同样写出的 Map 比较
+     */
+    private void assertShape(Map<String, Object> expected, Object value) {
+        JsonNode expectedTree = json.readTree(json.writeValueAsString(expected));
+        assertEquals(expectedTree, tree(value));
+        assertEquals(expectedTree, cbor.readTree(cbor.writeValueAsBytes(value)));
+    }
+
+    private JsonNode tree(Object value) {
+        return json.readTree(json.writeValueAsString(value));
+    }
+
+    private static Map<String, Object> map(Object... keyValues) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return map;
+    }
+}
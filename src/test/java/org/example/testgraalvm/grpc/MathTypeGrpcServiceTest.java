@@ -0,0 +1,199 @@
+package org.example.testgraalvm.grpc;
+
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.example.testgraalvm.cluster.ClusterConversionService;
+import org.example.testgraalvm.grpc.proto.ConvertRequest;
+import org.example.testgraalvm.grpc.proto.ConvertResult;
+import org.example.testgraalvm.grpc.proto.MathTypeConversionGrpc;
+import org.example.testgraalvm.mtef.EquationNativeValidator;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.example.testgraalvm.scheduler.FairConversionScheduler;
+import org.example.testgraalvm.service.ConversionResultStore;
+import org.example.testgraalvm.service.MathTypeConversionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ConvertStream flow control, deadline and queue-overflow paths over a real
+ * Netty transport, with the native conversion replaced by a gated fake.
+ */
+class MathTypeGrpcServiceTest {
+
+    private final GatedConversion conversion = new GatedConversion();
+    private MathTypeGrpcService service;
+    private Server server;
+    private ManagedChannel channel;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        conversion.gate.release(1000);
+        if (channel != null) {
+            channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        if (server != null) {
+            server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        }
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void readsAtMostMaxInFlightRequestsUntilResultsAreSent() throws Exception {
+        start(4, 16, 2);
+        Results results = new Results();
+        StreamObserver<ConvertRequest> requests = MathTypeConversionGrpc.newStub(channel).convert(results);
+        for (int i = 0; i < 10; i++) {
+            requests.onNext(request(i));
+        }
+        requests.onCompleted();
+
+        // 服务端只读取了两条，其余留在传输层
+        conversion.awaitStarted(2);
+        Thread.sleep(200);
+        assertEquals(2, conversion.started.get());
+
+        conversion.gate.release(10);
+        results.done.get(5, TimeUnit.SECONDS);
+        assertEquals(10, results.received.size());
+        assertEquals(2, conversion.maxConcurrent.get());
+        assertTrue(results.received.stream().allMatch(ConvertResult::getSuccess));
+    }
+
+    @Test
+    void skipsQueuedItemsAfterTheDeadline() throws Exception {
+        start(1, 16, 4);
+        Results results = new Results();
+        StreamObserver<ConvertRequest> requests = MathTypeConversionGrpc.newStub(channel)
+                .withDeadlineAfter(1, TimeUnit.SECONDS)
+                .convert(results);
+        for (int i = 0; i < 4; i++) {
+            requests.onNext(request(i));
+        }
+
+        conversion.awaitStarted(1);
+        Throwable error = assertThrows(Exception.class, () -> results.done.get(5, TimeUnit.SECONDS)).getCause();
+        assertEquals(Status.Code.DEADLINE_EXCEEDED, Status.fromThrowable(error).getCode());
+
+        // 服务端取消后放行正在转换的一条，排队的三条不再调用转换
+        Thread.sleep(200);
+        conversion.gate.release(4);
+        Thread.sleep(200);
+        assertEquals(1, conversion.started.get());
+    }
+
+    @Test
+    void endsTheStreamWithResourceExhaustedWhenTheQueueIsFull() throws Exception {
+        start(1, 1, 8);
+        Results results = new Results();
+        StreamObserver<ConvertRequest> requests = MathTypeConversionGrpc.newStub(channel).convert(results);
+        // 一条在转换，一条在队列中，第三条被拒绝
+        requests.onNext(request(0));
+        conversion.awaitStarted(1);
+        requests.onNext(request(1));
+        requests.onNext(request(2));
+
+        Throwable error = assertThrows(Exception.class, () -> results.done.get(5, TimeUnit.SECONDS)).getCause();
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, Status.fromThrowable(error).getCode());
+        assertTrue(results.received.isEmpty());
+    }
+
+    private void start(int workers, int queueCapacity, int maxInFlightPerStream) throws IOException {
+        service = new MathTypeGrpcService(conversion, workers, queueCapacity, maxInFlightPerStream, 16);
+        server = NettyServerBuilder.forPort(0).addService(service).build().start();
+        channel = NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext().build();
+    }
+
+    private static ConvertRequest request(int id) throws IOException {
+        return ConvertRequest.newBuilder()
+                .setId(String.valueOf(id))
+                .setPayload(ByteString.copyFrom(fixture()))
+                .build();
+    }
+
+    private static byte[] fixture() throws IOException {
+        try (InputStream in = MathTypeGrpcServiceTest.class.getResourceAsStream("/mtef/corpus/sup.bin")) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * 每次转换等待一个许可，记录已开始的次数和最大并发
+     */
+    private static final class GatedConversion extends MathTypeConversionService {
+
+        private final Semaphore gate = new Semaphore(0);
+        private final AtomicInteger started = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+        GatedConversion() {
+            super(new StaticListableBeanFactory().getBeanProvider(ConversionResultStore.class), false,
+                    new StaticListableBeanFactory().getBeanProvider(ClusterConversionService.class),
+                    new StaticListableBeanFactory().getBeanProvider(FairConversionScheduler.class));
+        }
+
+        @Override
+        public Mtef2LatexDTO convert(Path binFile, EquationNativeValidator.Inspection inspection) {
+            started.incrementAndGet();
+            maxConcurrent.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                gate.acquire();
+                return Mtef2LatexDTO.success("x");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Mtef2LatexDTO.error("interrupted");
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        void awaitStarted(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (started.get() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(count, started.get());
+        }
+    }
+
+    private static final class Results implements StreamObserver<ConvertResult> {
+
+        private final List<ConvertResult> received = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        @Override
+        public void onNext(ConvertResult value) {
+            received.add(value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            done.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            done.complete(null);
+        }
+    }
+}
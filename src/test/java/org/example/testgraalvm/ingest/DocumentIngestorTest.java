@@ -0,0 +1,126 @@
+package org.example.testgraalvm.ingest;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Embedded-object selection, relationship mapping and zip-bomb limits,
+ * using a Word package fixture and a converter that names each embedding.
+ */
+class DocumentIngestorTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private ScratchFilePool scratchPool;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void close() {
+        executor.shutdownNow();
+        if (scratchPool != null) {
+            scratchPool.close();
+        }
+    }
+
+    @Test
+    void convertsOnlyEmbeddedOleObjectsOfAWordDocument() throws IOException {
+        byte[] sup = resource("/mtef/corpus/sup.bin");
+        byte[] frac = resource("/mtef/corpus/frac.bin");
+        StreamingConversionPipeline pipeline = pipeline(files -> {
+            List<Mtef2LatexDTO> results = new ArrayList<>();
+            for (Path file : files) {
+                byte[] content = Files.readAllBytes(file);
+                results.add(Mtef2LatexDTO.success(Arrays.equals(content, sup) ? "sup"
+                        : Arrays.equals(content, frac) ? "frac" : "other"));
+            }
+            return results;
+        });
+
+        DocumentIngestor.Ingested ingested;
+        try (InputStream docx = DocumentIngestorTest.class.getResourceAsStream("/ingest/equations.docx")) {
+            ingested = DocumentIngestor.ingest(docx, pipeline);
+        }
+        List<Mtef2LatexDTO> results = pipeline.finish();
+
+        // word/printerSettings/printerSettings1.bin 不是公式对象
+        assertEquals(List.of("word/embeddings/oleObject1.bin", "word/embeddings/oleObject2.bin"), ingested.entries());
+        assertEquals(List.of("sup", "frac"), results.stream().map(Mtef2LatexDTO::getResLatex).toList());
+        assertEquals("rId6", ingested.primaryRelationshipId("word/embeddings/oleObject1.bin"));
+        assertEquals("rId8", ingested.primaryRelationshipId("word/embeddings/oleObject2.bin"));
+    }
+
+    @Test
+    void matchesEmbeddingsOfAnyOfficePackage() {
+        assertTrue(DocumentIngestor.isEmbeddedObject("word/embeddings/oleObject12.bin"));
+        assertTrue(DocumentIngestor.isEmbeddedObject("ppt/embeddings/oleObject1.bin"));
+        assertTrue(DocumentIngestor.isEmbeddedObject("xl/Embeddings/OLEOBJECT3.BIN"));
+        assertFalse(DocumentIngestor.isEmbeddedObject("word/printerSettings/printerSettings1.bin"));
+        assertFalse(DocumentIngestor.isEmbeddedObject("word/vbaProject.bin"));
+        assertFalse(DocumentIngestor.isEmbeddedObject("oleObject1.bin"));
+        assertFalse(DocumentIngestor.isEmbeddedObject("word/embeddings/Microsoft_Excel_Worksheet.xlsx"));
+    }
+
+    @Test
+    void rejectsTooManyEntries() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i <= DocumentIngestor.MAX_ENTRIES; i++) {
+                zip.putNextEntry(new ZipEntry("word/media/image" + i + ".png"));
+                zip.closeEntry();
+            }
+        }
+
+        IOException e = assertThrows(IOException.class, () -> DocumentIngestor.ingest(
+                new ByteArrayInputStream(bytes.toByteArray()), pipeline(files -> List.of())));
+        assertTrue(e.getMessage().startsWith("Too many entries"), e.getMessage());
+    }
+
+    @Test
+    void countsSkippedEntriesTowardsTheInflatedLimit() throws IOException {
+        // 每个条目都在单条目上限以内，且都不是公式对象
+        byte[] block = new byte[8 * 1024 * 1024];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (int i = 0; i <= DocumentIngestor.MAX_TOTAL_SIZE / block.length; i++) {
+                zip.putNextEntry(new ZipEntry("word/media/image" + i + ".emf"));
+                zip.write(block);
+                zip.closeEntry();
+            }
+        }
+
+        IOException e = assertThrows(IOException.class, () -> DocumentIngestor.ingest(
+                new ByteArrayInputStream(bytes.toByteArray()), pipeline(files -> List.of())));
+        assertTrue(e.getMessage().startsWith("Document too large"), e.getMessage());
+    }
+
+    private StreamingConversionPipeline pipeline(StreamingConversionPipeline.BatchConverter converter)
+            throws IOException {
+        scratchPool = new ScratchFilePool(tempDir, 8);
+        return new StreamingConversionPipeline(converter, executor, scratchPool, 1, 2);
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = DocumentIngestorTest.class.getResourceAsStream(name)) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.example.testgraalvm.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Incremental multipart parsing: delimiters split across reads, preamble and
+ * epilogue, header folding and quoting, and truncated input.
+ */
+class MultipartStreamParserTest {
+
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    @Test
+    void readsPartsWhenEveryReadReturnsOneByte() throws IOException {
+        byte[] first = payload(100_000, 1);
+        byte[] second = payload(3, 2);
+        byte[] body = join(
+                part("Content-Disposition: form-data; name=\"files\"; filename=\"a.bin\"", first),
+                part("Content-Disposition: form-data; name=\"files\"; filename=\"b.bin\"", second),
+                close());
+
+        List<byte[]> parts = readAll(new MultipartStreamParser(new ChunkedInputStream(body, 1, 1), BOUNDARY));
+        assertEquals(2, parts.size());
+        assertArrayEquals(first, parts.get(0));
+        assertArrayEquals(second, parts.get(1));
+    }
+
+    @Test
+    void findsDelimitersAtEveryBufferOffset() throws IOException {
+        // 内容包含分隔符的前缀，且长度覆盖 64KB 缓冲区末尾附近的所有位置
+        byte[] tricky = ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1)).getBytes(StandardCharsets.ISO_8859_1);
+        for (int size = 65_400; size < 65_600; size += 7) {
+            byte[] content = join(payload(size, size), tricky, payload(10, 3));
+            byte[] body = join(part("Content-Disposition: form-data; name=\"f\"; filename=\"x.bin\"", content), close());
+            Random random = new Random(size);
+            List<byte[]> parts = readAll(new MultipartStreamParser(
+                    new ChunkedInputStream(body, 1 + random.nextInt(7000), random.nextLong()), BOUNDARY));
+            assertEquals(1, parts.size());
+            assertArrayEquals(content, parts.get(0), "size " + size);
+        }
+    }
+
+    @Test
+    void skipsPreambleAndEpilogue() throws IOException {
+        byte[] body = join(
+                ascii("This is the preamble.  It is to be ignored.\r\n"),
+                part("Content-Disposition: form-data; name=\"a\"", ascii("one")),
+                close(),
+                ascii("\r\nThis is the epilogue.  It is also to be ignored.\r\n--" + BOUNDARY + "\r\n"));
+
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(body), BOUNDARY);
+        MultipartStreamParser.PartHeaders headers = parser.nextPart();
+        assertEquals("a", headers.name());
+        assertNull(headers.filename());
+        assertEquals("one", new String(parser.body().readAllBytes(), StandardCharsets.US_ASCII));
+        assertNull(parser.nextPart());
+        assertNull(parser.nextPart());
+    }
+
+    @Test
+    void skipsUnreadBodies() throws IOException {
+        byte[] body = join(
+                part("Content-Disposition: form-data; name=\"a\"", payload(200_000, 5)),
+                part("Content-Disposition: form-data; name=\"b\"", ascii("two")),
+                close());
+
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(body), BOUNDARY);
+        assertEquals("a", parser.nextPart().name());
+        assertEquals("b", parser.nextPart().name());
+        InputStream in = parser.body();
+        assertEquals('t', in.read());
+        assertEquals('w', in.read());
+        assertEquals('o', in.read());
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    void unfoldsContinuationLinesAndParsesQuotedParameters() throws IOException {
+        byte[] body = join(
+                part("Content-Disposition: form-data;\r\n\tname=\"files\";\r\n filename=\"C:\\Users\\me\\a;b \\\"1\\\".bin\""
+                        + "\r\nContent-Type: application/octet-stream", ascii("x")),
+                close());
+
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(body), BOUNDARY);
+        MultipartStreamParser.PartHeaders headers = parser.nextPart();
+        assertEquals("files", headers.name());
+        assertEquals("a;b \"1\".bin", headers.filename());
+        assertEquals("application/octet-stream", headers.contentType());
+    }
+
+    @Test
+    void dispositionParametersAreMatchedByName() {
+        String disposition = "form-data; filename=\"x.bin\"; name=files; flag; filename*=UTF-8''y.bin";
+        assertEquals("files", MultipartStreamParser.dispositionParam(disposition, "name"));
+        assertEquals("x.bin", MultipartStreamParser.dispositionParam(disposition, "filename"));
+        assertNull(MultipartStreamParser.dispositionParam("form-data", "name"));
+    }
+
+    @Test
+    void failsOnTruncatedFinalPart() throws IOException {
+        byte[] complete = join(part("Content-Disposition: form-data; name=\"a\"; filename=\"a.bin\"", payload(5000, 7)), close());
+        byte[] body = Arrays.copyOf(complete, complete.length - 100);
+
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(body), BOUNDARY);
+        assertNotNull(parser.nextPart());
+        IOException e = assertThrows(IOException.class, () -> parser.body().readAllBytes());
+        assertEquals("Unexpected end of multipart stream", e.getMessage());
+    }
+
+    @Test
+    void failsWhenTheCloseDelimiterIsMissing() throws IOException {
+        byte[] body = join(part("Content-Disposition: form-data; name=\"a\"", ascii("one")), ascii("--" + BOUNDARY));
+
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(body), BOUNDARY);
+        assertNotNull(parser.nextPart());
+        assertArrayEquals(ascii("one"), parser.body().readAllBytes());
+        assertThrows(IOException.class, parser::nextPart);
+    }
+
+    @Test
+    void failsWithoutAnyDelimiter() {
+        MultipartStreamParser parser = new MultipartStreamParser(
+                new ByteArrayInputStream(ascii("no multipart here")), BOUNDARY);
+        assertThrows(IOException.class, parser::nextPart);
+    }
+
+    @Test
+    void extractsBoundaryFromContentType() {
+        assertEquals("abc", MultipartStreamParser.boundaryOf("multipart/form-data; boundary=abc"));
+        assertEquals("a b", MultipartStreamParser.boundaryOf("multipart/form-data; charset=utf-8; BOUNDARY=\"a b\""));
+        assertNull(MultipartStreamParser.boundaryOf("multipart/form-data"));
+        assertNull(MultipartStreamParser.boundaryOf(null));
+    }
+
+    private static List<byte[]> readAll(MultipartStreamParser parser) throws IOException {
+        List<byte[]> parts = new ArrayList<>();
+        while (parser.nextPart() != null) {
+            parts.add(parser.body().readAllBytes());
+        }
+        return parts;
+    }
+
+    private static byte[] part(String headers, byte[] content) {
+        return join(ascii("--" + BOUNDARY + "\r\n" + headers + "\r\n\r\n"), content, ascii("\r\n"));
+    }
+
+    private static byte[] close() {
+        return ascii("--" + BOUNDARY + "--");
+    }
+
+    private static byte[] payload(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] join(byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.writeBytes(array);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 每次 read 最多返回 1..maxChunk 个字节，模拟网络分片
+     */
+    private static final class ChunkedInputStream extends FilterInputStream {
+
+        private final int maxChunk;
+        private final Random random;
+
+        ChunkedInputStream(byte[] bytes, int maxChunk, long seed) {
+            super(new ByteArrayInputStream(bytes));
+            this.maxChunk = maxChunk;
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1 + random.nextInt(maxChunk)));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.testgraalvm.mtef;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Upload pre-check on hostile compound files: every malformed container is
+ * rejected with a classified reason instead of reading out of bounds or looping.
+ */
+class EquationNativeValidatorTest {
+
+    private static final int END_OF_CHAIN = 0xFFFFFFFE;
+    private static final int FREE = 0xFFFFFFFF;
+    // ole() 的布局：扇区 0 为 FAT，1 为目录，2 为 miniFAT，3 起为 mini 流
+    private static final int FAT = 512;
+    private static final int MINI_FAT = 1536;
+    private static final int STREAM = 2048;
+
+    @Test
+    void acceptsTheUnmodifiedObject() throws MtefException {
+        EquationNativeValidator.Inspection inspection = EquationNativeValidator.inspect(ole().array());
+        assertEquals(5, inspection.mtefVersion());
+        assertEquals(64, inspection.canonicalHash().length());
+    }
+
+    @Test
+    void rejectsAFatChainLoop() {
+        ByteBuffer file = ole();
+        // 目录扇区的 FAT 项指向自己
+        file.putInt(FAT + 4, 1);
+        assertRejected(file, "ole:chain", "OLE 复合文件已损坏: Sector chain loops at 1");
+    }
+
+    @Test
+    void rejectsADifatLoop() {
+        // 109 个头部 DIFAT 项加一个 DIFAT 扇区仍不够 237 个 FAT 扇区，该扇区的后继指向自己
+        ByteBuffer file = ByteBuffer.wrap(Arrays.copyOf(ole().array(), 512 * 240)).order(ByteOrder.LITTLE_ENDIAN);
+        int difat = 200;
+        file.putInt(0x2C, 237).putInt(0x44, difat);
+        for (int i = 0; i < 109; i++) {
+            file.putInt(0x4C + i * 4, 0);
+        }
+        int base = (difat + 1) * 512;
+        for (int i = 0; i < 127; i++) {
+            file.putInt(base + i * 4, 0);
+        }
+        file.putInt(base + 508, difat);
+        assertRejected(file, "ole:difat", "OLE 复合文件已损坏: DIFAT chain loops at 200");
+    }
+
+    @Test
+    void rejectsASectorOutsideTheFile() {
+        ByteBuffer file = ole();
+        // 目录链的第二个扇区在 FAT 范围内，但文件没有这么多扇区
+        file.putInt(FAT + 4, 40).putInt(FAT + 40 * 4, END_OF_CHAIN);
+        assertRejected(file, "ole:chain", "OLE 复合文件已损坏: Sector 40 outside the file");
+    }
+
+    @Test
+    void rejectsAMiniChainPastTheEndOfTheMiniStream() {
+        ByteBuffer file = ole();
+        // 公式流占两个 mini 扇区，第一个的后继越过 mini 流末尾
+        file.putInt(MINI_FAT, 60);
+        assertRejected(file, "ole:chain", "OLE 复合文件已损坏: Mini sector 60 outside the mini stream");
+    }
+
+    @Test
+    void rejectsABadEqnOleFileHeaderSize() {
+        ByteBuffer file = ole();
+        file.putShort(STREAM, (short) 10);
+        assertRejected(file, "mtef:header", "Equation Native 流无效: Invalid EQNOLEFILEHDR size 10");
+    }
+
+    @Test
+    void rejectsAnUnknownMtefVersion() {
+        ByteBuffer file = ole();
+        file.put(STREAM + 28, (byte) 9);
+        assertRejected(file, "mtef:version-9", "Equation Native 流无效: Unknown MTEF version 9");
+    }
+
+    private static void assertRejected(ByteBuffer file, String reason, String rejection) {
+        MtefException e = assertThrows(MtefException.class, () -> EquationNativeValidator.inspect(file.array()));
+        assertEquals(reason, e.reason(), e.getMessage());
+        assertEquals(rejection, EquationNativeValidator.rejection(e).getResLatex());
+    }
+
+    /**
+     * 只有一个 mini 流 Equation Native 的 v3 复合文件，公式流（x+x+...）跨两个 mini 扇区
+     */
+    private static ByteBuffer ole() {
+        ByteArrayOutputStream mtef = new ByteArrayOutputStream();
+        mtef.writeBytes(bytes(5, 1, 0, 6, 9));
+        mtef.writeBytes("DSMT6\0".getBytes(StandardCharsets.US_ASCII));
+        mtef.writeBytes(bytes(0, 1, 0));
+        for (int i = 0; i < 8; i++) {
+            mtef.writeBytes(bytes(2, 0, 3 + 128, 'x', 0));
+        }
+        mtef.writeBytes(bytes(0, 0));
+        // EQNOLEFILEHDR：cbHdr、version、cf、cbObject，其余 16 字节保留
+        ByteBuffer stream = le(28 + mtef.size());
+        stream.putShort((short) 28).putInt(0x00020000).putShort((short) 0).putInt(mtef.size())
+                .put(28, mtef.toByteArray());
+        int miniSectors = (stream.capacity() + 63) / 64;
+        assertEquals(2, miniSectors);
+
+        ByteBuffer file = le(512 * 5);
+        file.putLong(0, 0xE11AB1A1E011CFD0L).putShort(0x18, (short) 0x3E).putShort(0x1A, (short) 3)
+                .putShort(0x1C, (short) 0xFFFE).putShort(0x1E, (short) 9).putShort(0x20, (short) 6)
+                .putInt(0x2C, 1).putInt(0x30, 1).putInt(0x38, 4096).putInt(0x3C, 2).putInt(0x40, 1)
+                .putInt(0x44, END_OF_CHAIN).putInt(0x4C, 0);
+        for (int i = 1; i < 109; i++) {
+            file.putInt(0x4C + i * 4, FREE);
+        }
+        for (int i = 0; i < 128; i++) {
+            file.putInt(FAT + i * 4, FREE).putInt(MINI_FAT + i * 4, FREE);
+        }
+        file.putInt(FAT, 0xFFFFFFFD).putInt(FAT + 4, END_OF_CHAIN).putInt(FAT + 8, END_OF_CHAIN)
+                .putInt(FAT + 12, END_OF_CHAIN);
+        file.putInt(MINI_FAT, 1).putInt(MINI_FAT + 4, END_OF_CHAIN);
+        entry(file, 1024, "Root Entry", 5, 3, miniSectors * 64L);
+        entry(file, 1024 + 128, OleCompoundFile.EQUATION_NATIVE, 2, 0, stream.capacity());
+        file.put(STREAM, stream.array());
+        return file;
+    }
+
+    private static void entry(ByteBuffer file, int offset, String name, int type, int start, long size) {
+        byte[] utf16 = (name + "\0").getBytes(StandardCharsets.UTF_16LE);
+        file.put(offset, utf16).putShort(offset + 0x40, (short) utf16.length).put(offset + 0x42, (byte) type)
+                .putInt(offset + 0x44, FREE).putInt(offset + 0x48, FREE).putInt(offset + 0x4C, type == 5 ? 1 : FREE)
+                .putInt(offset + 0x74, start).putLong(offset + 0x78, size);
+    }
+
+    private static ByteBuffer le(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] out = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = (byte) values[i];
+        }
+        return out;
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.testgraalvm.mtef;
+
+import org.example.testgraalvm.panama.MathTypeToLatexUtil;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Differential check of the fast path over the checked-in corpus in {@code mtef/corpus}.
+ * <p>
+ * Every file must either produce its reviewed LaTeX or fall back for the listed reason.
+ * With {@code -Dmtef.diff.lib=/path/to/libMathType2Latex.so} every hit is also converted by
+ * the native library and the two outputs must agree, as in {@code mtef-diff}.
+ */
+class MtefDifferentialTest {
+
+    private static final String CORPUS = "/mtef/corpus/";
+
+    @Test
+    void fastPathMatchesTheReviewedOutput() throws IOException {
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, String> entry : expected().entrySet()) {
+            String file = entry.getKey();
+            String expected = entry.getValue();
+            String actual;
+            try {
+                actual = MtefFastPath.convert(read(file));
+            } catch (MtefException e) {
+                actual = "!" + e.reason();
+            }
+            String normalized = actual.startsWith("!") ? actual : MtefDiffCommand.normalize(actual);
+            String wanted = expected.startsWith("!") ? expected : MtefDiffCommand.normalize(expected);
+            if (!normalized.equals(wanted)) {
+                failures.add(file + ": expected " + expected + " but was " + actual);
+            }
+        }
+        assertEquals(List.of(), failures);
+    }
+
+    @Test
+    void fastPathAgreesWithTheNativeLibrary() throws IOException, URISyntaxException {
+        String lib = System.getProperty("mtef.diff.lib");
+        assumeTrue(lib != null, "set -Dmtef.diff.lib to diff against the native library");
+        assertTrue(MathTypeToLatexUtil.initFromPath(Path.of(lib)), "cannot load " + lib);
+        // 快速路径默认关闭，convertLatex 真正调用本地库
+        MtefFastPath.configure(MtefFastPath.Settings.defaults());
+
+        Path corpus = Path.of(MtefDifferentialTest.class.getResource(CORPUS).toURI());
+        List<String> failures = new ArrayList<>();
+        for (String file : expected().keySet()) {
+            String javaLatex;
+            try {
+                javaLatex = MtefFastPath.convert(read(file));
+            } catch (MtefException e) {
+                continue;
+            }
+            Mtef2LatexDTO nativeResult = MathTypeToLatexUtil.convertLatex(corpus.resolve(file).toString());
+            if (nativeResult.getCode() != Mtef2LatexDTO.SUCCESS_CODE
+                    || !MtefDiffCommand.normalize(javaLatex).equals(MtefDiffCommand.normalize(nativeResult.getResLatex()))) {
+                failures.add(file + ": java " + javaLatex + ", native " + nativeResult.getResLatex());
+            }
+        }
+        assertEquals(List.of(), failures);
+    }
+
+    /**
+     * expected.tsv：文件名 -> 期望输出，以 ! 开头的是回退原因
+     */
+    private static Map<String, String> expected() throws IOException {
+        Map<String, String> expected = new LinkedHashMap<>();
+        for (String line : new String(read("expected.tsv"), StandardCharsets.UTF_8).split("\n")) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            expected.put(line.substring(0, tab), line.substring(tab + 1));
+        }
+        assertFalse(expected.isEmpty());
+        return expected;
+    }
+
+    private static byte[] read(String name) throws IOException {
+        try (InputStream in = MtefDifferentialTest.class.getResourceAsStream(CORPUS + name)) {
+            assertNotNull(in, name);
+            return in.readAllBytes();
+        }
+    }
+}
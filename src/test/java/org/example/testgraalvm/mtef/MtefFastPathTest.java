@@ -0,0 +1,146 @@
+package org.example.testgraalvm.mtef;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OLE → MTEF → LaTeX on hand-built MathType objects.
+ */
+class MtefFastPathTest {
+
+    private static final int END_OF_CHAIN = 0xFFFFFFFE;
+    private static final int FREE = 0xFFFFFFFF;
+
+    @Test
+    void convertsScriptsFractionsAndRoots() throws MtefException {
+        // x^{2}：上标模板的下标槽为空行
+        assertEquals("x^{2}", MtefFastPath.convert(ole(line(
+                ch(3, 'x'), tmpl(28, 0, nullLine(), line(ch(8, '2')))))));
+        assertEquals("\\frac{a}{\\alpha}", MtefFastPath.convert(ole(line(
+                tmpl(11, 0, line(ch(3, 'a')), line(ch(4, 0x3B1)))))));
+        assertEquals("\\sqrt[3]{x}", MtefFastPath.convert(ole(line(
+                tmpl(10, 1, line(ch(3, 'x')), line(ch(8, '3')))))));
+        assertEquals("\\sin x", MtefFastPath.convert(ole(line(
+                ch(2, 's'), ch(2, 'i'), ch(2, 'n'), ch(3, 'x')))));
+    }
+
+    @Test
+    void reportsWhyItFallsBack() {
+        assertReason("record:matrix", ole(line(bytes(5, 0, 1, 1, 0, 2, 2, 0, 0, 0, 0))));
+        assertReason("template:15", ole(line(tmpl(15, 0, line(ch(3, 'x')), nullLine(), nullLine()))));
+        assertReason("ole:signature", new byte[2048]);
+        // CHAR 记录在字符码中途结束
+        assertReason("mtef:truncated", ole(concat(bytes(1, 0), bytes(2, 0, 3 + 128))));
+    }
+
+    @Test
+    void validatorHashesOnlyTheMtefData() throws MtefException {
+        byte[] file = ole(line(ch(3, 'x')));
+        byte[] restamped = file.clone();
+        // 根目录项的 CLSID 属于容器元数据
+        restamped[1024 + 0x50] = 0x42;
+        EquationNativeValidator.Inspection inspection = EquationNativeValidator.inspect(file);
+        assertEquals(5, inspection.mtefVersion());
+        assertEquals(inspection.canonicalHash(), EquationNativeValidator.inspect(restamped).canonicalHash());
+
+        assertNull(EquationNativeValidator.precheck(file));
+        assertEquals("内容为空", EquationNativeValidator.precheck(new byte[0]).getResLatex());
+        assertTrue(EquationNativeValidator.precheck(new byte[2048]).getResLatex().contains("不是 OLE 复合文件"));
+    }
+
+    private static void assertReason(String reason, byte[] file) {
+        MtefException e = assertThrows(MtefException.class, () -> MtefFastPath.convert(file));
+        assertEquals(reason, e.reason(), e.getMessage());
+    }
+
+    // MTEF 记录
+
+    private static byte[] line(byte[]... items) {
+        return concat(bytes(1, 0), concat(items), bytes(0));
+    }
+
+    private static byte[] nullLine() {
+        return bytes(1, 1);
+    }
+
+    private static byte[] ch(int typeface, int code) {
+        return bytes(2, 0, typeface + 128, code & 0xFF, code >> 8);
+    }
+
+    private static byte[] tmpl(int selector, int variation, byte[]... slots) {
+        return concat(bytes(3, 0, selector, variation, 0), concat(slots), bytes(0));
+    }
+
+    /**
+     * 只有一个 mini 流 Equation Native 的 v3 复合文件：FAT、目录、miniFAT 各一个扇区，随后是 mini 流
+     */
+    private static byte[] ole(byte[] body) {
+        byte[] mtef = concat(bytes(5, 1, 0, 6, 9), "DSMT6\0".getBytes(StandardCharsets.US_ASCII), bytes(0),
+                body, bytes(0));
+        ByteBuffer header = le(28);
+        header.putShort((short) 28).putInt(0x00020000).putShort((short) 0).putInt(mtef.length);
+        byte[] stream = concat(header.array(), mtef);
+
+        int miniSectors = (stream.length + 63) / 64;
+        int streamSectors = (miniSectors * 64 + 511) / 512;
+        ByteBuffer file = le(512 * (4 + streamSectors));
+        file.putLong(0, 0xE11AB1A1E011CFD0L).putShort(0x18, (short) 0x3E).putShort(0x1A, (short) 3)
+                .putShort(0x1C, (short) 0xFFFE).putShort(0x1E, (short) 9).putShort(0x20, (short) 6)
+                .putInt(0x2C, 1).putInt(0x30, 1).putInt(0x38, 4096).putInt(0x3C, 2).putInt(0x40, 1)
+                .putInt(0x44, END_OF_CHAIN).putInt(0x4C, 0);
+        for (int i = 1; i < 109; i++) {
+            file.putInt(0x4C + i * 4, FREE);
+        }
+        // FAT：0 为 FAT 自身，1 目录，2 miniFAT，3 起为 mini 流
+        int fat = 512;
+        for (int i = 0; i < 128; i++) {
+            file.putInt(fat + i * 4, FREE);
+        }
+        file.putInt(fat, 0xFFFFFFFD).putInt(fat + 4, END_OF_CHAIN).putInt(fat + 8, END_OF_CHAIN);
+        for (int i = 0; i < streamSectors; i++) {
+            file.putInt(fat + (3 + i) * 4, i == streamSectors - 1 ? END_OF_CHAIN : 4 + i);
+        }
+        int directory = 1024;
+        entry(file, directory, "Root Entry", 5, 3, miniSectors * 64L);
+        entry(file, directory + 128, OleCompoundFile.EQUATION_NATIVE, 2, 0, stream.length);
+        int miniFat = 1536;
+        for (int i = 0; i < 128; i++) {
+            file.putInt(miniFat + i * 4, i < miniSectors ? (i == miniSectors - 1 ? END_OF_CHAIN : i + 1) : FREE);
+        }
+        file.put(2048, stream);
+        return file.array();
+    }
+
+    private static void entry(ByteBuffer file, int offset, String name, int type, int start, long size) {
+        byte[] utf16 = (name + "\0").getBytes(StandardCharsets.UTF_16LE);
+        file.put(offset, utf16).putShort(offset + 0x40, (short) utf16.length).put(offset + 0x42, (byte) type)
+                .putInt(offset + 0x44, FREE).putInt(offset + 0x48, FREE).putInt(offset + 0x4C, type == 5 ? 1 : FREE)
+                .putInt(offset + 0x74, start).putLong(offset + 0x78, size);
+    }
+
+    private static ByteBuffer le(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] out = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            out[i] = (byte) values[i];
+        }
+        return out;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.testgraalvm.panama;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Gradient limit updates driven by a synthetic clock. Probing is pushed
+ * far beyond the number of windows used so every run is deterministic.
+ */
+class ConcurrencyLimiterTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void growsWhileLatencyStaysAtTheBaseline() {
+        ConcurrencyLimiter limiter = limiter(4, 1, 64);
+
+        int previous = limiter.currentLimit();
+        for (int i = 0; i < 40; i++) {
+            round(limiter, limiter.currentLimit(), MILLIS);
+            assertTrue(limiter.currentLimit() >= previous);
+            previous = limiter.currentLimit();
+        }
+        assertEquals(64, limiter.currentLimit());
+    }
+
+    @Test
+    void shrinksWhenLatencyRisesAboveTheBaseline() {
+        ConcurrencyLimiter limiter = limiter(32, 2, 64);
+        round(limiter, 32, MILLIS);
+        int saturated = limiter.currentLimit();
+
+        for (int i = 0; i < 40; i++) {
+            round(limiter, limiter.currentLimit(), 10 * MILLIS);
+        }
+        // 梯度固定为 0.5 时上限收敛到 4 附近
+        assertTrue(limiter.currentLimit() < saturated / 4, "limit " + limiter.currentLimit());
+        assertTrue(limiter.currentLimit() >= 2);
+    }
+
+    @Test
+    void doesNotGrowWithoutLoad() {
+        ConcurrencyLimiter limiter = limiter(16, 1, 64);
+
+        for (int i = 0; i < 100; i++) {
+            round(limiter, 1, MILLIS);
+        }
+        assertEquals(16, limiter.currentLimit());
+        assertEquals(100, limiter.snapshot().samples());
+    }
+
+    @Test
+    void unsampledReleasesLeaveTheEstimateUntouched() {
+        ConcurrencyLimiter limiter = limiter(4, 1, 64);
+
+        for (int i = 0; i < 10; i++) {
+            ConcurrencyLimiter.Permit permit = limiter.acquire(1);
+            clock.addAndGet(MILLIS);
+            permit.release(false);
+        }
+        assertEquals(0, limiter.snapshot().samples());
+        assertEquals(0, limiter.estimatedDelayNanos(100, 4));
+    }
+
+    @Test
+    void acquireWaitsAtTheLimit() throws Exception {
+        ConcurrencyLimiter limiter = limiter(1, 1, 1);
+        ConcurrencyLimiter.Permit first = limiter.acquire(1);
+
+        CompletableFuture<ConcurrencyLimiter.Permit> second = CompletableFuture.supplyAsync(() -> limiter.acquire(3));
+        while (limiter.waitingItems() == 0) {
+            Thread.sleep(1);
+        }
+        assertFalse(second.isDone());
+
+        first.release(true);
+        second.get(5, TimeUnit.SECONDS).release(true);
+        assertEquals(0, limiter.waitingItems());
+    }
+
+    /**
+     * 同时持有 concurrent 个名额，经过 rttNanos 后全部释放
+     */
+    private void round(ConcurrencyLimiter limiter, int concurrent, long rttNanos) {
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>(concurrent);
+        for (int i = 0; i < concurrent; i++) {
+            permits.add(limiter.acquire(1));
+        }
+        clock.addAndGet(rttNanos);
+        permits.forEach(permit -> permit.release(true));
+    }
+
+    private ConcurrencyLimiter limiter(int initial, int min, int max) {
+        return new ConcurrencyLimiter(
+                new ConcurrencyLimiter.Settings(initial, min, max, 1.5, 0.5, 4, 1_000_000), clock::get);
+    }
+}
@@ -0,0 +1,174 @@
+package org.example.testgraalvm.panama;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Strategy selection, failure handling and sub-batch sizing against a fake
+ * backend. Exploration is disabled so every decision is deterministic.
+ */
+class ConversionDispatcherTest {
+
+    private final FakeBackend backend = new FakeBackend();
+    private ConversionDispatcher dispatcher;
+
+    @AfterEach
+    void close() {
+        if (dispatcher != null) {
+            dispatcher.close();
+        }
+    }
+
+    @Test
+    void failingStrategyIsSampledAndTheChunkRetried() {
+        backend.listFails = true;
+        dispatcher = new ConversionDispatcher(backend, settings(null, 0, 1));
+
+        for (int i = 0; i < 10; i++) {
+            List<Mtef2LatexDTO> results = dispatcher.convert(paths(8));
+            assertTrue(results.stream().allMatch(r -> r.getCode() == Mtef2LatexDTO.SUCCESS_CODE));
+            assertEquals(paths(8), results.stream().map(Mtef2LatexDTO::getResLatex).toList());
+        }
+        // 只在积累样本时失败三次，之后不再选中
+        assertEquals(3, backend.listCalls.get());
+        assertEquals(10, backend.asyncCalls.get());
+    }
+
+    @Test
+    void reportsTheFailureWhenEveryStrategyFails() {
+        backend.listFails = true;
+        backend.asyncFails = true;
+        dispatcher = new ConversionDispatcher(backend, settings(null, 0, 1));
+
+        List<Mtef2LatexDTO> results = dispatcher.convert(paths(8));
+        assertEquals(8, results.size());
+        assertTrue(results.stream().allMatch(r -> r.getResLatex().equals("转换失败: async down")));
+        assertEquals(1, backend.listCalls.get());
+        assertEquals(1, backend.asyncCalls.get());
+    }
+
+    @Test
+    void fixedStrategyIsNotRetried() {
+        backend.listFails = true;
+        dispatcher = new ConversionDispatcher(backend, settings(ConversionDispatcher.Strategy.LIST, 0, 1));
+
+        List<Mtef2LatexDTO> results = dispatcher.convert(paths(8));
+        assertTrue(results.stream().allMatch(r -> r.getCode() != Mtef2LatexDTO.SUCCESS_CODE));
+        assertEquals(0, backend.asyncCalls.get());
+    }
+
+    @Test
+    void picksTheCheapestStrategyOnceEachHasEnoughSamples() {
+        backend.listDelayMillis = 20;
+        dispatcher = new ConversionDispatcher(backend, settings(null, 0, 1));
+
+        // 前六次依次积累 LIST 和 ASYNC 的样本
+        for (int i = 0; i < 6; i++) {
+            dispatcher.convert(paths(8));
+        }
+        for (int i = 0; i < 5; i++) {
+            dispatcher.convert(paths(8));
+        }
+        assertEquals(3, backend.listCalls.get());
+        assertEquals(8, backend.asyncCalls.get());
+        assertEquals(8L, dispatcher.snapshot().decisions().get(ConversionDispatcher.Strategy.ASYNC));
+    }
+
+    @Test
+    void singleCallsAreEligibleOnlyForSmallBatches() {
+        dispatcher = new ConversionDispatcher(backend, settings(null, 0, 1));
+
+        dispatcher.convert(paths(2));
+        assertEquals(2, backend.convertCalls.get());
+        dispatcher.convert(paths(5));
+        assertEquals(2, backend.convertCalls.get());
+    }
+
+    @Test
+    void fixedSubBatchSizeIsBalancedAcrossChunks() {
+        dispatcher = new ConversionDispatcher(backend, settings(ConversionDispatcher.Strategy.LIST, 30, 4));
+
+        List<Mtef2LatexDTO> results = dispatcher.convert(paths(100));
+        assertEquals(paths(100), results.stream().map(Mtef2LatexDTO::getResLatex).toList());
+        assertEquals(List.of(25, 25, 25, 25), sorted(backend.batchSizes));
+        assertEquals(1, dispatcher.snapshot().splits());
+    }
+
+    @Test
+    void splitsAtTheMaximumWithoutEstimates() {
+        dispatcher = new ConversionDispatcher(backend, settings(ConversionDispatcher.Strategy.LIST, 0, 4));
+
+        dispatcher.convert(paths(600));
+        assertEquals(List.of(200, 200, 200), sorted(backend.batchSizes));
+
+        backend.batchSizes.clear();
+        dispatcher.convert(paths(100));
+        assertEquals(List.of(100), backend.batchSizes);
+    }
+
+    private static ConversionDispatcher.Settings settings(ConversionDispatcher.Strategy strategy, int subBatchSize,
+                                                          int parallelism) {
+        return new ConversionDispatcher.Settings(strategy, subBatchSize, 256, parallelism, 4, 0, 0.2);
+    }
+
+    private static List<String> paths(int n) {
+        return IntStream.range(0, n).mapToObj(i -> "/nonexistent/" + i + ".bin").toList();
+    }
+
+    private static List<Integer> sorted(List<Integer> sizes) {
+        List<Integer> copy = new ArrayList<>(sizes);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    private static final class FakeBackend implements ConversionDispatcher.Backend {
+
+        private final AtomicInteger convertCalls = new AtomicInteger();
+        private final AtomicInteger listCalls = new AtomicInteger();
+        private final AtomicInteger asyncCalls = new AtomicInteger();
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean listFails;
+        private volatile boolean asyncFails;
+        private volatile long listDelayMillis;
+
+        @Override
+        public Mtef2LatexDTO convert(String binPath) {
+            convertCalls.incrementAndGet();
+            return Mtef2LatexDTO.success(binPath);
+        }
+
+        @Override
+        public List<Mtef2LatexDTO> convertList(List<String> binPaths) {
+            listCalls.incrementAndGet();
+            batchSizes.add(binPaths.size());
+            if (listFails) {
+                throw new IllegalStateException("list down");
+            }
+            if (listDelayMillis > 0) {
+                try {
+                    Thread.sleep(listDelayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return binPaths.stream().map(Mtef2LatexDTO::success).toList();
+        }
+
+        @Override
+        public List<Mtef2LatexDTO> convertListAsync(List<String> binPaths) {
+            asyncCalls.incrementAndGet();
+            if (asyncFails) {
+                throw new IllegalStateException("async down");
+            }
+            return binPaths.stream().map(Mtef2LatexDTO::success).toList();
+        }
+    }
+}
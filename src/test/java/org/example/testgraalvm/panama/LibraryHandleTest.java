@@ -0,0 +1,121 @@
+package org.example.testgraalvm.panama;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reference counting of library epochs: a retired handle closes only after
+ * the calls that still hold it have released it, and exactly once.
+ */
+class LibraryHandleTest {
+
+    private final AtomicInteger closes = new AtomicInteger();
+
+    @Test
+    void retireClosesImmediatelyWithoutCallsInFlight() {
+        LibraryHandle handle = handle();
+
+        assertEquals(0, handle.inFlight());
+        handle.retire();
+        assertTrue(handle.closed());
+        assertEquals(1, closes.get());
+        assertFalse(handle.tryAcquire());
+    }
+
+    @Test
+    void retireWaitsForCallsInFlight() {
+        LibraryHandle handle = handle();
+        assertTrue(handle.tryAcquire());
+        assertTrue(handle.tryAcquire());
+
+        handle.retire();
+        assertFalse(handle.closed());
+        assertEquals(2, handle.inFlight());
+        assertEquals(0, closes.get());
+
+        // 进行中的调用仍可嵌套获取，直到最后一个引用释放
+        assertTrue(handle.tryAcquire());
+        handle.release();
+        handle.release();
+        assertEquals(0, closes.get());
+        handle.release();
+        assertTrue(handle.closed());
+        assertEquals(1, closes.get());
+        assertFalse(handle.tryAcquire());
+    }
+
+    @Test
+    void swapDrainsTheOldEpochWhileCallsMoveToTheNewOne() throws Exception {
+        AtomicInteger holders = new AtomicInteger();
+        AtomicInteger holdersAtClose = new AtomicInteger(-1);
+        LibraryHandle old = new LibraryHandle(null, 1, "old", () -> {
+            holdersAtClose.set(holders.get());
+            closes.incrementAndGet();
+        });
+        LibraryHandle next = new LibraryHandle(null, 2, "next", () -> fail("current epoch closed"));
+        AtomicReference<LibraryHandle> current = new AtomicReference<>(old);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicInteger oldCalls = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> callers = new ArrayList<>();
+        try {
+            for (int t = 0; t < 8; t++) {
+                callers.add(executor.submit(() -> {
+                    while (!stop.get()) {
+                        // 与 MathTypeToLatexUtil 相同：获取失败说明句柄已退役，重新读取当前句柄
+                        LibraryHandle handle = current.get();
+                        if (!handle.tryAcquire()) {
+                            continue;
+                        }
+                        if (handle == old) {
+                            holders.incrementAndGet();
+                            oldCalls.incrementAndGet();
+                            Thread.onSpinWait();
+                            holders.decrementAndGet();
+                        }
+                        handle.release();
+                    }
+                }));
+            }
+            while (oldCalls.get() < 1000) {
+                Thread.onSpinWait();
+            }
+            current.set(next);
+            old.retire();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!old.closed()) {
+                assertTrue(System.nanoTime() < deadline, "old epoch did not drain");
+                Thread.sleep(1);
+            }
+        } finally {
+            stop.set(true);
+            for (Future<?> caller : callers) {
+                caller.get(5, TimeUnit.SECONDS);
+            }
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, closes.get());
+        assertEquals(0, holdersAtClose.get());
+        assertFalse(old.tryAcquire());
+        assertFalse(next.closed());
+        assertEquals(0, next.inFlight());
+    }
+
+    private LibraryHandle handle() {
+        return new LibraryHandle(null, 1, "test", closes::incrementAndGet);
+    }
+}
@@ -0,0 +1,200 @@
+package org.example.testgraalvm.scheduler;
+
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dispatch order of the fair scheduler. A single worker and a concurrency
+ * limit of zero hold every chunk in the queues until the test has enqueued
+ * all of them, so the order chunks run in depends only on the DRR state.
+ */
+class FairConversionSchedulerTest {
+
+    private final AtomicInteger concurrency = new AtomicInteger();
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    private FairConversionScheduler scheduler;
+
+    @AfterEach
+    void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Test
+    void bulkShareFollowsTheWeights() throws Exception {
+        scheduler = scheduler(1, 0, "heavy=3");
+        CompletableFuture<List<Mtef2LatexDTO>> heavy = submit("heavy", 40);
+        CompletableFuture<List<Mtef2LatexDTO>> light = submit("light", 40);
+        awaitQueued(80);
+
+        concurrency.set(1);
+        assertEquals(40, heavy.get(10, TimeUnit.SECONDS).size());
+        assertEquals(40, light.get(10, TimeUnit.SECONDS).size());
+
+        // 每轮 heavy 执行 3 块、light 执行 1 块，与谁先入轮无关
+        List<String> first = executed.subList(0, 40);
+        assertEquals(30, Collections.frequency(first, "heavy"));
+        assertEquals(10, Collections.frequency(first, "light"));
+        assertEquals(80, executed.size());
+    }
+
+    @Test
+    void chunksLargerThanTheQuantumWaitForEnoughDeficit() throws Exception {
+        scheduler = scheduler(4, 0, "");
+        // 一块 4 个文件，quantum 1：每个租户要攒够 4 轮额度才执行一块，两者仍交替
+        CompletableFuture<List<Mtef2LatexDTO>> a = submit("a", 16, 4);
+        CompletableFuture<List<Mtef2LatexDTO>> b = submit("b", 16, 4);
+        awaitQueued(32);
+
+        concurrency.set(1);
+        a.get(10, TimeUnit.SECONDS);
+        b.get(10, TimeUnit.SECONDS);
+        for (int i = 0; i + 1 < executed.size(); i += 2) {
+            assertNotEquals(executed.get(i), executed.get(i + 1), executed.toString());
+        }
+    }
+
+    @Test
+    void interactiveRequestsRunBeforeQueuedBulkWork() throws Exception {
+        scheduler = scheduler(1, 2, "");
+        CompletableFuture<List<Mtef2LatexDTO>> bulk = submit("batch", 20);
+        awaitQueued(20);
+        CompletableFuture<List<Mtef2LatexDTO>> single = submit("ui", 1);
+        awaitQueued(21);
+
+        concurrency.set(1);
+        assertEquals(1, single.get(10, TimeUnit.SECONDS).size());
+        bulk.get(10, TimeUnit.SECONDS);
+        assertEquals("ui", executed.getFirst());
+    }
+
+    @Test
+    void limitsConcurrentChunksToTheCurrentConcurrency() throws Exception {
+        scheduler = new FairConversionScheduler(4, 1, 1, 0, 16, "", concurrency::get);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        concurrency.set(2);
+
+        List<CompletableFuture<?>> requests = new ArrayList<>();
+        for (String tenant : List.of("a", "b", "c")) {
+            requests.add(CompletableFuture.runAsync(() -> TenantContext.callAs(tenant,
+                    () -> scheduler.convert(paths(tenant, 10), chunk -> {
+                        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        try {
+                            Thread.sleep(2);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        running.decrementAndGet();
+                        return chunk.stream().map(Mtef2LatexDTO::success).toList();
+                    }))));
+        }
+        for (CompletableFuture<?> request : requests) {
+            request.get(10, TimeUnit.SECONDS);
+        }
+        assertTrue(peak.get() <= 2, "peak " + peak.get());
+    }
+
+    @Test
+    void shutdownFailsQueuedTasks() throws Exception {
+        scheduler = scheduler(1, 0, "");
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Integer> queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return TenantContext.callAs("a", () -> scheduler.call(1, calls::incrementAndGet));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        awaitQueued(1);
+
+        scheduler.shutdown();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> queued.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(0, calls.get());
+        assertEquals(0, scheduler.queuedFiles());
+
+        // 停止后提交的任务立即失败
+        assertThrows(CompletionException.class, () -> scheduler.call(1, calls::incrementAndGet));
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    void newTenantsReplaceIdleOnesAtTheLimit() throws Exception {
+        scheduler = new FairConversionScheduler(1, 1, 1, 0, 2, "", concurrency::get);
+        concurrency.set(1);
+        for (String tenant : List.of("a", "b", "c")) {
+            assertEquals(1, TenantContext.callAs(tenant, () -> scheduler.call(1, () -> 1)));
+        }
+        // a 最久没有提交，被 c 替换
+        assertEquals(List.of("b", "c"), tenants());
+
+        // 两个租户都有排队的块时没有可替换的，新租户进入 other
+        concurrency.set(0);
+        CompletableFuture<List<Mtef2LatexDTO>> b = submit("b", 1);
+        CompletableFuture<List<Mtef2LatexDTO>> c = submit("c", 1);
+        awaitQueued(2);
+        CompletableFuture<List<Mtef2LatexDTO>> d = submit("d", 1);
+        awaitQueued(3);
+        assertEquals(List.of("b", "c", FairConversionScheduler.OVERFLOW_TENANT), tenants());
+
+        concurrency.set(1);
+        b.get(10, TimeUnit.SECONDS);
+        c.get(10, TimeUnit.SECONDS);
+        d.get(10, TimeUnit.SECONDS);
+    }
+
+    private List<String> tenants() {
+        return scheduler.snapshot().tenants().stream().map(FairConversionScheduler.TenantStats::tenant).toList();
+    }
+
+    private FairConversionScheduler scheduler(int chunkSize, int interactiveMaxFiles, String weights) {
+        return new FairConversionScheduler(1, chunkSize, 1, interactiveMaxFiles, 16, weights, concurrency::get);
+    }
+
+    private CompletableFuture<List<Mtef2LatexDTO>> submit(String tenant, int files) {
+        return submit(tenant, files, 1);
+    }
+
+    /**
+     * 以 tenant 身份提交 files 个文件，每执行一块记录一次租户名
+     */
+    private CompletableFuture<List<Mtef2LatexDTO>> submit(String tenant, int files, int chunkSize) {
+        Function<List<String>, List<Mtef2LatexDTO>> converter = chunk -> {
+            assertTrue(chunk.size() <= chunkSize);
+            executed.add(tenant);
+            return chunk.stream().map(Mtef2LatexDTO::success).toList();
+        };
+        return CompletableFuture.supplyAsync(
+                () -> TenantContext.callAs(tenant, () -> scheduler.convert(paths(tenant, files), converter)));
+    }
+
+    private void awaitQueued(long files) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (scheduler.queuedFiles() < files) {
+            assertTrue(System.nanoTime() < deadline, "queued " + scheduler.queuedFiles());
+            Thread.sleep(1);
+        }
+    }
+
+    private static List<String> paths(String tenant, int n) {
+        return IntStream.range(0, n).mapToObj(i -> tenant + "/" + i + ".bin").toList();
+    }
+}
@@ -0,0 +1,165 @@
+package org.example.testgraalvm.service;
+
+import org.example.testgraalvm.entity.ConversionJob;
+import org.example.testgraalvm.entity.ConversionJobItem;
+import org.example.testgraalvm.panama.Mtef2LatexDTO;
+import org.example.testgraalvm.repository.ConversionJobItemRepository;
+import org.example.testgraalvm.repository.ConversionJobRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Durable job queue against a throwaway SQLite database: progress of a
+ * submitted job, recovery of items whose lease expired, idempotent
+ * completion and the retention sweep.
+ */
+@SpringBootTest
+class ConversionJobServiceTest {
+
+    private static final Path DATA_DIR;
+
+    static {
+        try {
+            DATA_DIR = Files.createTempDirectory("conversion-jobs");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> "jdbc:sqlite:" + DATA_DIR.resolve("jobs.db"));
+        registry.add("mathtype.jobs.spool-dir", () -> DATA_DIR.resolve("spool").toString());
+        registry.add("mathtype.jobs.poll-interval-ms", () -> "50");
+        registry.add("mathtype.jobs.lease", () -> "1s");
+    }
+
+    @Autowired
+    ConversionJobService jobService;
+
+    @Autowired
+    ConversionJobRepository jobRepository;
+
+    @Autowired
+    ConversionJobItemRepository itemRepository;
+
+    @Test
+    void submittedJobRunsToCompletion() throws Exception {
+        byte[] sup = resource("/mtef/corpus/sup.bin");
+        ConversionJob job = jobService.submit(new MockMultipartFile[]{
+                new MockMultipartFile("files", "a.bin", null, sup),
+                new MockMultipartFile("files", "notes.txt", null, new byte[]{1}),
+                new MockMultipartFile("files", "b.bin", null, sup)});
+        assertEquals(2, job.getTotal());
+
+        ConversionJob done = awaitCompleted(job.getId());
+        assertEquals(2, done.getCompleted());
+        assertEquals(List.of("a.bin", "b.bin"),
+                jobService.findResults(job.getId(), 0).stream().map(ConversionJobItem::getFilename).toList());
+        assertFalse(Files.exists(DATA_DIR.resolve("spool").resolve(job.getId())));
+    }
+
+    @Test
+    void itemsWithAnExpiredLeaseAreRequeued() throws Exception {
+        // 模拟领取后崩溃的 worker：文件项处于处理中且租约早已过期
+        String jobId = UUID.randomUUID().toString();
+        jobRepository.save(new ConversionJob(jobId, 2));
+        for (int i = 0; i < 2; i++) {
+            ConversionJobItem item = new ConversionJobItem(jobId, i, i + ".bin", "/nonexistent/" + i + ".bin");
+            item.setStatus(ConversionJobItem.Status.RUNNING);
+            item.setLeaseUntil(System.currentTimeMillis() - 60_000);
+            itemRepository.save(item);
+        }
+
+        ConversionJob done = awaitCompleted(jobId);
+        assertEquals(2, done.getCompleted());
+        assertEquals(2, jobService.findResults(jobId, 0).size());
+    }
+
+    @Test
+    void completingAnItemTwiceCountsOnce() {
+        String jobId = UUID.randomUUID().toString();
+        jobRepository.save(new ConversionJob(jobId, 2));
+        List<ConversionJobItem> items = List.of(runningItem(jobId, 0), runningItem(jobId, 1));
+
+        // 租约过期后两个 worker 都完成了第一个文件项
+        jobService.complete(items.subList(0, 1), List.of(Mtef2LatexDTO.success("x")));
+        jobService.complete(items.subList(0, 1), List.of(Mtef2LatexDTO.error("late")));
+        ConversionJob job = jobRepository.findById(jobId).orElseThrow();
+        assertEquals(1, job.getCompleted());
+        assertEquals(0, job.getFailed());
+        assertEquals(ConversionJob.Status.RUNNING, job.getStatus());
+        assertEquals("x", itemRepository.findById(items.get(0).getId()).orElseThrow().getResLatex());
+
+        jobService.complete(items.subList(1, 2), List.of(Mtef2LatexDTO.success("y")));
+        job = jobRepository.findById(jobId).orElseThrow();
+        assertEquals(2, job.getCompleted());
+        assertEquals(ConversionJob.Status.COMPLETED, job.getStatus());
+    }
+
+    @Test
+    void purgesCompletedJobsPastTheRetention() {
+        long old = System.currentTimeMillis() - Duration.ofDays(8).toMillis();
+        String expired = savedJob(ConversionJob.Status.COMPLETED, old);
+        String recent = savedJob(ConversionJob.Status.COMPLETED, System.currentTimeMillis());
+        String unfinished = savedJob(ConversionJob.Status.RUNNING, old);
+
+        assertTrue(jobService.purgeCompleted(Duration.ofDays(7)) >= 1);
+        assertTrue(jobRepository.findById(expired).isEmpty());
+        assertTrue(jobService.findResults(expired, 0).isEmpty());
+        assertTrue(jobRepository.findById(recent).isPresent());
+        assertTrue(jobRepository.findById(unfinished).isPresent());
+    }
+
+    private ConversionJobItem runningItem(String jobId, int index) {
+        ConversionJobItem item = new ConversionJobItem(jobId, index, index + ".bin", "/nonexistent/" + index + ".bin");
+        item.setStatus(ConversionJobItem.Status.RUNNING);
+        // 租约足够长，后台 worker 不会接手
+        item.setLeaseUntil(System.currentTimeMillis() + 3_600_000);
+        return itemRepository.save(item);
+    }
+
+    private String savedJob(ConversionJob.Status status, long updatedAt) {
+        String jobId = UUID.randomUUID().toString();
+        ConversionJob job = new ConversionJob(jobId, 1);
+        job.setStatus(status);
+        job.setUpdatedAt(updatedAt);
+        jobRepository.save(job);
+        ConversionJobItem item = new ConversionJobItem(jobId, 0, "0.bin", "/nonexistent/0.bin");
+        item.setStatus(ConversionJobItem.Status.DONE);
+        itemRepository.save(item);
+        return jobId;
+    }
+
+    private ConversionJob awaitCompleted(String jobId) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (System.nanoTime() < deadline) {
+            ConversionJob job = jobRepository.findById(jobId).orElseThrow();
+            if (job.getStatus() == ConversionJob.Status.COMPLETED) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+        return fail("Job " + jobId + " did not complete");
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (var in = ConversionJobServiceTest.class.getResourceAsStream(name)) {
+            return in.readAllBytes();
+        }
+    }
+}
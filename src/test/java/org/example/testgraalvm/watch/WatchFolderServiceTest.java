@@ -0,0 +1,61 @@
+package org.example.testgraalvm.watch;
+
+import org.example.testgraalvm.cluster.ClusterConversionService;
+import org.example.testgraalvm.scheduler.FairConversionScheduler;
+import org.example.testgraalvm.service.ConversionResultStore;
+import org.example.testgraalvm.service.MathTypeConversionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Output file naming next to watched inputs and the configuration check
+ * for the store output mode.
+ */
+class WatchFolderServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void siblingReplacesTheWatchedSuffix() {
+        Path dir = Path.of("/data/in");
+        assertEquals(dir.resolve("eq1.tex"), WatchFolderService.sibling(dir.resolve("eq1.bin"), ".bin", ".tex"));
+        assertEquals(dir.resolve("eq1.json"), WatchFolderService.sibling(dir.resolve("eq1.bin"), ".bin", ".json"));
+        // 后缀匹配不区分大小写，保留文件名其余部分的原样
+        assertEquals(dir.resolve("EQ1.tex"), WatchFolderService.sibling(dir.resolve("EQ1.BIN"), ".bin", ".tex"));
+        // 只替换末尾的后缀
+        assertEquals(dir.resolve("a.bin.tex"), WatchFolderService.sibling(dir.resolve("a.bin.bin"), ".bin", ".tex"));
+        assertEquals(dir.resolve("a.tex"), WatchFolderService.sibling(dir.resolve("a.eq.bin"), ".eq.bin", ".tex"));
+    }
+
+    @Test
+    void storeOutputRequiresAResultStore() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> service("store"));
+        assertTrue(e.getMessage().startsWith("mathtype.watch.output=store"), e.getMessage());
+    }
+
+    @Test
+    void fileOutputsWorkWithoutAResultStore() throws IOException {
+        assertNotNull(service("tex"));
+        assertNotNull(service("json"));
+    }
+
+    private WatchFolderService service(String output) throws IOException {
+        // 与关闭持久化时相同：没有结果存储
+        MathTypeConversionService conversionService = new MathTypeConversionService(
+                new StaticListableBeanFactory().getBeanProvider(ConversionResultStore.class), true,
+                new StaticListableBeanFactory().getBeanProvider(ClusterConversionService.class),
+                new StaticListableBeanFactory().getBeanProvider(FairConversionScheduler.class));
+        return new WatchFolderService(conversionService, JsonMapper.builder().build(),
+                new String[]{tempDir.resolve("in").toString()}, true, ".bin", Duration.ofMillis(500), 256,
+                Duration.ofSeconds(2), output, "mtime-size", tempDir.resolve("watch-state.properties"));
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.testgraalvm.watch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Skip decisions of the watch ledger for both modes and the round trip of
+ * its state file across restarts.
+ */
+class WatchLedgerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mtimeSizeSkipsUntilEitherAttributeChanges() throws IOException {
+        Path file = write("a.bin", "abcd", 1_000_000);
+        WatchLedger ledger = new WatchLedger(tempDir.resolve("state.properties"), WatchLedger.SkipBy.MTIME_SIZE);
+
+        WatchLedger.Fingerprint first = ledger.changed(file);
+        assertNotNull(first);
+        assertNull(first.hash());
+        ledger.record(file, first);
+        assertNull(ledger.changed(file));
+
+        // 同样大小的新内容只改变修改时间
+        write("a.bin", "wxyz", 2_000_000);
+        WatchLedger.Fingerprint touched = ledger.changed(file);
+        assertNotNull(touched);
+        ledger.record(file, touched);
+
+        // 修改时间还原也不能掩盖大小的变化
+        write("a.bin", "abcdef", 2_000_000);
+        assertNotNull(ledger.changed(file));
+    }
+
+    @Test
+    void hashSkipsACopyWithTheSameContent() throws IOException {
+        Path file = write("a.bin", "abcd", 1_000_000);
+        WatchLedger ledger = new WatchLedger(tempDir.resolve("state.properties"), WatchLedger.SkipBy.HASH);
+
+        WatchLedger.Fingerprint first = ledger.changed(file);
+        assertNotNull(first);
+        assertEquals(64, first.hash().length());
+        ledger.record(file, first);
+
+        // 原样复制覆盖：属性变了，内容相同
+        write("a.bin", "abcd", 2_000_000);
+        assertNull(ledger.changed(file));
+        // 哈希一致后记录已更新为新的属性，再次检查不必读内容
+        Files.writeString(file, "wxyz");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2_000_000));
+        assertNull(ledger.changed(file));
+
+        write("a.bin", "wxyz", 3_000_000);
+        WatchLedger.Fingerprint edited = ledger.changed(file);
+        assertNotNull(edited);
+        assertNotEquals(first.hash(), edited.hash());
+    }
+
+    @Test
+    void recordsSurviveARestart() throws IOException {
+        Path stateFile = tempDir.resolve("state").resolve("watch.properties");
+        Path a = write("a.bin", "abcd", 1_000_000);
+        Path b = write("b.bin", "efgh", 1_000_000);
+        WatchLedger ledger = new WatchLedger(stateFile, WatchLedger.SkipBy.HASH);
+        ledger.record(a, ledger.changed(a));
+        ledger.record(b, ledger.changed(b));
+        ledger.flush();
+        assertFalse(Files.exists(stateFile.resolveSibling("watch.properties.tmp")));
+
+        WatchLedger reloaded = new WatchLedger(stateFile, WatchLedger.SkipBy.HASH);
+        assertEquals(2, reloaded.size());
+        assertNull(reloaded.changed(a));
+        assertNull(reloaded.changed(b));
+
+        // 删除的文件不再保留记录
+        reloaded.remove(b);
+        reloaded.flush();
+        WatchLedger again = new WatchLedger(stateFile, WatchLedger.SkipBy.HASH);
+        assertEquals(1, again.size());
+        assertNull(again.changed(a));
+        assertNotNull(again.changed(b));
+    }
+
+    private Path write(String name, String content, long modifiedMillis) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedMillis));
+        return file;
+    }
+}